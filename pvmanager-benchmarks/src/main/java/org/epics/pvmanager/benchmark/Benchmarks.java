@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the JMH benchmarks, writing the results in JSON so that they can
+ * be compared between releases.
+ * <p>
+ * All the arguments are passed to JMH: any JMH option can be used, and
+ * a regular expression selects the benchmarks to run. If no result format
+ * is given with <code>-rf</code>, the results are written in JSON to
+ * <code>jmh-result.json</code>, or to the file given with <code>-rff</code>.
+ * Nothing needs to be downloaded: the benchmarks only use the local,
+ * simulated and mock data sources.
+ * <p>
+ * Usage: java -jar benchmarks.jar [JMH options] [benchmark regexp]
+ * <p>
+ * For example, <code>java -jar benchmarks.jar -rff pvmanager-2.7.json ReadMap</code>
+ * runs the map benchmarks and writes the results for version 2.7.
+ *
+ * @author carcassi
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (!jmhArgs.contains("-rf")) {
+            jmhArgs.add(0, "-rf");
+            jmhArgs.add(1, "json");
+            if (!jmhArgs.contains("-rff")) {
+                jmhArgs.add(2, "-rff");
+                jmhArgs.add(3, "jmh-result.json");
+            }
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[jmhArgs.size()]));
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.CacheCollector;
+import org.epics.pvmanager.Collector;
+import org.epics.pvmanager.LatestValueCollector;
+import org.epics.pvmanager.QueueCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of the collectors, which sit between the data
+ * source threads writing the values and the scanning thread reading them.
+ * <p>
+ * The <code>scan</code> benchmark writes a burst of values and then reads
+ * them, as a scan does after a burst of updates. The <code>writeRead</code>
+ * group runs a writer and a reader on separate threads, to measure the
+ * contention on the collector.
+ *
+ * @author carcassi
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CollectorBenchmark {
+
+    @Param({"latest", "queue", "cache"})
+    public String collectorType;
+
+    @Param({"10"})
+    public int burstSize;
+
+    private Collector<Object, ?> collector;
+    private Object[] messages;
+    private int messageIndex;
+
+    @Setup
+    public void setup() {
+        switch (collectorType) {
+            case "latest":
+                collector = new LatestValueCollector<>();
+                break;
+            case "queue":
+                collector = new QueueCollector<>(burstSize);
+                break;
+            case "cache":
+                collector = new CacheCollector<>(burstSize);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown collector type " + collectorType);
+        }
+        messages = new Object[1024];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = Double.valueOf(i);
+        }
+    }
+
+    @Benchmark
+    @Group("scan")
+    public Object scan() {
+        for (int i = 0; i < burstSize; i++) {
+            collector.writeValue(messages[messageIndex++ & 1023]);
+        }
+        return collector.readValue();
+    }
+
+    @Benchmark
+    @Group("writeRead")
+    @GroupThreads(1)
+    public void write() {
+        collector.writeValue(messages[messageIndex++ & 1023]);
+    }
+
+    @Benchmark
+    @Group("writeRead")
+    @GroupThreads(1)
+    public Object read() {
+        return collector.readValue();
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.DataSource;
+import org.epics.pvmanager.PVManager;
+import org.epics.pvmanager.PVReader;
+import org.epics.pvmanager.loc.LocalDataSource;
+import org.epics.pvmanager.sim.SimulationDataSource;
+import org.epics.pvmanager.test.MockDataSource;
+import org.epics.pvmanager.util.Executors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+import static org.epics.util.time.TimeDuration.*;
+
+/**
+ * Measures the time taken to open and close a reader on the data sources
+ * that do not need a network: local, simulated and mock.
+ * <p>
+ * Other readers are kept open on the same channel, so that the channel
+ * stays connected and the benchmark measures the cost of adding and
+ * removing a reader to an existing channel. The mock data source
+ * creates no channel, and measures the reader alone.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DataSourceBenchmark {
+
+    @Param({"loc", "sim", "mock"})
+    public String dataSourceName;
+
+    @Param({"1", "100"})
+    public int nOpenReaders;
+
+    private DataSource dataSource;
+    private String channelName;
+    private List<PVReader<Object>> openReaders;
+
+    @Setup
+    public void setup() {
+        switch (dataSourceName) {
+            case "loc":
+                dataSource = new LocalDataSource();
+                channelName = "benchmark";
+                break;
+            case "sim":
+                dataSource = new SimulationDataSource();
+                channelName = "sine(0, 10, 0.1)";
+                break;
+            case "mock":
+                dataSource = new MockDataSource();
+                channelName = "benchmark";
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown data source " + dataSourceName);
+        }
+        openReaders = new ArrayList<>();
+        for (int i = 0; i < nOpenReaders; i++) {
+            openReaders.add(openReader());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (PVReader<Object> reader : openReaders) {
+            reader.close();
+        }
+        dataSource.close();
+    }
+
+    private PVReader<Object> openReader() {
+        return PVManager.read(channel(channelName)).from(dataSource)
+                .notifyOn(Executors.localThread()).maxRate(ofHertz(10));
+    }
+
+    @Benchmark
+    public void openClose() {
+        openReader().close();
+    }
+}
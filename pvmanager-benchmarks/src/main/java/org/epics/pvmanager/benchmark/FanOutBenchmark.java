@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.benchmark.MultiplexedChannelHandlerBenchmark.BenchmarkChannelHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the value fan-out of {@link org.epics.pvmanager.MultiplexedChannelHandler}:
+ * each operation processes one message for a channel with the given
+ * number of readers.
+ * <p>
+ * Run with <code>-prof gc</code> to check the allocation rate: besides
+ * what the type adapter writes in the caches, dispatching a message
+ * should not allocate.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FanOutBenchmark {
+
+    @Param({"1", "10", "50", "500"})
+    public int nReaders;
+
+    private BenchmarkChannelHandler handler;
+    private Object[] messages;
+    private int messageIndex;
+
+    @Setup
+    public void setup() {
+        handler = new BenchmarkChannelHandler("fanOut");
+        for (int i = 0; i < nReaders; i++) {
+            handler.subscribe(MultiplexedChannelHandlerBenchmark.newSubscription());
+        }
+        messages = new Object[1024];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = Double.valueOf(i);
+        }
+    }
+
+    @Benchmark
+    public void processMessage() {
+        handler.publish(messages[messageIndex++ & 1023]);
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.ChannelReadRecipe;
+import org.epics.pvmanager.ReadExpressionTester;
+import org.epics.pvmanager.ReadFunction;
+import org.epics.pvmanager.ValueCache;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.ValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.epics.pvmanager.formula.ExpressionLanguage.*;
+
+/**
+ * Measures the evaluation of a formula after its channels receive
+ * a new value.
+ * <p>
+ * The formula is parsed once: each operation writes a new value to all the
+ * channels of the formula and calculates the result. The <code>parse</code>
+ * benchmark measures the parsing of the formula alone.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FormulaBenchmark {
+
+    @Param({"='x' + 1", "='x' * 'y' + 'z'", "=sin('x') + cos('y')", "=arrayOf('x', 'y', 'z')"})
+    public String formula;
+
+    private ReadFunction<?> function;
+    private ValueCache<Object>[] caches;
+    private VDouble[] messages;
+    private int messageIndex;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        ReadExpressionTester tester = new ReadExpressionTester(formula(formula));
+        function = tester.getFunction();
+        List<ValueCache<Object>> channelCaches = new ArrayList<>();
+        for (ChannelReadRecipe recipe : tester.getCurrentReadRecipe().getChannelReadRecipes()) {
+            channelCaches.add((ValueCache<Object>) recipe.getReadSubscription().getValueCache());
+        }
+        caches = channelCaches.toArray(new ValueCache[channelCaches.size()]);
+        messages = new VDouble[1024];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = ValueFactory.newVDouble((double) i);
+        }
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        VDouble message = messages[messageIndex++ & 1023];
+        for (int i = 0; i < caches.length; i++) {
+            caches[i].writeValue(message);
+        }
+        return function.readValue();
+    }
+
+    @Benchmark
+    public Object parse() {
+        return formula(formula);
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.PVManager;
+import org.epics.pvmanager.PVReader;
+import org.epics.pvmanager.PVWriter;
+import org.epics.pvmanager.loc.LocalDataSource;
+import org.epics.pvmanager.util.Executors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+import static org.epics.util.time.TimeDuration.*;
+
+/**
+ * Measures a synchronous write on a local channel that is read
+ * by the given number of readers.
+ * <p>
+ * The write returns after the local channel has dispatched the new value
+ * to the caches of all readers, so the time includes the fan-out.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class LocalWriteBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int nReaders;
+
+    private LocalDataSource dataSource;
+    private List<PVReader<Object>> readers;
+    private PVWriter<Object> writer;
+    private Object[] messages;
+    private int messageIndex;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        dataSource = new LocalDataSource();
+        readers = new ArrayList<>();
+        for (int i = 0; i < nReaders; i++) {
+            readers.add(PVManager.read(channel("benchmark")).from(dataSource)
+                    .notifyOn(Executors.localThread()).maxRate(ofHertz(10)));
+        }
+        writer = PVManager.write(channel("benchmark")).from(dataSource)
+                .notifyOn(Executors.localThread()).sync();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!writer.isWriteConnected()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Local channel did not connect");
+            }
+            Thread.sleep(10);
+        }
+        messages = new Object[1024];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = Double.valueOf(i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        writer.close();
+        for (PVReader<Object> reader : readers) {
+            reader.close();
+        }
+        dataSource.close();
+    }
+
+    @Benchmark
+    public void write() {
+        writer.write(messages[messageIndex++ & 1023]);
+    }
+}
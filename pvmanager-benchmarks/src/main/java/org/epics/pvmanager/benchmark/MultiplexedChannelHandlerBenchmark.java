@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.ChannelHandlerReadSubscription;
+import org.epics.pvmanager.ChannelWriteCallback;
+import org.epics.pvmanager.MultiplexedChannelHandler;
+import org.epics.pvmanager.ValueCacheImpl;
+import org.epics.pvmanager.WriteFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time taken by {@link MultiplexedChannelHandler} to dispatch
+ * a message to its readers, while other readers subscribe and unsubscribe
+ * concurrently.
+ * <p>
+ * The time is sampled for each message, so that the percentiles show
+ * how long the thread delivering the values (e.g. the CA callback thread)
+ * is held. A 1 kHz channel has 1 ms to process each message.
+ * The <code>fanOut</code> group runs the dispatch together with
+ * a thread that keeps adding and removing a reader; the
+ * <code>fanOutAlone</code> benchmark is the same dispatch without
+ * the concurrent subscriptions.
+ *
+ * @author carcassi
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MultiplexedChannelHandlerBenchmark {
+
+    /**
+     * A channel handler that exposes the message processing and the
+     * subscriptions to the benchmark.
+     */
+    static class BenchmarkChannelHandler extends MultiplexedChannelHandler<Object, Object> {
+
+        BenchmarkChannelHandler(String channelName) {
+            super(channelName);
+        }
+
+        @Override
+        protected void connect() {
+            processConnection(new Object());
+        }
+
+        @Override
+        protected void disconnect() {
+            processConnection(null);
+        }
+
+        @Override
+        protected void write(Object newValue, ChannelWriteCallback callback) {
+            throw new UnsupportedOperationException("Read only channel");
+        }
+
+        void publish(Object message) {
+            processMessage(message);
+        }
+
+        void subscribe(ChannelHandlerReadSubscription subscription) {
+            addReader(subscription);
+        }
+
+        void unsubscribe(ChannelHandlerReadSubscription subscription) {
+            removeReader(subscription);
+        }
+    }
+
+    private static final WriteFunction<Object> NO_OP = new WriteFunction<Object>() {
+
+        @Override
+        public void writeValue(Object newValue) {
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    static ChannelHandlerReadSubscription newSubscription() {
+        return new ChannelHandlerReadSubscription(new ValueCacheImpl<Object>(Object.class),
+                (WriteFunction<Exception>) (WriteFunction) NO_OP, (WriteFunction<Boolean>) (WriteFunction) NO_OP);
+    }
+
+    @Param({"50"})
+    public int nReaders;
+
+    private BenchmarkChannelHandler handler;
+    private ChannelHandlerReadSubscription[] churnSubscriptions;
+    private Object[] messages;
+    private int messageIndex;
+    private int churnIndex;
+
+    @Setup
+    public void setup() {
+        handler = new BenchmarkChannelHandler("benchmark");
+        for (int i = 0; i < nReaders; i++) {
+            handler.subscribe(newSubscription());
+        }
+        churnSubscriptions = new ChannelHandlerReadSubscription[nReaders];
+        for (int i = 0; i < churnSubscriptions.length; i++) {
+            churnSubscriptions[i] = newSubscription();
+        }
+        messages = new Object[1024];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = Double.valueOf(i);
+        }
+    }
+
+    @Benchmark
+    @Group("fanOut")
+    @GroupThreads(1)
+    public void processMessage() {
+        handler.publish(messages[messageIndex++ & 1023]);
+    }
+
+    @Benchmark
+    @Group("fanOut")
+    @GroupThreads(1)
+    public void subscribeUnsubscribe() {
+        ChannelHandlerReadSubscription subscription = churnSubscriptions[churnIndex++ % churnSubscriptions.length];
+        handler.subscribe(subscription);
+        handler.unsubscribe(subscription);
+    }
+
+    @Benchmark
+    public void fanOutAlone() {
+        handler.publish(messages[messageIndex++ & 1023]);
+    }
+}
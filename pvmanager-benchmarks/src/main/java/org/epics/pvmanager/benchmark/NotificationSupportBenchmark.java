@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.Notification;
+import org.epics.pvmanager.NotificationSupport;
+import org.epics.pvmanager.vtype.DataTypeSupport;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.ValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per notification overhead of the type support for a
+ * reader of VDouble.
+ * <p>
+ * <code>twoLookups</code> is what each notification used to cost: one
+ * lookup on the scan thread to validate the value, and one on the
+ * notification thread to prepare it. <code>globalLookup</code> is a single
+ * lookup through the type support cache, and <code>inlineCache</code>
+ * is what {@link org.epics.pvmanager.PVReaderDirector} now does for
+ * a reader that keeps returning the same class.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class NotificationSupportBenchmark {
+
+    private VDouble[] values;
+    private int valueIndex;
+    private Class<?> cachedType;
+    private NotificationSupport<VDouble> cachedSupport;
+
+    @Setup
+    public void setup() {
+        DataTypeSupport.install();
+        values = new VDouble[1024];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ValueFactory.newVDouble((double) i);
+        }
+    }
+
+    @Benchmark
+    public Notification<VDouble> twoLookups() {
+        VDouble oldValue = values[valueIndex & 1023];
+        VDouble newValue = values[++valueIndex & 1023];
+        NotificationSupport.findNotificationSupportFor(newValue);
+        return NotificationSupport.notification(oldValue, newValue);
+    }
+
+    @Benchmark
+    public Notification<VDouble> globalLookup() {
+        VDouble oldValue = values[valueIndex & 1023];
+        VDouble newValue = values[++valueIndex & 1023];
+        return NotificationSupport.notification(oldValue, newValue);
+    }
+
+    @Benchmark
+    public Notification<VDouble> inlineCache() {
+        VDouble oldValue = values[valueIndex & 1023];
+        VDouble newValue = values[++valueIndex & 1023];
+        if (cachedType != newValue.getClass()) {
+            cachedSupport = NotificationSupport.findNotificationSupportFor(newValue);
+            cachedType = newValue.getClass();
+        }
+        return cachedSupport.prepareNotification(oldValue, newValue);
+    }
+}
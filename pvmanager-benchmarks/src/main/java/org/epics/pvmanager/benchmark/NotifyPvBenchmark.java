@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmark;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServerFactory;
+import org.epics.pvmanager.Instrumentation;
+import org.epics.pvmanager.PVManager;
+import org.epics.pvmanager.PVReader;
+import org.epics.pvmanager.ReadFunction;
+import org.epics.pvmanager.expression.DesiredRateExpressionImpl;
+import org.epics.pvmanager.expression.DesiredRateExpressionListImpl;
+import org.epics.pvmanager.jmx.JmxInstrumentation;
+import org.epics.pvmanager.test.TestDataSource;
+import org.epics.pvmanager.util.Executors;
+import org.epics.pvmanager.vtype.DataTypeSupport;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.ValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.epics.util.time.TimeDuration.*;
+
+/**
+ * Measures a full scan of a reader: the calculation of the value,
+ * the notification support and the notification of the reader, with
+ * and without the instrumentation.
+ * <p>
+ * The readers are created through the public API, with a scanner that
+ * keeps the scan task instead of scheduling it: each operation runs
+ * the scan once. The notification is done on the scanning thread, so
+ * that the time is not spent waiting for another thread. The
+ * <code>newValue</code> benchmark returns a different value at each
+ * scan, the <code>sameValue</code> benchmark returns always the same
+ * value, so that the notification is skipped.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class NotifyPvBenchmark {
+
+    /**
+     * A scanner that keeps the last periodic task instead of running it.
+     */
+    private static class ManualScanner extends ScheduledThreadPoolExecutor {
+
+        private Runnable scanTask;
+
+        ManualScanner() {
+            super(1, Executors.namedPool("NotifyPvBenchmark "));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            scanTask = command;
+            // A future that can be cancelled when the reader is closed
+            return schedule(command, 1, TimeUnit.DAYS);
+        }
+
+        Runnable takeScanTask() {
+            Runnable task = scanTask;
+            scanTask = null;
+            return task;
+        }
+    }
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    private VDouble[] messages;
+    private int messageIndex;
+    private VDouble sameValue;
+    private JmxInstrumentation instrumentation;
+    private TestDataSource dataSource;
+    private ManualScanner scanner;
+    private PVReader<VDouble> newValueReader;
+    private Runnable newValueScan;
+    private PVReader<VDouble> sameValueReader;
+    private Runnable sameValueScan;
+
+    @Setup
+    public void setup() {
+        DataTypeSupport.install();
+        messages = new VDouble[1024];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = ValueFactory.newVDouble((double) i);
+        }
+        sameValue = ValueFactory.newVDouble(0.0);
+
+        dataSource = new TestDataSource();
+        scanner = new ManualScanner();
+        ScheduledExecutorService previousScanner = PVManager.getReadScannerExecutorService();
+        Instrumentation previousInstrumentation = PVManager.getInstrumentation();
+        PVManager.setReadScannerExecutorService(scanner);
+        if (instrumented) {
+            // Private server, so that the benchmark does not leave
+            // MBeans in the platform server
+            instrumentation = new JmxInstrumentation(MBeanServerFactory.newMBeanServer());
+            PVManager.setInstrumentation(instrumentation);
+        }
+        try {
+            newValueReader = PVManager.read(new DesiredRateExpressionImpl<>(new DesiredRateExpressionListImpl<Object>(), new ReadFunction<VDouble>() {
+
+                @Override
+                public VDouble readValue() {
+                    return messages[messageIndex++ & 1023];
+                }
+            }, "newValue")).from(dataSource).notifyOn(Executors.localThread()).maxRate(ofHertz(50));
+            newValueScan = scanner.takeScanTask();
+
+            sameValueReader = PVManager.read(new DesiredRateExpressionImpl<>(new DesiredRateExpressionListImpl<Object>(), new ReadFunction<VDouble>() {
+
+                @Override
+                public VDouble readValue() {
+                    return sameValue;
+                }
+            }, "sameValue")).from(dataSource).notifyOn(Executors.localThread()).maxRate(ofHertz(50));
+            sameValueScan = scanner.takeScanTask();
+        } finally {
+            PVManager.setReadScannerExecutorService(previousScanner);
+            PVManager.setInstrumentation(previousInstrumentation);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        newValueReader.close();
+        sameValueReader.close();
+        if (instrumentation != null) {
+            instrumentation.close();
+        }
+        scanner.shutdownNow();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public VDouble newValue() {
+        newValueScan.run();
+        return newValueReader.getValue();
+    }
+
+    @Benchmark
+    public VDouble sameValue() {
+        sameValueScan.run();
+        return sameValueReader.getValue();
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.ChannelReadRecipe;
+import org.epics.pvmanager.ReadExpressionTester;
+import org.epics.pvmanager.ReadFunction;
+import org.epics.pvmanager.ValueCache;
+import org.epics.pvmanager.expression.MapDelta;
+import org.epics.pvmanager.expression.ReadMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+
+/**
+ * Measures how the scan of a {@link ReadMap} scales with the number of
+ * channels in the map, when only one channel changes at each scan.
+ * <p>
+ * The <code>scan</code> benchmark calculates the new map; the
+ * <code>scanAndDelta</code> benchmark also calculates the keys that
+ * changed, as a client processing only the changes would do.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ReadMapBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int nChannels;
+
+    private ReadFunction<?> function;
+    private ValueCache<Object>[] caches;
+    private Object[] messages;
+    private int messageIndex;
+    private Map<String, Object> lastMap;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        ReadMap<Object> map = readMapOf(Object.class);
+        for (int i = 0; i < nChannels; i++) {
+            map.add(latestValueOf(channel("channel" + i)));
+        }
+        ReadExpressionTester tester = new ReadExpressionTester(map);
+        function = tester.getFunction();
+
+        Map<String, ValueCache<Object>> cachesByName = new HashMap<>();
+        for (ChannelReadRecipe recipe : tester.getCurrentReadRecipe().getChannelReadRecipes()) {
+            cachesByName.put(recipe.getChannelName(), (ValueCache<Object>) recipe.getReadSubscription().getValueCache());
+        }
+        caches = new ValueCache[nChannels];
+        for (int i = 0; i < nChannels; i++) {
+            caches[i] = cachesByName.get("channel" + i);
+            caches[i].writeValue(Double.valueOf(i));
+        }
+        messages = new Object[1024];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = Double.valueOf(i);
+        }
+        lastMap = (Map<String, Object>) function.readValue();
+    }
+
+    private void updateOneChannel() {
+        int index = messageIndex++;
+        caches[index % nChannels].writeValue(messages[index & 1023]);
+    }
+
+    @Benchmark
+    public Object scan() {
+        updateOneChannel();
+        return function.readValue();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public MapDelta scanAndDelta() {
+        updateOneChannel();
+        Map<String, Object> newMap = (Map<String, Object>) function.readValue();
+        MapDelta delta = MapDelta.between(lastMap, newMap);
+        lastMap = newMap;
+        return delta;
+    }
+}
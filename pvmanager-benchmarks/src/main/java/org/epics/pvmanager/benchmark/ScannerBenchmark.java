@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.PVManager;
+import org.epics.pvmanager.PVReader;
+import org.epics.pvmanager.test.MockDataSource;
+import org.epics.pvmanager.util.Executors;
+import org.epics.pvmanager.util.TimerWheelExecutorService;
+import org.epics.util.time.TimeDuration;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+import static org.epics.util.time.TimeDuration.*;
+
+/**
+ * Compares the read scanner executors when a large number of readers are open.
+ * <p>
+ * For each executor, it opens the given number of readers (50,000 by default)
+ * at 10 Hz, together with a thousand probe tasks scheduled with the same
+ * fixed delay. During the measurement window, it measures the CPU time
+ * used by the scanner threads, and how late each execution of the probes
+ * starts with respect to the end of the previous one plus the delay.
+ * The scan of the readers is the same for both executors: the difference
+ * in CPU is the cost of the scheduling.
+ * <p>
+ * This is not a JMH benchmark, as it measures the load of the threads
+ * over a window instead of the time of an operation. It can be run from
+ * the benchmarks jar with
+ * <code>java -cp benchmarks.jar org.epics.pvmanager.benchmark.ScannerBenchmark</code>.
+ * <p>
+ * Usage: ScannerBenchmark [nReaders] [measureSeconds]
+ *
+ * @author carcassi
+ */
+public class ScannerBenchmark {
+
+    private static final long PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int N_PROBES = 1000;
+    private static final String WORKER_PREFIX = "Benchmark Worker ";
+    private static final String WHEEL_PREFIX = "Benchmark Timer Wheel ";
+
+    public static void main(String[] args) throws Exception {
+        int nReaders = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int nThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+        ScheduledThreadPoolExecutor threadPool = new ScheduledThreadPoolExecutor(nThreads, Executors.namedPool(WORKER_PREFIX));
+        // Otherwise the cancelled tasks would pile up in the heap
+        threadPool.setRemoveOnCancelPolicy(true);
+        TimerWheelExecutorService timerWheel = new TimerWheelExecutorService(threadPool,
+                TimeDuration.ofMillis(1), 512, Executors.namedPool(WHEEL_PREFIX));
+
+        System.out.println("Readers: " + nReaders + " - Window: " + seconds + " s - Worker threads: " + nThreads);
+        ScheduledExecutorService previousScanner = PVManager.getReadScannerExecutorService();
+        try {
+            measure("ScheduledThreadPoolExecutor", threadPool, nReaders, seconds);
+            measure("TimerWheelExecutorService", timerWheel, nReaders, seconds);
+        } finally {
+            PVManager.setReadScannerExecutorService(previousScanner);
+            timerWheel.shutdown();
+            threadPool.shutdown();
+        }
+    }
+
+    /**
+     * Records how late each execution starts, skipping the first one,
+     * which depends on the initial delay.
+     */
+    private static class Probe implements Runnable {
+
+        private final long[] lateness;
+        private int count = 0;
+        private long lastEnd = 0;
+        private volatile boolean recording = false;
+
+        Probe(int samples) {
+            lateness = new long[samples];
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            if (recording && lastEnd != 0 && count < lateness.length) {
+                lateness[count] = start - lastEnd - PERIOD_NANOS;
+                count++;
+            }
+            lastEnd = System.nanoTime();
+        }
+    }
+
+    private static void measure(String name, ScheduledExecutorService scanner, int nReaders, int seconds) throws Exception {
+        System.out.println(name);
+        PVManager.setReadScannerExecutorService(scanner);
+        MockDataSource dataSource = new MockDataSource();
+
+        List<PVReader<Integer>> readers = new ArrayList<>(nReaders);
+        for (int i = 0; i < nReaders; i++) {
+            readers.add(PVManager.read(constant(i)).from(dataSource).maxRate(ofMillis(100)));
+        }
+        List<Probe> probes = new ArrayList<>(N_PROBES);
+        List<ScheduledFuture<?>> futures = new ArrayList<>(N_PROBES);
+        for (int i = 0; i < N_PROBES; i++) {
+            Probe probe = new Probe(seconds * 10);
+            probes.add(probe);
+            futures.add(scanner.scheduleWithFixedDelay(probe, i % 100, PERIOD_NANOS / 1000000, TimeUnit.MILLISECONDS));
+        }
+        // Let the readers connect and the scans settle
+        Thread.sleep(1000);
+
+        for (Probe probe : probes) {
+            probe.recording = true;
+        }
+        long[] cpuStart = scannerCpuNanos();
+        long wallStart = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long[] cpuEnd = scannerCpuNanos();
+        long wall = System.nanoTime() - wallStart;
+        for (Probe probe : probes) {
+            probe.recording = false;
+        }
+
+        for (ScheduledFuture<?> future : futures) {
+            future.cancel(false);
+        }
+        for (PVReader<Integer> reader : readers) {
+            reader.close();
+        }
+        dataSource.close();
+
+        System.out.println("    CPU: workers " + percent(cpuEnd[0] - cpuStart[0], wall)
+                + "% - wheel " + percent(cpuEnd[1] - cpuStart[1], wall) + "% of one core");
+
+        int n = 0;
+        for (Probe probe : probes) {
+            n += probe.count;
+        }
+        long[] lateness = new long[n];
+        n = 0;
+        for (Probe probe : probes) {
+            System.arraycopy(probe.lateness, 0, lateness, n, probe.count);
+            n += probe.count;
+        }
+        Arrays.sort(lateness);
+        if (n > 0) {
+            System.out.println("    Lateness: min " + ms(lateness[0]) + " ms - median " + ms(lateness[n / 2])
+                    + " ms - 99% " + ms(lateness[(int) (n * 0.99)])
+                    + " ms - max " + ms(lateness[n - 1]) + " ms (" + n + " samples)");
+        }
+    }
+
+    /**
+     * The CPU time used so far by the worker threads and by the wheel thread.
+     */
+    private static long[] scannerCpuNanos() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long[] total = new long[2];
+        for (long id : threadBean.getAllThreadIds()) {
+            ThreadInfo info = threadBean.getThreadInfo(id);
+            long cpu = threadBean.getThreadCpuTime(id);
+            if (info == null || cpu <= 0) {
+                continue;
+            }
+            if (info.getThreadName().startsWith(WORKER_PREFIX)) {
+                total[0] += cpu;
+            } else if (info.getThreadName().startsWith(WHEEL_PREFIX)) {
+                total[1] += cpu;
+            }
+        }
+        return total;
+    }
+
+    private static String percent(long cpuNanos, long wallNanos) {
+        return String.format("%.1f", 100.0 * cpuNanos / wallNanos);
+    }
+
+    private static String ms(long nanos) {
+        return String.format("%.2f", nanos / 1000000.0);
+    }
+}
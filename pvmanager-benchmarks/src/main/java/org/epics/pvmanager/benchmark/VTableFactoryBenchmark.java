@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.epics.util.array.ArrayDouble;
+import org.epics.util.array.ArrayInt;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VString;
+import org.epics.vtype.VTable;
+import org.epics.vtype.table.VTableFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.epics.vtype.ValueFactory.*;
+import static org.epics.vtype.table.VTableFactory.*;
+
+/**
+ * Measures the {@link VTableFactory} operations used by the table
+ * formula functions, on tables with a string and a numeric column.
+ *
+ * @author carcassi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class VTableFactoryBenchmark {
+
+    @Param({"100", "1000"})
+    public int nRows;
+
+    private VTable values;
+    private VTable limits;
+    private ArrayInt evenRows;
+    private VString filterName;
+    private VDouble filterMin;
+    private VDouble filterMax;
+    private int rowIndex;
+
+    @Setup
+    public void setup() {
+        List<String> names = new ArrayList<>();
+        double[] value = new double[nRows];
+        double[] limit = new double[nRows];
+        int[] even = new int[nRows / 2];
+        for (int i = 0; i < nRows; i++) {
+            names.add("name" + i);
+            value[i] = i;
+            limit[i] = 2 * i;
+        }
+        for (int i = 0; i < even.length; i++) {
+            even[i] = 2 * i;
+        }
+        values = newVTable(column("Name", newVStringArray(names, alarmNone(), timeNow())),
+                column("Value", newVDoubleArray(new ArrayDouble(value), alarmNone(), timeNow(), displayNone())));
+        limits = newVTable(column("Name", newVStringArray(names, alarmNone(), timeNow())),
+                column("Limit", newVDoubleArray(new ArrayDouble(limit), alarmNone(), timeNow(), displayNone())));
+        evenRows = new ArrayInt(even);
+        filterName = newVString("name" + (nRows / 2), alarmNone(), timeNow());
+        filterMin = newVDouble(nRows / 4.0);
+        filterMax = newVDouble(nRows / 2.0);
+    }
+
+    @Benchmark
+    public VTable join() {
+        return VTableFactory.join(values, limits);
+    }
+
+    @Benchmark
+    public VTable select() {
+        return VTableFactory.select(values, evenRows);
+    }
+
+    @Benchmark
+    public VTable valueFilter() {
+        return tableValueFilter(values, "Name", filterName);
+    }
+
+    @Benchmark
+    public VTable rangeFilter() {
+        return tableRangeFilter(values, "Value", filterMin, filterMax);
+    }
+
+    @Benchmark
+    public VTable extractRow() {
+        return VTableFactory.extractRow(values, rowIndex++ % nRows);
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.epics.pvmanager.PVManager;
+import org.epics.pvmanager.PVWriter;
+import org.epics.pvmanager.expression.ChannelExpression;
+import org.epics.pvmanager.expression.WriteExpressionList;
+import org.epics.pvmanager.expression.WriteExpressionListImpl;
+import org.epics.pvmanager.test.TestDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+
+/**
+ * Measures the time taken by a synchronous write over channels with
+ * ordering constraints, where some of the channels are slow.
+ * <p>
+ * The channels form independent chains: each channel of a chain is
+ * written after the previous one. At each step, one chain has a slow
+ * channel (<code>slowMs</code>) and all the others are fast
+ * (<code>fastMs</code>), with the slow channel in a different chain at
+ * each step. Writing one step at a time for all chains takes
+ * <code>length * slowMs</code>, while writing each channel as soon as
+ * the previous one in its chain is done takes about
+ * <code>slowMs + (length - 1) * fastMs</code>.
+ * <p>
+ * The channels are the <code>delayedWrite:&lt;ms&gt;:&lt;id&gt;</code>
+ * channels of the {@link TestDataSource}.
+ *
+ * @author carcassi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WritePlanBenchmark {
+
+    @Param({"4", "50"})
+    public int nChains;
+
+    @Param({"5"})
+    public int length;
+
+    @Param({"2"})
+    public int fastMs;
+
+    @Param({"20"})
+    public int slowMs;
+
+    private TestDataSource dataSource;
+    private PVWriter<Map<String, Object>> pvWriter;
+    private Map<String, Object> values;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        dataSource = new TestDataSource();
+        WriteExpressionList<Object> expressions = new WriteExpressionListImpl<>();
+        values = new HashMap<>();
+        for (int chain = 0; chain < nChains; chain++) {
+            String previous = null;
+            for (int step = 0; step < length; step++) {
+                int delayMs = (step % nChains == chain) ? slowMs : fastMs;
+                String name = "delayedWrite:" + delayMs + ":" + chain + "-" + step;
+                ChannelExpression<Object, Object> expression = channel(name);
+                if (previous != null) {
+                    expression.after(previous);
+                }
+                expressions.and(expression);
+                values.put(name, 0);
+                previous = name;
+            }
+        }
+        pvWriter = PVManager.write(mapOf(expressions)).from(dataSource).sync();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pvWriter.close();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public void write() {
+        counter++;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            entry.setValue(counter);
+        }
+        pvWriter.write(values);
+    }
+}
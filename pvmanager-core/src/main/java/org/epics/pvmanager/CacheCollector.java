@@ -5,24 +5,23 @@
 package org.epics.pvmanager;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
  * Collects value at read rate and keeps the last n.
  * <p>
  * The values are returned oldest value first. When maxSize is reached,
- * the oldest values are discarded.
+ * the oldest values are discarded. Writing a value never locks and costs
+ * the same whether or not the cache is full. The list returned is
+ * reused by the next read.
  *
  * @param <T> the type contained in the cache
  * @author carcassi
  */
 public class CacheCollector<T> implements Collector<T, List<T>> {
     
-    private final Object lock = new Object();
+    private final RingBuffer<T> buffer;
     private final List<T> readBuffer = new ArrayList<>();
-    private final List<T> writeBuffer = new LinkedList<>();
-    private int maxSize;
 
     /**
      * A new cache collector with max size for the cache.
@@ -30,27 +29,17 @@ public class CacheCollector<T> implements Collector<T, List<T>> {
      * @param maxSize maximum number of elements in the cache
      */
     public CacheCollector(int maxSize) {
-        synchronized(lock) {
-            this.maxSize = maxSize;
-        }
+        buffer = new RingBuffer<>(maxSize);
     }
 
     @Override
     public void writeValue(T newValue) {
-        synchronized(lock) {
-            writeBuffer.add(newValue);
-            if (writeBuffer.size() > maxSize) {
-                writeBuffer.remove(0);
-            }
-        }
+        buffer.write(newValue);
     }
 
     @Override
     public List<T> readValue() {
-        readBuffer.clear();
-        synchronized(lock) {
-            readBuffer.addAll(writeBuffer);
-        }
+        buffer.readTo(readBuffer, false);
         return readBuffer;
     }
 
@@ -63,12 +52,7 @@ public class CacheCollector<T> implements Collector<T, List<T>> {
      * @param maxSize the maximum number of elements in the cache.
      */
     public void setMaxSize(int maxSize) {
-        synchronized(lock){
-            this.maxSize = maxSize;
-            while (writeBuffer.size() > maxSize) {
-                writeBuffer.remove(0);
-            }
-        }
+        buffer.setMaxSize(maxSize);
     }
 
     /**
@@ -77,9 +61,7 @@ public class CacheCollector<T> implements Collector<T, List<T>> {
      * @return the maximum number of elements in the cache
      */
     public int getMaxSize() {
-        synchronized(lock) {
-            return maxSize;
-        }
+        return buffer.getMaxSize();
     }
     
 }
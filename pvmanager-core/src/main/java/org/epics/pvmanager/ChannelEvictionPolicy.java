@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import org.epics.util.time.TimeDuration;
+
+/**
+ * Determines when a {@link DataSource} removes from its cache the
+ * channel handlers that are no longer used by any reader or writer.
+ * <p>
+ * Idle channel handlers are already disconnected, but they still
+ * keep their name, their state and possibly the last value received.
+ * Applications that open a large number of different channels over time
+ * can use eviction to keep the memory bounded. When a channel is evicted,
+ * the next reader or writer for the same name will create a new handler.
+ * <p>
+ * By default, data sources never evict their channels. Data sources
+ * that keep their value in the channel handler (e.g. local variables)
+ * would lose it when evicted.
+ *
+ * @author carcassi
+ */
+public final class ChannelEvictionPolicy {
+
+    private static final ChannelEvictionPolicy NEVER = new ChannelEvictionPolicy(false, Long.MAX_VALUE, Integer.MAX_VALUE);
+    private static final ChannelEvictionPolicy IMMEDIATE = new ChannelEvictionPolicy(true, 0, 0);
+
+    private final boolean enabled;
+    private final long idleTimeoutNanos;
+    private final int maxIdleChannels;
+
+    private ChannelEvictionPolicy(boolean enabled, long idleTimeoutNanos, int maxIdleChannels) {
+        this.enabled = enabled;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+        this.maxIdleChannels = maxIdleChannels;
+    }
+
+    /**
+     * Channel handlers are never evicted. This is the default.
+     *
+     * @return the policy
+     */
+    public static ChannelEvictionPolicy never() {
+        return NEVER;
+    }
+
+    /**
+     * Channel handlers are evicted as soon as they are no longer used.
+     *
+     * @return the policy
+     */
+    public static ChannelEvictionPolicy immediate() {
+        return IMMEDIATE;
+    }
+
+    /**
+     * Channel handlers are evicted once they have not been used for
+     * the given grace period.
+     * <p>
+     * The idle channels are checked when channels are created or released,
+     * and by a sweep scheduled on the read scanner executor when the grace
+     * period of the oldest idle channel expires.
+     *
+     * @param gracePeriod the time a channel can stay idle before it is evicted
+     * @return the policy
+     */
+    public static ChannelEvictionPolicy afterIdle(TimeDuration gracePeriod) {
+        return afterIdle(gracePeriod, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Only the given number of idle channel handlers are kept: when
+     * more channels become idle, the ones that have been idle the longest
+     * are evicted.
+     *
+     * @param maxIdleChannels the maximum number of idle channels to keep
+     * @return the policy
+     */
+    public static ChannelEvictionPolicy maxIdleChannels(int maxIdleChannels) {
+        if (maxIdleChannels < 0) {
+            throw new IllegalArgumentException("Maximum number of idle channels must be non negative (was " + maxIdleChannels + ")");
+        }
+        return new ChannelEvictionPolicy(true, Long.MAX_VALUE, maxIdleChannels);
+    }
+
+    /**
+     * Channel handlers are evicted once they have not been used for
+     * the given grace period, or when there are more than the given
+     * number of idle channels, whichever comes first.
+     *
+     * @param gracePeriod the time a channel can stay idle before it is evicted
+     * @param maxIdleChannels the maximum number of idle channels to keep
+     * @return the policy
+     */
+    public static ChannelEvictionPolicy afterIdle(TimeDuration gracePeriod, int maxIdleChannels) {
+        if (gracePeriod == null || gracePeriod.toNanosLong() < 0) {
+            throw new IllegalArgumentException("Grace period must be non negative (was " + gracePeriod + ")");
+        }
+        if (maxIdleChannels < 0) {
+            throw new IllegalArgumentException("Maximum number of idle channels must be non negative (was " + maxIdleChannels + ")");
+        }
+        return new ChannelEvictionPolicy(true, gracePeriod.toNanosLong(), maxIdleChannels);
+    }
+
+    /**
+     * Whether channels are ever evicted.
+     *
+     * @return false if channels are kept forever
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether the channel should be evicted.
+     *
+     * @param idleNanos how long the channel has been idle
+     * @param idleChannels how many channels are currently idle
+     * @return true if the channel should be evicted
+     */
+    boolean isEvictable(long idleNanos, int idleChannels) {
+        return enabled && (idleNanos >= idleTimeoutNanos || idleChannels > maxIdleChannels);
+    }
+
+    /**
+     * How long a channel can stay idle.
+     *
+     * @return the grace period in nanoseconds; Long.MAX_VALUE if none
+     */
+    long getIdleTimeoutNanos() {
+        return idleTimeoutNanos;
+    }
+
+    @Override
+    public String toString() {
+        if (!enabled) {
+            return "never";
+        }
+        if (idleTimeoutNanos == 0) {
+            return "immediate";
+        }
+        StringBuilder builder = new StringBuilder("evict");
+        if (idleTimeoutNanos != Long.MAX_VALUE) {
+            builder.append(" after ").append(idleTimeoutNanos / 1000000).append(" ms");
+        }
+        if (maxIdleChannels != Integer.MAX_VALUE) {
+            builder.append(" over ").append(maxIdleChannels).append(" idle channels");
+        }
+        return builder.toString();
+    }
+
+}
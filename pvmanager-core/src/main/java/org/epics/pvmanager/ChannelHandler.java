@@ -4,6 +4,7 @@
  */
 package org.epics.pvmanager;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -17,6 +18,9 @@ public abstract class ChannelHandler {
 
     private static final Logger log = Logger.getLogger(ChannelHandler.class.getName());
     private final String channelName;
+    // Set by the data source after the creation: volatile, as it is read
+    // from the threads on which the channel receives its callbacks
+    volatile ChannelInstrumentation instrumentation;
     
     /**
      * Creates a new channel handler.
@@ -79,6 +83,27 @@ public abstract class ChannelHandler {
      */
     protected abstract void addReader(ChannelHandlerReadSubscription subscription);
 
+    /**
+     * Used by the data source to add multiple read requests on the channel
+     * managed by this handler in one pass.
+     * <p>
+     * By default, this calls {@link #addReader(org.epics.pvmanager.ChannelHandlerReadSubscription) }
+     * for each subscription. Implementations should override it so that
+     * the channel is connected, and the network buffers are flushed,
+     * only once for the whole batch.
+     * 
+     * @param subscriptions the data required for the subscriptions
+     */
+    protected void addReaders(Collection<ChannelHandlerReadSubscription> subscriptions) {
+        for (ChannelHandlerReadSubscription subscription : subscriptions) {
+            try {
+                addReader(subscription);
+            } catch (Exception ex) {
+                subscription.getExceptionWriteFunction().writeValue(ex);
+            }
+        }
+    }
+
     /**
      * Used by the data source to remove a read request.
      * 
@@ -23,14 +23,39 @@ public class ChannelHandlerReadSubscription {
      * @param connectionWriteFunction the connection write function to dispatch exceptions
      */
     public ChannelHandlerReadSubscription(ValueCache<?> valueCache, WriteFunction<Exception> exceptionWriteFunction, WriteFunction<Boolean> connectionWriteFunction) {
+        this(valueCache, exceptionWriteFunction, connectionWriteFunction, NO_CALLBACK);
+    }
+
+    /**
+     * Creates the parameters for a new subscription that also signals
+     * each update of the value cache.
+     * 
+     * @param valueCache the cache where to write the value
+     * @param exceptionWriteFunction the write function to dispatch exceptions
+     * @param connectionWriteFunction the connection write function to dispatch exceptions
+     * @param valueUpdateCallback called after a new value was written in the cache
+     */
+    public ChannelHandlerReadSubscription(ValueCache<?> valueCache, WriteFunction<Exception> exceptionWriteFunction, WriteFunction<Boolean> connectionWriteFunction, Runnable valueUpdateCallback) {
+        if (valueUpdateCallback == null) {
+            throw new NullPointerException("Value update callback cannot be null");
+        }
         this.valueCache = valueCache;
         this.exceptionWriteFunction = exceptionWriteFunction;
         this.connectionWriteFunction = connectionWriteFunction;
+        this.valueUpdateCallback = valueUpdateCallback;
     }
     
+    private static final Runnable NO_CALLBACK = new Runnable() {
+
+        @Override
+        public void run() {
+        }
+    };
+    
     private final ValueCache<?> valueCache;
     private final WriteFunction<Exception> exceptionWriteFunction;
     private final WriteFunction<Boolean> connectionWriteFunction;
+    private final Runnable valueUpdateCallback;
 
     /**
      * The cache where to write the value.
@@ -58,6 +83,20 @@ public class ChannelHandlerReadSubscription {
     public WriteFunction<Boolean> getConnectionWriteFunction() {
         return connectionWriteFunction;
     }
+
+    /**
+     * The callback to run after a new value was written in the cache.
+     * <p>
+     * Channel handlers that write the value cache directly, instead of going
+     * through a {@link DataSourceTypeAdapter} within a {@link MultiplexedChannelHandler},
+     * must call this after each update so that readers that are not scanning
+     * periodically are notified.
+     * 
+     * @return never null
+     */
+    public Runnable getValueUpdateCallback() {
+        return valueUpdateCallback;
+    }
     
     @Override
     public int hashCode() {
@@ -65,6 +104,7 @@ public class ChannelHandlerReadSubscription {
         hash = 67 * hash + (this.valueCache != null ? this.valueCache.hashCode() : 0);
         hash = 67 * hash + (this.exceptionWriteFunction != null ? this.exceptionWriteFunction.hashCode() : 0);
         hash = 67 * hash + (this.connectionWriteFunction != null ? this.connectionWriteFunction.hashCode() : 0);
+        hash = 67 * hash + this.valueUpdateCallback.hashCode();
         return hash;
     }
 
@@ -86,6 +126,9 @@ public class ChannelHandlerReadSubscription {
         if (this.connectionWriteFunction != other.connectionWriteFunction && (this.connectionWriteFunction == null || !this.connectionWriteFunction.equals(other.connectionWriteFunction))) {
             return false;
         }
+        if (!this.valueUpdateCallback.equals(other.valueUpdateCallback)) {
+            return false;
+        }
         return true;
     }
     
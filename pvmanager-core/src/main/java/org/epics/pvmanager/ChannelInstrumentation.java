@@ -0,0 +1,25 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+/**
+ * Receives the measurements for a single channel of a data source.
+ *
+ * @author carcassi
+ * @see Instrumentation
+ */
+public interface ChannelInstrumentation {
+
+    /**
+     * The channel received a value from the source. Called on the
+     * data source thread, for each message.
+     */
+    public void valueReceived();
+
+    /**
+     * The channel was removed from the data source.
+     */
+    public void channelClosed();
+}
@@ -49,6 +49,7 @@ public class ChannelReadRecipe {
     public int hashCode() {
         int hash = 5;
         hash = 59 * hash + (this.channelName != null ? this.channelName.hashCode() : 0);
+        hash = 59 * hash + (this.readSubscription != null ? this.readSubscription.hashCode() : 0);
         return hash;
     }
 
@@ -24,6 +24,8 @@ public class CompositeDataSource extends DataSource {
 
     private volatile String delimiter = "://";
     private volatile String defaultDataSource;
+    // The eviction policy for the data sources, if set on the composite
+    private volatile ChannelEvictionPolicy dataSourceEvictionPolicy;
 
     /**
      * Creates a new CompositeDataSource.
@@ -54,11 +56,17 @@ public class CompositeDataSource extends DataSource {
 
     /**
      * Adds/replaces the data source corresponding to the given name.
+     * If an eviction policy was set on the composite, it is applied
+     * to the data source.
      *
      * @param name the name of the data source
      * @param dataSource the data source to add/replace
      */
     public void putDataSource(String name, DataSource dataSource) {
+        ChannelEvictionPolicy evictionPolicy = dataSourceEvictionPolicy;
+        if (evictionPolicy != null) {
+            dataSource.setChannelEvictionPolicy(evictionPolicy);
+        }
         dataSources.put(name, dataSource);
     }
 
@@ -248,6 +256,48 @@ public class CompositeDataSource extends DataSource {
         }
     }
 
+    /**
+     * Changes the eviction policy of all the data sources that are
+     * registered in the composite, currently and in the future.
+     * 
+     * @param evictionPolicy the new eviction policy; can't be null
+     */
+    @Override
+    public void setChannelEvictionPolicy(ChannelEvictionPolicy evictionPolicy) {
+        super.setChannelEvictionPolicy(evictionPolicy);
+        dataSourceEvictionPolicy = evictionPolicy;
+        for (DataSource dataSource : dataSources.values()) {
+            dataSource.setChannelEvictionPolicy(evictionPolicy);
+        }
+    }
+
+    @Override
+    public int getLiveChannelCount() {
+        int count = 0;
+        for (DataSource dataSource : dataSources.values()) {
+            count += dataSource.getLiveChannelCount();
+        }
+        return count;
+    }
+
+    @Override
+    public int getIdleChannelCount() {
+        int count = 0;
+        for (DataSource dataSource : dataSources.values()) {
+            count += dataSource.getIdleChannelCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getEvictedChannelCount() {
+        long count = 0;
+        for (DataSource dataSource : dataSources.values()) {
+            count += dataSource.getEvictedChannelCount();
+        }
+        return count;
+    }
+
     @Override
     public Map<String, ChannelHandler> getChannels() {
         Map<String, ChannelHandler> channels = new HashMap<String, ChannelHandler>();
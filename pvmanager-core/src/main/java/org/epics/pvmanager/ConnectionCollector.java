@@ -6,24 +6,36 @@ package org.epics.pvmanager;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A specialized collector to handle multiple channels that can be added/removed
  * dynamically and which gets translated to a single connection flag for a
  * reader or writer.
+ * <p>
+ * Each channel keeps its own connection flag in its write function, and
+ * the collector only keeps the count of the channels that are not connected.
+ * Connection changes do not lock and reading the overall connection flag
+ * does not depend on the number of channels. Only adding and removing
+ * channels is done under a lock.
  *
  * @author carcassi
  */
 public class ConnectionCollector implements ReadFunction<Boolean> {
 
+    private static final int DISCONNECTED = 0;
+    private static final int CONNECTED = 1;
+    private static final int CLOSED = 2;
+
     private final Object lock = new Object();
-    private final Map<String, Boolean> channelConnected = new HashMap<>();
     private final Map<String, ConnectionWriteFunction> writeFunctions = new HashMap<>();
-    private Boolean connected;
+    private final AtomicInteger disconnectedCount = new AtomicInteger();
     
     private class ConnectionWriteFunction implements WriteFunction<Boolean> {
         
         private final String name;
+        private final AtomicInteger state = new AtomicInteger(DISCONNECTED);
+        // Guarded by lock
         private int counter = 1;
 
         public ConnectionWriteFunction(String name) {
@@ -32,12 +44,23 @@ public class ConnectionCollector implements ReadFunction<Boolean> {
 
         @Override
         public void writeValue(Boolean newValue) {
-            synchronized(lock) {
-                if (isClosed()) {
+            int newState = newValue == Boolean.TRUE ? CONNECTED : DISCONNECTED;
+            while (true) {
+                int oldState = state.get();
+                if (oldState == CLOSED) {
                     throw new IllegalStateException("ConnectionCollector for '" + name + "' was closed.");
                 }
-                channelConnected.put(name, newValue);
-                connected = null;
+                if (oldState == newState) {
+                    return;
+                }
+                if (state.compareAndSet(oldState, newState)) {
+                    if (newState == CONNECTED) {
+                        disconnectedCount.decrementAndGet();
+                    } else {
+                        disconnectedCount.incrementAndGet();
+                    }
+                    return;
+                }
             }
         }
         
@@ -51,6 +74,12 @@ public class ConnectionCollector implements ReadFunction<Boolean> {
 
         private void close() {
             counter--;
+            if (counter == 0) {
+                int oldState = state.getAndSet(CLOSED);
+                if (oldState == DISCONNECTED) {
+                    disconnectedCount.decrementAndGet();
+                }
+            }
         }
         
     }
@@ -64,15 +93,14 @@ public class ConnectionCollector implements ReadFunction<Boolean> {
      */
     WriteFunction<Boolean> addChannel(final String name) {
         synchronized (lock) {
-            if (channelConnected.containsKey(name)) {
-                ConnectionWriteFunction writeFunction = writeFunctions.get(name);
+            ConnectionWriteFunction writeFunction = writeFunctions.get(name);
+            if (writeFunction != null) {
                 writeFunction.open();
                 return writeFunction;
             } else {
-                channelConnected.put(name, false);
-                ConnectionWriteFunction writeFunction = new ConnectionWriteFunction(name);
+                writeFunction = new ConnectionWriteFunction(name);
+                disconnectedCount.incrementAndGet();
                 writeFunctions.put(name, writeFunction);
-                connected = null;
                 return writeFunction;
             }
         }
@@ -80,32 +108,7 @@ public class ConnectionCollector implements ReadFunction<Boolean> {
 
     @Override
     public Boolean readValue() {
-        synchronized (lock) {
-            if (connected == null) {
-                connected = calculate(channelConnected);
-            }
-
-            return connected;
-        }
-    }
-
-    /**
-     * Calculates the overall connection status based on the status of each
-     * channel.
-     * <p>
-     * For future development, this is the method that one could
-     * override to implement a different connection logic.
-     * 
-     * @param channelConnected the connection status of each channel
-     * @return the overall connection status
-     */
-    boolean calculate(Map<String, Boolean> channelConnected) {
-        for (Boolean conn : channelConnected.values()) {
-            if (conn != Boolean.TRUE) {
-                return false;
-            }
-        }
-        return true;
+        return disconnectedCount.get() == 0;
     }
 
     /**
@@ -121,9 +124,7 @@ public class ConnectionCollector implements ReadFunction<Boolean> {
             } else {
                 function.close();
                 if (function.isClosed()) {
-                    channelConnected.remove(channelName);
                     writeFunctions.remove(channelName);
-                    connected = null;
                 }
             }
         }
@@ -6,7 +6,7 @@ package org.epics.pvmanager;
 
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static org.epics.pvmanager.util.Executors.*;
@@ -20,6 +20,8 @@ import static org.epics.pvmanager.util.Executors.*;
  * method, and the requested will be forwarded to the channel accordingly.
  * The channels are automatically cached and reused. The name under which
  * the channels are looked up in the cache or registered in the cache is configurable.
+ * Channels that are no longer used can be removed from the cache
+ * according to the {@link ChannelEvictionPolicy}.
  * <p>
  * Channel handlers can be implemented from scratch, or one can use the {@link MultiplexedChannelHandler}
  * for handlers that want to open a single connection which is going to be
@@ -49,11 +51,31 @@ public abstract class DataSource {
      * @param writeable whether the data source implements write operations
      */
     public DataSource(boolean writeable) {
+        this(writeable, DEFAULT_WORKER_THREADS);
+    }
+    
+    /**
+     * Creates a new data source that uses the given number of threads for
+     * the asynchronous operations.
+     * <p>
+     * Connections, disconnections and writes are executed asynchronously
+     * on the worker threads of the data source. All the operations for the same
+     * channel are executed on the same thread, so they are processed
+     * in order, while operations on different channels can proceed in parallel.
+     * 
+     * @param writeable whether the data source implements write operations
+     * @param workerThreads the number of worker threads; must be positive
+     */
+    public DataSource(boolean writeable, int workerThreads) {
+        if (workerThreads <= 0) {
+            throw new IllegalArgumentException("The number of worker threads must be positive (was " + workerThreads + ")");
+        }
         this.writeable = writeable;
+        this.workers = new ExecutorService[workerThreads];
     }
 
     // Keeps track of the currently created channels
-    private Map<String, ChannelHandler> usedChannels = new ConcurrentHashMap<String, ChannelHandler>();
+    private ConcurrentMap<String, ChannelHandler> usedChannels = new ConcurrentHashMap<String, ChannelHandler>();
 
     /**
      * Returns a channel from the given name, either cached or it
@@ -65,14 +87,244 @@ public abstract class DataSource {
     ChannelHandler channel(String channelName) {
         ChannelHandler channel = usedChannels.get(channelHandlerLookupName(channelName));
         if (channel == null) {
-            channel = createChannel(channelName);
-            if (channel == null)
-                return null;
-            usedChannels.put(channelHandlerRegisterName(channelName, channel), channel);
+            synchronized (channelUsages) {
+                // Check again under the lock, so that we don't replace
+                // a channel created concurrently
+                channel = usedChannels.get(channelHandlerLookupName(channelName));
+                if (channel == null) {
+                    channel = createChannel(channelName);
+                    if (channel == null)
+                        return null;
+                    Instrumentation instrumentation = PVManager.getInstrumentation();
+                    if (instrumentation != null) {
+                        channel.instrumentation = instrumentation.channelCreated(channelName, this);
+                    }
+                    String registeredName = channelHandlerRegisterName(channelName, channel);
+                    usedChannels.put(registeredName, channel);
+                    channelUsages.put(channel, new ChannelUsage(registeredName));
+                    evictIdleChannels(System.nanoTime());
+                }
+            }
+        }
+        return channel;
+    }
+    
+    // Eviction of the channels that are no longer used.
+    // All the bookkeeping is guarded by channelUsages.
+    // A channel is pinned from when it is looked up to prepare
+    // an operation until the operation is executed on the worker,
+    // so that it cannot be evicted in between. A channel that is not
+    // pinned and has no readers or writers is idle, and it
+    // can be evicted. The idle channels are kept in the order they
+    // became idle. If the policy has a grace period, a sweep is scheduled
+    // when the one of the oldest idle channel expires.
+    private volatile ChannelEvictionPolicy evictionPolicy = ChannelEvictionPolicy.never();
+    private final Map<ChannelHandler, ChannelUsage> channelUsages = new HashMap<>();
+    private final Map<ChannelHandler, ChannelUsage> idleChannels = new LinkedHashMap<>();
+    private long evictedChannelCount;
+    private ScheduledFuture<?> evictionSweep;
+    private long evictionSweepNanos;
+    
+    private static class ChannelUsage {
+        private final String registeredName;
+        private int pins;
+        private long idleSince;
+
+        ChannelUsage(String registeredName) {
+            this.registeredName = registeredName;
+        }
+    }
+    
+    /**
+     * Looks up the channel and pins it, so that it is not evicted
+     * until it is unpinned.
+     * 
+     * @param channelName name of a channel
+     * @return a new or cached handler
+     */
+    private ChannelHandler pinChannel(String channelName) {
+        ChannelHandler channel = channel(channelName);
+        if (channel != null && !pin(channel)) {
+            // Channel was evicted right after the lookup:
+            // the new one cannot be idle yet
+            channel = channel(channelName);
+            if (channel != null) {
+                pin(channel);
+            }
         }
         return channel;
     }
     
+    private boolean pin(ChannelHandler channel) {
+        synchronized (channelUsages) {
+            ChannelUsage usage = channelUsages.get(channel);
+            if (usage == null) {
+                return false;
+            }
+            usage.pins++;
+            idleChannels.remove(channel);
+            return true;
+        }
+    }
+    
+    private void unpin(ChannelHandler channel) {
+        synchronized (channelUsages) {
+            ChannelUsage usage = channelUsages.get(channel);
+            if (usage != null) {
+                usage.pins--;
+                releaseChannel(channel, usage);
+            }
+        }
+    }
+    
+    private void channelReleased(ChannelHandler channel) {
+        synchronized (channelUsages) {
+            ChannelUsage usage = channelUsages.get(channel);
+            if (usage != null) {
+                releaseChannel(channel, usage);
+            }
+        }
+    }
+    
+    private void releaseChannel(ChannelHandler channel, ChannelUsage usage) {
+        // Must be called with the lock held
+        if (evictionPolicy.isEnabled() && usage.pins == 0 && channel.getUsageCounter() == 0) {
+            long now = System.nanoTime();
+            usage.idleSince = now;
+            idleChannels.remove(channel);
+            idleChannels.put(channel, usage);
+            evictIdleChannels(now);
+            scheduleEvictionSweep(now);
+        }
+    }
+    
+    private void scheduleEvictionSweep(long now) {
+        // Must be called with the lock held
+        long idleTimeoutNanos = evictionPolicy.getIdleTimeoutNanos();
+        if (idleChannels.isEmpty() || idleTimeoutNanos == Long.MAX_VALUE) {
+            return;
+        }
+        // The oldest idle channel is the first to expire
+        long sweepNanos = idleChannels.values().iterator().next().idleSince + idleTimeoutNanos;
+        if (evictionSweep != null) {
+            if (evictionSweepNanos <= sweepNanos) {
+                return;
+            }
+            evictionSweep.cancel(false);
+        }
+        evictionSweepNanos = sweepNanos;
+        evictionSweep = PVManager.getReadScannerExecutorService().schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized (channelUsages) {
+                    evictionSweep = null;
+                    long now = System.nanoTime();
+                    evictIdleChannels(now);
+                    scheduleEvictionSweep(now);
+                }
+            }
+        }, Math.max(0, sweepNanos - now), TimeUnit.NANOSECONDS);
+    }
+    
+    private void evictIdleChannels(long now) {
+        // Must be called with the lock held
+        ChannelEvictionPolicy policy = evictionPolicy;
+        Iterator<Map.Entry<ChannelHandler, ChannelUsage>> iterator = idleChannels.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ChannelHandler, ChannelUsage> entry = iterator.next();
+            ChannelUsage usage = entry.getValue();
+            // Channels are in idle order: if this does not need to be
+            // evicted, none of the following does
+            if (!policy.isEvictable(now - usage.idleSince, idleChannels.size())) {
+                return;
+            }
+            iterator.remove();
+            ChannelHandler channel = entry.getKey();
+            // No new reader or writer can be added without pinning first,
+            // so if the channel is still unused, it's safe to remove it
+            if (usage.pins == 0 && channel.getUsageCounter() == 0) {
+                usedChannels.remove(usage.registeredName, channel);
+                channelUsages.remove(channel);
+                evictedChannelCount++;
+                if (channel.instrumentation != null) {
+                    channel.instrumentation.channelClosed();
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes the policy used to evict the channels that are no longer used.
+     * The new policy applies to the channels that become idle from
+     * now on.
+     * 
+     * @param evictionPolicy the new eviction policy; can't be null
+     */
+    public void setChannelEvictionPolicy(ChannelEvictionPolicy evictionPolicy) {
+        if (evictionPolicy == null) {
+            throw new NullPointerException("Eviction policy can't be null");
+        }
+        synchronized (channelUsages) {
+            this.evictionPolicy = evictionPolicy;
+            // The grace period may have changed
+            if (evictionSweep != null) {
+                evictionSweep.cancel(false);
+                evictionSweep = null;
+            }
+            if (!evictionPolicy.isEnabled()) {
+                idleChannels.clear();
+            } else {
+                long now = System.nanoTime();
+                evictIdleChannels(now);
+                scheduleEvictionSweep(now);
+            }
+        }
+    }
+
+    /**
+     * The policy used to evict the channels that are no longer used.
+     * 
+     * @return the eviction policy
+     */
+    public ChannelEvictionPolicy getChannelEvictionPolicy() {
+        return evictionPolicy;
+    }
+    
+    /**
+     * The number of channel handlers currently kept by the data source,
+     * whether they are used or not.
+     * 
+     * @return the number of live channel handlers
+     */
+    public int getLiveChannelCount() {
+        return usedChannels.size();
+    }
+    
+    /**
+     * The number of channel handlers that are not used and are
+     * waiting to be evicted.
+     * 
+     * @return the number of idle channel handlers
+     */
+    public int getIdleChannelCount() {
+        synchronized (channelUsages) {
+            return idleChannels.size();
+        }
+    }
+    
+    /**
+     * The total number of channel handlers that were evicted
+     * since the data source was created.
+     * 
+     * @return the number of evicted channel handlers
+     */
+    public long getEvictedChannelCount() {
+        synchronized (channelUsages) {
+            return evictedChannelCount;
+        }
+    }
+    
     /**
      * Returns the lookup name to use to find the channel handler in
      * the cache. By default, it returns the channel name itself.
@@ -114,17 +366,96 @@ public abstract class DataSource {
      */
     protected abstract ChannelHandler createChannel(String channelName);
 
-    // The executor used by the data source to perform asynchronous operations,
-    // such as connections and writes. I am current using a single thread for
-    // all data sources, which can be changed if needed.
-    // Since it's a single executor for all data sources, it should not be
-    // shut down at data source close.
-    private static ExecutorService exec = Executors.newSingleThreadExecutor(namedPool("PVMgr DataSource Worker "));
+    // The executors used by the data source to perform asynchronous operations,
+    // such as connections and writes. Each channel is assigned to one
+    // single threaded executor, based on the hash of its name,
+    // so that the operations on the same channel are kept in order.
+    // The executors are created when first needed, and their
+    // thread terminates when idle, so they don't need to be shut down
+    // at data source close.
+    private static final int DEFAULT_WORKER_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 10;
+    private final ExecutorService[] workers;
+    
+    /**
+     * Returns the executor for the operations on the given channel.
+     * 
+     * @param channelHandler a channel handler
+     * @return the executor assigned to the channel
+     */
+    private ExecutorService worker(ChannelHandler channelHandler) {
+        int index = (Objects.hashCode(channelHandler.getChannelName()) & Integer.MAX_VALUE) % workers.length;
+        synchronized (workers) {
+            if (workers[index] == null) {
+                ThreadPoolExecutor worker = new ThreadPoolExecutor(1, 1, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), namedPool("PVMgr DataSource Worker " + index + "-"));
+                worker.allowCoreThreadTimeOut(true);
+                workers[index] = worker;
+            }
+            return workers[index];
+        }
+    }
+    
+    /**
+     * An operation to be performed on a channel.
+     * 
+     * @param <T> the argument of the operation
+     */
+    private static abstract class ChannelOperation<T> {
+        
+        abstract void run(ChannelHandler channelHandler, T argument);
+        
+        /**
+         * Called on the worker once all the channels of the batch
+         * were processed.
+         * 
+         * @param channelHandlers the channels processed by the worker
+         */
+        void batchDone(Collection<ChannelHandler> channelHandlers) {
+        }
+    }
+    
+    /**
+     * Executes the operation for each channel on the respective
+     * worker. Channels assigned to the same worker are processed in
+     * a single task.
+     * 
+     * @param <T> the argument of the operation
+     * @param channels the channels and their argument
+     * @param operation the operation to perform
+     */
+    private <T> void executeOnWorkers(Map<ChannelHandler, T> channels, final ChannelOperation<T> operation) {
+        Map<ExecutorService, Map<ChannelHandler, T>> channelsByWorker = new HashMap<>();
+        for (Map.Entry<ChannelHandler, T> entry : channels.entrySet()) {
+            ExecutorService worker = worker(entry.getKey());
+            Map<ChannelHandler, T> workerChannels = channelsByWorker.get(worker);
+            if (workerChannels == null) {
+                workerChannels = new HashMap<>();
+                channelsByWorker.put(worker, workerChannels);
+            }
+            workerChannels.put(entry.getKey(), entry.getValue());
+        }
+        
+        for (Map.Entry<ExecutorService, Map<ChannelHandler, T>> entry : channelsByWorker.entrySet()) {
+            final Map<ChannelHandler, T> workerChannels = entry.getValue();
+            entry.getKey().execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (Map.Entry<ChannelHandler, T> channelEntry : workerChannels.entrySet()) {
+                        operation.run(channelEntry.getKey(), channelEntry.getValue());
+                    }
+                    operation.batchDone(workerChannels.keySet());
+                }
+            });
+        }
+    }
     
     // Keeps track of the recipes that were opened with
-    // this data source.
-    private Set<ChannelReadRecipe> readRecipes = new CopyOnWriteArraySet<ChannelReadRecipe>();
-    private Set<ChannelWriteRecipe> writeRecipes = new CopyOnWriteArraySet<ChannelWriteRecipe>();
+    // this data source. Hash based, so that opening or closing
+    // a large number of readers at once is not quadratic.
+    private final Set<ChannelReadRecipe> readRecipes = Collections.newSetFromMap(new ConcurrentHashMap<ChannelReadRecipe, Boolean>());
+    private final Set<ChannelWriteRecipe> writeRecipes = Collections.newSetFromMap(new ConcurrentHashMap<ChannelWriteRecipe, Boolean>());
 
     /**
      * Connects to a set of channels based on the given recipe.
@@ -143,21 +474,24 @@ public abstract class DataSource {
 
         // Let's go through all the recipes first, so if something
         // breaks unexpectadely, either everything works or nothing works
-        final Map<ChannelHandler, Collection<ChannelReadRecipe>> handlersWithSubscriptions =
+        final Map<ChannelHandler, Collection<ChannelHandlerReadSubscription>> handlersWithSubscriptions =
                 new HashMap<>();
         for (final ChannelReadRecipe channelRecipe : readRecipe.getChannelReadRecipes()) {
             try {
                 String channelName = channelRecipe.getChannelName();
-                ChannelHandler channelHandler = channel(channelName);
+                ChannelHandler channelHandler = pinChannel(channelName);
                 if (channelHandler == null) {
                     throw new RuntimeException("Channel named '" + channelName + "' not found");
                 }
-                Collection<ChannelReadRecipe> channelSubscriptions = handlersWithSubscriptions.get(channelHandler);
+                Collection<ChannelHandlerReadSubscription> channelSubscriptions = handlersWithSubscriptions.get(channelHandler);
                 if (channelSubscriptions == null) {
                     channelSubscriptions = new HashSet<>();
                     handlersWithSubscriptions.put(channelHandler, channelSubscriptions);
+                } else {
+                    // Already pinned for this recipe
+                    unpin(channelHandler);
                 }
-                channelSubscriptions.add(channelRecipe);
+                channelSubscriptions.add(channelRecipe.getReadSubscription());
             } catch (Exception ex) {
                 // If any error happens while creating the channel,
                 // report it to the exception handler of that channel
@@ -167,27 +501,45 @@ public abstract class DataSource {
         }
         
         // Now that we went through all channels,
-        // add a monitor to the ones that were found
-        exec.execute(new Runnable() {
+        // add the monitors to the ones that were found,
+        // all the subscriptions of a channel at once
+        executeOnWorkers(handlersWithSubscriptions, new ChannelOperation<Collection<ChannelHandlerReadSubscription>>() {
 
             @Override
-            public void run() {
-                for (Map.Entry<ChannelHandler, Collection<ChannelReadRecipe>> entry : handlersWithSubscriptions.entrySet()) {
-                    ChannelHandler channelHandler = entry.getKey();
-                    Collection<ChannelReadRecipe> channelRecipes = entry.getValue();
-                    for (ChannelReadRecipe channelRecipe : channelRecipes) {
-                        try {
-                            channelHandler.addReader(channelRecipe.getReadSubscription());
-                        } catch(Exception ex) {
-                            // If an error happens while adding the read subscription,
-                            // notify the appropriate handler
-                            channelRecipe.getReadSubscription().getExceptionWriteFunction().writeValue(ex);
-                        }
+            public void run(ChannelHandler channelHandler, Collection<ChannelHandlerReadSubscription> subscriptions) {
+                try {
+                    channelHandler.addReaders(subscriptions);
+                } catch(Exception ex) {
+                    // If an error happens while adding the read subscriptions,
+                    // notify the appropriate handlers
+                    for (ChannelHandlerReadSubscription subscription : subscriptions) {
+                        subscription.getExceptionWriteFunction().writeValue(ex);
                     }
+                } finally {
+                    unpin(channelHandler);
                 }
             }
+
+            @Override
+            void batchDone(Collection<ChannelHandler> channelHandlers) {
+                readersAdded(channelHandlers);
+            }
         });
     }
+    
+    /**
+     * Called after a batch of read subscriptions was added to the channels.
+     * This is called on the worker thread that added the subscriptions,
+     * once per worker for each read recipe.
+     * <p>
+     * Data sources that queue requests to the network can override
+     * this to flush them once for the whole batch, instead of once per
+     * channel. By default, it does nothing.
+     * 
+     * @param channelHandlers the channels on which readers were added
+     */
+    protected void readersAdded(Collection<ChannelHandler> channelHandlers) {
+    }
 
     /**
      * Disconnects the set of channels given by the recipe.
@@ -199,6 +551,8 @@ public abstract class DataSource {
      * @param readRecipe the instructions for the data connection
      */
     public void disconnectRead(ReadRecipe readRecipe) {
+        final Map<ChannelHandler, Collection<ChannelHandlerReadSubscription>> handlersWithSubscriptions =
+                new HashMap<>();
         for (ChannelReadRecipe channelRecipe : readRecipe.getChannelReadRecipes()) {
             if (!readRecipes.contains(channelRecipe)) {
                 log.log(Level.WARNING, "ChannelReadRecipe {0} was disconnected but was never connected. Ignoring it.", channelRecipe);
@@ -209,11 +563,29 @@ public abstract class DataSource {
                 // connection and a proper notification was sent then. Silently
                 // ignore it.
                 if (channelHandler != null) {
-                    channelHandler.removeReader(channelRecipe.getReadSubscription());
+                    Collection<ChannelHandlerReadSubscription> channelSubscriptions = handlersWithSubscriptions.get(channelHandler);
+                    if (channelSubscriptions == null) {
+                        channelSubscriptions = new HashSet<>();
+                        handlersWithSubscriptions.put(channelHandler, channelSubscriptions);
+                    }
+                    channelSubscriptions.add(channelRecipe.getReadSubscription());
                 }
                 readRecipes.remove(channelRecipe);
             }
         }
+
+        // Disconnect on the worker of the channel, so that it follows
+        // the connection
+        executeOnWorkers(handlersWithSubscriptions, new ChannelOperation<Collection<ChannelHandlerReadSubscription>>() {
+
+            @Override
+            public void run(ChannelHandler channelHandler, Collection<ChannelHandlerReadSubscription> subscriptions) {
+                for (ChannelHandlerReadSubscription subscription : subscriptions) {
+                    channelHandler.removeReader(subscription);
+                }
+                channelReleased(channelHandler);
+            }
+        });
     }
     
     /**
@@ -239,7 +611,7 @@ public abstract class DataSource {
         for (ChannelWriteRecipe channelWriteRecipe : writeRecipe.getChannelWriteRecipes()) {
             try {
                 String channelName = channelWriteRecipe.getChannelName();
-                ChannelHandler handler = channel(channelName);
+                ChannelHandler handler = pinChannel(channelName);
                 if (handler == null) {
                     throw new RuntimeException("Channel " + channelName + " does not exist");
                 }
@@ -247,6 +619,9 @@ public abstract class DataSource {
                 if (channelSubscriptions == null) {
                     channelSubscriptions = new HashSet<>();
                     handlers.put(handler, channelSubscriptions);
+                } else {
+                    // Already pinned for this recipe
+                    unpin(handler);
                 }
                 channelSubscriptions.add(channelWriteRecipe.getWriteSubscription());
             } catch (Exception ex) {
@@ -255,23 +630,20 @@ public abstract class DataSource {
         }
 
         // Connect using another thread
-        exec.execute(new Runnable() {
+        executeOnWorkers(handlers, new ChannelOperation<Collection<ChannelHandlerWriteSubscription>>() {
 
             @Override
-            public void run() {
-                for (Map.Entry<ChannelHandler, Collection<ChannelHandlerWriteSubscription>> entry : handlers.entrySet()) {
-                    ChannelHandler channelHandler = entry.getKey();
-                    Collection<ChannelHandlerWriteSubscription> subscriptions = entry.getValue();
-                    for (ChannelHandlerWriteSubscription subscription : subscriptions) {
-                        try {
-                            channelHandler.addWriter(subscription);
-                        } catch (Exception ex) {
-                            // If an error happens while adding the write subscription,
-                            // notify the appropriate handler
-                            subscription.getExceptionWriteFunction().writeValue(ex);
-                        }
+            public void run(ChannelHandler channelHandler, Collection<ChannelHandlerWriteSubscription> subscriptions) {
+                for (ChannelHandlerWriteSubscription subscription : subscriptions) {
+                    try {
+                        channelHandler.addWriter(subscription);
+                    } catch (Exception ex) {
+                        // If an error happens while adding the write subscription,
+                        // notify the appropriate handler
+                        subscription.getExceptionWriteFunction().writeValue(ex);
                     }
                 }
+                unpin(channelHandler);
             }
         });
     }
@@ -311,16 +683,13 @@ public abstract class DataSource {
             }
         }
 
-        // Connect using another thread
-        exec.execute(new Runnable() {
+        // Disconnect using another thread
+        executeOnWorkers(handlers, new ChannelOperation<ChannelHandlerWriteSubscription>() {
 
             @Override
-            public void run() {
-                for (Map.Entry<ChannelHandler, ChannelHandlerWriteSubscription> entry : handlers.entrySet()) {
-                    ChannelHandler channelHandler = entry.getKey();
-                    ChannelHandlerWriteSubscription channelHandlerWriteSubscription = entry.getValue();
-                    channelHandler.removeWrite(channelHandlerWriteSubscription);
-                }
+            public void run(ChannelHandler channelHandler, ChannelHandlerWriteSubscription subscription) {
+                channelHandler.removeWrite(subscription);
+                channelReleased(channelHandler);
             }
         });
     }
@@ -340,54 +709,114 @@ public abstract class DataSource {
         if (!isWriteable())
             throw new UnsupportedOperationException("This data source is read only");
         
-        final WritePlanner planner = new WritePlanner();
-        for (ChannelWriteRecipe channelWriteRecipe : writeRecipe.getChannelWriteRecipes()) {
-            ChannelHandler channel = channel(channelWriteRecipe.getChannelName());
-            planner.addChannel(channel, channelWriteRecipe.getWriteSubscription().getWriteCache().getValue(),
-                    channelWriteRecipe.getWriteSubscription().getWriteCache().getPrecedingChannels());
+        WritePlan plan = writeRecipe.getWritePlan();
+        if (plan.isCircular()) {
+            exceptionHandler.handleException(new IllegalArgumentException("Write order is circular: some channels can't be written"));
+            return;
+        }
+        if (plan.size() == 0) {
+            callback.run();
+            return;
         }
 
-        // Connect using another thread
-        exec.execute(new Runnable() {
+        // Each write is executed on the worker of the channel,
+        // so that it follows the connection of the writer
+        new WriteExecution(plan, callback, exceptionHandler).start();
+    }
+    
+    /**
+     * Sends the writes of a plan, each one as soon as the writes of
+     * its preceding channels are done.
+     */
+    private class WriteExecution {
+        
+        private final WritePlan plan;
+        private final Runnable callback;
+        private final ExceptionHandler exceptionHandler;
+        private final ChannelHandler[] channelHandlers;
+        private final Object[] values;
+        private final AtomicIntegerArray precedingCounts;
+        private final AtomicInteger remaining;
+        private volatile boolean failed;
 
-            private void scheduleNext() {
-                for (Map.Entry<ChannelHandler, Object> entry : planner.nextChannels().entrySet()) {
-                    final String channelName = entry.getKey().getChannelName();
-                    try {
-                        entry.getKey().write(entry.getValue(), new ChannelWriteCallback() {
-
-                            AtomicInteger counter = new AtomicInteger();
-
-                            @Override
-                            public void channelWritten(Exception ex) {
-                                planner.removeChannel(channelName);
-
-                                // If there was an error, notify the exception
-                                // and don't schedule anything else
-                                if (ex != null) {
-                                    exceptionHandler.handleException(ex);
-                                    return;
-                                }
-
-                                // Notify only when the last channel was written
-                                if (planner.isDone()) {
-                                    callback.run();
-                                } else {
-                                    scheduleNext();
-                                }
-                            }
-                        });
-                    } catch (RuntimeException ex) {
-                        exceptionHandler.handleException(ex);
+        WriteExecution(WritePlan plan, Runnable callback, ExceptionHandler exceptionHandler) {
+            this.plan = plan;
+            this.callback = callback;
+            this.exceptionHandler = exceptionHandler;
+            channelHandlers = new ChannelHandler[plan.size()];
+            values = new Object[plan.size()];
+            int[] counts = new int[plan.size()];
+            // The values are all taken now, so that the write is consistent
+            for (int i = 0; i < plan.size(); i++) {
+                ChannelWriteRecipe channelWriteRecipe = plan.getChannelWriteRecipe(i);
+                channelHandlers[i] = channel(channelWriteRecipe.getChannelName());
+                values[i] = channelWriteRecipe.getWriteSubscription().getWriteCache().getValue();
+                counts[i] = plan.getPrecedingCount(i);
+            }
+            precedingCounts = new AtomicIntegerArray(counts);
+            remaining = new AtomicInteger(plan.size());
+        }
+
+        void start() {
+            for (int index : plan.getFirst()) {
+                schedule(index);
+            }
+        }
+        
+        private void schedule(final int index) {
+            ChannelHandler channelHandler = channelHandlers[index];
+            if (channelHandler == null) {
+                failed(new IllegalStateException("Channel '" + plan.getChannelWriteRecipe(index).getChannelName() + "' does not exist"));
+                return;
+            }
+            worker(channelHandler).execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    write(index);
+                }
+            });
+        }
+        
+        private void write(final int index) {
+            try {
+                channelHandlers[index].write(values[index], new ChannelWriteCallback() {
+
+                    @Override
+                    public void channelWritten(Exception ex) {
+                        // If there was an error, notify the exception
+                        // and don't schedule anything else
+                        if (ex != null) {
+                            failed(ex);
+                            return;
+                        }
+                        written(index);
+                    }
+                });
+            } catch (RuntimeException ex) {
+                failed(ex);
+            }
+        }
+        
+        private void written(int index) {
+            if (!failed) {
+                for (int next : plan.getSucceeding(index)) {
+                    if (precedingCounts.decrementAndGet(next) == 0) {
+                        schedule(next);
                     }
                 }
             }
 
-            @Override
-            public void run() {
-                scheduleNext();
+            // Notify only when the last channel was written
+            if (remaining.decrementAndGet() == 0) {
+                callback.run();
             }
-        });
+        }
+        
+        private void failed(Exception ex) {
+            failed = true;
+            exceptionHandler.handleException(ex);
+        }
     }
 
     /**
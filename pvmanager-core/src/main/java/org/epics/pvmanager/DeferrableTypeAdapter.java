@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+/**
+ * A type adapter that can create the values when the readers read them,
+ * instead of when the messages are received. {@link MultiplexedChannelHandler}
+ * stores the messages in the caches of the readers that keep only
+ * the latest value: the messages that are replaced before the next scan
+ * are never converted.
+ * <p>
+ * Implement only if the message payloads are never modified after they
+ * are received, and if the value created does not depend on when
+ * {@link #updateCache(org.epics.pvmanager.ValueCache, java.lang.Object, java.lang.Object) }
+ * is called.
+ *
+ * @param <ConnectionPayload> the type of payload given at connection
+ * @param <MessagePayload> the type of payload for each message
+ * @author carcassi
+ */
+public interface DeferrableTypeAdapter<ConnectionPayload, MessagePayload> extends DataSourceTypeAdapter<ConnectionPayload, MessagePayload> {
+    
+    /**
+     * Whether updating the cache with the message would store a new value.
+     * This is called when the message is received, and should not
+     * create the value.
+     * 
+     * @param connection the connection information
+     * @param message the payload of each message
+     * @return true if the message has a new value
+     */
+    boolean hasValue(ConnectionPayload connection, MessagePayload message);
+}
@@ -11,6 +11,10 @@ package org.epics.pvmanager;
  * <p>
  * This can be used to connect a function of multiple values to a single
  * collector.
+ * <p>
+ * If the cache is a {@link ValueCacheImpl} and the collector is a
+ * {@link LatestValueCollector}, a data source can write the messages
+ * it receives, and the value is created only when the collector is read.
  *
  * @param <T> type to cache
  * @param <R> type to forward when the cache changes
@@ -21,6 +25,7 @@ public class ForwardCache<T, R> implements ValueCache<T> {
     private final ValueCache<T> valueCache;
     private final ReadFunction<R> forwardFunction;
     private final WriteFunction<R> forwardWriter;
+    private final ReadFunction<R> deferredForwardFunction;
 
     /**
      * Creates a new ForwardCache.
@@ -33,6 +38,15 @@ public class ForwardCache<T, R> implements ValueCache<T> {
         this.valueCache = valueCache;
         this.forwardFunction = forwardFunction;
         this.forwardWriter = forwardWriter;
+        this.deferredForwardFunction = new ReadFunction<R>() {
+
+            @Override
+            public R readValue() {
+                synchronized(ForwardCache.this.forwardFunction) {
+                    return ForwardCache.this.forwardFunction.readValue();
+                }
+            }
+        };
     }
 
     @Override
@@ -49,6 +63,29 @@ public class ForwardCache<T, R> implements ValueCache<T> {
         }
     }
 
+    /**
+     * Stores the message in the cache, and the forward function in the collector,
+     * so that the message is converted only when the collector is read.
+     * This is possible only if the cache is a {@link ValueCacheImpl}
+     * and the collector a {@link LatestValueCollector}: the other collectors
+     * need each value when it's written.
+     *
+     * @param conversion how to convert the message
+     * @param message the message to convert
+     * @return true if the message was stored, false if it needs to be converted now
+     */
+    @SuppressWarnings("unchecked")
+    boolean writeDeferred(ValueCacheImpl.Conversion conversion, Object message) {
+        if (!(valueCache instanceof ValueCacheImpl) || !(forwardWriter instanceof LatestValueCollector)) {
+            return false;
+        }
+        synchronized(forwardFunction) {
+            ((ValueCacheImpl<T>) valueCache).writeDeferred(conversion, message);
+            ((LatestValueCollector<R>) forwardWriter).writeDeferred(deferredForwardFunction);
+        }
+        return true;
+    }
+
     @Override
     public Class<T> getType() {
         return valueCache.getType();
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+/**
+ * Receives the measurements taken on the hot paths of the library: the
+ * scans and notifications of each reader, and the values received by
+ * each channel.
+ * <p>
+ * The instrumentation is installed with {@link PVManager#setInstrumentation(org.epics.pvmanager.Instrumentation) }
+ * and is asked for a {@link ReaderInstrumentation} every time a reader is created,
+ * and for a {@link ChannelInstrumentation} every time a data source creates
+ * a channel. Readers and channels created before the instrumentation was
+ * installed are not measured. When no instrumentation is installed, or when
+ * it returns null, the only cost is a null check.
+ * <p>
+ * The methods of the returned objects are called on the scanning,
+ * notification and data source threads, so they need to be thread safe
+ * and as cheap as possible.
+ *
+ * @author carcassi
+ * @see org.epics.pvmanager.jmx.JmxInstrumentation
+ */
+public abstract class Instrumentation {
+
+    /**
+     * The reader whose function is being calculated on the current thread,
+     * so that the collectors can report the values they drop.
+     */
+    private static final ThreadLocal<ReaderInstrumentation> currentReader = new ThreadLocal<>();
+
+    /**
+     * Called when a new reader is created.
+     *
+     * @param readerName the name of the expression read; can be null
+     * @param dataSource the data source of the reader; can be null
+     * @return the instrumentation for the reader, or null if the reader
+     * should not be measured
+     */
+    public abstract ReaderInstrumentation readerCreated(String readerName, DataSource dataSource);
+
+    /**
+     * Called when a data source creates a new channel.
+     *
+     * @param channelName the name of the channel
+     * @param dataSource the data source that created the channel
+     * @return the instrumentation for the channel, or null if the channel
+     * should not be measured
+     */
+    public abstract ChannelInstrumentation channelCreated(String channelName, DataSource dataSource);
+
+    static void startRead(ReaderInstrumentation reader) {
+        currentReader.set(reader);
+    }
+
+    static void endRead() {
+        currentReader.remove();
+    }
+
+    /**
+     * Reports the values discarded by a collector to the reader being
+     * calculated on the current thread, if any.
+     *
+     * @param count the number of values discarded
+     */
+    static void reportValuesDropped(int count) {
+        ReaderInstrumentation reader = currentReader.get();
+        if (reader != null) {
+            reader.valuesDropped(count);
+        }
+    }
+}
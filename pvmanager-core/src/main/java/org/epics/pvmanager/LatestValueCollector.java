@@ -6,6 +6,10 @@ package org.epics.pvmanager;
 
 /**
  * A collector that keeps only the latest value.
+ * <p>
+ * The latest value can also be given as a function, which is evaluated only
+ * when the collector is read: if the value is replaced before then,
+ * it is never calculated.
  *
  * @param <T> the type stored in the collector
  * @author carcassi
@@ -13,15 +17,54 @@ package org.epics.pvmanager;
 public class LatestValueCollector<T> implements Collector<T, T> {
     
     private T value;
+    // The function that calculates the latest value, if not done yet
+    private ReadFunction<? extends T> pendingFunction;
+    private long writeCount;
 
     @Override
-    public void writeValue(T newValue) {
+    public synchronized void writeValue(T newValue) {
         value = newValue;
+        pendingFunction = null;
+        writeCount++;
+    }
+
+    /**
+     * Stores the function that calculates the latest value. The function
+     * is called when the collector is read, unless a new value is
+     * written before.
+     *
+     * @param function the function that calculates the value
+     */
+    synchronized void writeDeferred(ReadFunction<? extends T> function) {
+        pendingFunction = function;
+        writeCount++;
     }
 
     @Override
     public T readValue() {
-        return value;
+        while (true) {
+            ReadFunction<? extends T> function;
+            long count;
+            synchronized (this) {
+                if (pendingFunction == null) {
+                    return value;
+                }
+                function = pendingFunction;
+                count = writeCount;
+            }
+            
+            // The function is called without holding the lock: it locks
+            // the caches, which are locked before the collector when written
+            T newValue = function.readValue();
+            synchronized (this) {
+                // If a value was written meanwhile, calculate again
+                if (writeCount == count) {
+                    value = newValue;
+                    pendingFunction = null;
+                    return value;
+                }
+            }
+        }
     }
     
 }
@@ -4,8 +4,15 @@
  */
 package org.epics.pvmanager;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -43,24 +50,189 @@ import java.util.logging.Logger;
 public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayload> extends ChannelHandler {
     
     private static final Logger log = Logger.getLogger(MultiplexedChannelHandler.class.getName());
+    private static final Object NULL_MESSAGE = new Object();
+    // Queued to drop the last message on the dispatching side
+    private static final Object RESET_MESSAGE = new Object();
     private int readUsageCounter = 0;
     private int writeUsageCounter = 0;
-    private boolean connected = false;
-    private boolean writeConnected = false;
-    private MessagePayload lastMessage;
-    private ConnectionPayload connectionPayload;
-    private Map<ChannelHandlerReadSubscription, MonitorHandler> monitors = new ConcurrentHashMap<>();
-    private Map<WriteCache<?>, ChannelHandlerWriteSubscription> writeSubscriptions = new ConcurrentHashMap<>();
+    // Changed only with the handler lock held
+    private volatile ChannelState state = new ChannelState(null, false, false, emptyMonitors());
+    // Changed by the dispatching thread, or with the handler lock held
+    private volatile MessagePayload lastMessage;
+    // Copy on write: changed only with the handler lock held
+    private volatile ChannelHandlerWriteSubscription[] writeSubscriptions = new ChannelHandlerWriteSubscription[0];
     private boolean processMessageOnDisconnect = true;
     private boolean processMessageOnReconnect = true;
     
+    // Messages are dispatched by one thread at a time, without locking:
+    // a thread that finds a dispatch in progress queues its message
+    // and returns, and the dispatching thread delivers it afterwards.
+    // The queue also holds the replays requested by processConnection.
+    private final AtomicInteger dispatchesInProgress = new AtomicInteger();
+    private final Queue<Object> pendingMessages = new ConcurrentLinkedQueue<>();
+    // Only accessed by the dispatching thread: the handoff through
+    // dispatchesInProgress makes it visible to the next one. Cleared
+    // by a queued reset when the last message is dropped, so that
+    // the payload is not kept allocated.
+    private MessagePayload lastDispatchedMessage;
+    
+    /**
+     * The state of the channel, as seen by the value path. A new instance is
+     * published every time the connection or the readers change, so that
+     * the values can be dispatched without holding the handler lock.
+     * The last message is kept outside, so that dispatching a message
+     * does not allocate.
+     */
+    private class ChannelState {
+        
+        private final ConnectionPayload connectionPayload;
+        private final boolean connected;
+        private final boolean writeConnected;
+        private final MonitorHandler[] monitors;
+
+        ChannelState(ConnectionPayload connectionPayload, boolean connected, boolean writeConnected, MonitorHandler[] monitors) {
+            this.connectionPayload = connectionPayload;
+            this.connected = connected;
+            this.writeConnected = writeConnected;
+            this.monitors = monitors;
+        }
+        
+        ChannelState withConnection(ConnectionPayload connectionPayload, boolean connected, boolean writeConnected) {
+            return new ChannelState(connectionPayload, connected, writeConnected, monitors);
+        }
+        
+        ChannelState withMonitors(MonitorHandler[] monitors) {
+            return new ChannelState(connectionPayload, connected, writeConnected, monitors);
+        }
+    }
+    
+    /**
+     * A request to publish new monitors. It goes through the same queue
+     * as the messages, so that the monitors are published between two
+     * messages, after processing the last one.
+     */
+    private class AddMonitors {
+        
+        private final List<MonitorHandler> newMonitors;
+        private final boolean processLastMessage;
+        private final CountDownLatch published = new CountDownLatch(1);
+
+        AddMonitors(List<MonitorHandler> newMonitors, boolean processLastMessage) {
+            this.newMonitors = newMonitors;
+            this.processLastMessage = processLastMessage;
+        }
+        
+        void run() {
+            try {
+                // The thread that requested it holds the handler lock
+                // until the monitors are published. They are published
+                // first, so that a failing reader does not prevent it:
+                // no other message is dispatched in the meantime.
+                ChannelState oldState = state;
+                MonitorHandler[] monitors = Arrays.copyOf(oldState.monitors, oldState.monitors.length + newMonitors.size());
+                for (int i = 0; i < newMonitors.size(); i++) {
+                    monitors[oldState.monitors.length + i] = newMonitors.get(i);
+                }
+                state = oldState.withMonitors(monitors);
+                
+                MessagePayload payload = lastMessage;
+                if (processLastMessage && payload != null) {
+                    for (MonitorHandler monitor : newMonitors) {
+                        monitor.processValue(payload);
+                    }
+                }
+            } finally {
+                published.countDown();
+            }
+        }
+        
+        void awaitPublished() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    published.await();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * A request to process the last message again after a connection
+     * change. It goes through the same queue as the messages, so that
+     * it never overtakes a newer message.
+     */
+    private static class Replay {
+        
+        private final Object connectionPayload;
+
+        Replay(Object connectionPayload) {
+            this.connectionPayload = connectionPayload;
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private MonitorHandler[] emptyMonitors() {
+        return (MonitorHandler[]) new MultiplexedChannelHandler.MonitorHandler[0];
+    }
+    
+    /**
+     * The type adapter matched for a monitor, together with the connection
+     * payload it was matched for. It also converts the messages
+     * stored in the cache when the conversion is deferred.
+     */
+    private static class TypeAdapterBinding<ConnectionPayload, MessagePayload> implements ValueCacheImpl.Conversion {
+        
+        private final DataSourceTypeAdapter<ConnectionPayload, MessagePayload> typeAdapter;
+        // The same adapter, if it can defer the conversion; null otherwise
+        private final DeferrableTypeAdapter<ConnectionPayload, MessagePayload> deferrableTypeAdapter;
+        private final ConnectionPayload connectionPayload;
+        private final WriteFunction<Exception> exceptionWriteFunction;
+
+        @SuppressWarnings("unchecked")
+        TypeAdapterBinding(DataSourceTypeAdapter<ConnectionPayload, MessagePayload> typeAdapter, ConnectionPayload connectionPayload,
+                WriteFunction<Exception> exceptionWriteFunction) {
+            this.typeAdapter = typeAdapter;
+            if (typeAdapter instanceof DeferrableTypeAdapter) {
+                deferrableTypeAdapter = (DeferrableTypeAdapter<ConnectionPayload, MessagePayload>) typeAdapter;
+            } else {
+                deferrableTypeAdapter = null;
+            }
+            this.connectionPayload = connectionPayload;
+            this.exceptionWriteFunction = exceptionWriteFunction;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void convert(ValueCacheImpl<?> cache, Object message) {
+            try {
+                typeAdapter.updateCache(cache, connectionPayload, (MessagePayload) message);
+            } catch (RuntimeException e) {
+                exceptionWriteFunction.writeValue(e);
+            }
+        }
+    }
+    
     private class MonitorHandler {
 
         private final ChannelHandlerReadSubscription subscription;
-        private DataSourceTypeAdapter<ConnectionPayload, MessagePayload> typeAdapter;
+        // Taken from the subscription so that dispatching a value
+        // only reads final fields
+        private final ValueCache<?> valueCache;
+        private final Runnable valueUpdateCallback;
+        private final WriteFunction<Exception> exceptionWriteFunction;
+        private volatile TypeAdapterBinding<ConnectionPayload, MessagePayload> typeAdapterBinding;
 
         public MonitorHandler(ChannelHandlerReadSubscription subscription) {
             this.subscription = subscription;
+            this.valueCache = subscription.getValueCache();
+            this.valueUpdateCallback = subscription.getValueUpdateCallback();
+            this.exceptionWriteFunction = subscription.getExceptionWriteFunction();
         }
         
         public final void processConnection(boolean connection) {
@@ -68,23 +240,60 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
         }
 
         public final void processValue(MessagePayload payload) {
-            if (typeAdapter == null)
+            TypeAdapterBinding<ConnectionPayload, MessagePayload> binding = typeAdapterBinding;
+            if (binding == null)
                 return;
             
+            // Only store the message, if the cache allows it: the value
+            // is created if and when the reader reads it
+            if (binding.deferrableTypeAdapter != null) {
+                try {
+                    if (!binding.deferrableTypeAdapter.hasValue(binding.connectionPayload, payload)) {
+                        return;
+                    }
+                    if (writeDeferred(binding, payload)) {
+                        valueUpdateCallback.run();
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    exceptionWriteFunction.writeValue(e);
+                    return;
+                }
+            }
+            
             // Lock the collector and prepare the new value.
             try {
-                typeAdapter.updateCache(subscription.getValueCache(), getConnectionPayload(), payload);
+                if (binding.typeAdapter.updateCache(valueCache, binding.connectionPayload, payload)) {
+                    valueUpdateCallback.run();
+                }
             } catch (RuntimeException e) {
-                subscription.getExceptionWriteFunction().writeValue(e);
+                exceptionWriteFunction.writeValue(e);
+            }
+        }
+        
+        private boolean writeDeferred(TypeAdapterBinding<ConnectionPayload, MessagePayload> binding, MessagePayload payload) {
+            if (valueCache instanceof ForwardCache) {
+                return ((ForwardCache<?, ?>) valueCache).writeDeferred(binding, payload);
+            }
+            if (valueCache instanceof ValueCacheImpl) {
+                ((ValueCacheImpl<?>) valueCache).writeDeferred(binding, payload);
+                return true;
             }
+            return false;
         }
         
-        public final void findTypeAdapter() {
-            if (getConnectionPayload() == null) {
-                typeAdapter = null;
+        public final void findTypeAdapter(ConnectionPayload connectionPayload) {
+            if (connectionPayload == null) {
+                typeAdapterBinding = null;
             } else {
                 try {
-                    typeAdapter = MultiplexedChannelHandler.this.findTypeAdapter(subscription.getValueCache(), getConnectionPayload());
+                    DataSourceTypeAdapter<ConnectionPayload, MessagePayload> typeAdapter =
+                            MultiplexedChannelHandler.this.findTypeAdapter(subscription.getValueCache(), connectionPayload);
+                    if (typeAdapter == null) {
+                        typeAdapterBinding = null;
+                    } else {
+                        typeAdapterBinding = new TypeAdapterBinding<>(typeAdapter, connectionPayload, exceptionWriteFunction);
+                    }
                 } catch(RuntimeException ex) {
                     subscription.getExceptionWriteFunction().writeValue(ex);
                 }
@@ -99,10 +308,10 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
      * @param ex the exception to notify
      */
     protected synchronized final void reportExceptionToAllReadersAndWriters(Exception ex) {
-        for (MonitorHandler monitor : monitors.values()) {
+        for (MonitorHandler monitor : state.monitors) {
             monitor.subscription.getExceptionWriteFunction().writeValue(ex);
         }
-        for (ChannelHandlerWriteSubscription subscription : writeSubscriptions.values()) {
+        for (ChannelHandlerWriteSubscription subscription : writeSubscriptions) {
             subscription.getExceptionWriteFunction().writeValue(ex);
         }
     }
@@ -113,19 +322,19 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
      * @param ex the exception to notify
      */
     protected synchronized final void reportExceptionToAllWriters(Exception ex) {
-        for (ChannelHandlerWriteSubscription subscription : writeSubscriptions.values()) {
+        for (ChannelHandlerWriteSubscription subscription : writeSubscriptions) {
             subscription.getExceptionWriteFunction().writeValue(ex);
         }
     }
     
-    private void reportConnectionStatus(boolean connected) {
-        for (MonitorHandler monitor : monitors.values()) {
+    private void reportConnectionStatus(MonitorHandler[] monitors, boolean connected) {
+        for (MonitorHandler monitor : monitors) {
             monitor.processConnection(connected);
         }
     }
     
     private void reportWriteConnectionStatus(boolean writeConnected) {
-        for (ChannelHandlerWriteSubscription subscription : writeSubscriptions.values()) {
+        for (ChannelHandlerWriteSubscription subscription : writeSubscriptions) {
             subscription.getConnectionWriteFunction().writeValue(writeConnected);
         }
     }
@@ -135,8 +344,8 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
      * 
      * @return the connection payload or null
      */
-    protected synchronized final ConnectionPayload getConnectionPayload() {
-        return connectionPayload;
+    protected final ConnectionPayload getConnectionPayload() {
+        return state.connectionPayload;
     }
 
     /**
@@ -144,7 +353,7 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
      * 
      * @return the message payload or null
      */
-    protected synchronized final MessagePayload getLastMessagePayload() {
+    protected final MessagePayload getLastMessagePayload() {
         return lastMessage;
     }
 
@@ -159,19 +368,23 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
             log.log(Level.FINEST, "processConnection for channel {0} connecionPayload {1}", new Object[] {getChannelName(), connectionPayload});
         }
         
-        this.connectionPayload = connectionPayload;
-        setConnected(isConnected(connectionPayload));
-        setWriteConnected(isWriteConnected(connectionPayload));
+        boolean newConnected = isConnected(connectionPayload);
+        boolean newWriteConnected = isWriteConnected(connectionPayload);
+        ChannelState newState = state.withConnection(connectionPayload, newConnected, newWriteConnected);
+        state = newState;
+        reportConnectionStatus(newState.monitors, newConnected);
+        reportWriteConnectionStatus(newWriteConnected);
         
-        for (MonitorHandler monitor : monitors.values()) {
-            monitor.findTypeAdapter();
+        for (MonitorHandler monitor : newState.monitors) {
+            monitor.findTypeAdapter(connectionPayload);
         }
         
-        if (isConnected() && lastMessage != null && processMessageOnReconnect) {
-            processMessage(lastMessage);
-        }
-        if (!isConnected() && lastMessage != null && processMessageOnDisconnect) {
-            processMessage(lastMessage);
+        // The last message is dispatched again with the new type adapters.
+        // The replay is queued with the messages, so it processes
+        // the latest message dispatched before it and never a stale one
+        if (lastMessage != null && ((newConnected && processMessageOnReconnect)
+                || (!newConnected && processMessageOnDisconnect))) {
+            submit(new Replay(connectionPayload));
         }
     }
     
@@ -242,22 +455,70 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
     protected synchronized void addReader(ChannelHandlerReadSubscription subscription) {
         readUsageCounter++;
         MonitorHandler monitor = new MonitorHandler(subscription);
-        monitors.put(subscription, monitor);
-        monitor.findTypeAdapter();
+        boolean alreadyInUse = getUsageCounter() > 1;
+        addMonitors(Collections.singletonList(monitor), alreadyInUse);
         guardedConnect();
-        if (getUsageCounter() > 1) {
-            if (connectionPayload != null) {
-                monitor.processConnection(isConnected());
-            }
-            if (lastMessage != null) {
-                monitor.processValue(lastMessage);
+    }
+
+    @Override
+    protected synchronized void addReaders(Collection<ChannelHandlerReadSubscription> subscriptions) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        
+        // Register all the monitors first, so that a connection
+        // that happens right away reaches all of them
+        boolean alreadyInUse = getUsageCounter() > 0;
+        List<MonitorHandler> newMonitors = new ArrayList<>(subscriptions.size());
+        for (ChannelHandlerReadSubscription subscription : subscriptions) {
+            readUsageCounter++;
+            newMonitors.add(new MonitorHandler(subscription));
+        }
+        addMonitors(newMonitors, alreadyInUse);
+        
+        if (!alreadyInUse) {
+            safeConnect();
+        }
+    }
+    
+    /**
+     * Publishes the new monitors. If the channel is already in use, the
+     * new monitors first receive the current connection state and last
+     * message, so that they do not miss or reorder any message
+     * dispatched concurrently. Must be called with the handler lock held.
+     * 
+     * @param newMonitors the monitors to add
+     * @param processCurrentState whether to send the current state to the new monitors
+     */
+    private void addMonitors(List<MonitorHandler> newMonitors, boolean processCurrentState) {
+        // The connection cannot change while holding the lock
+        ChannelState currentState = state;
+        for (MonitorHandler monitor : newMonitors) {
+            monitor.findTypeAdapter(currentState.connectionPayload);
+            if (processCurrentState && currentState.connectionPayload != null) {
+                monitor.processConnection(currentState.connected);
             }
-        } 
+        }
+        
+        // Messages may be dispatched concurrently: the monitors are
+        // published by the dispatching thread, and the lock is kept
+        // until they are
+        AddMonitors addMonitors = new AddMonitors(newMonitors, processCurrentState);
+        submit(addMonitors);
+        addMonitors.awaitPublished();
     }
 
     @Override
     protected synchronized void removeReader(ChannelHandlerReadSubscription subscription) {
-        monitors.remove(subscription);
+        ChannelState oldState = state;
+        for (int i = 0; i < oldState.monitors.length; i++) {
+            if (oldState.monitors[i].subscription.equals(subscription)) {
+                MonitorHandler[] monitors = Arrays.copyOf(oldState.monitors, oldState.monitors.length - 1);
+                System.arraycopy(oldState.monitors, i + 1, monitors, i, oldState.monitors.length - i - 1);
+                state = oldState.withMonitors(monitors);
+                break;
+            }
+        }
         readUsageCounter--;
         guardedDisconnect();
     }
@@ -265,9 +526,9 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
     @Override
     protected synchronized void addWriter(ChannelHandlerWriteSubscription subscription) {
         writeUsageCounter++;
-        writeSubscriptions.put(subscription.getWriteCache(), subscription);
+        writeSubscriptions = withWriteSubscription(writeSubscriptions, subscription);
         guardedConnect();
-        if (connectionPayload != null) {
+        if (getConnectionPayload() != null) {
             subscription.getConnectionWriteFunction().writeValue(isWriteConnected());
         }
     }
@@ -275,10 +536,31 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
     @Override
     protected synchronized void removeWrite(ChannelHandlerWriteSubscription subscription) {
         writeUsageCounter--;
-        writeSubscriptions.remove(subscription.getWriteCache());
+        writeSubscriptions = withoutWriteSubscription(writeSubscriptions, subscription.getWriteCache());
         guardedDisconnect();
     }
     
+    private static ChannelHandlerWriteSubscription[] withWriteSubscription(ChannelHandlerWriteSubscription[] subscriptions,
+            ChannelHandlerWriteSubscription subscription) {
+        // A subscription for the same cache replaces the previous one
+        ChannelHandlerWriteSubscription[] newSubscriptions = withoutWriteSubscription(subscriptions, subscription.getWriteCache());
+        newSubscriptions = Arrays.copyOf(newSubscriptions, newSubscriptions.length + 1);
+        newSubscriptions[newSubscriptions.length - 1] = subscription;
+        return newSubscriptions;
+    }
+    
+    private static ChannelHandlerWriteSubscription[] withoutWriteSubscription(ChannelHandlerWriteSubscription[] subscriptions,
+            WriteCache<?> writeCache) {
+        for (int i = 0; i < subscriptions.length; i++) {
+            if (subscriptions[i].getWriteCache().equals(writeCache)) {
+                ChannelHandlerWriteSubscription[] newSubscriptions = Arrays.copyOf(subscriptions, subscriptions.length - 1);
+                System.arraycopy(subscriptions, i + 1, newSubscriptions, i, subscriptions.length - i - 1);
+                return newSubscriptions;
+            }
+        }
+        return subscriptions;
+    }
+    
     /**
      * Resets the last message to null. This can be used to invalidate
      * the last message without triggering a notification. It is useful
@@ -286,6 +568,7 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
      */
     protected synchronized final void resetMessage() {
         lastMessage = null;
+        submit(RESET_MESSAGE);
     }
 
     /**
@@ -293,27 +576,114 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
      * a new value needs to be processed. The handler will take care of
      * using the correct {@link DataSourceTypeAdapter}
      * for each read monitor that was setup.
+     * <p>
+     * This does not take the handler lock, so the thread delivering the
+     * messages is never blocked by readers being added or removed.
+     * Messages are dispatched one at a time, in the order they were
+     * received: if a message is being dispatched by another thread,
+     * the new message is queued and dispatched by that thread.
      * 
      * @param payload the payload of for this type of channel
      */
-    protected synchronized final void processMessage(MessagePayload payload) {
+    protected final void processMessage(MessagePayload payload) {
         if (log.isLoggable(Level.FINEST)) {
             log.log(Level.FINEST, "processMessage for channel {0} messagePayload {1}", new Object[]{getChannelName(), payload});
         }
-        
+        ChannelInstrumentation channelInstrumentation = instrumentation;
+        if (channelInstrumentation != null) {
+            channelInstrumentation.valueReceived();
+        }
+        submit(payload == null ? NULL_MESSAGE : payload);
+    }
+    
+    private void submit(Object message) {
+        if (dispatchesInProgress.compareAndSet(0, 1)) {
+            // Nothing in progress: dispatch right away
+            try {
+                dispatchSafely(message);
+            } finally {
+                drain(dispatchesInProgress.decrementAndGet());
+            }
+        } else {
+            pendingMessages.offer(message);
+            if (dispatchesInProgress.getAndIncrement() == 0) {
+                drain(1);
+            }
+        }
+    }
+    
+    /**
+     * Dispatches the messages queued by other threads, until no more
+     * are submitted.
+     * 
+     * @param missed the number of submissions not yet accounted for
+     */
+    private void drain(int missed) {
+        while (missed != 0) {
+            Object queuedMessage;
+            while ((queuedMessage = pendingMessages.poll()) != null) {
+                dispatchSafely(queuedMessage);
+            }
+            missed = dispatchesInProgress.addAndGet(-missed);
+        }
+    }
+    
+    private void dispatchSafely(Object message) {
+        // A failure must not stop the dispatch of the following messages,
+        // or they would stay queued, and the readers would never be added
+        try {
+            dispatch(message);
+        } catch (Throwable ex) {
+            log.log(Level.WARNING, "Failed to dispatch message for channel " + getChannelName(), ex);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void dispatch(Object message) {
+        if (message instanceof Replay) {
+            // Skip the replay if the connection changed again: that change
+            // queued its own replay
+            ChannelState currentState = state;
+            if (currentState.connectionPayload == ((Replay) message).connectionPayload && lastDispatchedMessage != null) {
+                processValue(currentState.monitors, lastDispatchedMessage);
+            }
+        } else if (message instanceof MultiplexedChannelHandler.AddMonitors) {
+            ((AddMonitors) message).run();
+        } else if (message == RESET_MESSAGE) {
+            // Keep a message dispatched after the reset was requested
+            if (lastMessage == null) {
+                lastDispatchedMessage = null;
+            }
+        } else {
+            dispatchMessage(message == NULL_MESSAGE ? null : (MessagePayload) message);
+        }
+    }
+    
+    private void dispatchMessage(MessagePayload payload) {
         lastMessage = payload;
-        for (MonitorHandler monitor : monitors.values()) {
-            monitor.processValue(payload);
+        lastDispatchedMessage = payload;
+        processValue(state.monitors, payload);
+    }
+    
+    private void processValue(MonitorHandler[] monitors, MessagePayload payload) {
+        // Indexed loop on the copy on write array: no allocation
+        // and no locking for each reader
+        for (int i = 0; i < monitors.length; i++) {
+            monitors[i].processValue(payload);
         }
     }
 
     private void guardedConnect() {
         if (getUsageCounter() == 1) {
-            try {
-                connect();
-            } catch(RuntimeException ex) {
-                reportExceptionToAllReadersAndWriters(ex);
-            }
+            safeConnect();
+        }
+    }
+
+    private void safeConnect() {
+        try {
+            connect();
+        } catch(RuntimeException ex) {
+            reportExceptionToAllReadersAndWriters(ex);
         }
     }
 
@@ -323,8 +693,10 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
                 disconnect();
                 if (!saveMessageAfterDisconnect()) {
                     lastMessage = null;
+                    submit(RESET_MESSAGE);
                 }
-                connectionPayload = null;
+                ChannelState oldState = state;
+                state = oldState.withConnection(null, oldState.connected, oldState.writeConnected);
             } catch (RuntimeException ex) {
                 reportExceptionToAllReadersAndWriters(ex);
                 log.log(Level.WARNING, "Couldn't disconnect channel " + getChannelName(), ex);
@@ -359,16 +731,6 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
     @Override
     protected abstract void write(Object newValue, ChannelWriteCallback callback);
 
-    private void setConnected(boolean connected) {
-        this.connected = connected;
-        reportConnectionStatus(connected);
-    }
-    
-    private void setWriteConnected(boolean writeConnected) {
-        this.writeConnected = writeConnected;
-        reportWriteConnectionStatus(writeConnected);
-    }
-    
     /**
      * Determines from the payload whether the channel is connected or not.
      * <p>
@@ -398,8 +760,8 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
     }
     
     @Override
-    public synchronized final boolean isConnected() {
-        return connected;
+    public final boolean isConnected() {
+        return state.connected;
     }
     
     /**
@@ -407,9 +769,9 @@ public abstract class MultiplexedChannelHandler<ConnectionPayload, MessagePayloa
      * 
      * @return true if underlying channel is write ready
      */
-    public synchronized final boolean isWriteConnected() {
+    public final boolean isWriteConnected() {
         // TODO: push this in ChannleHandler?
-        return writeConnected;
+        return state.writeConnected;
     }
 
     /**
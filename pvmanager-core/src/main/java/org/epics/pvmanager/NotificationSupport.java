@@ -73,6 +73,18 @@ public abstract class NotificationSupport<T> extends TypeSupport<T> {
      * @return the value to be notified
      */
     public abstract Notification<T> prepareNotification(final T oldValue, final T newValue);
+    
+    /**
+     * Whether the values of this type are never modified after they are
+     * created. If so, the next value can be calculated while the previous
+     * one is being notified; otherwise, the calculation may reuse the
+     * same object (e.g. the list returned by a collector). Default is false.
+     *
+     * @return true if the values are immutable
+     */
+    public boolean isImmutable() {
+        return false;
+    }
 
     /**
      * Support for notification of immutable types. Notification is enabled if
@@ -91,6 +103,11 @@ public abstract class NotificationSupport<T> extends TypeSupport<T> {
                 }
                 return new Notification<T>(true, newValue);
             }
+
+            @Override
+            public boolean isImmutable() {
+                return true;
+            }
         };
     }
 }
@@ -0,0 +1,30 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+/**
+ * A write function that forwards to another one and then runs
+ * a callback.
+ *
+ * @param <T> the type of the function argument
+ * @author carcassi
+ */
+class NotifyingWriteFunction<T> implements WriteFunction<T> {
+    
+    private final WriteFunction<T> writeFunction;
+    private final Runnable callback;
+
+    NotifyingWriteFunction(WriteFunction<T> writeFunction, Runnable callback) {
+        this.writeFunction = writeFunction;
+        this.callback = callback;
+    }
+
+    @Override
+    public void writeValue(T newValue) {
+        writeFunction.writeValue(newValue);
+        callback.run();
+    }
+    
+}
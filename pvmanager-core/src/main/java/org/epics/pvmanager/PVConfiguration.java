@@ -120,6 +120,19 @@ public class PVConfiguration<R, W> extends CommonConfiguration {
         pvWriterConfiguration.routeExceptionsTo(exceptionHandler);
         return this;
     }
+
+    /**
+     * Coalesces the asynchronous writes, so that only the latest value
+     * is written when the previous write completes.
+     * <p>
+     * For more details, consult {@link PVWriterConfiguration#coalesceWrites() }.
+     *
+     * @return this
+     */
+    public PVConfiguration<R, W> coalesceWrites() {
+        pvWriterConfiguration.coalesceWrites();
+        return this;
+    }
     
     /**
      * Creates the pv such that writes are synchronous and read notifications
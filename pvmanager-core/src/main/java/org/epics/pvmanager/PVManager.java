@@ -4,6 +4,8 @@
  */
 package org.epics.pvmanager;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -26,6 +28,10 @@ import org.epics.pvmanager.expression.WriteExpression;
  * where the exception is done. This can be changed to make all notifications
  * routed to single threaded sub-systems, such as UI environments like SWING,
  * SWT or similar. This can be changed on a PV by PV basis.
+ * To keep slow listeners from blocking the scan, this can be changed to
+ * {@link org.epics.pvmanager.util.Executors#latestWinsPool(int)}: each reader
+ * then keeps only its latest notification pending, instead of skipping
+ * the scans while the previous notification runs.
  * <p>
  * <b>AsynchWriteExecutor</b> - This is used for asynchronous writes, to return
  * right away, and for running timeouts on each write.
@@ -40,7 +46,22 @@ import org.epics.pvmanager.expression.WriteExpression;
  * <b>ReadScannerExecutorService</b> - This is used to run the periodic
  * scan for new values. By default this uses the internal PVManager work pool. The work
  * submitted here is the calculation of the corresponding {@link DesiredRateExpression}
- * and submission to the NotificationExecutor.
+ * and submission to the NotificationExecutor. When tens of thousands of
+ * readers and writers are open, this can be changed to a
+ * {@link org.epics.pvmanager.util.TimerWheelExecutorService} wrapping the
+ * worker pool, so that the periodic scans are rescheduled in constant time without
+ * contending on a single lock.
+ * Alternatively, readers created with {@link PVReaderConfiguration#sharedScan(int) }
+ * are scanned by a single task for each rate and notification executor.
+ * <p>
+ * <b>Instrumentation</b> - This receives the measurements for the readers
+ * and channels created after it is set. By default there is none, and nothing is
+ * measured.
+ * <p>
+ * <b>Leaked readers</b> - The readers that are garbage collected without
+ * being closed are closed as soon as they are collected, and counted in
+ * {@link #getLeakedReaderCount() }. To find where they were created,
+ * {@link #setRecordReaderCreationStack(boolean) } can be enabled while debugging.
  *
  * @author carcassi
  */
@@ -52,6 +73,7 @@ public class PVManager {
             org.epics.pvmanager.util.Executors.namedPool("PVMgr Worker "));
     private static ScheduledExecutorService readScannerExecutorService = workerPool;
     private static ScheduledExecutorService asyncWriteExecutor = workerPool;
+    private static volatile Instrumentation instrumentation = null;
 
     /**
      * Changes the default executor on which all notifications are going to be posted.
@@ -114,6 +136,26 @@ public class PVManager {
         return new PVReaderConfiguration<T>(pvExpression);
     }
     
+    /**
+     * Reads each of the given expressions with its own reader, and returns
+     * an object to configure the parameters for all the reads. At each
+     * notification, each reader will return the latest value of its expression.
+     * <p>
+     * The readers are created all together: use this instead of {@link #read(org.epics.pvmanager.expression.SourceRateExpression) }
+     * when opening thousands of readers at the same time.
+     *
+     * @param <T> type of the read payload
+     * @param pvExpressions the expressions to read
+     * @return the read configuration
+     */
+    public static <T> PVReaderListConfiguration<T> readAll(List<? extends SourceRateExpression<T>> pvExpressions) {
+        List<DesiredRateExpression<T>> expressions = new ArrayList<>(pvExpressions.size());
+        for (SourceRateExpression<T> pvExpression : pvExpressions) {
+            expressions.add(ExpressionLanguage.latestValueOf(pvExpression));
+        }
+        return new PVReaderListConfiguration<T>(expressions);
+    }
+
     /**
      * Writes the given expression, and returns an object to configure the parameters
      * for the write.
@@ -192,4 +234,59 @@ public class PVManager {
         PVManager.readScannerExecutorService = readScannerExecutorService;
     }
     
+    /**
+     * Returns the instrumentation that receives the measurements for
+     * new readers and channels.
+     * 
+     * @return the current instrumentation or null if nothing is measured
+     */
+    public static Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Changes the instrumentation that receives the measurements. Only the
+     * readers and channels created afterwards are measured.
+     * 
+     * @param instrumentation the new instrumentation; null to stop measuring
+     */
+    public static void setInstrumentation(Instrumentation instrumentation) {
+        PVManager.instrumentation = instrumentation;
+    }
+
+    /**
+     * Returns the number of readers that were garbage collected
+     * without being closed. Their channels were closed when they were
+     * collected, but the application should be fixed to close them.
+     * 
+     * @return the number of leaked readers since the start
+     */
+    public static long getLeakedReaderCount() {
+        return ReaderCleaner.getLeakedCount();
+    }
+
+    /**
+     * Changes whether the stack trace of the creation of each reader is
+     * recorded, so that it can be logged if the reader is garbage collected
+     * without being closed. Only the readers created afterwards are affected.
+     * <p>
+     * Creating the stack trace is expensive: this should be enabled
+     * only to find the leaks.
+     * 
+     * @param record true to record the creation of the readers
+     */
+    public static void setRecordReaderCreationStack(boolean record) {
+        ReaderCleaner.setRecordCreationStack(record);
+    }
+
+    /**
+     * Whether the stack trace of the creation of each reader is recorded.
+     * 
+     * @return true if the creation of the readers is recorded
+     * @see #setRecordReaderCreationStack(boolean) 
+     */
+    public static boolean isRecordReaderCreationStack() {
+        return ReaderCleaner.isRecordCreationStack();
+    }
+    
 }
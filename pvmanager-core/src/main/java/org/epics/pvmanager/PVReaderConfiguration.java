@@ -70,6 +70,9 @@ public class PVReaderConfiguration<T> extends CommonConfiguration {
     private DesiredRateExpression<T> aggregatedPVExpression;
     private ExceptionHandler exceptionHandler;
     private List<PVReaderListener<T>> readListeners = new ArrayList<>();
+    private boolean eventDriven = false;
+    private boolean sharedScan = false;
+    private int scanPhases = 1;
 
     PVReaderConfiguration(DesiredRateExpression<T> aggregatedPVExpression) {
         this.aggregatedPVExpression = aggregatedPVExpression;
@@ -110,6 +113,62 @@ public class PVReaderConfiguration<T> extends CommonConfiguration {
         return this;
     }
     
+    /**
+     * Calculates the value only when one of the channels is updated,
+     * instead of scanning periodically.
+     * <p>
+     * The max rate is still respected: updates that arrive within the
+     * same scan period are coalesced in a single calculation. Readers
+     * that receive no updates do not consume any CPU. This should be used
+     * only for expressions whose value depends solely on the channel
+     * updates (e.g. not on the current time).
+     *
+     * @return this
+     */
+    public PVReaderConfiguration<T> eventDriven() {
+        this.eventDriven = true;
+        return this;
+    }
+    
+    /**
+     * Scans the reader with a single task together with all the other readers
+     * with the same max rate and notification executor, instead of
+     * scheduling a task for each reader.
+     * <p>
+     * This reduces the overhead on the scanner executor when many readers are open
+     * at the same rate. The readers are all scanned at the same time, one
+     * after the other: use {@link #sharedScan(int) } to spread them.
+     *
+     * @return this
+     */
+    public PVReaderConfiguration<T> sharedScan() {
+        return sharedScan(1);
+    }
+    
+    /**
+     * Scans the reader with a single task together with all the other readers
+     * with the same max rate, notification executor and number of phases,
+     * spreading the scans over the period.
+     * <p>
+     * The readers of the group are divided in the given number of phases,
+     * and each phase is scanned at a different time within the period.
+     * For example, 10,000 readers at 1 Hz in 10 phases are scanned
+     * 1,000 at a time every 100 ms, instead of all in the same millisecond,
+     * so that the notifications do not arrive all together on the notification
+     * thread. Each reader is still notified at most at the max rate.
+     *
+     * @param phases the number of phases in which to divide the readers; must be at least 1
+     * @return this
+     */
+    public PVReaderConfiguration<T> sharedScan(int phases) {
+        if (phases < 1) {
+            throw new IllegalArgumentException("The number of phases must be at least 1 (was " + phases + ")");
+        }
+        this.sharedScan = true;
+        this.scanPhases = phases;
+        return this;
+    }
+    
     /**
      * Sets the rate of scan of the expression and creates the actual {@link PVReader}
      * object that can be monitored through listeners.
@@ -125,6 +184,9 @@ public class PVReaderConfiguration<T> extends CommonConfiguration {
         }
 
         checkDataSourceAndThreadSwitch();
+        if (eventDriven && sharedScan) {
+            throw new IllegalStateException("An event driven reader can't use a shared scan");
+        }
 
         // Create PVReader and connect
         PVReaderImpl<T> pv = new PVReaderImpl<T>(aggregatedPVExpression.getName(), Executors.localThread() == notificationExecutor);
@@ -134,7 +196,7 @@ public class PVReaderConfiguration<T> extends CommonConfiguration {
         ReadFunction<T> aggregatedFunction = aggregatedPVExpression.getFunction();
         
         PVReaderDirector<T> director = new PVReaderDirector<T>(pv, aggregatedFunction, PVManager.getReadScannerExecutorService(),
-                notificationExecutor, dataSource, exceptionHandler);
+                notificationExecutor, dataSource, exceptionHandler, eventDriven);
         pv.setDirector(director);
         if (timeout != null) {
             if (timeoutMessage == null)
@@ -142,7 +204,11 @@ public class PVReaderConfiguration<T> extends CommonConfiguration {
             director.timeout(timeout, timeoutMessage);
         }
         director.connectExpression(aggregatedPVExpression);
-        director.startScan(rate);
+        if (sharedScan) {
+            ScanGroup.sharedGroup(PVManager.getReadScannerExecutorService(), rate, notificationExecutor, scanPhases).add(director);
+        } else {
+            director.startScan(rate);
+        }
 
         return pv;
     }
@@ -12,9 +12,12 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.epics.pvmanager.expression.DesiredRateExpression;
+import org.epics.pvmanager.util.LatestWinsExecutor;
 import org.epics.util.time.TimeDuration;
 
 /**
@@ -62,6 +65,34 @@ public class PVReaderDirector<T> {
             new ConnectionCollector();
     /** Exception queue to be used to connect/disconnect expression and for exception notification */
     private final QueueCollector<Exception> exceptionCollector;
+
+    // Required for event driven notification
+    /** Whether the scan is triggered by updates instead of running periodically */
+    private final boolean eventDriven;
+    /** Set when an update was received and an evaluation needs to be scheduled */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    /** Marks the director dirty; passed to the subscriptions */
+    private final Runnable dirtyCallback = new Runnable() {
+
+        @Override
+        public void run() {
+            markDirty();
+        }
+    };
+    private volatile long scanPeriodNanos;
+    private volatile long lastScanNanos;
+    private volatile boolean scanning = false;
+    /** Set while a scan is evaluating the function */
+    private final AtomicBoolean scanRunning = new AtomicBoolean();
+    
+    /** Receives the measurements; null if the reader is not measured */
+    private final ReaderInstrumentation instrumentation;
+    
+    // Required for latest wins notification
+    /** The notification executor, if it replaces pending notifications; null otherwise */
+    private final LatestWinsExecutor latestWinsExecutor;
+    /** The last exception not yet notified */
+    private final AtomicReference<Exception> pendingException = new AtomicReference<>();
     
     
     ReadRecipe getCurrentReadRecipe() {
@@ -85,12 +116,7 @@ public class PVReaderDirector<T> {
      * @param expression the expression to connect
      */
     public void connectExpression(DesiredRateExpression<?> expression) {
-        ReadRecipeBuilder builder = new ReadRecipeBuilder();
-        expression.fillReadRecipe(this, builder);
-        ReadRecipe recipe = builder.build(exceptionCollector, connCollector);
-        synchronized(lock) {
-            recipes.put(expression, recipe);
-        }
+        ReadRecipe recipe = prepareExpression(expression);
         if (!recipe.getChannelReadRecipes().isEmpty()) {
             try {
                 dataSource.connectRead(recipe);
@@ -100,6 +126,31 @@ public class PVReaderDirector<T> {
         }
     }
     
+    /**
+     * Prepares the recipe for the given expression, without connecting it.
+     * <p>
+     * The recipe is disconnected with the other expressions when the reader is
+     * closed: the caller must connect it to the data source. This allows
+     * to connect the recipes of many readers at once.
+     * 
+     * @param expression the expression to prepare
+     * @return the recipe to connect
+     */
+    ReadRecipe prepareExpression(DesiredRateExpression<?> expression) {
+        ReadRecipeBuilder builder = new ReadRecipeBuilder();
+        expression.fillReadRecipe(this, builder);
+        ReadRecipe recipe;
+        if (eventDriven) {
+            recipe = builder.build(exceptionCollector, connCollector, dirtyCallback);
+        } else {
+            recipe = builder.build(exceptionCollector, connCollector);
+        }
+        synchronized(lock) {
+            recipes.put(expression, recipe);
+        }
+        return recipe;
+    }
+    
     /**
      * Simulate a static connection in which the channel has one exception
      * and the connection will never change.
@@ -120,6 +171,7 @@ public class PVReaderDirector<T> {
     public void connectStatic(Exception ex, boolean connection, String channelName) {
         exceptionCollector.writeValue(ex);
         connCollector.addChannel(channelName).writeValue(connection);
+        markDirty();
     }
     
     /**
@@ -149,21 +201,36 @@ public class PVReaderDirector<T> {
     }
     
     private volatile boolean closed = false;
+    private final AtomicBoolean disconnected = new AtomicBoolean();
     
     void close() {
         closed = true;
+        ReaderCleaner.unregister(pvRef);
+        // An event driven director may be idle: schedule a scan
+        // so that the channels are disconnected
+        if (eventDriven) {
+            scheduleScan(0);
+        }
     }
 
     /**
      * Closed and disconnects all the child expressions.
      */
-    private void disconnect() {
+    void disconnect() {
+        // The reader can be found inactive both by the scan
+        // and by the cleaner: disconnect only once
+        if (!disconnected.compareAndSet(false, true)) {
+            return;
+        }
         synchronized(lock) {
             while (!recipes.isEmpty()) {
                 DesiredRateExpression<?> expression = recipes.keySet().iterator().next();
                 disconnectExpression(expression);
             }
         }
+        if (instrumentation != null) {
+            instrumentation.readerClosed();
+        }
     }
 
     /**
@@ -180,9 +247,34 @@ public class PVReaderDirector<T> {
      */
     PVReaderDirector(PVReaderImpl<T> pv, ReadFunction<T> function, ScheduledExecutorService scannerExecutor,
             Executor notificationExecutor, DataSource dataSource, ExceptionHandler exceptionHandler) {
-        this.pvRef = new WeakReference<>(pv);
+        this(pv, function, scannerExecutor, notificationExecutor, dataSource, exceptionHandler, false);
+    }
+
+    /**
+     * Creates a new notifier, which is either scanning periodically
+     * or only after updates.
+     * <p>
+     * If event driven, the value is calculated only after a channel sends a value,
+     * a connection change or an exception. The scan rate is still used
+     * as the minimum time between two notifications.
+     *
+     * @param pv the pv on which to notify
+     * @param function the function used to calculate new values
+     * @param notificationExecutor the thread switching mechanism
+     * @param eventDriven true if the scan is triggered by the updates
+     */
+    PVReaderDirector(PVReaderImpl<T> pv, ReadFunction<T> function, ScheduledExecutorService scannerExecutor,
+            Executor notificationExecutor, DataSource dataSource, ExceptionHandler exceptionHandler,
+            boolean eventDriven) {
+        this.eventDriven = eventDriven;
+        this.pvRef = ReaderCleaner.register(pv, this);
         this.function = function;
         this.notificationExecutor = notificationExecutor;
+        if (notificationExecutor instanceof LatestWinsExecutor) {
+            latestWinsExecutor = (LatestWinsExecutor) notificationExecutor;
+        } else {
+            latestWinsExecutor = null;
+        }
         this.scannerExecutor = scannerExecutor;
         this.dataSource = dataSource;
         if (exceptionHandler == null) {
@@ -190,6 +282,12 @@ public class PVReaderDirector<T> {
         } else {
             exceptionCollector = new LastExceptionCollector(1, exceptionHandler);
         }
+        Instrumentation currentInstrumentation = PVManager.getInstrumentation();
+        if (currentInstrumentation != null) {
+            instrumentation = currentInstrumentation.readerCreated(pv == null ? null : pv.getName(), dataSource);
+        } else {
+            instrumentation = null;
+        }
     }
 
     /**
@@ -207,14 +305,27 @@ public class PVReaderDirector<T> {
         final PVReader<T> pv = pvRef.get();
         if (pv != null && !pv.isClosed()) {
             return true;
-        } else if (pv == null && closed != true) {
-            log.warning("PVReader wasn't properly closed and it was garbage collected. Closing the associated connections...");
-            return false;
         } else {
+            // If garbage collected, it's reported by the ReaderCleaner
             return false;
         }
     }
     
+    /**
+     * Called by the {@link ReaderCleaner} when the reader was garbage
+     * collected without being closed: stops the scan and disconnects
+     * the channels right away, instead of at the next scan.
+     */
+    void readerCollected() {
+        // Cancel the handle without changing the state of the scan,
+        // as the scan may be running and stopping itself concurrently
+        ScheduledFuture<?> handle = scanTaskHandle;
+        if (handle != null) {
+            handle.cancel(false);
+        }
+        disconnect();
+    }
+    
     /**
      * Checks whether the pv is paused
      * 
@@ -229,7 +340,55 @@ public class PVReaderDirector<T> {
         }
     }
     
-    private volatile boolean notificationInFlight = false;
+    // The last notification submitted, until it's done. A notification
+    // replaced by a LatestWinsExecutor never runs, and one that completes
+    // after a newer one was submitted leaves the newer one in flight
+    private final AtomicReference<Runnable> notificationInFlight = new AtomicReference<>();
+    
+    // Whether the last value calculated was immutable (true if null). Only
+    // accessed by the scan, which is never executed concurrently
+    private boolean lastValueImmutable;
+    
+    /**
+     * Whether the scan should be skipped because the previous notification
+     * is still being processed. With a {@link LatestWinsExecutor} the scan
+     * is not skipped if the values are immutable: the executor replaces
+     * the pending notification. A mutable value, such as the list returned
+     * by a collector, may be reused by the next calculation, so the scan
+     * waits for the notification to be done with it.
+     * 
+     * @return true if the scan should be skipped
+     */
+    private boolean isNotificationThrottled() {
+        return notificationInFlight.get() != null && (latestWinsExecutor == null || !lastValueImmutable);
+    }
+    
+    /**
+     * The notification support for a class of values.
+     */
+    private static final class CachedNotificationSupport<T> {
+        private final Class<?> type;
+        private final NotificationSupport<T> support;
+
+        CachedNotificationSupport(Class<?> type, NotificationSupport<T> support) {
+            this.type = type;
+            this.support = support;
+        }
+    }
+    
+    // The support for the last class of value: a reader almost always
+    // returns values of the same class, so this skips the lookup
+    private CachedNotificationSupport<T> lastNotificationSupport;
+    
+    private NotificationSupport<T> notificationSupportFor(T newValue) {
+        CachedNotificationSupport<T> cached = lastNotificationSupport;
+        if (cached != null && cached.type == newValue.getClass()) {
+            return cached.support;
+        }
+        NotificationSupport<T> support = NotificationSupport.findNotificationSupportFor(newValue);
+        lastNotificationSupport = new CachedNotificationSupport<>(newValue.getClass(), support);
+        return support;
+    }
     
     /**
      * Notifies the PVReader of a new value.
@@ -238,34 +397,49 @@ public class PVReaderDirector<T> {
         // Don't even calculate if notification is in flight.
         // This makes pvManager automatically throttle back if the consumer
         // is slower than the producer.
-        if (notificationInFlight)
+        if (isNotificationThrottled()) {
+            if (instrumentation != null) {
+                instrumentation.scanSkipped();
+            }
             return;
+        }
         
         // Calculate new value
         T newValue = null;
+        NotificationSupport<T> notificationSupport = null;
         boolean calculationSucceeded = false;
+        long readStart = 0;
+        if (instrumentation != null) {
+            Instrumentation.startRead(instrumentation);
+            readStart = System.nanoTime();
+        }
         try {
             // Tries to calculate the value
             newValue = function.readValue();
             if (newValue != null) {
-                NotificationSupport.findNotificationSupportFor(newValue);
+                notificationSupport = notificationSupportFor(newValue);
             }
+            lastValueImmutable = notificationSupport == null || notificationSupport.isImmutable();
             calculationSucceeded = true;
         } catch (RuntimeException ex) {
             // Calculation failed
             exceptionCollector.writeValue(ex);
         } catch (Throwable ex) {
             log.log(Level.SEVERE, "Unrecoverable error during scanning", ex);
+        } finally {
+            if (instrumentation != null) {
+                instrumentation.scanCompleted(System.nanoTime() - readStart);
+                Instrumentation.endRead();
+            }
         }
         
         // Calculate new connection
         final boolean connected = connCollector.readValue();
         List<Exception> exceptions = exceptionCollector.readValue();
-        final Exception lastException;
-        if (exceptions.isEmpty()) {
-            lastException = null;
-        } else {
-            lastException = exceptions.get(exceptions.size() - 1);
+        // Kept until notified, so that it is not lost if the
+        // notification is replaced by the next one
+        if (!exceptions.isEmpty()) {
+            pendingException.set(exceptions.get(exceptions.size() - 1));
         }
         
         // TODO: if payload is immutable, the difference test should be done here
@@ -275,12 +449,16 @@ public class PVReaderDirector<T> {
         // The data will be shipped as part of the task,
         // which is properly synchronized by the executor
         final T finalValue = newValue;
+        final NotificationSupport<T> finalNotificationSupport = notificationSupport;
         final boolean finalCalculationSucceeded = calculationSucceeded;
-        notificationInFlight = true;
-        notificationExecutor.execute(new Runnable() {
+        final long submitted = instrumentation != null ? System.nanoTime() : 0;
+        Runnable notification = new Runnable() {
 
             @Override
             public void run() {
+                if (instrumentation != null) {
+                    instrumentation.notificationStarted(System.nanoTime() - submitted);
+                }
                 try {
                     PVReaderImpl<T> pv = pvRef.get();
                     // Proceed with notification only if PVReader was not garbage
@@ -296,6 +474,7 @@ public class PVReaderDirector<T> {
                         //    will run while one notification is running. This means
                         //    the next event is serialized after the end of this one.
                         pv.setConnected(connected);
+                        Exception lastException = pendingException.getAndSet(null);
                         if (lastException != null) {
                             pv.setLastException(lastException);
                         }
@@ -303,7 +482,7 @@ public class PVReaderDirector<T> {
                         // XXX Are we sure that we should skip notifications if values are null?
                         if (finalCalculationSucceeded && finalValue != null) {
                             Notification<T> notification =
-                                    NotificationSupport.notification(pv.getValue(), finalValue);
+                                    finalNotificationSupport.prepareNotification(pv.getValue(), finalValue);
                             // Remember to notify anyway if an exception need to be notified
                             if (notification.isNotificationNeeded()) {
                                 pv.setValue(notification.getNewValue());
@@ -318,13 +497,30 @@ public class PVReaderDirector<T> {
                         }
                     }
                 } finally {
-                    notificationInFlight = false;
+                    notificationInFlight.compareAndSet(this, null);
                 }
             }
-        });
+        };
+        notificationInFlight.set(notification);
+        if (latestWinsExecutor != null) {
+            latestWinsExecutor.execute(this, notification);
+        } else {
+            notificationExecutor.execute(notification);
+        }
     }
     
     void startScan(TimeDuration duration) {
+        if (eventDriven) {
+            scanPeriodNanos = duration.toNanosLong();
+            // So that the first scan is not delayed
+            lastScanNanos = System.nanoTime() - scanPeriodNanos;
+            scanning = true;
+            // First scan to notify the initial connection state
+            dirty.set(true);
+            scheduleScan(0);
+            return;
+        }
+        
         scanTaskHandle = scannerExecutor.scheduleWithFixedDelay(new Runnable() {
 
             @Override
@@ -342,6 +538,94 @@ public class PVReaderDirector<T> {
         }, 0, duration.toNanosLong(), TimeUnit.NANOSECONDS);
     }
     
+    /**
+     * Signals that one of the channels was updated. If event driven,
+     * an evaluation is scheduled, unless one is already pending.
+     * The evaluation is delayed so that two consecutive scans are
+     * at least the max rate apart.
+     */
+    void markDirty() {
+        if (eventDriven && dirty.compareAndSet(false, true)) {
+            long delay = lastScanNanos + scanPeriodNanos - System.nanoTime();
+            scheduleScan(Math.max(0, delay));
+        }
+    }
+    
+    private void scheduleScan(long delayNanos) {
+        if (scanning) {
+            scanTaskHandle = scannerExecutor.schedule(eventScanTask, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    private final Runnable eventScanTask = new Runnable() {
+
+        @Override
+        public void run() {
+            if (!scanning) {
+                return;
+            }
+            
+            // Only one scan at a time: if one is already running, the update
+            // stays pending and the running scan will reschedule
+            if (!scanRunning.compareAndSet(false, true)) {
+                return;
+            }
+            boolean scanned = false;
+            try {
+                scanned = scan();
+            } finally {
+                scanRunning.set(false);
+            }
+            
+            // An update, or the close, arrived during the scan: the scan
+            // scheduled for it may have found this one still running
+            if (scanning && !isActive()) {
+                scheduleScan(0);
+            } else if (scanned && dirty.get()) {
+                scheduleScan(Math.max(0, lastScanNanos + scanPeriodNanos - System.nanoTime()));
+            }
+        }
+        
+        private boolean scan() {
+            if (!isActive()) {
+                stopScan();
+                disconnect();
+                return false;
+            }
+            
+            // Nothing changed since the last scan (the update was
+            // already read by a scan scheduled for another one)
+            if (!dirty.get()) {
+                return false;
+            }
+            
+            // If paused, or the previous notification is still being
+            // processed, keep the update pending and retry after
+            // a scan period
+            if (isPaused() || isNotificationThrottled()) {
+                if (isNotificationThrottled() && instrumentation != null) {
+                    instrumentation.scanSkipped();
+                }
+                scheduleScan(scanPeriodNanos);
+                return false;
+            }
+            
+            // Too early after the previous scan: retry when the max rate allows
+            long delay = lastScanNanos + scanPeriodNanos - System.nanoTime();
+            if (delay > 0) {
+                scheduleScan(delay);
+                return false;
+            }
+            
+            // Clear the flag before reading, so that updates
+            // during the calculation will trigger another scan
+            lastScanNanos = System.nanoTime();
+            dirty.set(false);
+            notifyPv();
+            return true;
+        }
+    };
+    
     void timeout(TimeDuration timeout, final String timeoutMessage) {
         scannerExecutor.schedule(new Runnable() {
 
@@ -350,12 +634,25 @@ public class PVReaderDirector<T> {
                 PVReaderImpl<T> pv = pvRef.get();
                 if (pv != null && !pv.isSentFirsEvent()) {
                     exceptionCollector.writeValue(new TimeoutException(timeoutMessage));
+                    markDirty();
                 }
             }
         }, timeout.toNanosLong(), TimeUnit.NANOSECONDS);
     }
     
     void stopScan() {
+        if (eventDriven) {
+            if (!scanning) {
+                throw new IllegalStateException("Scan was never started");
+            }
+            scanning = false;
+            ScheduledFuture<?> handle = scanTaskHandle;
+            if (handle != null) {
+                handle.cancel(false);
+            }
+            return;
+        }
+        
         if (scanTaskHandle != null) {
             scanTaskHandle.cancel(false);
             scanTaskHandle = null;
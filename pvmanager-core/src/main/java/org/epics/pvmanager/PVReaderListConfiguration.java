@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.epics.pvmanager.expression.DesiredRateExpression;
+import org.epics.pvmanager.util.Executors;
+import org.epics.util.time.TimeDuration;
+
+/**
+ * An expression used to set the final parameters on how a list of
+ * pv expressions should be read, each by its own reader.
+ * <p>
+ * All the readers are created in one pass: the channels of all the readers
+ * are connected with a single request to the data source, and all the
+ * readers are scanned by a single periodic task. This makes the time to open
+ * the readers proportional to the number of distinct channels, and should
+ * be used when opening thousands of readers at the same time.
+ *
+ * @param <T> the type of the expressions
+ * @author carcassi
+ */
+public class PVReaderListConfiguration<T> extends CommonConfiguration {
+
+    @Override
+    public PVReaderListConfiguration<T> from(DataSource dataSource) {
+        super.from(dataSource);
+        return this;
+    }
+
+    @Override
+    public PVReaderListConfiguration<T> notifyOn(Executor onThread) {
+        super.notifyOn(onThread);
+        return this;
+    }
+
+    /**
+     * Sets a timeout for no values received, for each reader.
+     * <p>
+     * For more details, consult {@link PVReaderConfiguration#timeout(org.epics.util.time.TimeDuration, java.lang.String) }.
+     *
+     * @param timeout the duration of the timeout; can't be null
+     * @return this expression
+     */
+    @Override
+    public PVReaderListConfiguration<T> timeout(TimeDuration timeout) {
+        super.timeout(timeout);
+        return this;
+    }
+
+    /**
+     * Sets a timeout for no values received with the given message, for each reader.
+     * <p>
+     * For more details, consult {@link PVReaderConfiguration#timeout(org.epics.util.time.TimeDuration, java.lang.String) }.
+     *
+     * @param timeout the duration of the timeout; can't be null
+     * @param timeoutMessage the message for the reported timeout
+     * @return this expression
+     */
+    @Override
+    public PVReaderListConfiguration<T> timeout(TimeDuration timeout, String timeoutMessage) {
+        super.timeout(timeout, timeoutMessage);
+        return this;
+    }
+
+    private final List<DesiredRateExpression<T>> pvExpressions;
+    private List<PVReaderListener<T>> readListeners = new ArrayList<>();
+    private int scanPhases = 1;
+
+    PVReaderListConfiguration(List<DesiredRateExpression<T>> pvExpressions) {
+        this.pvExpressions = pvExpressions;
+    }
+
+    /**
+     * Adds a listener to all the readers, notified for any reader event
+     * (values, connection and errors).
+     * <p>
+     * Registering a listener here guarantees that no event is ever missed.
+     *
+     * @param listener the listener to register
+     * @return this expression
+     */
+    public PVReaderListConfiguration<T> readListener(PVReaderListener<? super T> listener) {
+        @SuppressWarnings("unchecked")
+        PVReaderListener<T> convertedListener = (PVReaderListener<T>) listener;
+        readListeners.add(convertedListener);
+        return this;
+    }
+
+    /**
+     * Spreads the scans of the readers over the period, dividing them in
+     * the given number of phases.
+     * <p>
+     * For more details, consult {@link PVReaderConfiguration#sharedScan(int) }.
+     *
+     * @param phases the number of phases in which to divide the readers; must be at least 1
+     * @return this expression
+     */
+    public PVReaderListConfiguration<T> scanPhases(int phases) {
+        if (phases < 1) {
+            throw new IllegalArgumentException("The number of phases must be at least 1 (was " + phases + ")");
+        }
+        this.scanPhases = phases;
+        return this;
+    }
+
+    /**
+     * Sets the rate of scan of the expressions and creates the actual
+     * {@link PVReader} objects, one for each expression, in the same order.
+     *
+     * @param rate the minimum time distance (i.e. the maximum rate) between two different notifications
+     * @return the PVReaders
+     */
+    public List<PVReader<T>> maxRate(TimeDuration rate) {
+        if (rate.getSec() < 0 && rate.getNanoSec() < 5000000) {
+            throw new IllegalArgumentException("Current implementation limits the rate to >5ms or <200Hz (requested " + rate + "s)");
+        }
+
+        checkDataSourceAndThreadSwitch();
+        if (timeout != null && timeoutMessage == null) {
+            timeoutMessage = "Read timeout";
+        }
+
+        // Create all PVReaders, collecting the channels to connect
+        List<PVReader<T>> pvs = new ArrayList<>(pvExpressions.size());
+        List<PVReaderDirector<T>> directors = new ArrayList<>(pvExpressions.size());
+        List<ChannelReadRecipe> channelRecipes = new ArrayList<>();
+        for (DesiredRateExpression<T> pvExpression : pvExpressions) {
+            PVReaderImpl<T> pv = new PVReaderImpl<T>(pvExpression.getName(), Executors.localThread() == notificationExecutor);
+            for (PVReaderListener<T> pVReaderListener : readListeners) {
+                pv.addPVReaderListener(pVReaderListener);
+            }
+            PVReaderDirector<T> director = new PVReaderDirector<T>(pv, pvExpression.getFunction(), PVManager.getReadScannerExecutorService(),
+                    notificationExecutor, dataSource, null);
+            pv.setDirector(director);
+            if (timeout != null) {
+                director.timeout(timeout, timeoutMessage);
+            }
+            channelRecipes.addAll(director.prepareExpression(pvExpression).getChannelReadRecipes());
+            pvs.add(pv);
+            directors.add(director);
+        }
+
+        // Connect all channels at once: the data source will subscribe
+        // each channel only once for all the readers
+        if (!channelRecipes.isEmpty()) {
+            try {
+                dataSource.connectRead(new ReadRecipe(channelRecipes));
+            } catch (Exception ex) {
+                for (ChannelReadRecipe channelRecipe : channelRecipes) {
+                    channelRecipe.getReadSubscription().getExceptionWriteFunction().writeValue(ex);
+                }
+            }
+        }
+
+        new ScanGroup(PVManager.getReadScannerExecutorService(), rate, scanPhases).addAll(directors);
+
+        return pvs;
+    }
+}
@@ -68,6 +68,7 @@ public class PVWriterConfiguration<T> extends CommonConfiguration {
     private WriteExpression<T> writeExpression;
     private ExceptionHandler exceptionHandler;
     private List<PVWriterListener<T>> writeListeners = new ArrayList<>();
+    private boolean coalesceWrites;
 
     PVWriterConfiguration(WriteExpression<T> writeExpression) {
         this.writeExpression = writeExpression;
@@ -104,6 +105,24 @@ public class PVWriterConfiguration<T> extends CommonConfiguration {
         return this;
     }
 
+    /**
+     * Coalesces the asynchronous writes: while a write is in progress,
+     * a new value replaces the one waiting to be written, and only
+     * the latest value is sent when the previous write completes.
+     * <p>
+     * This is useful when values are written faster than the data source
+     * can process them, for example by a slider bound to a setpoint.
+     * The write notifications are still sent for the values that were
+     * replaced, with the result of the write that replaced them.
+     * Synchronous writes are not affected.
+     *
+     * @return this
+     */
+    public PVWriterConfiguration<T> coalesceWrites() {
+        this.coalesceWrites = true;
+        return this;
+    }
+
     private PVWriter<T> create(boolean syncWrite) {
         checkDataSourceAndThreadSwitch();
 
@@ -120,7 +139,7 @@ public class PVWriterConfiguration<T> extends CommonConfiguration {
         if (timeoutMessage == null)
             timeoutMessage = "Write timeout";
         PVWriterDirector<T> writerDirector = new PVWriterDirector<T>(pvWriter, writeFunction, dataSource, PVManager.getAsyncWriteExecutor(),
-                notificationExecutor, PVManager.getReadScannerExecutorService(), timeout, timeoutMessage, exceptionHandler);
+                notificationExecutor, PVManager.getReadScannerExecutorService(), timeout, timeoutMessage, exceptionHandler, coalesceWrites);
         writerDirector.connectExpression(writeExpression);
         writerDirector.startScan(TimeDuration.ofMillis(100));
         pvWriter.setWriteDirector(writerDirector);
@@ -64,6 +64,15 @@ public class PVWriterDirector<T> {
     private final TimeDuration timeout;
     private final String timeoutMessage;
     
+    // Required to coalesce writes
+    
+    private final boolean coalesceWrites;
+    private final Object pendingLock = new Object();
+    /** Guarded by pendingLock: whether an asynchronous write was submitted and not completed */
+    private boolean writeInFlight;
+    /** Guarded by pendingLock: the latest value waiting for the write in flight */
+    private WriteTask pendingWrite;
+    
     // Required to connect/disconnect expressions
     
     private final Map<WriteExpression<?>, WriteRecipe> recipes =
@@ -81,7 +90,7 @@ public class PVWriterDirector<T> {
     PVWriterDirector(PVWriterImpl<T> pvWriter, WriteFunction<T> writeFunction, DataSource dataSource,
             ScheduledExecutorService writeExecutor, Executor notificationExecutor,
             ScheduledExecutorService scannerExecutor, TimeDuration timeout, String timeoutMessage,
-            ExceptionHandler exceptionHandler) {
+            ExceptionHandler exceptionHandler, boolean coalesceWrites) {
         this.pvRef = new WeakReference<>(pvWriter);
         this.writeFunction = writeFunction;
         this.dataSource = dataSource;
@@ -90,6 +99,7 @@ public class PVWriterDirector<T> {
         this.scannerExecutor = scannerExecutor;
         this.timeout = timeout;
         this.timeoutMessage = timeoutMessage;
+        this.coalesceWrites = coalesceWrites;
         if (exceptionHandler == null) {
             exceptionCollector = new QueueCollector<>(1);
         } else {
@@ -178,7 +188,10 @@ public class PVWriterDirector<T> {
             for (WriteRecipe writeRecipe : recipes.values()) {
                 channelRecipe.addAll(writeRecipe.getChannelWriteRecipes());
             }
-            currentWriteRecipe = new WriteRecipe(channelRecipe);
+            WriteRecipe newWriteRecipe = new WriteRecipe(channelRecipe);
+            // Calculate the write order now, and not at each write
+            newWriteRecipe.getWritePlan();
+            currentWriteRecipe = newWriteRecipe;
         }
     }
     
@@ -196,9 +209,40 @@ public class PVWriterDirector<T> {
     
     void write(final T newValue, final PVWriterImpl<T> pvWriter) {
         WriteTask newTask = new WriteTask(pvWriter, newValue);
-        writeExecutor.execute(newTask);
+        if (coalesceWrites) {
+            synchronized(pendingLock) {
+                if (writeInFlight) {
+                    // The new value replaces the one waiting, if any
+                    if (pendingWrite != null) {
+                        newTask.supersede(pendingWrite);
+                    }
+                    pendingWrite = newTask;
+                    return;
+                }
+                writeInFlight = true;
+            }
+        }
+        submit(newTask);
+    }
+    
+    private void submit(WriteTask task) {
+        writeExecutor.execute(task);
         if (timeout != null) {
-            writeExecutor.schedule(newTask.timeout(), timeout.toNanosLong(), TimeUnit.NANOSECONDS);
+            writeExecutor.schedule(task.timeout(), timeout.toNanosLong(), TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    private void coalescedWriteCompleted() {
+        WriteTask nextTask;
+        synchronized(pendingLock) {
+            nextTask = pendingWrite;
+            pendingWrite = null;
+            if (nextTask == null) {
+                writeInFlight = false;
+            }
+        }
+        if (nextTask != null) {
+            submit(nextTask);
         }
     }
     
@@ -206,19 +250,58 @@ public class PVWriterDirector<T> {
         final PVWriterImpl<T> pvWriter;
         final T newValue;
         private AtomicBoolean done = new AtomicBoolean();
+        private AtomicBoolean completed = new AtomicBoolean();
+        /** Guarded by pendingLock until submitted: the number of writes replaced by this one */
+        private int supersededCount;
+        private AtomicBoolean supersededNotified = new AtomicBoolean();
 
         public WriteTask(PVWriterImpl<T> pvWriter, T newValue) {
             this.pvWriter = pvWriter;
             this.newValue = newValue;
         }
         
+        private void supersede(WriteTask task) {
+            supersededCount += task.supersededCount + 1;
+        }
+        
+        /**
+         * Claims the notification of the writes replaced by this one,
+         * so that they are notified only once.
+         * 
+         * @return the number of writes to notify
+         */
+        private int claimSuperseded() {
+            if (supersededNotified.compareAndSet(false, true)) {
+                return supersededCount;
+            }
+            return 0;
+        }
+        
         private Runnable timeout() {
             return new Runnable() {
 
                 @Override
                 public void run() {
                     if (!done.get()) {
-                        exceptionCollector.writeValue(new TimeoutException(timeoutMessage));
+                        final TimeoutException ex = new TimeoutException(timeoutMessage);
+                        exceptionCollector.writeValue(ex);
+                        if (coalesceWrites) {
+                            // The callback may never come: the writes replaced
+                            // by this one fail, and the next write can proceed
+                            final int nSuperseded = claimSuperseded();
+                            if (nSuperseded != 0) {
+                                notificationExecutor.execute(new Runnable() {
+
+                                    @Override
+                                    public void run() {
+                                        for (int i = 0; i < nSuperseded; i++) {
+                                            pvWriter.fireWriteFailure(ex);
+                                        }
+                                    }
+                                });
+                            }
+                            writeCompleted();
+                        }
                     }
                 }
             };
@@ -226,40 +309,68 @@ public class PVWriterDirector<T> {
 
         @Override
         public void run() {
-            synchronized(lock) {
-                writeFunction.writeValue(newValue);
-                dataSource.write(currentWriteRecipe, new Runnable() {
+            try {
+                synchronized(lock) {
+                    writeFunction.writeValue(newValue);
+                    dataSource.write(currentWriteRecipe, new Runnable() {
 
-                    @Override
-                    public void run() {
-                        done.set(true);
-                        notificationExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            writeSucceeded();
+                        }
+                    }, new ExceptionHandler() {
 
-                            @Override
-                            public void run() {
-                                pvWriter.fireWriteSuccess();
-                            }
-                        });
+                        @Override
+                        public void handleException(final Exception ex) {
+                            writeFailed(ex);
+                        }
+
+                    });
+                }
+            } catch (RuntimeException ex) {
+                writeFailed(ex);
+            }
+        }
+        
+        private void writeSucceeded() {
+            done.set(true);
+            final int nSuperseded = claimSuperseded();
+            notificationExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < nSuperseded; i++) {
+                        pvWriter.fireWriteSuccess();
                     }
-                }, new ExceptionHandler() {
+                    pvWriter.fireWriteSuccess();
+                }
+            });
+            writeCompleted();
+        }
+        
+        private void writeFailed(final Exception ex) {
+            boolean previousDone = done.getAndSet(true);
+            if (!previousDone) {
+                final int nSuperseded = claimSuperseded();
+                notificationExecutor.execute(new Runnable() {
 
                     @Override
-                    public void handleException(final Exception ex) {
-                        boolean previousDone = done.getAndSet(true);
-                        if (!previousDone) {
-                            notificationExecutor.execute(new Runnable() {
-
-                                @Override
-                                public void run() {
-                                    pvWriter.fireWriteFailure(ex);
-                                }
-                            });
-                        } else {
-                            pvWriter.setLastWriteException(ex);
+                    public void run() {
+                        for (int i = 0; i < nSuperseded; i++) {
+                            pvWriter.fireWriteFailure(ex);
                         }
+                        pvWriter.fireWriteFailure(ex);
                     }
-                    
                 });
+            } else {
+                pvWriter.setLastWriteException(ex);
+            }
+            writeCompleted();
+        }
+        
+        private void writeCompleted() {
+            if (coalesceWrites && completed.compareAndSet(false, true)) {
+                coalescedWriteCompleted();
             }
         }
     
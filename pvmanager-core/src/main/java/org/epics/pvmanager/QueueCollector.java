@@ -12,17 +12,17 @@ import java.util.List;
  * <p>
  * Always returns new value as every read clears the cache.
  * The values are returned oldest value first. When maxSize is reached,
- * the oldest values are discarded.
+ * the oldest values are discarded. Writing a value never locks and costs
+ * the same whether or not the queue is full. The list returned is
+ * reused by the next read.
  *
  * @param <T> the type contained in the queue
  * @author carcassi
  */
 public class QueueCollector<T> implements Collector<T, List<T>> {
     
-    private final Object lock = new Object();
-    private List<T> readBuffer;
-    private List<T> writeBuffer;
-    private int maxSize;
+    private final RingBuffer<T> buffer;
+    private final List<T> readBuffer = new ArrayList<>();
 
     /**
      * New queue collector with the given max size for the queue.
@@ -30,30 +30,19 @@ public class QueueCollector<T> implements Collector<T, List<T>> {
      * @param maxSize maximum number of elements in the queue
      */
     public QueueCollector(int maxSize) {
-        synchronized(lock) {
-            this.maxSize = maxSize;
-            readBuffer = new ArrayList<>();
-            writeBuffer = new ArrayList<>();
-        }
+        buffer = new RingBuffer<>(maxSize);
     }
 
     @Override
     public void writeValue(T newValue) {
-        synchronized(lock) {
-            writeBuffer.add(newValue);
-            if (writeBuffer.size() > maxSize) {
-                writeBuffer.remove(0);
-            }
-        }
+        buffer.write(newValue);
     }
 
     @Override
     public List<T> readValue() {
-        synchronized(lock) {
-            List<T> data = writeBuffer;
-            writeBuffer = readBuffer;
-            writeBuffer.clear();
-            readBuffer = data;
+        int dropped = buffer.readTo(readBuffer, true);
+        if (dropped != 0) {
+            Instrumentation.reportValuesDropped(dropped);
         }
         return readBuffer;
     }
@@ -67,12 +56,7 @@ public class QueueCollector<T> implements Collector<T, List<T>> {
      * @param maxSize the maximum number of elements in the queue
      */
     public void setMaxSize(int maxSize) {
-        synchronized(lock) {
-            this.maxSize = maxSize;
-            while (writeBuffer.size() > maxSize) {
-                writeBuffer.remove(0);
-            }
-        }
+        buffer.setMaxSize(maxSize);
     }
 
     /**
@@ -81,9 +65,7 @@ public class QueueCollector<T> implements Collector<T, List<T>> {
      * @return the maximum number of elements in the queue
      */
     public int getMaxSize() {
-        synchronized(lock) {
-            return maxSize;
-        }
+        return buffer.getMaxSize();
     }
     
 }
@@ -59,4 +59,31 @@ public class ReadRecipeBuilder {
         }
         return new ReadRecipe(recipes);
     }
+
+    /**
+     * Builds the recipe so that every value, connection or exception
+     * written through the subscriptions also runs the given callback.
+     * <p>
+     * This is used by readers that are notified by events instead of
+     * scanning periodically.
+     * 
+     * @param exceptionWriteFunction where exception should be routed
+     * @param connectionCollector where connection status should be routed
+     * @param updateCallback called after each update of any subscription
+     * @return a new recipe
+     */
+    public ReadRecipe build(WriteFunction<Exception> exceptionWriteFunction, ConnectionCollector connectionCollector, Runnable updateCallback) {
+        WriteFunction<Exception> notifyingExceptionWriteFunction = new NotifyingWriteFunction<>(exceptionWriteFunction, updateCallback);
+        Set<ChannelReadRecipe> recipes = new HashSet<>();
+        for (Map.Entry<String, Collection<ValueCache<?>>> entry : channelCaches.entrySet()) {
+            String channelName = entry.getKey();
+            Collection<ValueCache<?>> valueCaches = entry.getValue();
+            for (ValueCache<?> valueCache : valueCaches) {
+                WriteFunction<Boolean> connectionWriteFunction = new NotifyingWriteFunction<>(connectionCollector.addChannel(channelName), updateCallback);
+                recipes.add(new ChannelReadRecipe(channelName, 
+                       new ChannelHandlerReadSubscription(valueCache, notifyingExceptionWriteFunction, connectionWriteFunction, updateCallback)));
+           }
+        }
+        return new ReadRecipe(recipes);
+    }
 }
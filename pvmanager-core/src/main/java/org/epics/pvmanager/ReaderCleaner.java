@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Closes the readers that were garbage collected without being closed.
+ * <p>
+ * Each reader is tracked by a weak reference registered to a queue:
+ * a single thread waits on the queue, and disconnects the channels of a reader
+ * as soon as the garbage collector clears it, instead of waiting for the
+ * next scan of the reader. The readers that are closed properly are
+ * removed from the tracking, so that only the leaked ones are reported.
+ *
+ * @author carcassi
+ */
+class ReaderCleaner {
+
+    private static final Logger log = Logger.getLogger(ReaderCleaner.class.getName());
+
+    /**
+     * The reference to a reader, which keeps what is needed to clean up
+     * after it.
+     */
+    private static class ReaderReference<T> extends WeakReference<PVReaderImpl<T>> {
+
+        private final PVReaderDirector<T> director;
+        private final String name;
+        private final Exception creationStack;
+
+        ReaderReference(PVReaderImpl<T> pv, PVReaderDirector<T> director, Exception creationStack) {
+            super(pv, queue);
+            this.director = director;
+            this.name = pv.getName();
+            this.creationStack = creationStack;
+        }
+    }
+
+    private static final ReferenceQueue<PVReaderImpl<?>> queue = new ReferenceQueue<>();
+    // The references of the readers not closed yet: they need to be
+    // reachable, or they would not be enqueued
+    private static final Set<Reference<?>> references = Collections.newSetFromMap(new ConcurrentHashMap<Reference<?>, Boolean>());
+    private static final AtomicLong leakedCount = new AtomicLong();
+    private static volatile boolean recordCreationStack = false;
+
+    static {
+        Thread cleanerThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        clean(queue.remove());
+                    } catch (InterruptedException ex) {
+                        // Daemon thread: simply keep waiting
+                    } catch (RuntimeException ex) {
+                        log.log(Level.WARNING, "Failed to close a garbage collected reader", ex);
+                    }
+                }
+            }
+        }, "PVMgr Reader Cleaner");
+        cleanerThread.setDaemon(true);
+        cleanerThread.start();
+    }
+
+    private ReaderCleaner() {
+        // Prevent instances
+    }
+
+    /**
+     * Starts tracking the reader, and returns the weak reference that the director
+     * must use to access it.
+     *
+     * @param <T> the type of the reader
+     * @param pv the reader; can be null
+     * @param director the director of the reader
+     * @return the reference to the reader
+     */
+    static <T> WeakReference<PVReaderImpl<T>> register(PVReaderImpl<T> pv, PVReaderDirector<T> director) {
+        if (pv == null) {
+            return new WeakReference<>(null);
+        }
+        Exception creationStack = null;
+        if (recordCreationStack) {
+            creationStack = new Exception("PVReader '" + pv.getName() + "' created here");
+        }
+        ReaderReference<T> reference = new ReaderReference<>(pv, director, creationStack);
+        references.add(reference);
+        return reference;
+    }
+
+    /**
+     * Stops tracking the reader, since it was closed properly.
+     *
+     * @param reference the reference returned at registration
+     */
+    static void unregister(Reference<?> reference) {
+        references.remove(reference);
+    }
+
+    private static void clean(Reference<?> reference) {
+        // If the reference was already removed, the reader was closed
+        if (!references.remove(reference)) {
+            return;
+        }
+
+        ReaderReference<?> readerReference = (ReaderReference<?>) reference;
+        leakedCount.incrementAndGet();
+        if (readerReference.creationStack != null) {
+            log.log(Level.WARNING, "PVReader '" + readerReference.name + "' wasn't properly closed and it was garbage collected. Closing the associated connections...",
+                    readerReference.creationStack);
+        } else {
+            log.log(Level.WARNING, "PVReader '" + readerReference.name + "' wasn't properly closed and it was garbage collected. Closing the associated connections... "
+                    + "(use PVManager.setRecordReaderCreationStack(true) to find where it was created)");
+        }
+        readerReference.director.readerCollected();
+    }
+
+    /**
+     * The number of readers that were garbage collected without being closed.
+     *
+     * @return the number of leaked readers
+     */
+    static long getLeakedCount() {
+        return leakedCount.get();
+    }
+
+    static void setRecordCreationStack(boolean recordCreationStack) {
+        ReaderCleaner.recordCreationStack = recordCreationStack;
+    }
+
+    static boolean isRecordCreationStack() {
+        return recordCreationStack;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+/**
+ * Receives the measurements for a single reader.
+ *
+ * @author carcassi
+ * @see Instrumentation
+ */
+public interface ReaderInstrumentation {
+
+    /**
+     * A scan calculated a new value. Called on the scanning thread.
+     *
+     * @param readNanos the time taken by the function of the reader
+     */
+    public void scanCompleted(long readNanos);
+
+    /**
+     * A scan was skipped because the previous notification was still
+     * being processed. Called on the scanning thread.
+     */
+    public void scanSkipped();
+
+    /**
+     * A notification started. Called on the notification thread.
+     *
+     * @param queueNanos the time between the submission to the
+     * notification executor and the start of the notification
+     */
+    public void notificationStarted(long queueNanos);
+
+    /**
+     * A collector of the reader discarded values that were never read,
+     * because its queue was full. Called on the scanning thread.
+     *
+     * @param count the number of values discarded
+     */
+    public void valuesDropped(int count);
+
+    /**
+     * The reader was closed, or garbage collected, and its channels
+     * disconnected. No more measurements will be reported.
+     */
+    public void readerClosed();
+}
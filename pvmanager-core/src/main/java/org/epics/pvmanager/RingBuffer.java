@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded buffer with many writers and one reader, used by the collectors
+ * that keep more than one value.
+ * <p>
+ * Writers never lock: each value is given a sequence number and is placed
+ * in the slot for that sequence, overwriting the value that was there
+ * a full lap before. When more than maxSize values are in the buffer,
+ * the oldest are simply skipped by the reader, so that an overflow costs
+ * the same as any other write.
+ * <p>
+ * Reads are done under a lock, since they are not on the path of the
+ * data sources. The values are copied in a list provided by the caller,
+ * which is typically reused at each read. Changing the maximum size
+ * beyond the capacity of the buffer is the only operation that replaces
+ * the buffer: writers wait during the copy.
+ *
+ * @param <T> the type of the values in the buffer
+ * @author carcassi
+ */
+final class RingBuffer<T> {
+
+    /**
+     * A value with its sequence number.
+     */
+    private static class Node<T> {
+
+        private final long sequence;
+        private final T value;
+
+        Node(long sequence, T value) {
+            this.sequence = sequence;
+            this.value = value;
+        }
+    }
+
+    private static final long CLOSED = 1L << 62;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * The slots with their write sequence. A ring is closed when it
+     * is replaced by a bigger one.
+     */
+    private static class Ring<T> {
+
+        private final AtomicReferenceArray<Node<T>> slots;
+        private final int mask;
+        private final AtomicLong tail;
+
+        Ring(int capacity, long tail) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+            this.tail = new AtomicLong(tail);
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        boolean offer(T value) {
+            long sequence = tail.getAndIncrement();
+            if (sequence >= CLOSED) {
+                return false;
+            }
+            int index = (int) sequence & mask;
+            Node<T> node = new Node<>(sequence, value);
+            while (true) {
+                Node<T> current = slots.get(index);
+                // A writer a lap ahead already took the slot: this value
+                // is already one of the discarded ones
+                if (current != null && current.sequence > sequence) {
+                    return true;
+                }
+                if (slots.compareAndSet(index, current, node)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Copies the values with sequence from start (included) to end
+         * (excluded). Stops at the first value that was not written yet,
+         * and returns its sequence.
+         */
+        long drainTo(List<? super T> out, long start, long end) {
+            for (long sequence = start; sequence < end; sequence++) {
+                Node<T> node = slots.get((int) sequence & mask);
+                if (node == null || node.sequence < sequence) {
+                    return sequence;
+                }
+                if (node.sequence == sequence) {
+                    out.add(node.value);
+                }
+            }
+            return end;
+        }
+
+        /**
+         * Copies the values with sequence from start (included) to end
+         * (excluded), waiting for the values that are still being written.
+         */
+        void awaitTo(List<? super T> out, long start, long end) {
+            for (long sequence = start; sequence < end; sequence++) {
+                Node<T> node = slots.get((int) sequence & mask);
+                while (node == null || node.sequence < sequence) {
+                    Thread.yield();
+                    node = slots.get((int) sequence & mask);
+                }
+                if (node.sequence == sequence) {
+                    out.add(node.value);
+                }
+            }
+        }
+    }
+
+    private final Object lock = new Object();
+    private volatile Ring<T> ring;
+    private volatile int maxSize;
+    // Guarded by lock: the first sequence that can still be read
+    private long head;
+
+    /**
+     * A new buffer that keeps up to maxSize values.
+     *
+     * @param maxSize the maximum number of values
+     */
+    RingBuffer(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Max size must be non negative (was " + maxSize + ")");
+        }
+        this.maxSize = maxSize;
+        this.ring = new Ring<>(capacityFor(maxSize), 0);
+    }
+
+    private static int capacityFor(int maxSize) {
+        if (maxSize <= 1) {
+            return 1;
+        }
+        if (maxSize >= MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return Integer.highestOneBit(maxSize - 1) << 1;
+    }
+
+    /**
+     * Adds a value, discarding the oldest if the buffer is full.
+     *
+     * @param value the new value
+     */
+    void write(T value) {
+        while (!ring.offer(value)) {
+            // The ring is being replaced
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Copies the values in the buffer to the given list, oldest first.
+     * The list is cleared first.
+     *
+     * @param out the list to fill
+     * @param consume whether the values are removed from the buffer
+     * @return if consuming, the number of values that were discarded
+     * since the last read without being read
+     */
+    int readTo(List<? super T> out, boolean consume) {
+        synchronized (lock) {
+            while (true) {
+                out.clear();
+                Ring<T> current = ring;
+                long end = current.tail.get();
+                long start = Math.max(head, end - Math.min(maxSize, current.capacity()));
+                long next = current.drainTo(out, start, end);
+                if (consume) {
+                    long dropped = next - head - out.size();
+                    head = next;
+                    return (int) Math.min(dropped, Integer.MAX_VALUE);
+                }
+                // If the writers lapped the ring during the copy, some values
+                // were skipped and the ones copied are no longer the latest:
+                // copy again
+                if (next - start == out.size()) {
+                    head = start;
+                    return 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes the maximum number of values. If the buffer has more values,
+     * the oldest are discarded.
+     *
+     * @param maxSize the new maximum number of values
+     */
+    void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Max size must be non negative (was " + maxSize + ")");
+        }
+        synchronized (lock) {
+            Ring<T> current = ring;
+            if (maxSize <= current.capacity()) {
+                head = Math.max(head, current.tail.get() - maxSize);
+                this.maxSize = maxSize;
+                return;
+            }
+
+            // Close the current ring, so that writers wait for the new one,
+            // and move the remaining values
+            long end = current.tail.getAndAdd(CLOSED);
+            long start = Math.max(head, end - Math.min(this.maxSize, current.capacity()));
+            List<T> values = new ArrayList<>((int) (end - start));
+            current.awaitTo(values, start, end);
+            Ring<T> newRing = new Ring<>(capacityFor(maxSize), values.size());
+            for (int i = 0; i < values.size(); i++) {
+                newRing.slots.set(i, new Node<>(i, values.get(i)));
+            }
+            head = 0;
+            this.maxSize = maxSize;
+            ring = newRing;
+        }
+    }
+
+    /**
+     * The maximum number of values in the buffer.
+     *
+     * @return the maximum number of values
+     */
+    int getMaxSize() {
+        return maxSize;
+    }
+
+}
@@ -0,0 +1,272 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.epics.util.time.TimeDuration;
+
+/**
+ * A set of readers that are scanned by a single periodic task.
+ * <p>
+ * The readers are divided in the given number of phases, and the period
+ * is divided in as many ticks: at each tick, the task scans the readers
+ * of one phase, one after the other. Each reader is therefore scanned once
+ * per period, but the readers of different phases are scanned at different
+ * times: with one phase, all the readers are scanned together; with more phases,
+ * the scans (and the notifications they generate) are spread over the period.
+ * <p>
+ * The readers that were closed or garbage collected are removed
+ * from the group and disconnected. The task is started when the first
+ * reader is added, and stopped when the last one is removed.
+ *
+ * @author carcassi
+ */
+class ScanGroup {
+
+    private static final Logger log = Logger.getLogger(ScanGroup.class.getName());
+
+    /**
+     * Identifies the groups shared by the readers with the same parameters.
+     */
+    private static class SharedGroupKey {
+
+        private final ScheduledExecutorService scannerExecutor;
+        private final long periodNanos;
+        private final Executor notificationExecutor;
+        private final int nPhases;
+
+        SharedGroupKey(ScheduledExecutorService scannerExecutor, long periodNanos, Executor notificationExecutor, int nPhases) {
+            this.scannerExecutor = scannerExecutor;
+            this.periodNanos = periodNanos;
+            this.notificationExecutor = notificationExecutor;
+            this.nPhases = nPhases;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 29 * hash + Objects.hashCode(this.scannerExecutor);
+            hash = 29 * hash + (int) (this.periodNanos ^ (this.periodNanos >>> 32));
+            hash = 29 * hash + Objects.hashCode(this.notificationExecutor);
+            hash = 29 * hash + this.nPhases;
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof SharedGroupKey)) {
+                return false;
+            }
+            final SharedGroupKey other = (SharedGroupKey) obj;
+            return scannerExecutor == other.scannerExecutor && periodNanos == other.periodNanos
+                    && notificationExecutor == other.notificationExecutor && nPhases == other.nPhases;
+        }
+    }
+
+    // A group is removed when its scan task is stopped, so that the map
+    // does not keep the executors of the readers that were all closed.
+    // Locked after the lock of the group
+    private static final Map<SharedGroupKey, ScanGroup> sharedGroups = new HashMap<>();
+
+    /**
+     * The group for all the readers with the same scan executor, rate,
+     * notification executor and number of phases.
+     *
+     * @param scannerExecutor the executor for the scan task
+     * @param period the time between two scans of the same reader
+     * @param notificationExecutor the notification executor of the readers
+     * @param nPhases the number of phases in which the readers are divided
+     * @return the shared group
+     */
+    static ScanGroup sharedGroup(ScheduledExecutorService scannerExecutor, TimeDuration period,
+            Executor notificationExecutor, int nPhases) {
+        SharedGroupKey key = new SharedGroupKey(scannerExecutor, period.toNanosLong(), notificationExecutor, nPhases);
+        synchronized (sharedGroups) {
+            ScanGroup group = sharedGroups.get(key);
+            if (group == null) {
+                group = new ScanGroup(scannerExecutor, period, nPhases, key);
+                sharedGroups.put(key, group);
+            }
+            return group;
+        }
+    }
+
+    private final ScheduledExecutorService scannerExecutor;
+    private final SharedGroupKey sharedKey;
+    private final long tickNanos;
+    private final List<List<PVReaderDirector<?>>> phases;
+    private final Object lock = new Object();
+    // Guarded by lock
+    private ScheduledFuture<?> scanTaskHandle;
+    private int nextPhaseToFill;
+    // Only accessed by the scan task
+    private int nextPhaseToScan;
+
+    private final Runnable scanTask = new Runnable() {
+
+        @Override
+        public void run() {
+            scan();
+        }
+    };
+
+    /**
+     * Creates a new group that scans all the readers together at the given period.
+     *
+     * @param scannerExecutor the executor for the scan task
+     * @param period the time between two scans
+     */
+    ScanGroup(ScheduledExecutorService scannerExecutor, TimeDuration period) {
+        this(scannerExecutor, period, 1);
+    }
+
+    /**
+     * Creates a new group that scans each reader at the given period,
+     * spreading the readers over the given number of phases.
+     *
+     * @param scannerExecutor the executor for the scan task
+     * @param period the time between two scans of the same reader
+     * @param nPhases the number of phases in which the readers are divided
+     */
+    ScanGroup(ScheduledExecutorService scannerExecutor, TimeDuration period, int nPhases) {
+        this(scannerExecutor, period, nPhases, null);
+    }
+
+    private ScanGroup(ScheduledExecutorService scannerExecutor, TimeDuration period, int nPhases, SharedGroupKey sharedKey) {
+        if (nPhases < 1) {
+            throw new IllegalArgumentException("The number of phases must be at least 1 (was " + nPhases + ")");
+        }
+        this.scannerExecutor = scannerExecutor;
+        this.sharedKey = sharedKey;
+        this.tickNanos = Math.max(1, period.toNanosLong() / nPhases);
+        phases = new ArrayList<>(nPhases);
+        for (int i = 0; i < nPhases; i++) {
+            phases.add(new CopyOnWriteArrayList<PVReaderDirector<?>>());
+        }
+    }
+
+    /**
+     * Adds a reader to the group. The reader is scanned starting
+     * from the next scan of its phase.
+     *
+     * @param director the director of the reader to add
+     */
+    void add(PVReaderDirector<?> director) {
+        addAll(Collections.singletonList(director));
+    }
+
+    /**
+     * Adds the readers to the group. The readers are assigned to the phases
+     * in turn, and are scanned starting from the next scan of their phase.
+     *
+     * @param newDirectors the directors of the readers to add
+     */
+    void addAll(Collection<? extends PVReaderDirector<?>> newDirectors) {
+        synchronized (lock) {
+            // A single copy of the array of each phase for all the readers
+            List<List<PVReaderDirector<?>>> newPhases = new ArrayList<>(phases.size());
+            for (int i = 0; i < phases.size(); i++) {
+                newPhases.add(new ArrayList<PVReaderDirector<?>>());
+            }
+            for (PVReaderDirector<?> director : newDirectors) {
+                newPhases.get(nextPhaseToFill).add(director);
+                nextPhaseToFill = (nextPhaseToFill + 1) % phases.size();
+            }
+            for (int i = 0; i < phases.size(); i++) {
+                if (!newPhases.get(i).isEmpty()) {
+                    phases.get(i).addAll(newPhases.get(i));
+                }
+            }
+            if (scanTaskHandle == null && size() != 0) {
+                scanTaskHandle = scannerExecutor.scheduleWithFixedDelay(scanTask, 0, tickNanos, TimeUnit.NANOSECONDS);
+                if (sharedKey != null) {
+                    synchronized (sharedGroups) {
+                        // The group may have been removed after it was
+                        // returned by sharedGroup and before the readers were added
+                        if (!sharedGroups.containsKey(sharedKey)) {
+                            sharedGroups.put(sharedKey, this);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The number of readers in the group.
+     *
+     * @return the number of readers
+     */
+    int size() {
+        int size = 0;
+        for (List<PVReaderDirector<?>> phase : phases) {
+            size += phase.size();
+        }
+        return size;
+    }
+
+    private void scan() {
+        List<PVReaderDirector<?>> directors = phases.get(nextPhaseToScan);
+        nextPhaseToScan = (nextPhaseToScan + 1) % phases.size();
+        List<PVReaderDirector<?>> inactive = null;
+        for (PVReaderDirector<?> director : directors) {
+            try {
+                if (director.isActive()) {
+                    // If paused, simply skip without stopping the scan
+                    if (!director.isPaused()) {
+                        director.notifyPv();
+                    }
+                } else {
+                    if (inactive == null) {
+                        inactive = new ArrayList<>();
+                    }
+                    inactive.add(director);
+                }
+            } catch (RuntimeException ex) {
+                // The other readers in the group need to be scanned anyway
+                log.log(Level.WARNING, "Scan of reader failed", ex);
+            }
+        }
+
+        if (inactive != null) {
+            // Removes all at once, so that closing many readers
+            // does not copy the array for each of them
+            Set<PVReaderDirector<?>> toRemove = Collections.newSetFromMap(new IdentityHashMap<PVReaderDirector<?>, Boolean>());
+            toRemove.addAll(inactive);
+            directors.removeAll(toRemove);
+            for (PVReaderDirector<?> director : inactive) {
+                director.disconnect();
+            }
+            synchronized (lock) {
+                if (size() == 0 && scanTaskHandle != null) {
+                    scanTaskHandle.cancel(false);
+                    scanTaskHandle = null;
+                    if (sharedKey != null) {
+                        synchronized (sharedGroups) {
+                            if (sharedGroups.get(sharedKey) == this) {
+                                sharedGroups.remove(sharedKey);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
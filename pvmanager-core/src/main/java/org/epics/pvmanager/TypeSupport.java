@@ -10,6 +10,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -44,22 +45,41 @@ public abstract class TypeSupport<T> {
         public TypeSupportMap() { /* EMPTY */ }
     }
     
-    private static final Map<Class<? extends TypeSupport>, TypeSupportMap> allTypeSupports = 
-        new ConcurrentHashMap<Class<? extends TypeSupport>, TypeSupportMap>();
-    private static final Map<Class<? extends TypeSupport>, TypeSupportMap> allCalcTypeSupports = 
-        new ConcurrentHashMap<Class<? extends TypeSupport>, TypeSupportMap>();
-    
-    
-    private static 
-    void addTypeSupportFamilyIfNotExists(final Map<Class<? extends TypeSupport>, TypeSupportMap> map, 
-                                         final Class<? extends TypeSupport> typeSupportFamily) {
-        TypeSupportMap familyMap = map.get(typeSupportFamily);
-        if (familyMap == null) {
-            TypeSupportMap supportMap = new TypeSupportMap();
-            map.put(typeSupportFamily, supportMap);
+    /**
+     * The support calculated for a class, and the generation of the family
+     * at the time it was calculated.
+     */
+    private static final class CalculatedSupport {
+        private final int generation;
+        private final TypeSupport<?> support;
+
+        CalculatedSupport(int generation, TypeSupport<?> support) {
+            this.generation = generation;
+            this.support = support;
         }
     }
     
+    /**
+     * The supports registered for a family, and the supports calculated
+     * for each class. The calculated supports are attached directly to the
+     * class through a ClassValue, and are discarded when the generation
+     * changes, that is when a new support is registered.
+     */
+    private static final class TypeSupportFamily {
+        private final TypeSupportMap supports = new TypeSupportMap();
+        private volatile int generation;
+        private final ClassValue<AtomicReference<CalculatedSupport>> calculatedSupports = new ClassValue<AtomicReference<CalculatedSupport>>() {
+
+            @Override
+            protected AtomicReference<CalculatedSupport> computeValue(Class<?> type) {
+                return new AtomicReference<>();
+            }
+        };
+    }
+    
+    private static final Map<Class<? extends TypeSupport>, TypeSupportFamily> allTypeSupports = 
+        new ConcurrentHashMap<Class<? extends TypeSupport>, TypeSupportFamily>();
+    
     /**
      * Adds type support for the given class. The type support added will apply
      * to the given class and all of its subclasses. Support of the same
@@ -70,23 +90,26 @@ public abstract class TypeSupport<T> {
      *
      * @param typeSupport the support to add
      */
-    public static
+    public static synchronized
     void addTypeSupport(final TypeSupport<?> typeSupport) {
         Class<? extends TypeSupport> typeSupportFamily = typeSupport.getTypeSupportFamily();
         
-        addTypeSupportFamilyIfNotExists(allTypeSupports, typeSupportFamily);
-        addTypeSupportFamilyIfNotExists(allCalcTypeSupports, typeSupportFamily);
+        TypeSupportFamily family = allTypeSupports.get(typeSupportFamily);
+        if (family == null) {
+            family = new TypeSupportFamily();
+            allTypeSupports.put(typeSupportFamily, family);
+        }
 
         // Can't install support for the same type twice
-        if (allTypeSupports.get(typeSupportFamily).get(typeSupport.getType()) != null) {
+        if (family.supports.get(typeSupport.getType()) != null) {
             throw new RuntimeException(typeSupportFamily.getSimpleName() + " was already added for type " + typeSupport.getType().getName());
         }
         
-        allTypeSupports.get(typeSupportFamily).put(typeSupport.getType(), typeSupport);
-        // Need to clear all calculated supports since registering an
+        family.supports.put(typeSupport.getType(), typeSupport);
+        // Need to discard all calculated supports since registering an
         // interface may affect all the calculated supports
         // of all the implementations
-        allCalcTypeSupports.get(typeSupportFamily).clear();
+        family.generation++;
     }
     
     /**
@@ -110,13 +133,15 @@ public abstract class TypeSupport<T> {
      * @return true if supported
      */
     public static boolean isTypeDirectlySupported(Class<? extends TypeSupport> typeSupportFamily, Class<?> type) {
-        return allTypeSupports.get(typeSupportFamily) != null &&
-                allTypeSupports.get(typeSupportFamily).get(type) != null;
+        TypeSupportFamily family = allTypeSupports.get(typeSupportFamily);
+        return family != null && family.supports.get(type) != null;
     }
 
     /**
      * Calculates and caches the type support for a particular class, so that
-     * introspection does not occur at every call.
+     * introspection does not occur at every call. The result is cached on
+     * the class itself, so that the lookup of a previously seen class
+     * does not go through a map.
      * <p>
      * Find the supports for all supertypes. If multiple supports for different
      * supertypes are found, and there isn't a most specific one (i.e. one
@@ -131,25 +156,27 @@ public abstract class TypeSupport<T> {
     protected static <T> TypeSupport<T> findTypeSupportFor(final Class<? extends TypeSupport> supportFamily,
                                                              final Class<T> typeClass) {
         
-        TypeSupportMap calcSupportMap = allCalcTypeSupports.get(supportFamily);
-        TypeSupportMap supportMap = allTypeSupports.get(supportFamily);
+        TypeSupportFamily family = allTypeSupports.get(supportFamily);
         
-        if (supportMap == null || calcSupportMap == null) {
+        if (family == null) {
             return null;
         }
 
         // If we get the cached support for a specific type,
-        // we are guaranteed that they support is for that type
-        @SuppressWarnings("unchecked")
-        TypeSupport<T> support = (TypeSupport<T>) calcSupportMap.get(typeClass);
-        if (support == null) {
-            support = calculateSupport(typeClass, supportMap);
-            if (support == null) {
-                // It's up to the specific support to decide what to do
-                return null;
-            }
-            calcSupportMap.put(typeClass, support);
+        // we are guaranteed that they support is for that type.
+        // The generation is read before calculating, so that a support
+        // registered during the calculation discards the result.
+        AtomicReference<CalculatedSupport> cache = family.calculatedSupports.get(typeClass);
+        int generation = family.generation;
+        CalculatedSupport calculated = cache.get();
+        if (calculated == null || calculated.generation != generation) {
+            // It's up to the specific support to decide what to do
+            // if no support is found
+            calculated = new CalculatedSupport(generation, calculateSupport(typeClass, family.supports));
+            cache.set(calculated);
         }
+        @SuppressWarnings("unchecked")
+        TypeSupport<T> support = (TypeSupport<T>) calculated.support;
         return support;
     }
     
@@ -161,11 +188,11 @@ public abstract class TypeSupport<T> {
      * @return the list of type supports for the given type
      */
     protected static <T extends TypeSupport<?>> Collection<T> typeSupportsFor(final Class<T> supportFamily) {
-        TypeSupportMap map = allTypeSupports.get(supportFamily);
-        if (map == null)
+        TypeSupportFamily family = allTypeSupports.get(supportFamily);
+        if (family == null)
             return Collections.emptyList();
         @SuppressWarnings("unchecked")
-        Collection<T> supports = (Collection<T>) (Collection) map.values();
+        Collection<T> supports = (Collection<T>) (Collection) family.supports.values();
         return supports;
     }
 
@@ -6,6 +6,11 @@ package org.epics.pvmanager;
 
 /**
  * Represent a building block that can store a particular value
+ * <p>
+ * A data source can also store the message it received, and defer the creation
+ * of the value until the cache is read. If the channel updates faster than
+ * the readers scan, the values that are overwritten before being read are
+ * never created.
  *
  * @param <T> the type of the value held by the cache
  * @author carcassi
@@ -22,6 +27,27 @@ public class ValueCacheImpl<T> implements ValueCache<T> {
      */
     private final Class<T> type;
 
+    /**
+     * Converts a message received by a data source into the value of a cache.
+     */
+    interface Conversion {
+
+        /**
+         * Converts the message and writes the result to the cache.
+         *
+         * @param cache the cache to update
+         * @param message the message to convert
+         */
+        void convert(ValueCacheImpl<?> cache, Object message);
+    }
+
+    /**
+     * The last message not converted yet, and how to convert it; both
+     * are changed only with the cache lock held
+     */
+    private volatile Conversion pendingConversion;
+    private Object pendingMessage;
+
     /**
      * Creates a new cache for the given data type.
      *
@@ -39,7 +65,22 @@ public class ValueCacheImpl<T> implements ValueCache<T> {
      */
     @Override
     public T readValue() {
-        return value;
+        if (pendingConversion == null) {
+            return value;
+        }
+        
+        // Convert under the lock, so that a message written meanwhile
+        // is not lost
+        synchronized (this) {
+            Conversion conversion = pendingConversion;
+            if (conversion != null) {
+                Object message = pendingMessage;
+                pendingConversion = null;
+                pendingMessage = null;
+                conversion.convert(this, message);
+            }
+            return value;
+        }
     }
 
     /**
@@ -50,7 +91,32 @@ public class ValueCacheImpl<T> implements ValueCache<T> {
     @Override
     public void writeValue(Object newValue) {
         // TODO should add type check
-        this.value = type.cast(newValue);
+        T castValue = type.cast(newValue);
+        if (pendingConversion != null) {
+            // The new value replaces the message not yet converted
+            synchronized (this) {
+                pendingConversion = null;
+                pendingMessage = null;
+                this.value = castValue;
+            }
+        } else {
+            this.value = castValue;
+        }
+    }
+
+    /**
+     * Stores the message, which will be converted only when the cache
+     * is read. A message that is replaced before the cache is read
+     * is never converted.
+     * <p>
+     * The message must not be modified after it is written.
+     *
+     * @param conversion how to convert the message
+     * @param message the message to convert
+     */
+    synchronized void writeDeferred(Conversion conversion, Object message) {
+        pendingMessage = message;
+        pendingConversion = conversion;
     }
 
     /**
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The order in which the channels of a {@link WriteRecipe} are written,
+ * calculated once for all the writes that use the same recipe.
+ * <p>
+ * Channels are identified by their index. Each channel has the number of
+ * channels that need to be written before it, and the list of channels
+ * that are waiting for it. A channel can be written as soon as all
+ * the channels that precede it are written, regardless of the other
+ * channels in the recipe.
+ * <p>
+ * Preceding channels that are not part of the recipe are ignored.
+ * If the ordering is circular, the plan is marked as such and
+ * cannot be executed.
+ *
+ * @author carcassi
+ */
+final class WritePlan {
+
+    private final ChannelWriteRecipe[] channels;
+    private final int[] precedingCounts;
+    private final int[][] succeeding;
+    private final int[] first;
+    private final boolean circular;
+
+    WritePlan(Collection<ChannelWriteRecipe> channelWriteRecipes) {
+        // If the same channel is written twice, the last recipe wins
+        Map<String, ChannelWriteRecipe> recipes = new LinkedHashMap<>();
+        for (ChannelWriteRecipe channelWriteRecipe : channelWriteRecipes) {
+            recipes.put(channelWriteRecipe.getChannelName(), channelWriteRecipe);
+        }
+        channels = recipes.values().toArray(new ChannelWriteRecipe[recipes.size()]);
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < channels.length; i++) {
+            indexes.put(channels[i].getChannelName(), i);
+        }
+
+        precedingCounts = new int[channels.length];
+        List<List<Integer>> succeedingLists = new ArrayList<>(channels.length);
+        for (int i = 0; i < channels.length; i++) {
+            succeedingLists.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < channels.length; i++) {
+            for (String precedingChannel : channels[i].getWriteSubscription().getWriteCache().getPrecedingChannels()) {
+                Integer precedingIndex = indexes.get(precedingChannel);
+                if (precedingIndex != null && !succeedingLists.get(precedingIndex).contains(i)) {
+                    succeedingLists.get(precedingIndex).add(i);
+                    precedingCounts[i]++;
+                }
+            }
+        }
+        succeeding = new int[channels.length][];
+        for (int i = 0; i < channels.length; i++) {
+            succeeding[i] = toArray(succeedingLists.get(i));
+        }
+
+        List<Integer> firstList = new ArrayList<>();
+        for (int i = 0; i < channels.length; i++) {
+            if (precedingCounts[i] == 0) {
+                firstList.add(i);
+            }
+        }
+        first = toArray(firstList);
+        circular = countReachable() != channels.length;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private int countReachable() {
+        int[] counts = precedingCounts.clone();
+        int[] queue = new int[channels.length];
+        System.arraycopy(first, 0, queue, 0, first.length);
+        int end = first.length;
+        for (int start = 0; start < end; start++) {
+            for (int next : succeeding[queue[start]]) {
+                counts[next]--;
+                if (counts[next] == 0) {
+                    queue[end] = next;
+                    end++;
+                }
+            }
+        }
+        return end;
+    }
+
+    /**
+     * The number of channels to write.
+     *
+     * @return the number of channels
+     */
+    int size() {
+        return channels.length;
+    }
+
+    /**
+     * The recipe for the channel at the given index.
+     *
+     * @param index the channel index
+     * @return the channel recipe
+     */
+    ChannelWriteRecipe getChannelWriteRecipe(int index) {
+        return channels[index];
+    }
+
+    /**
+     * The number of channels that need to be written before the
+     * channel at the given index.
+     *
+     * @param index the channel index
+     * @return the number of preceding channels
+     */
+    int getPrecedingCount(int index) {
+        return precedingCounts[index];
+    }
+
+    /**
+     * The indexes of the channels that wait for the channel at the
+     * given index. The array must not be modified.
+     *
+     * @param index the channel index
+     * @return the succeeding channel indexes
+     */
+    int[] getSucceeding(int index) {
+        return succeeding[index];
+    }
+
+    /**
+     * The indexes of the channels that can be written right away.
+     * The array must not be modified.
+     *
+     * @return the channel indexes
+     */
+    int[] getFirst() {
+        return first;
+    }
+
+    /**
+     * Whether the ordering of the channels is circular, in which case
+     * some channels can never be written.
+     *
+     * @return true if the plan cannot be completed
+     */
+    boolean isCircular() {
+        return circular;
+    }
+
+}
@@ -15,6 +15,7 @@ import java.util.Objects;
  */
 public class WriteRecipe {
     private final Collection<ChannelWriteRecipe> channelWriteRecipes;
+    private volatile WritePlan writePlan;
 
     WriteRecipe(Collection<ChannelWriteRecipe> channelWriteRecipes) {
         this.channelWriteRecipes = channelWriteRecipes;
@@ -29,6 +30,21 @@ public class WriteRecipe {
         return channelWriteRecipes;
     }
 
+    /**
+     * The order in which the channels are written. It's calculated
+     * the first time it's needed, and reused for all the following writes.
+     * 
+     * @return the write plan
+     */
+    WritePlan getWritePlan() {
+        WritePlan plan = writePlan;
+        if (plan == null) {
+            plan = new WritePlan(channelWriteRecipes);
+            writePlan = plan;
+        }
+        return plan;
+    }
+
     @Override
     public int hashCode() {
         int hash = 3;
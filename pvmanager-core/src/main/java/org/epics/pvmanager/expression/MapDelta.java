@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.expression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The keys that changed between two values of a map.
+ * <p>
+ * This is meant to be used with the values returned by a {@link ReadMap}:
+ * a reader can keep the last map it was notified with and, at the next
+ * notification, process only the keys that changed instead of the whole map.
+ * Since those maps share all the entries that did not change, the delta is
+ * calculated by looking only at the changed entries. For any other map,
+ * all the entries are compared.
+ *
+ * @author carcassi
+ */
+public final class MapDelta {
+
+    private final List<String> addedKeys;
+    private final List<String> removedKeys;
+    private final List<String> updatedKeys;
+
+    private MapDelta(List<String> addedKeys, List<String> removedKeys, List<String> updatedKeys) {
+        this.addedKeys = Collections.unmodifiableList(addedKeys);
+        this.removedKeys = Collections.unmodifiableList(removedKeys);
+        this.updatedKeys = Collections.unmodifiableList(updatedKeys);
+    }
+
+    /**
+     * Calculates the changes from the old map to the new map. A null
+     * map is treated as an empty map.
+     *
+     * @param <T> the type for the values in the map
+     * @param oldMap the previous value of the map; can be null
+     * @param newMap the current value of the map; can be null
+     * @return the changes between the two maps
+     */
+    public static <T> MapDelta between(Map<String, T> oldMap, Map<String, T> newMap) {
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        List<String> updated = new ArrayList<>();
+        if (oldMap == null) {
+            oldMap = Collections.emptyMap();
+        }
+        if (newMap == null) {
+            newMap = Collections.emptyMap();
+        }
+
+        if (oldMap instanceof PersistentMap && newMap instanceof PersistentMap) {
+            PersistentMap.diff((PersistentMap<String, T>) oldMap, (PersistentMap<String, T>) newMap,
+                    added, removed, updated);
+        } else if (oldMap != newMap) {
+            for (Map.Entry<String, T> entry : oldMap.entrySet()) {
+                if (!newMap.containsKey(entry.getKey())) {
+                    removed.add(entry.getKey());
+                } else if (!Objects.equals(entry.getValue(), newMap.get(entry.getKey()))) {
+                    updated.add(entry.getKey());
+                }
+            }
+            for (String key : newMap.keySet()) {
+                if (!oldMap.containsKey(key)) {
+                    added.add(key);
+                }
+            }
+        }
+        return new MapDelta(added, removed, updated);
+    }
+
+    /**
+     * The keys that are in the new map but not in the old one.
+     *
+     * @return the added keys; never null
+     */
+    public List<String> getAddedKeys() {
+        return addedKeys;
+    }
+
+    /**
+     * The keys that are in the old map but not in the new one.
+     *
+     * @return the removed keys; never null
+     */
+    public List<String> getRemovedKeys() {
+        return removedKeys;
+    }
+
+    /**
+     * The keys that are in both maps, but with a different value.
+     *
+     * @return the updated keys; never null
+     */
+    public List<String> getUpdatedKeys() {
+        return updatedKeys;
+    }
+
+    /**
+     * Whether the two maps had the same content.
+     *
+     * @return true if no key was added, removed or updated
+     */
+    public boolean isEmpty() {
+        return addedKeys.isEmpty() && removedKeys.isEmpty() && updatedKeys.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "MapDelta[added=" + addedKeys + ", removed=" + removedKeys + ", updated=" + updatedKeys + "]";
+    }
+
+}
@@ -4,23 +4,78 @@
  */
 package org.epics.pvmanager.expression;
 
-import org.epics.pvmanager.ReadFunction;
-import org.epics.pvmanager.QueueCollector;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import org.epics.pvmanager.*;
+import org.epics.pvmanager.Notification;
+import org.epics.pvmanager.NotificationSupport;
+import org.epics.pvmanager.QueueCollector;
+import org.epics.pvmanager.ReadFunction;
+import org.epics.pvmanager.TypeSupport;
 
 /**
  * A function that takes a set of inputs and transforms them in a new map.
+ * <p>
+ * The function remembers the last value read from each input: a value
+ * that is the same instance as the last one is considered unchanged. Only
+ * the keys whose value changed are replaced in the map, and the map is
+ * the same instance if nothing changed at all.
  *
  * @author carcassi
  */
 class MapOfReadFunction<T> implements ReadFunction<Map<String, T>> {
 
-    private final Map<String, ReadFunction<T>> functions = new HashMap<>();
+    static {
+        // The maps share the entries that did not change: only the changed
+        // ones need to be checked to know whether to notify
+        TypeSupport.addTypeSupport(new NotificationSupport<PersistentMap>(PersistentMap.class) {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Notification<PersistentMap> prepareNotification(PersistentMap oldValue, PersistentMap newValue) {
+                if (oldValue == null) {
+                    return new Notification<>(true, newValue);
+                }
+
+                List<Object> added = new ArrayList<>();
+                List<Object> removed = new ArrayList<>();
+                List<Object> updated = new ArrayList<>();
+                PersistentMap.diff(oldValue, newValue, added, removed, updated);
+                boolean notificationNeeded = !added.isEmpty() || !removed.isEmpty();
+                for (int i = 0; !notificationNeeded && i < updated.size(); i++) {
+                    Object key = updated.get(i);
+                    notificationNeeded = NotificationSupport.notification(oldValue.get(key), newValue.get(key)).isNotificationNeeded();
+                }
+
+                if (notificationNeeded) {
+                    return new Notification<>(true, newValue);
+                } else {
+                    return new Notification<>(false, oldValue);
+                }
+            }
+        });
+    }
+
+    /**
+     * An input of the map, with the last value read from it.
+     */
+    private static class Input<T> {
+
+        private final String name;
+        private final ReadFunction<T> function;
+        private T lastValue;
+
+        Input(String name, ReadFunction<T> function) {
+            this.name = name;
+            this.function = function;
+        }
+    }
+
+    private final Map<String, Input<T>> inputsByName = new HashMap<>();
+    private final List<Input<T>> inputs = new ArrayList<>();
     private final QueueCollector<MapUpdate<T>> mapUpdateCollector;
-    private Map<String, T> previousValue;
+    private PersistentMap<String, T> value = PersistentMap.empty();
 
     public MapOfReadFunction(QueueCollector<MapUpdate<T>> mapUpdateCollector) {
         this.mapUpdateCollector = mapUpdateCollector;
@@ -28,33 +83,50 @@ class MapOfReadFunction<T> implements ReadFunction<Map<String, T>> {
 
     @Override
     public Map<String, T> readValue() {
+        PersistentMap<String, T> map = value;
         for (MapUpdate<T> mapUpdate : mapUpdateCollector.readValue()) {
+            if (mapUpdate.isToClear()) {
+                inputsByName.clear();
+                inputs.clear();
+                map = PersistentMap.empty();
+            }
             for (String name : mapUpdate.getExpressionsToDelete()) {
-                functions.remove(name);
+                Input<T> input = inputsByName.remove(name);
+                if (input != null) {
+                    inputs.remove(input);
+                    map = map.minus(name);
+                }
             }
-            functions.putAll(mapUpdate.getReadFunctionsToAdd());
-            previousValue = null;
-        }
-        
-        Map<String, T> map = new HashMap<String, T>();
-        for (Map.Entry<String, ReadFunction<T>> entry : functions.entrySet()) {
-            String name = entry.getKey();
-            T value = entry.getValue().readValue();
-            if (value != null) {
-                map.put(name, value);
+            for (Map.Entry<String, ReadFunction<T>> entry : mapUpdate.getReadFunctionsToAdd().entrySet()) {
+                Input<T> input = new Input<>(entry.getKey(), entry.getValue());
+                Input<T> oldInput = inputsByName.put(input.name, input);
+                if (oldInput != null) {
+                    inputs.remove(oldInput);
+                    map = map.minus(input.name);
+                }
+                inputs.add(input);
             }
         }
-        
-        if (Objects.equals(previousValue, map)) {
-            return previousValue;
+
+        for (int i = 0; i < inputs.size(); i++) {
+            Input<T> input = inputs.get(i);
+            T newValue = input.function.readValue();
+            if (newValue != input.lastValue) {
+                input.lastValue = newValue;
+                if (newValue == null) {
+                    map = map.minus(input.name);
+                } else {
+                    map = map.plus(input.name, newValue);
+                }
+            }
         }
-        
-        previousValue = map;
+
+        value = map;
         return map;
     }
 
     public QueueCollector<MapUpdate<T>> getMapUpdateCollector() {
         return mapUpdateCollector;
     }
-    
+
 }
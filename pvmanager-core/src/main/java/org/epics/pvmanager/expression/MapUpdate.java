@@ -62,7 +62,7 @@ class MapUpdate<T> {
     
     public static <T> MapUpdate<T> removeFunction(String name) {
         return new MapUpdate<>(Collections.singleton(name), Collections.<String, ReadFunction<T>>emptyMap(),
-                Collections.<String, WriteFunction<T>>emptyMap(), true);
+                Collections.<String, WriteFunction<T>>emptyMap(), false);
     }
     
 }
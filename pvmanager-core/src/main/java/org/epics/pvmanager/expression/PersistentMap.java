@@ -0,0 +1,508 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.expression;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable hash map where a change creates a new map that shares
+ * all the unchanged parts with the old one.
+ * <p>
+ * The entries are kept in a hash trie: each level uses 5 bits of the
+ * hash, so that adding, replacing or removing a key copies only the few
+ * nodes on the path to that key. Since two versions of the map share
+ * the nodes that did not change, the differences between them can be
+ * found by visiting only the nodes that are not shared.
+ * <p>
+ * The map cannot be modified through the {@link java.util.Map} interface.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @author carcassi
+ */
+final class PersistentMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MAX_SHIFT = 30;
+
+    /**
+     * An entry of the map, with the hash of its key.
+     */
+    static final class Leaf<K, V> extends AbstractMap.SimpleImmutableEntry<K, V> {
+
+        private final int hash;
+
+        Leaf(K key, V value, int hash) {
+            super(key, value);
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * A node of the trie. Its children are either leaves or other nodes.
+     */
+    private static abstract class Node {
+
+        abstract Object[] children();
+
+        abstract Leaf<?, ?> find(Object key, int hash, int shift);
+
+        abstract Node put(Leaf<?, ?> leaf, int shift);
+
+        abstract Node remove(Object key, int hash, int shift);
+    }
+
+    /**
+     * A node that keeps only the children that are present, using a bitmap
+     * to know which of the 32 possible positions they occupy.
+     */
+    private static final class BitmapNode extends Node {
+
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Object child(int bit) {
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            return array[index(bit)];
+        }
+
+        @Override
+        Object[] children() {
+            return array;
+        }
+
+        @Override
+        Leaf<?, ?> find(Object key, int hash, int shift) {
+            return PersistentMap.find(child(bit(hash, shift)), key, hash, shift + BITS);
+        }
+
+        @Override
+        Node put(Leaf<?, ?> leaf, int shift) {
+            int bit = bit(leaf.hash, shift);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 1];
+                System.arraycopy(array, 0, newArray, 0, index);
+                newArray[index] = leaf;
+                System.arraycopy(array, index, newArray, index + 1, array.length - index);
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+
+            Object child = array[index];
+            Object newChild;
+            if (child instanceof Node) {
+                newChild = ((Node) child).put(leaf, shift + BITS);
+            } else {
+                Leaf<?, ?> existing = (Leaf<?, ?>) child;
+                if (Objects.equals(existing.getKey(), leaf.getKey())) {
+                    newChild = leaf;
+                } else {
+                    newChild = merge(existing, leaf, shift + BITS);
+                }
+            }
+            Object[] newArray = array.clone();
+            newArray[index] = newChild;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = index(bit);
+            Object child = array[index];
+            Object newChild;
+            if (child instanceof Node) {
+                newChild = ((Node) child).remove(key, hash, shift + BITS);
+            } else if (Objects.equals(((Leaf<?, ?>) child).getKey(), key)) {
+                newChild = null;
+            } else {
+                newChild = child;
+            }
+
+            if (newChild == child) {
+                return this;
+            }
+            if (newChild != null) {
+                Object[] newArray = array.clone();
+                newArray[index] = newChild;
+                return new BitmapNode(bitmap, newArray);
+            }
+            if (array.length == 1) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 1];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 1, newArray, index, newArray.length - index);
+            return new BitmapNode(bitmap & ~bit, newArray);
+        }
+    }
+
+    /**
+     * A node for keys that have the same hash.
+     */
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+        private final Leaf<?, ?>[] leaves;
+
+        CollisionNode(int hash, Leaf<?, ?>[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (Objects.equals(leaves[i].getKey(), key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object[] children() {
+            return leaves;
+        }
+
+        @Override
+        Leaf<?, ?> find(Object key, int hash, int shift) {
+            if (hash != this.hash) {
+                return null;
+            }
+            int index = indexOf(key);
+            return index == -1 ? null : leaves[index];
+        }
+
+        @Override
+        Node put(Leaf<?, ?> leaf, int shift) {
+            if (leaf.hash != hash) {
+                // A different hash arrived at this level: push the collisions
+                // one level down
+                return new BitmapNode(BitmapNode.bit(hash, shift), new Object[] {this}).put(leaf, shift);
+            }
+            int index = indexOf(leaf.getKey());
+            Leaf<?, ?>[] newLeaves;
+            if (index == -1) {
+                newLeaves = Arrays.copyOf(leaves, leaves.length + 1);
+                newLeaves[leaves.length] = leaf;
+            } else {
+                newLeaves = leaves.clone();
+                newLeaves[index] = leaf;
+            }
+            return new CollisionNode(hash, newLeaves);
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            int index = hash == this.hash ? indexOf(key) : -1;
+            if (index == -1) {
+                return this;
+            }
+            if (leaves.length == 1) {
+                return null;
+            }
+            Leaf<?, ?>[] newLeaves = new Leaf<?, ?>[leaves.length - 1];
+            System.arraycopy(leaves, 0, newLeaves, 0, index);
+            System.arraycopy(leaves, index + 1, newLeaves, index, newLeaves.length - index);
+            return new CollisionNode(hash, newLeaves);
+        }
+    }
+
+    private static Node merge(Leaf<?, ?> leaf1, Leaf<?, ?> leaf2, int shift) {
+        if (leaf1.hash == leaf2.hash || shift > MAX_SHIFT) {
+            return new CollisionNode(leaf1.hash, new Leaf<?, ?>[] {leaf1, leaf2});
+        }
+        return BitmapNode.EMPTY.put(leaf1, shift).put(leaf2, shift);
+    }
+
+    /**
+     * Finds the leaf for the key in a child, which can be a node, a leaf
+     * or null.
+     */
+    private static Leaf<?, ?> find(Object child, Object key, int hash, int shift) {
+        if (child == null) {
+            return null;
+        }
+        if (child instanceof Node) {
+            return ((Node) child).find(key, hash, shift);
+        }
+        Leaf<?, ?> leaf = (Leaf<?, ?>) child;
+        if (leaf.hash == hash && Objects.equals(leaf.getKey(), key)) {
+            return leaf;
+        }
+        return null;
+    }
+
+    private static int hash(Object key) {
+        int h = Objects.hashCode(key);
+        // Spread the bits, so that keys that differ only in the higher bits
+        // do not end up deep in the trie
+        return h ^ (h >>> 16);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentMap EMPTY = new PersistentMap(null, 0);
+
+    private final Node root;
+    private final int size;
+    private Set<Entry<K, V>> entrySet;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * The map with no entries.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * A map with the given key associated to the given value. If the key
+     * is already associated to the same instance, the map itself is returned.
+     *
+     * @param key the key
+     * @param value the new value
+     * @return the new map
+     */
+    PersistentMap<K, V> plus(K key, V value) {
+        int hash = hash(key);
+        Leaf<?, ?> existing = find(root, key, hash, 0);
+        if (existing != null && existing.getValue() == value) {
+            return this;
+        }
+        Leaf<K, V> leaf = new Leaf<>(key, value, hash);
+        Node newRoot;
+        if (root == null) {
+            newRoot = BitmapNode.EMPTY.put(leaf, 0);
+        } else {
+            newRoot = root.put(leaf, 0);
+        }
+        return new PersistentMap<>(newRoot, existing == null ? size + 1 : size);
+    }
+
+    /**
+     * A map without the given key. If the key is not present, the map
+     * itself is returned.
+     *
+     * @param key the key
+     * @return the new map
+     */
+    PersistentMap<K, V> minus(Object key) {
+        if (root == null) {
+            return this;
+        }
+        Node newRoot = root.remove(key, hash(key), 0);
+        if (newRoot == root) {
+            return this;
+        }
+        if (newRoot == null) {
+            return empty();
+        }
+        return new PersistentMap<>(newRoot, size - 1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Leaf<?, ?> leaf = find(root, key, hash(key), 0);
+        return leaf == null ? null : (V) leaf.getValue();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(root, key, hash(key), 0) != null;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<K, V>>() {
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Visits the trie depth first.
+     */
+    private static class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+        // Bitmap nodes for the 7 levels, plus a collision node
+        private final Object[][] arrays = new Object[8][];
+        private final int[] indexes = new int[8];
+        private int depth = -1;
+        private Leaf<K, V> next;
+
+        EntryIterator(Node root) {
+            if (root != null) {
+                push(root);
+            }
+            advance();
+        }
+
+        private void push(Node node) {
+            depth++;
+            arrays[depth] = node.children();
+            indexes[depth] = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                if (indexes[depth] < arrays[depth].length) {
+                    Object child = arrays[depth][indexes[depth]];
+                    indexes[depth]++;
+                    if (child instanceof Leaf) {
+                        next = (Leaf<K, V>) child;
+                        return;
+                    }
+                    push((Node) child);
+                } else {
+                    arrays[depth] = null;
+                    depth--;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf<K, V> current = next;
+            advance();
+            return current;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Map is immutable");
+        }
+    }
+
+    /**
+     * Adds to the given lists the keys that are only in the new map,
+     * the keys that are only in the old map, and the keys that are
+     * in both with values that are not equal. Only the parts that
+     * the two maps do not share are visited.
+     *
+     * @param <K> the type of the keys
+     * @param oldMap the old map
+     * @param newMap the new map
+     * @param added the keys that are only in the new map
+     * @param removed the keys that are only in the old map
+     * @param updated the keys whose value changed
+     */
+    static <K> void diff(PersistentMap<K, ?> oldMap, PersistentMap<K, ?> newMap,
+            List<K> added, List<K> removed, List<K> updated) {
+        diff(oldMap.root, newMap.root, 0, added, removed, updated);
+    }
+
+    private static <K> void diff(Object oldChild, Object newChild, int shift,
+            List<K> added, List<K> removed, List<K> updated) {
+        if (oldChild == newChild) {
+            return;
+        }
+        if (oldChild instanceof BitmapNode && newChild instanceof BitmapNode) {
+            BitmapNode oldNode = (BitmapNode) oldChild;
+            BitmapNode newNode = (BitmapNode) newChild;
+            int bits = oldNode.bitmap | newNode.bitmap;
+            while (bits != 0) {
+                int bit = Integer.lowestOneBit(bits);
+                bits &= ~bit;
+                diff(oldNode.child(bit), newNode.child(bit), shift + BITS, added, removed, updated);
+            }
+            return;
+        }
+
+        // Different shapes: compare the leaves one by one
+        List<Leaf<K, ?>> oldLeaves = leaves(oldChild);
+        List<Leaf<K, ?>> newLeaves = leaves(newChild);
+        for (Leaf<K, ?> oldLeaf : oldLeaves) {
+            Leaf<?, ?> newLeaf = find(newChild, oldLeaf.getKey(), oldLeaf.hash, shift);
+            if (newLeaf == null) {
+                removed.add(oldLeaf.getKey());
+            } else if (newLeaf != oldLeaf && !Objects.equals(newLeaf.getValue(), oldLeaf.getValue())) {
+                updated.add(oldLeaf.getKey());
+            }
+        }
+        for (Leaf<K, ?> newLeaf : newLeaves) {
+            if (find(oldChild, newLeaf.getKey(), newLeaf.hash, shift) == null) {
+                added.add(newLeaf.getKey());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> List<Leaf<K, ?>> leaves(Object child) {
+        List<Leaf<K, ?>> leaves = new ArrayList<>();
+        if (child instanceof Leaf) {
+            leaves.add((Leaf<K, ?>) child);
+        } else if (child != null) {
+            Iterator<Entry<K, Object>> iterator = new EntryIterator<>((Node) child);
+            while (iterator.hasNext()) {
+                leaves.add((Leaf<K, ?>) iterator.next());
+            }
+        }
+        return leaves;
+    }
+}
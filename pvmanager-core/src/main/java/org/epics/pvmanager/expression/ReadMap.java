@@ -19,6 +19,11 @@ import org.epics.pvmanager.ReadRecipeBuilder;
  * The map is dynamic: the child expressions can be added and removed
  * while the reader is active.
  * <p>
+ * The map returned is immutable. When only some of the child expressions
+ * change, the new map shares the unchanged entries with the previous one:
+ * use {@link MapDelta#between(java.util.Map, java.util.Map) } on the previous
+ * and the current value to get only the keys that changed.
+ * <p>
  * There is currently no way to retrieve the individual errors for each
  * element of the map. If the value is a VType, the connection can be
  * retrieved by looking at the alarm.
@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.jmx;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.epics.pvmanager.ChannelInstrumentation;
+
+/**
+ * The measurements for a channel.
+ *
+ * @author carcassi
+ */
+class ChannelMetrics implements ChannelInstrumentation {
+
+    private final String name;
+    private final DataSourceMetrics dataSourceMetrics;
+    final AtomicLong valuesReceived = new AtomicLong();
+
+    ChannelMetrics(String name, DataSourceMetrics dataSourceMetrics) {
+        this.name = name;
+        this.dataSourceMetrics = dataSourceMetrics;
+    }
+
+    @Override
+    public void valueReceived() {
+        valuesReceived.incrementAndGet();
+    }
+
+    @Override
+    public void channelClosed() {
+        dataSourceMetrics.channelClosed(this);
+    }
+
+    @Override
+    public String toString() {
+        return name + ": values=" + valuesReceived.get();
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.jmx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates the measurements of the readers and channels of a data source.
+ * The counts of the readers and channels that are closed are added
+ * to the totals, so that they are not lost.
+ *
+ * @author carcassi
+ */
+class DataSourceMetrics implements DataSourceMetricsMBean {
+
+    private final Set<ReaderMetrics> readers = Collections.newSetFromMap(new ConcurrentHashMap<ReaderMetrics, Boolean>());
+    private final Set<ChannelMetrics> channels = Collections.newSetFromMap(new ConcurrentHashMap<ChannelMetrics, Boolean>());
+    // Totals for the readers and channels that were closed
+    private final ReaderMetrics closedReaders = new ReaderMetrics("closed", this);
+    private final AtomicLong closedChannelValues = new AtomicLong();
+
+    ReaderMetrics readerCreated(String name) {
+        ReaderMetrics reader = new ReaderMetrics(name, this);
+        readers.add(reader);
+        return reader;
+    }
+
+    void readerClosed(ReaderMetrics reader) {
+        if (readers.remove(reader)) {
+            closedReaders.scanCount.addAndGet(reader.scanCount.get());
+            closedReaders.skippedScanCount.addAndGet(reader.skippedScanCount.get());
+            closedReaders.totalReadNanos.addAndGet(reader.totalReadNanos.get());
+            closedReaders.notificationCount.addAndGet(reader.notificationCount.get());
+            closedReaders.totalNotificationDelayNanos.addAndGet(reader.totalNotificationDelayNanos.get());
+            closedReaders.valuesDropped.addAndGet(reader.valuesDropped.get());
+            closedReaders.readTimes.add(reader.readTimes);
+            closedReaders.notificationDelays.add(reader.notificationDelays);
+        }
+    }
+
+    ChannelMetrics channelCreated(String name) {
+        ChannelMetrics channel = new ChannelMetrics(name, this);
+        channels.add(channel);
+        return channel;
+    }
+
+    void channelClosed(ChannelMetrics channel) {
+        if (channels.remove(channel)) {
+            closedChannelValues.addAndGet(channel.valuesReceived.get());
+        }
+    }
+
+    private List<ReaderMetrics> allReaders() {
+        List<ReaderMetrics> all = new ArrayList<>(readers);
+        all.add(closedReaders);
+        return all;
+    }
+
+    @Override
+    public int getReaderCount() {
+        return readers.size();
+    }
+
+    @Override
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    @Override
+    public long getScanCount() {
+        long total = 0;
+        for (ReaderMetrics reader : allReaders()) {
+            total += reader.scanCount.get();
+        }
+        return total;
+    }
+
+    @Override
+    public long getSkippedScanCount() {
+        long total = 0;
+        for (ReaderMetrics reader : allReaders()) {
+            total += reader.skippedScanCount.get();
+        }
+        return total;
+    }
+
+    @Override
+    public long getNotificationCount() {
+        long total = 0;
+        for (ReaderMetrics reader : allReaders()) {
+            total += reader.notificationCount.get();
+        }
+        return total;
+    }
+
+    @Override
+    public long getValuesReceived() {
+        long total = closedChannelValues.get();
+        for (ChannelMetrics channel : channels) {
+            total += channel.valuesReceived.get();
+        }
+        return total;
+    }
+
+    @Override
+    public long getValuesDropped() {
+        long total = 0;
+        for (ReaderMetrics reader : allReaders()) {
+            total += reader.valuesDropped.get();
+        }
+        return total;
+    }
+
+    @Override
+    public String[] getReadTimeHistogram() {
+        long[] totals = new long[LatencyHistogram.BUCKETS];
+        for (ReaderMetrics reader : allReaders()) {
+            reader.readTimes.addTo(totals);
+        }
+        return LatencyHistogram.format(totals);
+    }
+
+    @Override
+    public String[] getNotificationDelayHistogram() {
+        long[] totals = new long[LatencyHistogram.BUCKETS];
+        for (ReaderMetrics reader : allReaders()) {
+            reader.notificationDelays.addTo(totals);
+        }
+        return LatencyHistogram.format(totals);
+    }
+
+    /**
+     * The quantity used to rank the elements.
+     */
+    private static abstract class Rank<T> {
+
+        abstract long of(T element);
+    }
+
+    @Override
+    public String[] topReadersByReadTime(int count) {
+        return top(readers, count, new Rank<ReaderMetrics>() {
+
+            @Override
+            long of(ReaderMetrics reader) {
+                return reader.totalReadNanos.get();
+            }
+        });
+    }
+
+    @Override
+    public String[] topReadersBySkippedScans(int count) {
+        return top(readers, count, new Rank<ReaderMetrics>() {
+
+            @Override
+            long of(ReaderMetrics reader) {
+                return reader.skippedScanCount.get();
+            }
+        });
+    }
+
+    @Override
+    public String[] topChannelsByValuesReceived(int count) {
+        return top(channels, count, new Rank<ChannelMetrics>() {
+
+            @Override
+            long of(ChannelMetrics channel) {
+                return channel.valuesReceived.get();
+            }
+        });
+    }
+
+    private static <T> String[] top(Set<T> elements, int count, Rank<T> rank) {
+        // Take the values once, since they keep changing while sorting
+        final Map<T, Long> values = new HashMap<>();
+        for (T element : elements) {
+            values.put(element, rank.of(element));
+        }
+        List<T> sorted = new ArrayList<>(values.keySet());
+        Collections.sort(sorted, new Comparator<T>() {
+
+            @Override
+            public int compare(T o1, T o2) {
+                return Long.compare(values.get(o2), values.get(o1));
+            }
+        });
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < Math.min(count, sorted.size()); i++) {
+            lines.add(sorted.get(i).toString());
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+}
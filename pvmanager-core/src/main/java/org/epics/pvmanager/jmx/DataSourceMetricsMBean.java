@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.jmx;
+
+/**
+ * The measurements for the readers and channels of a data source.
+ * <p>
+ * The counts include the readers and channels that were closed. The
+ * top lists include only the ones that are still open.
+ *
+ * @author carcassi
+ */
+public interface DataSourceMetricsMBean {
+
+    /**
+     * The number of readers currently open.
+     *
+     * @return the number of open readers
+     */
+    public int getReaderCount();
+
+    /**
+     * The number of channels currently in the data source.
+     *
+     * @return the number of channels
+     */
+    public int getChannelCount();
+
+    /**
+     * The number of scans that calculated a new value.
+     *
+     * @return the number of scans
+     */
+    public long getScanCount();
+
+    /**
+     * The number of scans skipped because the previous notification
+     * of the same reader was still being processed.
+     *
+     * @return the number of skipped scans
+     */
+    public long getSkippedScanCount();
+
+    /**
+     * The number of notifications started.
+     *
+     * @return the number of notifications
+     */
+    public long getNotificationCount();
+
+    /**
+     * The number of values received by all the channels.
+     *
+     * @return the number of values received
+     */
+    public long getValuesReceived();
+
+    /**
+     * The number of values discarded by the collectors before
+     * being read.
+     *
+     * @return the number of values dropped
+     */
+    public long getValuesDropped();
+
+    /**
+     * The distribution of the time taken to calculate the value
+     * of the readers.
+     *
+     * @return one line for each range of durations
+     */
+    public String[] getReadTimeHistogram();
+
+    /**
+     * The distribution of the time the notifications waited
+     * in the notification executor.
+     *
+     * @return one line for each range of durations
+     */
+    public String[] getNotificationDelayHistogram();
+
+    /**
+     * The readers that spent the most time calculating their value.
+     *
+     * @param count the maximum number of readers
+     * @return a description of each reader
+     */
+    public String[] topReadersByReadTime(int count);
+
+    /**
+     * The readers that skipped the most scans: these are the readers
+     * whose notifications take longer than their scan period.
+     *
+     * @param count the maximum number of readers
+     * @return a description of each reader
+     */
+    public String[] topReadersBySkippedScans(int count);
+
+    /**
+     * The channels that received the most values.
+     *
+     * @param count the maximum number of channels
+     * @return a description of each channel
+     */
+    public String[] topChannelsByValuesReceived(int count);
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import org.epics.pvmanager.ChannelInstrumentation;
+import org.epics.pvmanager.DataSource;
+import org.epics.pvmanager.Instrumentation;
+import org.epics.pvmanager.PVManager;
+import org.epics.pvmanager.ReaderInstrumentation;
+
+/**
+ * Instrumentation that publishes one {@link DataSourceMetricsMBean} for each
+ * data source, with the totals for its readers and channels, and the
+ * readers and channels that are the most expensive.
+ * <p>
+ * The MBeans are registered under the domain <code>org.epics.pvmanager</code>
+ * with <code>type=DataSource</code>, and the class of the data source followed
+ * by a sequence number as name.
+ * Readers without a data source are under <code>name=none</code>.
+ * A typical use is:
+ * <pre>
+ * JmxInstrumentation.install();
+ * </pre>
+ * at the start of the application, before the readers are created.
+ *
+ * @author carcassi
+ */
+public class JmxInstrumentation extends Instrumentation {
+
+    private static final Logger log = Logger.getLogger(JmxInstrumentation.class.getName());
+    private static final Object NO_DATA_SOURCE = new Object();
+
+    private final MBeanServer server;
+    private final Map<Object, DataSourceMetrics> dataSources = new IdentityHashMap<>();
+    private final Map<Object, ObjectName> objectNames = new IdentityHashMap<>();
+
+    /**
+     * Creates an instrumentation that registers the MBeans
+     * in the platform MBean server.
+     */
+    public JmxInstrumentation() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Creates an instrumentation that registers the MBeans in the given server.
+     *
+     * @param server the MBean server
+     */
+    public JmxInstrumentation(MBeanServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Creates an instrumentation on the platform MBean server, and sets
+     * it as the PVManager instrumentation.
+     *
+     * @return the new instrumentation
+     */
+    public static JmxInstrumentation install() {
+        JmxInstrumentation instrumentation = new JmxInstrumentation();
+        PVManager.setInstrumentation(instrumentation);
+        return instrumentation;
+    }
+
+    @Override
+    public ReaderInstrumentation readerCreated(String readerName, DataSource dataSource) {
+        return metricsFor(dataSource).readerCreated(String.valueOf(readerName));
+    }
+
+    @Override
+    public ChannelInstrumentation channelCreated(String channelName, DataSource dataSource) {
+        return metricsFor(dataSource).channelCreated(channelName);
+    }
+
+    /**
+     * The name under which the MBean for the given data source is registered.
+     *
+     * @param dataSource a data source; can be null
+     * @return the object name, or null if no reader or channel was created
+     * for the data source
+     */
+    public synchronized ObjectName getObjectName(DataSource dataSource) {
+        return objectNames.get(dataSource == null ? NO_DATA_SOURCE : dataSource);
+    }
+
+    private synchronized DataSourceMetrics metricsFor(DataSource dataSource) {
+        Object key = dataSource == null ? NO_DATA_SOURCE : dataSource;
+        DataSourceMetrics metrics = dataSources.get(key);
+        if (metrics == null) {
+            metrics = new DataSourceMetrics();
+            dataSources.put(key, metrics);
+            String name = dataSource == null ? "none" : dataSource.getClass().getSimpleName();
+            try {
+                ObjectName objectName = new ObjectName("org.epics.pvmanager:type=DataSource,name=" + ObjectName.quote(name + "-" + dataSources.size()));
+                server.registerMBean(new StandardMBean(metrics, DataSourceMetricsMBean.class), objectName);
+                objectNames.put(key, objectName);
+            } catch (JMException ex) {
+                log.log(Level.WARNING, "Couldn't register the metrics for data source " + name, ex);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Unregisters all the MBeans. The readers and channels already
+     * created keep collecting measurements.
+     */
+    public synchronized void close() {
+        for (ObjectName objectName : objectNames.values()) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException ex) {
+                log.log(Level.WARNING, "Couldn't unregister " + objectName, ex);
+            }
+        }
+        objectNames.clear();
+    }
+}
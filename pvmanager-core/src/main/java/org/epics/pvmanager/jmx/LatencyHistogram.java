@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.jmx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in buckets that double in size: the bucket i counts
+ * the durations from 2^(i-1) (included) to 2^i (excluded) nanoseconds.
+ *
+ * @author carcassi
+ */
+final class LatencyHistogram {
+
+    static final int BUCKETS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(long nanos) {
+        int bucket = nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+        counts.incrementAndGet(bucket);
+    }
+
+    /**
+     * Adds the counts of the given histogram to this one.
+     *
+     * @param other another histogram
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.addAndGet(i, other.counts.get(i));
+        }
+    }
+
+    /**
+     * Adds the counts of this histogram to the given totals.
+     *
+     * @param totals an array of {@link #BUCKETS} elements
+     */
+    void addTo(long[] totals) {
+        for (int i = 0; i < BUCKETS; i++) {
+            totals[i] += counts.get(i);
+        }
+    }
+
+    /**
+     * One line for each bucket that is not empty.
+     *
+     * @param totals the counts for each bucket
+     * @return the description of the buckets
+     */
+    static String[] format(long[] totals) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (totals[i] != 0) {
+                if (i == BUCKETS - 1) {
+                    lines.add(">= " + formatNanos(1L << (i - 1)) + ": " + totals[i]);
+                } else {
+                    lines.add("< " + formatNanos(1L << i) + ": " + totals[i]);
+                }
+            }
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    static String formatNanos(long nanos) {
+        if (nanos < 1000L) {
+            return nanos + " ns";
+        } else if (nanos < 1000000L) {
+            return String.format("%.1f us", nanos / 1000.0);
+        } else if (nanos < 1000000000L) {
+            return String.format("%.1f ms", nanos / 1000000.0);
+        } else {
+            return String.format("%.1f s", nanos / 1000000000.0);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.jmx;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.epics.pvmanager.ReaderInstrumentation;
+
+/**
+ * The measurements for a reader.
+ *
+ * @author carcassi
+ */
+class ReaderMetrics implements ReaderInstrumentation {
+
+    private final String name;
+    private final DataSourceMetrics dataSourceMetrics;
+    final AtomicLong scanCount = new AtomicLong();
+    final AtomicLong skippedScanCount = new AtomicLong();
+    final AtomicLong totalReadNanos = new AtomicLong();
+    final AtomicLong notificationCount = new AtomicLong();
+    final AtomicLong totalNotificationDelayNanos = new AtomicLong();
+    final AtomicLong valuesDropped = new AtomicLong();
+    final LatencyHistogram readTimes = new LatencyHistogram();
+    final LatencyHistogram notificationDelays = new LatencyHistogram();
+
+    ReaderMetrics(String name, DataSourceMetrics dataSourceMetrics) {
+        this.name = name;
+        this.dataSourceMetrics = dataSourceMetrics;
+    }
+
+    @Override
+    public void scanCompleted(long readNanos) {
+        scanCount.incrementAndGet();
+        totalReadNanos.addAndGet(readNanos);
+        readTimes.record(readNanos);
+    }
+
+    @Override
+    public void scanSkipped() {
+        skippedScanCount.incrementAndGet();
+    }
+
+    @Override
+    public void notificationStarted(long queueNanos) {
+        notificationCount.incrementAndGet();
+        totalNotificationDelayNanos.addAndGet(queueNanos);
+        notificationDelays.record(queueNanos);
+    }
+
+    @Override
+    public void valuesDropped(int count) {
+        valuesDropped.addAndGet(count);
+    }
+
+    @Override
+    public void readerClosed() {
+        dataSourceMetrics.readerClosed(this);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        long scans = scanCount.get();
+        long notifications = notificationCount.get();
+        return name + ": scans=" + scans
+                + ", skipped=" + skippedScanCount.get()
+                + ", totalRead=" + LatencyHistogram.formatNanos(totalReadNanos.get())
+                + ", avgRead=" + LatencyHistogram.formatNanos(scans == 0 ? 0 : totalReadNanos.get() / scans)
+                + ", avgNotificationDelay=" + LatencyHistogram.formatNanos(notifications == 0 ? 0 : totalNotificationDelayNanos.get() / notifications)
+                + ", dropped=" + valuesDropped.get();
+    }
+}
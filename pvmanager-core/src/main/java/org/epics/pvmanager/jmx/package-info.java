@@ -0,0 +1,8 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+/**
+ * Instrumentation that publishes the measurements of pvmanager as JMX MBeans.
+ */
+package org.epics.pvmanager.jmx;
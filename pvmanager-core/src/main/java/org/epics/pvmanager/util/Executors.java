@@ -39,6 +39,23 @@ public class Executors {
         return CURRENT_EXECUTOR;
     }
 
+    /**
+     * Executes the notifications on a pool with the given number of threads,
+     * keeping only the latest pending notification for each reader and
+     * serving the readers in round-robin.
+     * <p>
+     * Unlike {@link #localThread() }, a slow listener does not block the
+     * scanning threads, and only delays the notifications of its own reader.
+     * 
+     * @param nThreads the number of notification threads
+     * @return a new executor
+     * @see LatestWinsExecutor
+     */
+    public static LatestWinsExecutor latestWinsPool(int nThreads) {
+        return new LatestWinsExecutor(java.util.concurrent.Executors.newFixedThreadPool(nThreads,
+                namedPool("PVMgr Notification ")));
+    }
+
     private static Executor SWING_EXECUTOR = new Executor() {
 
         @Override
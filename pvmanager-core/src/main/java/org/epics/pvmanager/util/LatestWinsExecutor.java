@@ -0,0 +1,255 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An executor for notifications that keeps at most one pending task
+ * for each key, and serves the keys in round-robin.
+ * <p>
+ * Tasks are submitted with a key, typically the reader to notify.
+ * If a task for the same key is already waiting, it is replaced by the new
+ * one: only the latest notification is delivered. Tasks of the same key
+ * are never executed concurrently: a task submitted while the previous
+ * one is running waits for it to finish. The keys with a pending task
+ * are served in the order they became ready, and a key that receives
+ * a new task while running goes back at the end of the line,
+ * so that a reader notified at high rate cannot starve the others.
+ * <p>
+ * The tasks are executed on the given executor, which determines
+ * the number of threads. Since each key occupies at most one thread at
+ * a time, a slow listener only blocks its own reader.
+ * <p>
+ * The executor keeps statistics on the time the tasks spent waiting
+ * and on the number of tasks replaced, which tell whether
+ * the pool is large enough for the notifications it receives.
+ *
+ * @author carcassi
+ */
+public class LatestWinsExecutor implements Executor {
+
+    private static final Logger log = Logger.getLogger(LatestWinsExecutor.class.getName());
+
+    /**
+     * The tasks for a key. All fields are guarded by the slot itself.
+     */
+    private static class Slot {
+
+        private final Object key;
+        private Runnable pending;
+        private long pendingSince;
+        private boolean ready;
+        private boolean running;
+        private boolean removed;
+
+        Slot(Object key) {
+            this.key = key;
+        }
+    }
+
+    private final Executor executor;
+    private final ConcurrentMap<Object, Slot> slots = new ConcurrentHashMap<>();
+    private final Queue<Slot> readySlots = new ConcurrentLinkedQueue<>();
+    private final Runnable runNextSlot = new Runnable() {
+
+        @Override
+        public void run() {
+            runNext();
+        }
+    };
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong replacedCount = new AtomicLong();
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong totalQueueDelayNanos = new AtomicLong();
+    private final AtomicLong maxQueueDelayNanos = new AtomicLong();
+
+    /**
+     * Creates a new executor that runs the tasks on the given executor.
+     * The given executor should not discard tasks.
+     *
+     * @param executor the executor that provides the threads
+     */
+    public LatestWinsExecutor(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("Executor can't be null");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Executes the task with the given key. If a task with the same key is
+     * waiting, it is discarded and replaced by this one.
+     *
+     * @param key the key of the task; tasks are compared with equals
+     * @param command the task to execute
+     */
+    public void execute(Object key, Runnable command) {
+        if (command == null) {
+            throw new NullPointerException("Command can't be null");
+        }
+        submittedCount.incrementAndGet();
+        while (true) {
+            Slot slot = slots.get(key);
+            if (slot == null) {
+                Slot newSlot = new Slot(key);
+                slot = slots.putIfAbsent(key, newSlot);
+                if (slot == null) {
+                    slot = newSlot;
+                }
+            }
+
+            boolean becameReady = false;
+            synchronized (slot) {
+                // The slot was removed after we got it: retry with the new one
+                if (slot.removed) {
+                    continue;
+                }
+                if (slot.pending != null) {
+                    replacedCount.incrementAndGet();
+                } else {
+                    slot.pendingSince = System.nanoTime();
+                }
+                slot.pending = command;
+                if (!slot.ready && !slot.running) {
+                    slot.ready = true;
+                    becameReady = true;
+                }
+            }
+            if (becameReady) {
+                ready(slot);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Executes the task. The task is its own key, so it is never replaced.
+     *
+     * @param command the task to execute
+     */
+    @Override
+    public void execute(Runnable command) {
+        execute(command, command);
+    }
+
+    private void ready(Slot slot) {
+        readySlots.add(slot);
+        executor.execute(runNextSlot);
+    }
+
+    private void runNext() {
+        // Each slot added to the queue is paired with one execution
+        // of this method, so there is always a slot to take
+        Slot slot = readySlots.poll();
+        Runnable task;
+        long queueDelay;
+        synchronized (slot) {
+            task = slot.pending;
+            queueDelay = System.nanoTime() - slot.pendingSince;
+            slot.pending = null;
+            slot.ready = false;
+            slot.running = true;
+        }
+        executedCount.incrementAndGet();
+        totalQueueDelayNanos.addAndGet(queueDelay);
+        long max = maxQueueDelayNanos.get();
+        while (queueDelay > max && !maxQueueDelayNanos.compareAndSet(max, queueDelay)) {
+            max = maxQueueDelayNanos.get();
+        }
+
+        try {
+            task.run();
+        } catch (Exception ex) {
+            log.log(Level.WARNING, "Exception on the notification thread", ex);
+        } catch (AssertionError ex) {
+            log.log(Level.WARNING, "Assertion failed on the notification thread", ex);
+        } finally {
+            boolean becameReady = false;
+            synchronized (slot) {
+                slot.running = false;
+                if (slot.pending != null) {
+                    // Back at the end of the line
+                    slot.ready = true;
+                    becameReady = true;
+                } else {
+                    slot.removed = true;
+                    slots.remove(slot.key, slot);
+                }
+            }
+            if (becameReady) {
+                ready(slot);
+            }
+        }
+    }
+
+    /**
+     * The number of tasks submitted.
+     *
+     * @return the number of submitted tasks
+     */
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    /**
+     * The number of tasks that were discarded because a newer task with
+     * the same key was submitted before they could start.
+     *
+     * @return the number of replaced tasks
+     */
+    public long getReplacedCount() {
+        return replacedCount.get();
+    }
+
+    /**
+     * The number of tasks executed.
+     *
+     * @return the number of executed tasks
+     */
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    /**
+     * The number of keys that have a task waiting for a thread.
+     *
+     * @return the number of keys waiting
+     */
+    public int getQueuedCount() {
+        return readySlots.size();
+    }
+
+    /**
+     * The average time between the moment a key had a task waiting
+     * and the moment the task started.
+     *
+     * @return the average queue delay in nanoseconds; 0 if no task was executed
+     */
+    public long getAverageQueueDelayNanos() {
+        long count = executedCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return totalQueueDelayNanos.get() / count;
+    }
+
+    /**
+     * The longest time a key waited for its task to start.
+     *
+     * @return the maximum queue delay in nanoseconds
+     */
+    public long getMaxQueueDelayNanos() {
+        return maxQueueDelayNanos.get();
+    }
+}
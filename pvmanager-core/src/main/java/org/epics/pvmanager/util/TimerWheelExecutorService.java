@@ -0,0 +1,704 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.epics.util.time.TimeDuration;
+
+/**
+ * A scheduled executor service based on a hashed timer wheel, meant to
+ * be used as the read scanner executor when a large number of readers
+ * and writers are open.
+ * <p>
+ * The {@link java.util.concurrent.ScheduledThreadPoolExecutor} keeps all
+ * tasks in a single heap, guarded by a single lock: each reschedule of a periodic
+ * task is an O(log n) insertion under that lock. This service instead:
+ * <ul>
+ * <li>keeps one-shot tasks in a wheel of slots, advanced by a single thread
+ * at every tick; insertions are O(1) and lock-free;</li>
+ * <li>groups the periodic tasks with the same period in a bucket, which
+ * keeps them in a queue ordered by the time of their next execution; only
+ * the first task in the queue has a timeout in the wheel, and all the
+ * tasks that are due at the same tick are dispatched together.</li>
+ * </ul>
+ * The tasks are executed on the given executor, and never on the
+ * wheel thread. The precision of the scheduling is the tick duration.
+ * <p>
+ * The tasks scheduled with
+ * {@link #scheduleWithFixedDelay(java.lang.Runnable, long, long, java.util.concurrent.TimeUnit) }
+ * are put back at the end of the queue of their bucket when each execution ends,
+ * so the delay between the end of an execution and the start of the next is never
+ * less than the one requested. The tasks scheduled with
+ * {@link #scheduleAtFixedRate(java.lang.Runnable, long, long, java.util.concurrent.TimeUnit) }
+ * are put back when they are dispatched, one period after the time they were due,
+ * so that they keep their rate. If the previous execution of such a task is still
+ * running, that period is skipped for that task. As for the standard executors,
+ * a periodic task that throws an exception is not executed again.
+ * <p>
+ * At shutdown, all the tasks that were not executed yet are discarded and cancelled.
+ *
+ * @author carcassi
+ */
+public class TimerWheelExecutorService extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private static final Logger log = Logger.getLogger(TimerWheelExecutorService.class.getName());
+
+    // Number of tasks of a bucket submitted as a single unit to the executor
+    private static final int DISPATCH_BATCH_SIZE = 128;
+
+    private final Executor executor;
+    private final long tickNanos;
+    private final int wheelMask;
+    private final Thread wheelThread;
+    private final long startNanos;
+
+    // Only accessed by the wheel thread
+    private final List<Queue<Timeout>> wheel;
+    private long currentTick = 0;
+    private int timeoutCount = 0;
+
+    // Accessed by all threads
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final ConcurrentMap<BucketKey, PeriodBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger periodicTaskCount = new AtomicInteger();
+    private volatile boolean shutdown = false;
+    private volatile boolean idle = false;
+
+    /**
+     * Creates a new timer wheel with the given parameters.
+     *
+     * @param executor the executor on which tasks will run; can't be null
+     * @param tickDuration the precision of the timer; must be positive
+     * @param ticksPerWheel the number of slots in the wheel; rounded up to a power of 2
+     * @param threadFactory the factory for the thread that advances the wheel; can't be null
+     */
+    public TimerWheelExecutorService(Executor executor, TimeDuration tickDuration, int ticksPerWheel, ThreadFactory threadFactory) {
+        if (executor == null) {
+            throw new NullPointerException("Executor can't be null");
+        }
+        if (tickDuration.toNanosLong() <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive (was " + tickDuration + ")");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("Ticks per wheel must be between 1 and 2^30 (was " + ticksPerWheel + ")");
+        }
+        this.executor = executor;
+        this.tickNanos = tickDuration.toNanosLong();
+        int wheelSize = 1;
+        while (wheelSize < ticksPerWheel) {
+            wheelSize <<= 1;
+        }
+        this.wheelMask = wheelSize - 1;
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new ArrayDeque<Timeout>());
+        }
+        this.startNanos = System.nanoTime();
+        this.wheelThread = threadFactory.newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                runWheel();
+            }
+        });
+        wheelThread.start();
+    }
+
+    /**
+     * Creates a new timer wheel with a 1 ms tick and 512 slots.
+     *
+     * @param executor the executor on which tasks will run; can't be null
+     */
+    public TimerWheelExecutorService(Executor executor) {
+        this(executor, TimeDuration.ofMillis(1), 512, Executors.namedPool("PVMgr Timer Wheel "));
+    }
+
+    /**
+     * An entry in the wheel.
+     */
+    private static abstract class Timeout {
+        final long deadlineNanos;
+        long remainingRounds;
+
+        Timeout(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        abstract boolean isCancelled();
+
+        abstract void expire();
+
+        abstract void discard();
+    }
+
+    private void runWheel() {
+        while (!shutdown) {
+            // If there is nothing to do, stop ticking until
+            // a new timeout is added
+            if (timeoutCount == 0) {
+                idle = true;
+                if (newTimeouts.isEmpty() && !shutdown) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                currentTick = Math.max(currentTick, (System.nanoTime() - startNanos) / tickNanos);
+            }
+            
+            long deadline = startNanos + (currentTick + 1) * tickNanos;
+            long sleepNanos = deadline - System.nanoTime();
+            while (sleepNanos > 0 && !shutdown) {
+                LockSupport.parkNanos(this, sleepNanos);
+                sleepNanos = deadline - System.nanoTime();
+            }
+            if (shutdown) {
+                break;
+            }
+
+            transferNewTimeouts();
+            Queue<Timeout> slot = wheel.get((int) (currentTick & wheelMask));
+            // Advance before expiring, so that timeouts added
+            // during the expiration go to the following ticks
+            currentTick++;
+            expireTimeouts(slot);
+        }
+
+        // Discard all pending work
+        Timeout timeout = newTimeouts.poll();
+        while (timeout != null) {
+            timeout.discard();
+            timeout = newTimeouts.poll();
+        }
+        for (Queue<Timeout> slot : wheel) {
+            for (Timeout slotTimeout : slot) {
+                slotTimeout.discard();
+            }
+            slot.clear();
+        }
+        for (PeriodBucket bucket : buckets.values()) {
+            bucket.discard();
+        }
+        buckets.clear();
+    }
+
+    private void transferNewTimeouts() {
+        Timeout timeout = newTimeouts.poll();
+        while (timeout != null) {
+            if (!timeout.isCancelled()) {
+                addToWheel(timeout);
+            }
+            timeout = newTimeouts.poll();
+        }
+    }
+
+    private void addToWheel(Timeout timeout) {
+        // Tick at which the deadline is reached
+        long targetTick = (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos - 1;
+        if (targetTick < currentTick) {
+            targetTick = currentTick;
+        }
+        timeout.remainingRounds = (targetTick - currentTick) / wheel.size();
+        wheel.get((int) (targetTick & wheelMask)).add(timeout);
+        timeoutCount++;
+    }
+
+    private void expireTimeouts(Queue<Timeout> slot) {
+        Iterator<Timeout> iter = slot.iterator();
+        List<Timeout> expired = null;
+        while (iter.hasNext()) {
+            Timeout timeout = iter.next();
+            if (timeout.isCancelled()) {
+                iter.remove();
+                timeoutCount--;
+            } else if (timeout.remainingRounds <= 0) {
+                iter.remove();
+                timeoutCount--;
+                if (expired == null) {
+                    expired = new ArrayList<>();
+                }
+                expired.add(timeout);
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+
+        // Expire after the iteration, as a bucket may reschedule
+        // itself in the same slot
+        if (expired != null) {
+            for (Timeout timeout : expired) {
+                try {
+                    timeout.expire();
+                } catch (RuntimeException ex) {
+                    log.log(Level.WARNING, "Failed to dispatch scheduled task", ex);
+                }
+            }
+        }
+    }
+
+    private void schedule(Timeout timeout) {
+        if (shutdown) {
+            throw new RejectedExecutionException("TimerWheelExecutorService was shut down");
+        }
+        newTimeouts.add(timeout);
+        if (idle) {
+            LockSupport.unpark(wheelThread);
+        }
+    }
+
+    private void reschedule(Timeout timeout) {
+        if (!shutdown) {
+            newTimeouts.add(timeout);
+            if (idle) {
+                LockSupport.unpark(wheelThread);
+            }
+        }
+        // The wheel thread may have already discarded the pending timeouts
+        if (shutdown) {
+            timeout.discard();
+        }
+    }
+
+    /**
+     * A scheduled task, either one-shot or periodic.
+     *
+     * @param <V> the result type
+     */
+    private class WheelFuture<V> extends FutureTask<V> implements ScheduledFuture<V> {
+
+        private final long periodNanos;
+        private final boolean fixedDelay;
+        private volatile long nextRunNanos;
+        // Set when a task at a fixed rate is dispatched, cleared at the end
+        private final AtomicBoolean running = new AtomicBoolean();
+        // Set by the wheel thread when the task joins the bucket
+        private volatile PeriodBucket bucket;
+        private final AtomicBoolean leftBucket = new AtomicBoolean();
+
+        WheelFuture(Callable<V> callable, long delayNanos) {
+            super(callable);
+            this.periodNanos = 0;
+            this.fixedDelay = false;
+            this.nextRunNanos = System.nanoTime() + delayNanos;
+        }
+
+        WheelFuture(Runnable runnable, long delayNanos, long periodNanos, boolean fixedDelay) {
+            super(runnable, null);
+            this.periodNanos = periodNanos;
+            this.fixedDelay = fixedDelay;
+            this.nextRunNanos = System.nanoTime() + delayNanos;
+            periodicTaskCount.incrementAndGet();
+        }
+
+        boolean isPeriodic() {
+            return periodNanos != 0;
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+                return;
+            }
+
+            if (fixedDelay) {
+                // The next execution is queued only when this one ends
+                if (runAndReset()) {
+                    nextRunNanos = System.nanoTime() + periodNanos;
+                    bucket.add(this);
+                }
+                return;
+            }
+
+            // The next execution was already queued when dispatched
+            try {
+                runAndReset();
+            } finally {
+                running.set(false);
+            }
+        }
+
+        @Override
+        protected void done() {
+            // Either cancelled or failed: called only once
+            if (isPeriodic()) {
+                periodicTaskCount.decrementAndGet();
+                leaveBucket();
+            }
+        }
+
+        void leaveBucket() {
+            // Called when done, and when joining in case it was done before:
+            // the bucket counts the task only once
+            PeriodBucket currentBucket = bucket;
+            if (currentBucket != null && leftBucket.compareAndSet(false, true)) {
+                currentBucket.taskLeft();
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(nextRunNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+            return (diff < 0) ? -1 : ((diff > 0) ? 1 : 0);
+        }
+
+    }
+
+    /**
+     * The timeout that dispatches a task to the executor.
+     */
+    private class TaskTimeout extends Timeout {
+        private final WheelFuture<?> future;
+
+        TaskTimeout(WheelFuture<?> future, long deadlineNanos) {
+            super(deadlineNanos);
+            this.future = future;
+        }
+
+        @Override
+        boolean isCancelled() {
+            return future.isCancelled();
+        }
+
+        @Override
+        void expire() {
+            if (future.isPeriodic()) {
+                // First execution: join the bucket for the following ones
+                PeriodBucket bucket = addToBucket(future);
+                if (!future.fixedDelay) {
+                    future.nextRunNanos = nextRate(future, deadlineNanos, System.nanoTime());
+                    future.running.set(true);
+                    bucket.add(future);
+                }
+            }
+            executor.execute(future);
+        }
+
+        @Override
+        void discard() {
+            future.cancel(false);
+        }
+
+    }
+
+    /**
+     * The period and the kind of the tasks in a bucket.
+     */
+    private static class BucketKey {
+
+        private final long periodNanos;
+        private final boolean fixedDelay;
+
+        BucketKey(long periodNanos, boolean fixedDelay) {
+            this.periodNanos = periodNanos;
+            this.fixedDelay = fixedDelay;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) obj;
+            return periodNanos == other.periodNanos && fixedDelay == other.fixedDelay;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (periodNanos ^ (periodNanos >>> 32)) + (fixedDelay ? 1 : 0);
+        }
+    }
+
+    /**
+     * All the periodic tasks of the same kind that have the same period.
+     * Since the period is the same, the tasks are queued in the order
+     * they are due, and only the first one needs a timeout.
+     * The buckets are created and removed only by the wheel thread.
+     */
+    private class PeriodBucket {
+
+        private final BucketKey key;
+        private final Queue<WheelFuture<?>> queue = new ConcurrentLinkedQueue<>();
+        // Set while a timeout for the bucket is pending
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicInteger taskCount = new AtomicInteger();
+
+        PeriodBucket(BucketKey key) {
+            this.key = key;
+        }
+
+        void add(WheelFuture<?> task) {
+            queue.add(task);
+            if (scheduled.compareAndSet(false, true)) {
+                reschedule(new BucketTimeout(this, task.nextRunNanos));
+            } else if (shutdown) {
+                task.cancel(false);
+            }
+        }
+
+        void taskLeft() {
+            // The last task left: a timeout removes the bucket
+            if (taskCount.decrementAndGet() == 0 && scheduled.compareAndSet(false, true)) {
+                reschedule(new BucketTimeout(this, System.nanoTime()));
+            }
+        }
+
+        void discard() {
+            WheelFuture<?> task = queue.poll();
+            while (task != null) {
+                task.cancel(false);
+                task = queue.poll();
+            }
+        }
+
+        private void dispatch(final List<WheelFuture<?>> batch) {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (WheelFuture<?> task : batch) {
+                        if (!task.isDone()) {
+                            task.run();
+                        }
+                    }
+                }
+            });
+        }
+
+    }
+
+    /**
+     * The timeout that dispatches the tasks of a bucket that are due.
+     */
+    private class BucketTimeout extends Timeout {
+
+        private final PeriodBucket bucket;
+
+        BucketTimeout(PeriodBucket bucket, long deadlineNanos) {
+            super(deadlineNanos);
+            this.bucket = bucket;
+        }
+
+        @Override
+        boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        void expire() {
+            long now = System.nanoTime();
+            List<WheelFuture<?>> batch = new ArrayList<>(DISPATCH_BATCH_SIZE);
+            WheelFuture<?> task = bucket.queue.peek();
+            while (task != null) {
+                if (task.isDone()) {
+                    bucket.queue.poll();
+                } else if (task.nextRunNanos - now > 0) {
+                    // The following ones are not due either
+                    break;
+                } else {
+                    bucket.queue.poll();
+                    boolean dispatch = true;
+                    if (!task.fixedDelay) {
+                        // Queue the next execution right away, to keep the rate
+                        task.nextRunNanos = nextRate(task, task.nextRunNanos, now);
+                        bucket.queue.add(task);
+                        // Skip if the previous execution is still running
+                        dispatch = task.running.compareAndSet(false, true);
+                    }
+                    if (dispatch) {
+                        batch.add(task);
+                        if (batch.size() == DISPATCH_BATCH_SIZE) {
+                            bucket.dispatch(batch);
+                            batch = new ArrayList<>(DISPATCH_BATCH_SIZE);
+                        }
+                    }
+                }
+                task = bucket.queue.peek();
+            }
+            if (!batch.isEmpty()) {
+                bucket.dispatch(batch);
+            }
+
+            // Only the wheel thread removes from the queue: we are
+            // on the wheel thread, so there is no need to go through
+            // the new timeouts
+            if (task != null) {
+                addToWheel(new BucketTimeout(bucket, task.nextRunNanos));
+                return;
+            }
+            bucket.scheduled.set(false);
+            if (bucket.taskCount.get() == 0) {
+                // Tasks join only on the wheel thread: the bucket
+                // can be removed safely
+                buckets.remove(bucket.key, bucket);
+                return;
+            }
+            // A task may have been queued after the queue was found empty
+            task = bucket.queue.peek();
+            if (task != null && bucket.scheduled.compareAndSet(false, true)) {
+                addToWheel(new BucketTimeout(bucket, task.nextRunNanos));
+            }
+        }
+
+        @Override
+        void discard() {
+            bucket.discard();
+        }
+
+    }
+
+    /**
+     * The next time a task at a fixed rate is due, skipping the periods
+     * that are already past.
+     */
+    private static long nextRate(WheelFuture<?> task, long dueNanos, long nowNanos) {
+        long next = dueNanos + task.periodNanos;
+        if (next - nowNanos <= 0) {
+            next += ((nowNanos - next) / task.periodNanos + 1) * task.periodNanos;
+        }
+        return next;
+    }
+
+    private PeriodBucket addToBucket(WheelFuture<?> future) {
+        // Called by the wheel thread
+        BucketKey key = new BucketKey(future.periodNanos, future.fixedDelay);
+        PeriodBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new PeriodBucket(key);
+            buckets.put(key, bucket);
+        }
+        bucket.taskCount.incrementAndGet();
+        future.bucket = bucket;
+        if (future.isDone()) {
+            future.leaveBucket();
+        }
+        return bucket;
+    }
+
+    /**
+     * Returns the number of periodic tasks currently scheduled.
+     *
+     * @return the number of periodic tasks
+     */
+    public int getPeriodicTaskCount() {
+        return periodicTaskCount.get();
+    }
+
+    /**
+     * The number of buckets for the periodic tasks.
+     *
+     * @return the number of buckets
+     */
+    int getBucketCount() {
+        return buckets.size();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        WheelFuture<Object> future = new WheelFuture<>(java.util.concurrent.Executors.callable(command), unit.toNanos(delay));
+        schedule(new TaskTimeout(future, future.nextRunNanos));
+        return future;
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        WheelFuture<V> future = new WheelFuture<>(callable, unit.toNanos(delay));
+        schedule(new TaskTimeout(future, future.nextRunNanos));
+        return future;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return schedulePeriodic(command, initialDelay, period, unit, false);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return schedulePeriodic(command, initialDelay, delay, unit, true);
+    }
+
+    private ScheduledFuture<?> schedulePeriodic(Runnable command, long initialDelay, long period, TimeUnit unit, boolean fixedDelay) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive (was " + period + ")");
+        }
+        if (shutdown) {
+            throw new RejectedExecutionException("TimerWheelExecutorService was shut down");
+        }
+        WheelFuture<Object> future = new WheelFuture<>(command, unit.toNanos(initialDelay), unit.toNanos(period), fixedDelay);
+        try {
+            schedule(new TaskTimeout(future, future.nextRunNanos));
+        } catch (RejectedExecutionException ex) {
+            future.cancel(false);
+            throw ex;
+        }
+        return future;
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(wheelThread);
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && !wheelThread.isAlive();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        wheelThread.join(Math.max(1, unit.toMillis(timeout)));
+        return isTerminated();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("TimerWheelExecutorService was shut down");
+        }
+        executor.execute(command);
+    }
+
+}
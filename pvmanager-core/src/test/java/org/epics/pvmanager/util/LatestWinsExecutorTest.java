@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class LatestWinsExecutorTest {
+
+    public LatestWinsExecutorTest() {
+    }
+
+    /**
+     * Keeps the tasks until they are run by the test.
+     */
+    private static class ManualExecutor implements Executor {
+
+        private final Queue<Runnable> tasks = new LinkedList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static Runnable record(final List<String> log, final String name) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                log.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void execute1() {
+        // Pending task is replaced by the new one
+        ManualExecutor pool = new ManualExecutor();
+        LatestWinsExecutor executor = new LatestWinsExecutor(pool);
+        List<String> log = new ArrayList<>();
+        executor.execute("reader", record(log, "A1"));
+        executor.execute("reader", record(log, "A2"));
+        executor.execute("reader", record(log, "A3"));
+        assertThat(pool.tasks.size(), equalTo(1));
+        pool.runAll();
+        assertThat(log, equalTo(Arrays.asList("A3")));
+        assertThat(executor.getSubmittedCount(), equalTo(3L));
+        assertThat(executor.getReplacedCount(), equalTo(2L));
+        assertThat(executor.getExecutedCount(), equalTo(1L));
+        assertThat(executor.getQueuedCount(), equalTo(0));
+    }
+
+    @Test
+    public void execute2() {
+        // A task submitted while the same key is running waits for it,
+        // and goes after the other keys
+        final ManualExecutor pool = new ManualExecutor();
+        final LatestWinsExecutor executor = new LatestWinsExecutor(pool);
+        final List<String> log = new ArrayList<>();
+        final List<Integer> queuedDuringA1 = new ArrayList<>();
+        executor.execute("A", new Runnable() {
+
+            @Override
+            public void run() {
+                log.add("A1");
+                executor.execute("A", record(log, "A2"));
+                queuedDuringA1.add(pool.tasks.size());
+            }
+        });
+        executor.execute("B", record(log, "B1"));
+        pool.runAll();
+        assertThat(log, equalTo(Arrays.asList("A1", "B1", "A2")));
+        // Only the task for B was waiting while A1 was running
+        assertThat(queuedDuringA1, equalTo(Arrays.asList(1)));
+        assertThat(executor.getExecutedCount(), equalTo(3L));
+        assertThat(executor.getReplacedCount(), equalTo(0L));
+    }
+
+    @Test
+    public void execute3() {
+        // Tasks without a key are never replaced
+        ManualExecutor pool = new ManualExecutor();
+        LatestWinsExecutor executor = new LatestWinsExecutor(pool);
+        List<String> log = new ArrayList<>();
+        executor.execute(record(log, "A"));
+        executor.execute(record(log, "B"));
+        pool.runAll();
+        assertThat(log, equalTo(Arrays.asList("A", "B")));
+    }
+
+    @Test
+    public void execute4() {
+        // An exception does not block the key
+        ManualExecutor pool = new ManualExecutor();
+        LatestWinsExecutor executor = new LatestWinsExecutor(pool);
+        List<String> log = new ArrayList<>();
+        executor.execute("reader", new Runnable() {
+
+            @Override
+            public void run() {
+                throw new RuntimeException("Listener failed");
+            }
+        });
+        pool.runAll();
+        executor.execute("reader", record(log, "A2"));
+        pool.runAll();
+        assertThat(log, equalTo(Arrays.asList("A2")));
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class TimerWheelExecutorServiceTest {
+
+    public TimerWheelExecutorServiceTest() {
+    }
+
+    private ExecutorService pool;
+    private TimerWheelExecutorService timer;
+
+    @Before
+    public void setUp() {
+        pool = java.util.concurrent.Executors.newCachedThreadPool(Executors.namedPool("TimerWheelTest "));
+        timer = new TimerWheelExecutorService(pool);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        timer.shutdown();
+        timer.awaitTermination(1, TimeUnit.SECONDS);
+        pool.shutdownNow();
+    }
+
+    /**
+     * Records the start and the end of each execution.
+     */
+    private static class Recorder implements Runnable {
+
+        private final List<Long> starts = new CopyOnWriteArrayList<>();
+        private final List<Long> ends = new CopyOnWriteArrayList<>();
+        private final long durationMs;
+        private final CountDownLatch latch;
+
+        Recorder(long durationMs, int executions) {
+            this.durationMs = durationMs;
+            this.latch = new CountDownLatch(executions);
+        }
+
+        @Override
+        public void run() {
+            starts.add(System.nanoTime());
+            try {
+                Thread.sleep(durationMs);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            ends.add(System.nanoTime());
+            latch.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void schedule1() throws Exception {
+        // A one-shot task does not run before its delay
+        Recorder recorder = new Recorder(0, 1);
+        long start = System.nanoTime();
+        ScheduledFuture<?> future = timer.schedule(recorder, 50, TimeUnit.MILLISECONDS);
+        assertThat(recorder.await(), equalTo(true));
+        assertThat(recorder.starts.get(0) - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50)));
+        future.get(1, TimeUnit.SECONDS);
+        assertThat(future.isDone(), equalTo(true));
+    }
+
+    @Test
+    public void schedule2() throws Exception {
+        // The result of a callable is returned by the future
+        ScheduledFuture<String> future = timer.schedule(new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                return "result";
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        assertThat(future.get(1, TimeUnit.SECONDS), equalTo("result"));
+    }
+
+    @Test
+    public void schedule3() throws Exception {
+        // A delay longer than a wheel revolution (512 ms) is respected
+        Recorder recorder = new Recorder(0, 1);
+        long start = System.nanoTime();
+        timer.schedule(recorder, 700, TimeUnit.MILLISECONDS);
+        assertThat(recorder.await(), equalTo(true));
+        assertThat(recorder.starts.get(0) - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(700)));
+    }
+
+    @Test
+    public void scheduleWithFixedDelay1() throws Exception {
+        // The delay between the end of an execution and the start of the
+        // next is never less than the one requested
+        Recorder recorder = new Recorder(30, 5);
+        ScheduledFuture<?> future = timer.scheduleWithFixedDelay(recorder, 0, 20, TimeUnit.MILLISECONDS);
+        assertThat(recorder.await(), equalTo(true));
+        future.cancel(false);
+        for (int i = 1; i < 5; i++) {
+            assertThat(recorder.starts.get(i) - recorder.ends.get(i - 1), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20)));
+        }
+    }
+
+    @Test
+    public void scheduleWithFixedDelay2() throws Exception {
+        // The tasks with the same delay share a bucket, and each
+        // keeps the delay from the end of its own execution
+        Recorder first = new Recorder(0, 5);
+        Recorder second = new Recorder(15, 5);
+        ScheduledFuture<?> firstFuture = timer.scheduleWithFixedDelay(first, 0, 20, TimeUnit.MILLISECONDS);
+        Thread.sleep(7);
+        ScheduledFuture<?> secondFuture = timer.scheduleWithFixedDelay(second, 0, 20, TimeUnit.MILLISECONDS);
+        assertThat(first.await(), equalTo(true));
+        assertThat(second.await(), equalTo(true));
+        assertThat(timer.getBucketCount(), equalTo(1));
+        firstFuture.cancel(false);
+        secondFuture.cancel(false);
+        for (Recorder recorder : Arrays.asList(first, second)) {
+            for (int i = 1; i < 5; i++) {
+                long delay = recorder.starts.get(i) - recorder.ends.get(i - 1);
+                assertThat(delay, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20)));
+                assertThat(delay, lessThan(TimeUnit.MILLISECONDS.toNanos(40)));
+            }
+        }
+    }
+
+    @Test
+    public void scheduleAtFixedRate1() throws Exception {
+        // A task joining the bucket of an existing task with a different
+        // phase keeps its own rate (within the tick precision)
+        Recorder existing = new Recorder(0, 1);
+        ScheduledFuture<?> existingFuture = timer.scheduleAtFixedRate(existing, 0, 100, TimeUnit.MILLISECONDS);
+        assertThat(existing.await(), equalTo(true));
+        Thread.sleep(70);
+
+        Recorder recorder = new Recorder(0, 3);
+        long start = System.nanoTime();
+        ScheduledFuture<?> future = timer.scheduleAtFixedRate(recorder, 0, 100, TimeUnit.MILLISECONDS);
+        assertThat(recorder.await(), equalTo(true));
+        future.cancel(false);
+        existingFuture.cancel(false);
+        for (int i = 0; i < 3; i++) {
+            long elapsed = recorder.starts.get(i) - start;
+            assertThat(elapsed, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100 * i)));
+            assertThat(elapsed, lessThan(TimeUnit.MILLISECONDS.toNanos(100 * i + 30)));
+        }
+        assertThat(timer.getBucketCount(), equalTo(1));
+    }
+
+    @Test
+    public void cancel1() throws Exception {
+        // A cancelled one-shot task does not run
+        Recorder recorder = new Recorder(0, 1);
+        ScheduledFuture<?> future = timer.schedule(recorder, 50, TimeUnit.MILLISECONDS);
+        assertThat(future.cancel(false), equalTo(true));
+        Thread.sleep(100);
+        assertThat(recorder.starts.size(), equalTo(0));
+        assertThat(future.isCancelled(), equalTo(true));
+    }
+
+    @Test
+    public void cancel2() throws Exception {
+        // Cancelled periodic tasks stop, and their bucket is removed
+        Recorder fixedRate = new Recorder(0, 2);
+        Recorder fixedDelay = new Recorder(0, 2);
+        ScheduledFuture<?> fixedRateFuture = timer.scheduleAtFixedRate(fixedRate, 0, 10, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> fixedDelayFuture = timer.scheduleWithFixedDelay(fixedDelay, 0, 10, TimeUnit.MILLISECONDS);
+        assertThat(fixedRate.await(), equalTo(true));
+        assertThat(fixedDelay.await(), equalTo(true));
+        assertThat(timer.getPeriodicTaskCount(), equalTo(2));
+        assertThat(timer.getBucketCount(), equalTo(2));
+
+        fixedRateFuture.cancel(false);
+        fixedDelayFuture.cancel(false);
+        assertThat(timer.getPeriodicTaskCount(), equalTo(0));
+        Thread.sleep(50);
+        int fixedRateCount = fixedRate.starts.size();
+        int fixedDelayCount = fixedDelay.starts.size();
+        Thread.sleep(50);
+        assertThat(fixedRate.starts.size(), equalTo(fixedRateCount));
+        assertThat(fixedDelay.starts.size(), equalTo(fixedDelayCount));
+        assertThat(timer.getBucketCount(), equalTo(0));
+    }
+
+    @Test
+    public void shutdown1() throws Exception {
+        // At shutdown, pending tasks are cancelled and new ones are rejected
+        Recorder recorder = new Recorder(0, 1);
+        ScheduledFuture<?> oneShot = timer.schedule(recorder, 1, TimeUnit.SECONDS);
+        ScheduledFuture<?> periodic = timer.scheduleWithFixedDelay(recorder, 1, 1, TimeUnit.SECONDS);
+        timer.shutdown();
+        assertThat(timer.isShutdown(), equalTo(true));
+        assertThat(timer.awaitTermination(1, TimeUnit.SECONDS), equalTo(true));
+        assertThat(oneShot.isCancelled(), equalTo(true));
+        assertThat(periodic.isCancelled(), equalTo(true));
+        assertThat(recorder.starts.size(), equalTo(0));
+        assertThat(timer.getPeriodicTaskCount(), equalTo(0));
+
+        try {
+            timer.schedule(recorder, 1, TimeUnit.MILLISECONDS);
+            fail("Task accepted after shutdown");
+        } catch (RejectedExecutionException ex) {
+            // Expected
+        }
+        try {
+            timer.scheduleAtFixedRate(recorder, 1, 1, TimeUnit.MILLISECONDS);
+            fail("Task accepted after shutdown");
+        } catch (RejectedExecutionException ex) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void exception1() throws Exception {
+        // A one-shot task that fails reports the exception in the future
+        ScheduledFuture<Object> future = timer.schedule(new Callable<Object>() {
+
+            @Override
+            public Object call() throws Exception {
+                throw new IllegalStateException("Failed");
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Exception not reported");
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause(), instanceOf(IllegalStateException.class));
+        }
+    }
+
+    @Test
+    public void exception2() throws Exception {
+        // A periodic task that fails is not run again, and does not
+        // stop the other tasks in the bucket
+        final AtomicInteger failingCount = new AtomicInteger();
+        ScheduledFuture<?> failing = timer.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                failingCount.incrementAndGet();
+                throw new IllegalStateException("Failed");
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+        Recorder recorder = new Recorder(0, 5);
+        ScheduledFuture<?> future = timer.scheduleAtFixedRate(recorder, 0, 10, TimeUnit.MILLISECONDS);
+        assertThat(recorder.await(), equalTo(true));
+        future.cancel(false);
+
+        assertThat(failingCount.get(), equalTo(1));
+        assertThat(failing.isDone(), equalTo(true));
+        try {
+            failing.get();
+            fail("Exception not reported");
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause(), instanceOf(IllegalStateException.class));
+        }
+    }
+}
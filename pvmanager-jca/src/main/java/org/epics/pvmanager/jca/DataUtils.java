@@ -4,6 +4,7 @@
  */
 package org.epics.pvmanager.jca;
 
+import gov.aps.jca.dbr.DBR;
 import gov.aps.jca.dbr.Severity;
 import gov.aps.jca.dbr.Status;
 import gov.aps.jca.dbr.TimeStamp;
@@ -90,6 +91,23 @@ class DataUtils {
         return epicsPossibleStatus;
     }
 
+    /**
+     * The number of elements of the array in the DBR that are part of
+     * the value. For variable length arrays, the array may be larger
+     * than the element count.
+     *
+     * @param dbr the value received
+     * @param arrayLength the length of the array in the DBR
+     * @return the number of valid elements
+     */
+    static int elementCount(DBR dbr, int arrayLength) {
+        int count = dbr.getCount();
+        if (count <= 0 || count > arrayLength) {
+            return arrayLength;
+        }
+        return count;
+    }
+
     /**
      * Determines whether the timestamp represents good data or not. It
      * checks whether the seconds are either a UNIX 0 or a Epics 0.
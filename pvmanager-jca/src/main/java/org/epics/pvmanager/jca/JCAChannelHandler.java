@@ -24,10 +24,11 @@ import gov.aps.jca.event.PutListener;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.epics.pvmanager.*;
 import org.epics.util.array.CollectionNumbers;
@@ -50,7 +51,6 @@ import org.epics.util.array.ListNumber;
  */
 class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload, JCAMessagePayload> {
 
-    private static final int LARGE_ARRAY = 100000;
     private final JCADataSource jcaDataSource;
     private final String jcaChannelName;
     // TODO: probably all volatile members could be guarded by this
@@ -59,16 +59,35 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
     private volatile boolean needsMonitor;
     private Monitor valueMonitor;
     private Monitor metadataMonitor;
-    private volatile boolean largeArray = false;
+    // The type and count the monitors were created with
+    private DBRType valueMonitorType;
+    private int valueMonitorCount;
+    private DBRType metadataMonitorType;
+    // The priority the channel was created with, and the element count
+    // of the last connection (negative if never connected)
+    private volatile short priority;
+    private volatile int lastElementCount = -1;
     private volatile boolean sentReadOnlyException = false;
-    private final boolean putCallback;
+    private final JCAChannelOptions options;
     private final boolean longString;
     
     // For the AccessChaneListener we need to guard it differently
     private final AtomicBoolean needsAccessChangeListener = new AtomicBoolean(false);
     
-    public static Pattern longStringPattern = Pattern.compile(".+\\..*\\$.*");
-    private final static Pattern hasOptions = Pattern.compile("(.*) (\\{.*\\})");
+    // The value and metadata events are merged into a single message, so
+    // they need to be processed one at a time. This is a separate lock
+    // so that the CA callbacks are not blocked by readers being added
+    // or by connection events, which lock the handler.
+    private final Object messageLock = new Object();
+    
+    /**
+     * The pattern of the names read as long strings.
+     * 
+     * @deprecated not used by the handler, which checks the names with
+     * {@link #isLongStringName(java.lang.String)}, and kept only for compatibility
+     */
+    @Deprecated
+    public static final Pattern longStringPattern = Pattern.compile(".+\\..*\\$.*");
     
     private final static Logger log = Logger.getLogger(JCAChannelHandler.class.getName());
 
@@ -77,40 +96,30 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
         setProcessMessageOnReconnect(false);
         this.jcaDataSource = jcaDataSource;
         
-        boolean longStringName = longStringPattern.matcher(channelName).matches();
-        
         // Parse parameters
         // Done here so that they can be immutable
-        Matcher matcher = hasOptions.matcher(getChannelName());
-        if (matcher.matches()) {
-            jcaChannelName = matcher.group(1);
-            String clientOptions = matcher.group(2);
-            // TODO: Hack, this should have a real JSON parser
-            switch (clientOptions) {
-                case "{\"putCallback\":true}":
-                    putCallback = true;
-                    longString = longStringName;
-                    break;
-                case "{\"putCallback\":false}":
-                    putCallback = false;
-                    longString = longStringName;
-                    break;
-                case "{\"longString\":true}":
-                    putCallback = false;
-                    longString = true;
-                    break;
-                case "{\"longString\":false}":
-                    putCallback = false;
-                    longString = false;
-                    break;
-                default:
-                    throw new IllegalArgumentException("Option not recognized for " + getChannelName());
-            }
+        // The options are separated by a space, which can't be part of a CA name
+        int optionsStart = channelName.indexOf(" {");
+        if (optionsStart != -1 && channelName.endsWith("}")) {
+            jcaChannelName = channelName.substring(0, optionsStart);
+            options = JCAChannelOptions.of(channelName.substring(optionsStart + 1));
         } else {
-            longString = longStringName;
-            putCallback = false;
             jcaChannelName = channelName;
+            options = JCAChannelOptions.DEFAULT;
         }
+        longString = options.isLongString(isLongStringName(jcaChannelName));
+    }
+    
+    /**
+     * Whether the name refers to a field to be read as a long string,
+     * such as "record.NAME$".
+     * 
+     * @param name the CA name
+     * @return true if the name ends with a field followed by $
+     */
+    static boolean isLongStringName(String name) {
+        int dot = name.indexOf('.', 1);
+        return dot != -1 && name.indexOf('$', dot + 1) != -1;
     }
 
     /**
@@ -119,7 +128,38 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
      * @return true if a put callback should be used
      */
     public boolean isPutCallback() {
-        return putCallback;
+        return options.isPutCallback();
+    }
+
+    /**
+     * The minimum change of a scalar numeric value for a monitor event
+     * to be processed. The events that change the alarm are always processed.
+     * 
+     * @return the deadband; 0 if all the events are processed
+     */
+    public double getDeadband() {
+        return options.getDeadband();
+    }
+    
+    /**
+     * The minimum time between two monitor events that are processed. The
+     * events in between are dropped, except the last, which is processed
+     * at the end of the interval.
+     * 
+     * @return the interval in nanoseconds; 0 if all the events are processed
+     */
+    public long getMinIntervalNanos() {
+        return options.getMinIntervalNanos();
+    }
+    
+    /**
+     * The DBE mask for the value monitor of this channel, which
+     * overrides the one of the data source.
+     * 
+     * @return the mask; 0 if the one of the data source is used
+     */
+    public int getMonitorMask() {
+        return options.getMonitorMask();
     }
 
     /**
@@ -162,12 +202,9 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
         
         try {
             // Give the listener right away so that no event gets lost
-	    // If it's a large array, connect using lower priority
-	    if (largeArray) {
-                channel = jcaDataSource.getContext().createChannel(getJcaChannelName(), connectionListener, Channel.PRIORITY_MIN);
-	    } else {
-                channel = jcaDataSource.getContext().createChannel(getJcaChannelName(), connectionListener, (short) (Channel.PRIORITY_MIN + 1));
-	    }
+            // The size is known only if the channel was connected before
+            priority = priorityFor(lastElementCount);
+            channel = jcaDataSource.getContext().createChannel(getJcaChannelName(), connectionListener, priority);
         } catch (CAException ex) {
             throw new RuntimeException("JCA Connection failed", ex);
         }
@@ -307,28 +344,36 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
 
                 @Override
                 public void getCompleted(GetEvent ev) {
-                    synchronized(JCAChannelHandler.this) {
+                    synchronized(messageLock) {
                         if (log.isLoggable(Level.FINEST)) {
                             log.log(Level.FINEST, "JCA metadata getCompleted for channel {0} event {1}", new Object[] {getChannelName(), ev});
                         }
                         
                         // In case the metadata arrives after the monitor
                         MonitorEvent event = null;
-                        if (getLastMessagePayload() != null) {
-                            event = getLastMessagePayload().getEvent();
+                        if (lastPayload != null) {
+                            event = lastPayload.getEvent();
                         }
-                        processMessage(new JCAMessagePayload(ev.getDBR(), event));
+                        processPayload(new JCAMessagePayload(ev.getDBR(), event));
                     }
                 }
             });
         }
 
         if (needsMonitor) {
-            // At each (re)connect, we need to create a new monitor:
-            // since the type could be changed, we would have a type mismatch
-            // between the current type and the old type when the monitor was
-            // created
-            
+            // The monitor is restored by the CA library on reconnect, with the
+            // type and count it was created with: if those did not change,
+            // the monitor can be kept. Otherwise, we need to create a new monitor,
+            // or we would have a type mismatch between the current type and the
+            // old type when the monitor was created
+            DBRType valueType = valueTypeFor(channel);
+            int count = countFor(channel);
+            if (isCurrent(valueMonitor, channel) && valueType.equals(valueMonitorType) && count == valueMonitorCount) {
+                needsMonitor = false;
+            }
+        }
+        
+        if (needsMonitor) {
             // XXX: Ideally, we would destroy the monitor on reconnect,
             // but currently this does not work with CAJ (you get an
             // IllegalStateException because the transport is not there
@@ -339,32 +384,70 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
             // this would cause one last event to reach the monitorListener.
             // So, we remove the monitorListener right before the clear.
             
-            // TODO: we could remember the previous type, and reconnect
-            // only if the type actually changed
             if (valueMonitor != null) {
                 valueMonitor.removeMonitorListener(monitorListener);
                 valueMonitor.clear();
                 valueMonitor = null;
             }
             
-            valueMonitor = channel.addMonitor(valueTypeFor(channel), countFor(channel), jcaDataSource.getMonitorMask(), monitorListener);
+            valueMonitorType = valueTypeFor(channel);
+            valueMonitorCount = countFor(channel);
+            int mask = options.getMonitorMask();
+            if (mask == 0) {
+                mask = jcaDataSource.getMonitorMask();
+            }
+            valueMonitor = channel.addMonitor(valueMonitorType, valueMonitorCount, mask, monitorListener);
             needsMonitor = false;
         }
 
-        // Remove current metadata monitor
-        if (metadataMonitor != null) {
-            metadataMonitor.removeMonitorListener(metadataListener);
-            metadataMonitor.clear();
-            metadataMonitor = null;
+        // Setup metadata monitor if required, keeping the current one
+        // if it's still valid
+        DBRType newMetadataMonitorType = null;
+        if (jcaDataSource.isDbePropertySupported()) {
+            newMetadataMonitorType = metaType;
         }
-        
-        // Setup metadata monitor if required
-        if (jcaDataSource.isDbePropertySupported() && metaType != null) {
-            metadataMonitor = channel.addMonitor(metaType, 1, Monitor.PROPERTY, metadataListener);
+        if (!isCurrent(metadataMonitor, channel) || newMetadataMonitorType == null || !newMetadataMonitorType.equals(metadataMonitorType)) {
+            // Remove current metadata monitor
+            if (metadataMonitor != null) {
+                metadataMonitor.removeMonitorListener(metadataListener);
+                metadataMonitor.clear();
+                metadataMonitor = null;
+            }
+            
+            metadataMonitorType = newMetadataMonitorType;
+            if (metadataMonitorType != null) {
+                metadataMonitor = channel.addMonitor(metadataMonitorType, 1, Monitor.PROPERTY, metadataListener);
+            }
         }
 
-        // Flush the entire context (it's the best we can do)
-        channel.getContext().flushIO();
+        // Flush the entire context (it's the best we can do), once
+        // for all the channels that are reconnecting together
+        jcaDataSource.flushIOLater();
+    }
+    
+    /**
+     * The priority for the channel, given its size.
+     * 
+     * @param elementCount the number of elements; negative if not known
+     * @return the CA priority
+     */
+    private short priorityFor(int elementCount) {
+        if (options.getPriority() != null) {
+            return options.getPriority();
+        }
+        return jcaDataSource.getPriorityPolicy().priorityFor(getJcaChannelName(), elementCount);
+    }
+    
+    /**
+     * Whether the monitor was created for the given channel, and can be
+     * reused for its reconnection.
+     * 
+     * @param monitor a monitor; can be null
+     * @param channel the current channel
+     * @return true if the monitor can be kept
+     */
+    private static boolean isCurrent(Monitor monitor, Channel channel) {
+        return monitor != null && monitor.getChannel() == channel;
     }
     
     private final ConnectionListener connectionListener = new ConnectionListener() {
@@ -381,13 +464,15 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
                         // synchronization problem
                         Channel channel = (Channel) ev.getSource();
 
-                        // Check whether the channel is large and was opened
-                        // as large. Reconnect if does not match
-                        if (ev.isConnected() && channel.getElementCount() >= LARGE_ARRAY && !largeArray) {
-                            disconnect();
-                            largeArray = true;
-                            connect();
-                            return;
+                        // Check whether the size of the channel requires
+                        // a different priority. Reconnect if does not match
+                        if (ev.isConnected()) {
+                            lastElementCount = channel.getElementCount();
+                            if (priorityFor(lastElementCount) != priority) {
+                                disconnect();
+                                connect();
+                                return;
+                            }
                         }
 
                         processConnection(new JCAConnectionPayload(JCAChannelHandler.this, channel, getConnectionPayload()));
@@ -402,6 +487,11 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
                             setup(channel);
                         } else {
                             resetMessage();
+                            synchronized(messageLock) {
+                                lastPayload = null;
+                            }
+                            // The first value after the reconnection is always processed
+                            resetFilter = true;
                             // Next connection, resend the read only exception if that's the case
                             sentReadOnlyException = false;
                             needsMonitor = true;
@@ -484,35 +574,163 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
 
         @Override
         public void monitorChanged(MonitorEvent event) {
-            synchronized(JCAChannelHandler.this) {
+            synchronized(messageLock) {
                 if (log.isLoggable(Level.FINEST)) {
                     log.log(Level.FINEST, "JCA value monitorChanged for channel {0} value {1}, event {2}", new Object[] {getChannelName(), toStringDBR(event.getDBR()), event});
                 }
                 
-                DBR metadata = null;
-                if (getLastMessagePayload() != null) {
-                    metadata = getLastMessagePayload().getMetadata();
+                // Drop the events the readers would never see
+                // before creating the message
+                if (isFiltered(event)) {
+                    return;
+                }
+                
+                processValueEvent(event);
+            }
+        }
+    };
+    
+    // Guarded by messageLock
+    private double lastValue = Double.NaN;
+    private Severity lastSeverity;
+    private Status lastStatus;
+    private long lastEventNanos;
+    private MonitorEvent pendingEvent;
+    private volatile boolean resetFilter = true;
+    // The last payload submitted, which may not have been dispatched yet:
+    // the value and metadata events are merged with this one, and not
+    // with the last message payload
+    private JCAMessagePayload lastPayload;
+    
+    private void processValueEvent(MonitorEvent event) {
+        DBR metadata = null;
+        if (lastPayload != null) {
+            metadata = lastPayload.getMetadata();
+        }
+        processPayload(new JCAMessagePayload(metadata, event));
+    }
+    
+    /**
+     * Processes the payload merged from the last events. Must be called
+     * with the messageLock.
+     * 
+     * @param payload the new payload
+     */
+    private void processPayload(JCAMessagePayload payload) {
+        lastPayload = payload;
+        processMessage(payload);
+    }
+    
+    /**
+     * Determines whether the event is dropped by the client side filters.
+     * If it's dropped because of the minimum interval, it's kept, and
+     * processed at the end of the interval unless a newer event replaces it.
+     * Must be called with the messageLock.
+     * 
+     * @param event the monitor event
+     * @return true if the event should not be processed now
+     */
+    private boolean isFiltered(MonitorEvent event) {
+        if (resetFilter) {
+            resetFilter = false;
+            lastValue = Double.NaN;
+            lastSeverity = null;
+            lastStatus = null;
+            pendingEvent = null;
+            lastEventNanos = System.nanoTime() - options.getMinIntervalNanos();
+        }
+        
+        if (options.getDeadband() > 0 && isWithinDeadband(event.getDBR())) {
+            return true;
+        }
+        
+        if (options.getMinIntervalNanos() > 0) {
+            long now = System.nanoTime();
+            long delay = lastEventNanos + options.getMinIntervalNanos() - now;
+            if (delay > 0) {
+                if (pendingEvent == null) {
+                    PVManager.getReadScannerExecutorService().schedule(pendingEventTask, delay, TimeUnit.NANOSECONDS);
+                }
+                pendingEvent = event;
+                return true;
+            }
+            lastEventNanos = now;
+            pendingEvent = null;
+        }
+        
+        return false;
+    }
+    
+    private final Runnable pendingEventTask = new Runnable() {
+
+        @Override
+        public void run() {
+            synchronized(messageLock) {
+                MonitorEvent event = pendingEvent;
+                pendingEvent = null;
+                if (event != null && !resetFilter) {
+                    lastEventNanos = System.nanoTime();
+                    processValueEvent(event);
                 }
-                processMessage(new JCAMessagePayload(metadata, event));
             }
         }
     };
     
+    private boolean isWithinDeadband(DBR dbr) {
+        // Only applies to numeric scalars: the enum indexes are not
+        // magnitudes, so any change is significant
+        if (dbr == null || dbr.getCount() != 1 || dbr.getType().isENUM()) {
+            return false;
+        }
+        
+        double value;
+        Object array = dbr.getValue();
+        if (array instanceof double[]) {
+            value = ((double[]) array)[0];
+        } else if (array instanceof float[]) {
+            value = ((float[]) array)[0];
+        } else if (array instanceof int[]) {
+            value = ((int[]) array)[0];
+        } else if (array instanceof short[]) {
+            value = ((short[]) array)[0];
+        } else if (array instanceof byte[]) {
+            value = ((byte[]) array)[0];
+        } else {
+            return false;
+        }
+        Severity severity = null;
+        Status status = null;
+        if (dbr instanceof STS) {
+            severity = ((STS) dbr).getSeverity();
+            status = ((STS) dbr).getStatus();
+        }
+        
+        if (!Double.isNaN(lastValue) && Math.abs(value - lastValue) < options.getDeadband()
+                && Objects.equals(severity, lastSeverity) && Objects.equals(status, lastStatus)) {
+            return true;
+        }
+        
+        lastValue = value;
+        lastSeverity = severity;
+        lastStatus = status;
+        return false;
+    }
+    
     private final MonitorListener metadataListener = new MonitorListener() {
 
         @Override
         public void monitorChanged(MonitorEvent ev) {
-            synchronized(JCAChannelHandler.this) {
+            synchronized(messageLock) {
                 if (log.isLoggable(Level.FINEST)) {
                     log.log(Level.FINEST, "JCA metadata monitorChanged for channel {0} event {1}", new Object[] {getChannelName(), ev});
                 }
 
                 // In case the metadata arrives after the monitor
                 MonitorEvent event = null;
-                if (getLastMessagePayload() != null) {
-                    event = getLastMessagePayload().getEvent();
+                if (lastPayload != null) {
+                    event = lastPayload.getEvent();
                 }
-                processMessage(new JCAMessagePayload(ev.getDBR(), event));
+                processPayload(new JCAMessagePayload(ev.getDBR(), event));
             }
         }
     };
@@ -532,6 +750,10 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
         } finally {
             channel = null;
             sentReadOnlyException = false;
+            resetFilter = true;
+            synchronized(messageLock) {
+                lastPayload = null;
+            }
             processConnection(null);
         }
     }
@@ -581,6 +803,7 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
                 properties.put("CA Hostname", channel.getHostName());
                 properties.put("CA Channel type", channel.getFieldType().getName());
                 properties.put("CA Element count", channel.getElementCount());
+                properties.put("CA Priority", priority);
                 properties.put("CA Read access", channel.getReadAccess());
                 properties.put("CA Write access", channel.getWriteAccess());
             }
@@ -610,6 +833,9 @@ class JCAChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload,
         if (channel.getElementCount() == 1)
             return 1;
         
+        if (options.getElementCount() != 0)
+            return Math.min(options.getElementCount(), channel.getElementCount());
+        
         if (jcaDataSource.isVarArraySupported())
             return 0;
         else
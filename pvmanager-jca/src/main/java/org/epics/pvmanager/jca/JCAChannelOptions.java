@@ -0,0 +1,427 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.jca;
+
+import gov.aps.jca.Monitor;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The client options of a JCA channel, given as a JSON object after
+ * the channel name (e.g. <code>pvname {"putCallback":true,"deadband":0.5}</code>).
+ * <p>
+ * The supported options are:
+ * <ul>
+ * <li>putCallback (boolean) - whether to write using a put callback</li>
+ * <li>longString (boolean) - whether a BYTE[] channel represents a string;
+ * by default, determined from the channel name</li>
+ * <li>deadband (number) - the minimum change of a scalar numeric value
+ * for a monitor event to be processed; enums are not filtered</li>
+ * <li>minInterval (number) - the minimum time in seconds between
+ * two monitor events that are processed</li>
+ * <li>dbeMask (string) - the DBE mask for the value monitor,
+ * as a combination of VALUE, LOG (or ARCHIVE), ALARM and PROPERTY
+ * separated by "|" (e.g. "VALUE|ALARM")</li>
+ * <li>priority (number) - the CA priority of the channel, which overrides
+ * the priority policy of the data source</li>
+ * <li>elementCount (number) - the maximum number of elements requested
+ * for the value monitor</li>
+ * </ul>
+ * The options are immutable, and are shared by all the channels with the same
+ * option string.
+ *
+ * @author carcassi
+ */
+class JCAChannelOptions {
+
+    /**
+     * The options of a channel with no options.
+     */
+    static final JCAChannelOptions DEFAULT = new JCAChannelOptions(new Builder());
+
+    // The number of different option strings is expected to be small:
+    // past this size, the options are parsed each time
+    private static final int MAX_CACHED_OPTIONS = 1000;
+    private static final ConcurrentMap<String, JCAChannelOptions> cache = new ConcurrentHashMap<>();
+
+    private final Boolean putCallback;
+    private final Boolean longString;
+    private final double deadband;
+    private final long minIntervalNanos;
+    private final int monitorMask;
+    private final Short priority;
+    private final int elementCount;
+
+    private JCAChannelOptions(Builder builder) {
+        this.putCallback = builder.putCallback;
+        this.longString = builder.longString;
+        this.deadband = builder.deadband;
+        this.minIntervalNanos = builder.minIntervalNanos;
+        this.monitorMask = builder.monitorMask;
+        this.priority = builder.priority;
+        this.elementCount = builder.elementCount;
+    }
+
+    /**
+     * Returns the options for the given JSON object, parsing it only
+     * the first time.
+     *
+     * @param json the options, including the curly braces
+     * @return the parsed options
+     * @throws IllegalArgumentException if the options are not valid
+     */
+    static JCAChannelOptions of(String json) {
+        JCAChannelOptions options = cache.get(json);
+        if (options == null) {
+            options = parse(json);
+            if (cache.size() < MAX_CACHED_OPTIONS) {
+                JCAChannelOptions previous = cache.putIfAbsent(json, options);
+                if (previous != null) {
+                    options = previous;
+                }
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Parses the JSON object with the options. The object must be
+     * flat: the values can be booleans, numbers, strings or null (which
+     * leaves the default).
+     *
+     * @param json the options, including the curly braces
+     * @return the parsed options
+     * @throws IllegalArgumentException if the options are not valid
+     */
+    static JCAChannelOptions parse(String json) {
+        Builder builder = new Builder();
+        Parser parser = new Parser(json);
+        Set<String> names = new HashSet<>();
+        parser.expect('{');
+        if (!parser.consume('}')) {
+            do {
+                String name = parser.parseString();
+                if (!names.add(name)) {
+                    throw parser.error("Duplicate option '" + name + "'");
+                }
+                parser.expect(':');
+                Object value = parser.parseValue();
+                if (value != null) {
+                    builder.set(name, value, parser);
+                }
+            } while (parser.consume(','));
+            parser.expect('}');
+        }
+        parser.expectEnd();
+        return new JCAChannelOptions(builder);
+    }
+
+    /**
+     * The values of the options while they are parsed.
+     */
+    private static class Builder {
+
+        private Boolean putCallback;
+        private Boolean longString;
+        private double deadband = 0.0;
+        private long minIntervalNanos = 0;
+        private int monitorMask = 0;
+        private Short priority;
+        private int elementCount = 0;
+
+        void set(String name, Object value, Parser parser) {
+            switch (name) {
+                case "putCallback":
+                    putCallback = booleanValue(name, value, parser);
+                    break;
+                case "longString":
+                    longString = booleanValue(name, value, parser);
+                    break;
+                case "deadband":
+                    deadband = numberValue(name, value, parser);
+                    if (deadband < 0) {
+                        throw parser.error("Option 'deadband' can't be negative");
+                    }
+                    break;
+                case "minInterval":
+                    double minInterval = numberValue(name, value, parser);
+                    if (minInterval < 0) {
+                        throw parser.error("Option 'minInterval' can't be negative");
+                    }
+                    minIntervalNanos = (long) (minInterval * 1_000_000_000.0);
+                    break;
+                case "dbeMask":
+                    monitorMask = maskValue(stringValue(name, value, parser), parser);
+                    break;
+                case "priority":
+                    double newPriority = numberValue(name, value, parser);
+                    if (newPriority != Math.rint(newPriority)) {
+                        throw parser.error("Option 'priority' must be an integer");
+                    }
+                    try {
+                        priority = JCAPriorityPolicy.validatePriority((int) newPriority);
+                    } catch (IllegalArgumentException ex) {
+                        throw parser.error(ex.getMessage());
+                    }
+                    break;
+                case "elementCount":
+                    double newElementCount = numberValue(name, value, parser);
+                    if (newElementCount < 1 || newElementCount != Math.rint(newElementCount)) {
+                        throw parser.error("Option 'elementCount' must be a positive integer");
+                    }
+                    elementCount = (int) newElementCount;
+                    break;
+                default:
+                    throw parser.error("Option '" + name + "' not recognized");
+            }
+        }
+    }
+
+    private static boolean booleanValue(String name, Object value, Parser parser) {
+        if (!(value instanceof Boolean)) {
+            throw parser.error("Option '" + name + "' must be a boolean");
+        }
+        return (Boolean) value;
+    }
+
+    private static double numberValue(String name, Object value, Parser parser) {
+        if (!(value instanceof Double)) {
+            throw parser.error("Option '" + name + "' must be a number");
+        }
+        return (Double) value;
+    }
+
+    private static String stringValue(String name, Object value, Parser parser) {
+        if (!(value instanceof String)) {
+            throw parser.error("Option '" + name + "' must be a string");
+        }
+        return (String) value;
+    }
+
+    private static int maskValue(String value, Parser parser) {
+        int mask = 0;
+        for (String token : value.split("\\|")) {
+            switch (token.trim()) {
+                case "VALUE":
+                    mask |= Monitor.VALUE;
+                    break;
+                case "LOG":
+                case "ARCHIVE":
+                    mask |= Monitor.LOG;
+                    break;
+                case "ALARM":
+                    mask |= Monitor.ALARM;
+                    break;
+                case "PROPERTY":
+                    mask |= Monitor.PROPERTY;
+                    break;
+                default:
+                    throw parser.error("DBE mask '" + token.trim() + "' not recognized");
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Whether to write using a put callback.
+     *
+     * @return true if a put callback should be used
+     */
+    boolean isPutCallback() {
+        return putCallback != null && putCallback;
+    }
+
+    /**
+     * Whether the channel represents a long string.
+     *
+     * @param defaultValue the value to use if the option was not given
+     * @return true if the channel should be handled as a long string
+     */
+    boolean isLongString(boolean defaultValue) {
+        if (longString == null) {
+            return defaultValue;
+        }
+        return longString;
+    }
+
+    /**
+     * The deadband for the scalar numeric values, excluding enums.
+     *
+     * @return the deadband; 0 if none
+     */
+    double getDeadband() {
+        return deadband;
+    }
+
+    /**
+     * The minimum time between two processed monitor events.
+     *
+     * @return the interval in nanoseconds; 0 if none
+     */
+    long getMinIntervalNanos() {
+        return minIntervalNanos;
+    }
+
+    /**
+     * The DBE mask for the value monitor.
+     *
+     * @return the mask; 0 if the one of the data source is used
+     */
+    int getMonitorMask() {
+        return monitorMask;
+    }
+
+    /**
+     * The CA priority of the channel.
+     *
+     * @return the priority; null if the policy of the data source is used
+     */
+    Short getPriority() {
+        return priority;
+    }
+
+    /**
+     * The maximum number of elements requested for the value monitor.
+     *
+     * @return the number of elements; 0 if not limited
+     */
+    int getElementCount() {
+        return elementCount;
+    }
+
+    /**
+     * A parser for a flat JSON object.
+     */
+    private static class Parser {
+
+        private final String text;
+        private int position = 0;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " in channel options " + text + " (at position " + position + ")");
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        boolean consume(char ch) {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == ch) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char ch) {
+            if (!consume(ch)) {
+                throw error("Expected '" + ch + "'");
+            }
+        }
+
+        void expectEnd() {
+            skipWhitespace();
+            if (position != text.length()) {
+                throw error("Unexpected text after the options");
+            }
+        }
+
+        String parseString() {
+            expect('"');
+            StringBuilder builder = new StringBuilder();
+            while (position < text.length()) {
+                char ch = text.charAt(position++);
+                if (ch == '"') {
+                    return builder.toString();
+                } else if (ch == '\\') {
+                    if (position >= text.length()) {
+                        break;
+                    }
+                    char escaped = text.charAt(position++);
+                    switch (escaped) {
+                        case '"':
+                        case '\\':
+                        case '/':
+                            builder.append(escaped);
+                            break;
+                        case 'b':
+                            builder.append('\b');
+                            break;
+                        case 'f':
+                            builder.append('\f');
+                            break;
+                        case 'n':
+                            builder.append('\n');
+                            break;
+                        case 'r':
+                            builder.append('\r');
+                            break;
+                        case 't':
+                            builder.append('\t');
+                            break;
+                        case 'u':
+                            if (position + 4 > text.length()) {
+                                throw error("Invalid unicode escape");
+                            }
+                            try {
+                                builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                            } catch (NumberFormatException ex) {
+                                throw error("Invalid unicode escape");
+                            }
+                            position += 4;
+                            break;
+                        default:
+                            throw error("Invalid escape '\\" + escaped + "'");
+                    }
+                } else {
+                    builder.append(ch);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        Object parseValue() {
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw error("Expected a value");
+            }
+            char ch = text.charAt(position);
+            if (ch == '"') {
+                return parseString();
+            } else if (text.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            } else if (text.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            } else if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            } else if (ch == '-' || (ch >= '0' && ch <= '9')) {
+                int start = position;
+                while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) != -1) {
+                    position++;
+                }
+                try {
+                    return Double.valueOf(text.substring(start, position));
+                } catch (NumberFormatException ex) {
+                    position = start;
+                    throw error("Invalid number");
+                }
+            } else {
+                throw error("Expected a value");
+            }
+        }
+    }
+}
@@ -19,8 +19,11 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Collection;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.epics.pvmanager.PVManager;
 import static org.epics.pvmanager.util.Executors.namedPool;
 
 /**
@@ -47,6 +50,7 @@ public class JCADataSource extends DataSource {
     private final JCATypeSupport typeSupport;
     private final boolean rtypValueOnly;
     private final boolean honorZeroPrecision;
+    private final JCAPriorityPolicy priorityPolicy;
 
     /**
      * Creates a new data source using pure Java implementation and all the
@@ -154,6 +158,8 @@ public class JCADataSource extends DataSource {
         dbePropertySupported = builder.dbePropertySupported;
         rtypValueOnly = builder.rtypValueOnly;
         honorZeroPrecision = builder.honorZeroPrecision;
+        priorityPolicy = new JCAPriorityPolicy(builder.priorityNamePatterns, builder.priorityNamePriorities,
+                builder.prioritySizeThresholds, builder.prioritySizePriorities, builder.defaultPriority);
         
         if (useContextSwitchForAccessRightCallback()) {
             contextSwitch = Executors.newSingleThreadExecutor(namedPool("PVMgr JCA Workaround "));
@@ -168,6 +174,49 @@ public class JCADataSource extends DataSource {
         ctxt.dispose();
     }
 
+    @Override
+    protected void readersAdded(Collection<ChannelHandler> channelHandlers) {
+        // Flush the requests for all the channels of the batch at once,
+        // instead of once per channel
+        try {
+            ctxt.flushIO();
+        } catch (CAException ex) {
+            log.log(Level.WARNING, "JCA flush failed", ex);
+        }
+    }
+
+    private final AtomicBoolean flushPending = new AtomicBoolean(false);
+    
+    private final Runnable flushTask = new Runnable() {
+
+        @Override
+        public void run() {
+            // Clear the flag first, so that requests queued during
+            // the flush will cause another flush
+            flushPending.set(false);
+            try {
+                ctxt.flushIO();
+            } catch (CAException ex) {
+                log.log(Level.WARNING, "JCA flush failed", ex);
+            } catch (IllegalStateException ex) {
+                // Context was already destroyed: nothing to flush
+            }
+        }
+    };
+
+    /**
+     * Flushes the requests queued on the context, on a separate thread.
+     * The flush happens once for all the requests queued by the time
+     * it runs: a storm of connection callbacks results in few flushes
+     * instead of one per channel. As in {@link #readersAdded}, the
+     * context is flushed from a thread of pvmanager, whatever its type.
+     */
+    void flushIOLater() {
+        if (flushPending.compareAndSet(false, true)) {
+            PVManager.getReadScannerExecutorService().execute(flushTask);
+        }
+    }
+
     /**
      * The context used by the data source.
      * 
@@ -231,6 +280,15 @@ public class JCADataSource extends DataSource {
     public boolean isHonorZeroPrecision() {
         return honorZeroPrecision;
     }
+
+    /**
+     * The policy that decides the CA priority of the channels.
+     * 
+     * @return the priority policy
+     */
+    JCAPriorityPolicy getPriorityPolicy() {
+        return priorityPolicy;
+    }
     
     /**
      * Determines whether the context supports variable arrays
@@ -5,6 +5,7 @@
 package org.epics.pvmanager.jca;
 
 import gov.aps.jca.CAException;
+import gov.aps.jca.Channel;
 import gov.aps.jca.Context;
 import gov.aps.jca.JCALibrary;
 import gov.aps.jca.Monitor;
@@ -13,8 +14,11 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 /**
  * Builder for {@link JCADataSource}. Given the moderate number of configuration
@@ -34,6 +38,11 @@ public class JCADataSourceBuilder {
     Boolean varArraySupported;
     boolean rtypValueOnly = false;
     boolean honorZeroPrecision = true;
+    final List<Pattern> priorityNamePatterns = new ArrayList<>();
+    final List<Short> priorityNamePriorities = new ArrayList<>();
+    final List<Integer> prioritySizeThresholds = new ArrayList<>();
+    final List<Short> prioritySizePriorities = new ArrayList<>();
+    short defaultPriority = JCAPriorityPolicy.DEFAULT_PRIORITY;
 
     /**
      * The class name for the implementation of JCA.
@@ -158,6 +167,64 @@ public class JCADataSourceBuilder {
         return this;
     }
     
+    /**
+     * The CA priority for the channels whose name matches the given
+     * regular expression. The priority is decided before the channel
+     * is created, regardless of its size: this allows, for example, to keep
+     * interactive scalars ahead of the bulk data on congested links.
+     * <p>
+     * The patterns are checked in the order they are added, and take
+     * precedence over the priorities by size.
+     * 
+     * @param namePattern a regular expression on the channel name
+     * @param priority the CA priority, from {@link Channel#PRIORITY_MIN} to {@link Channel#PRIORITY_MAX}
+     * @return this
+     */
+    public JCADataSourceBuilder channelPriority(String namePattern, int priority) {
+        priorityNamePatterns.add(Pattern.compile(namePattern));
+        priorityNamePriorities.add(JCAPriorityPolicy.validatePriority(priority));
+        return this;
+    }
+    
+    /**
+     * The CA priority for the channels with at least the given number of elements.
+     * If more thresholds apply, the one with the largest element count is used.
+     * <p>
+     * The element count is known only after the channel connects: the channels
+     * that need a different priority are reconnected once, and remember it
+     * for the following connections. Use {@link #channelPriority(java.lang.String, int) }
+     * to avoid the reconnection for the channels known in advance.
+     * <p>
+     * Default is {@link Channel#PRIORITY_MIN} for the channels with at least
+     * 100000 elements.
+     * 
+     * @param elementCount the minimum number of elements
+     * @param priority the CA priority, from {@link Channel#PRIORITY_MIN} to {@link Channel#PRIORITY_MAX}
+     * @return this
+     */
+    public JCADataSourceBuilder largeArrayPriority(int elementCount, int priority) {
+        if (elementCount < 1) {
+            throw new IllegalArgumentException("Element count must be positive (was " + elementCount + ")");
+        }
+        prioritySizeThresholds.add(elementCount);
+        prioritySizePriorities.add(JCAPriorityPolicy.validatePriority(priority));
+        return this;
+    }
+    
+    /**
+     * The CA priority for the channels that do not match any name
+     * pattern or size threshold.
+     * <p>
+     * Default is {@code Channel.PRIORITY_MIN + 1}.
+     * 
+     * @param priority the CA priority, from {@link Channel#PRIORITY_MIN} to {@link Channel#PRIORITY_MAX}
+     * @return this
+     */
+    public JCADataSourceBuilder defaultPriority(int priority) {
+        this.defaultPriority = JCAPriorityPolicy.validatePriority(priority);
+        return this;
+    }
+    
     /**
      * Creates a new data source.
      * 
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.jca;
+
+import gov.aps.jca.Channel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Decides the CA priority with which each channel is created.
+ * <p>
+ * The rules on the channel name are checked first, in the order they
+ * were added, and the first match is used. They do not depend on the
+ * channel size, so they are decided before the channel is created.
+ * Otherwise, the priority of the largest size threshold not bigger than the
+ * element count is used. Since the element count is known only
+ * after the connection, a channel whose size requires a different
+ * priority is reconnected once.
+ *
+ * @author carcassi
+ */
+class JCAPriorityPolicy {
+
+    /**
+     * The number of elements from which, by default, the channels are
+     * connected with the minimum priority.
+     */
+    static final int DEFAULT_LARGE_ARRAY = 100000;
+
+    /**
+     * The priority for the channels that match no rule.
+     */
+    static final short DEFAULT_PRIORITY = (short) (Channel.PRIORITY_MIN + 1);
+
+    private final List<Pattern> namePatterns;
+    private final List<Short> namePriorities;
+    private final List<Integer> sizeThresholds;
+    private final List<Short> sizePriorities;
+    private final short defaultPriority;
+
+    JCAPriorityPolicy(List<Pattern> namePatterns, List<Short> namePriorities,
+            List<Integer> sizeThresholds, List<Short> sizePriorities, short defaultPriority) {
+        this.namePatterns = new ArrayList<>(namePatterns);
+        this.namePriorities = new ArrayList<>(namePriorities);
+        if (sizeThresholds.isEmpty()) {
+            this.sizeThresholds = new ArrayList<>();
+            this.sizeThresholds.add(DEFAULT_LARGE_ARRAY);
+            this.sizePriorities = new ArrayList<>();
+            this.sizePriorities.add(Channel.PRIORITY_MIN);
+        } else {
+            this.sizeThresholds = new ArrayList<>(sizeThresholds);
+            this.sizePriorities = new ArrayList<>(sizePriorities);
+        }
+        this.defaultPriority = defaultPriority;
+    }
+
+    /**
+     * The priority for the channel with the given name and number
+     * of elements.
+     *
+     * @param channelName the name of the channel
+     * @param elementCount the number of elements; negative if not known
+     * @return the CA priority
+     */
+    short priorityFor(String channelName, int elementCount) {
+        for (int i = 0; i < namePatterns.size(); i++) {
+            if (namePatterns.get(i).matcher(channelName).matches()) {
+                return namePriorities.get(i);
+            }
+        }
+
+        short priority = defaultPriority;
+        int largestThreshold = -1;
+        for (int i = 0; i < sizeThresholds.size(); i++) {
+            int threshold = sizeThresholds.get(i);
+            if (elementCount >= threshold && threshold > largestThreshold) {
+                largestThreshold = threshold;
+                priority = sizePriorities.get(i);
+            }
+        }
+        return priority;
+    }
+
+    /**
+     * Checks that the priority is a valid CA priority.
+     *
+     * @param priority the priority to check
+     * @return the priority
+     */
+    static short validatePriority(int priority) {
+        if (priority < Channel.PRIORITY_MIN || priority > Channel.PRIORITY_MAX) {
+            throw new IllegalArgumentException("CA priority must be between " + Channel.PRIORITY_MIN
+                    + " and " + Channel.PRIORITY_MAX + " (was " + priority + ")");
+        }
+        return (short) priority;
+    }
+}
@@ -4,7 +4,7 @@
  */
 package org.epics.pvmanager.jca;
 
-import org.epics.pvmanager.DataSourceTypeAdapter;
+import org.epics.pvmanager.DeferrableTypeAdapter;
 import gov.aps.jca.Channel;
 import gov.aps.jca.dbr.DBR;
 import gov.aps.jca.dbr.DBRType;
@@ -13,10 +13,13 @@ import org.epics.pvmanager.ValueCache;
 /**
  * Type adapter for JCA data source. Will match a channel based on the value
  * type provided and the array flag. Will match the cache based on the type class.
+ * <p>
+ * The DBRs of the events are never modified after they are received,
+ * so the values can be created when they are read.
  *
  * @author carcassi
  */
-public abstract class JCATypeAdapter implements DataSourceTypeAdapter<JCAConnectionPayload, JCAMessagePayload> {
+public abstract class JCATypeAdapter implements DeferrableTypeAdapter<JCAConnectionPayload, JCAMessagePayload> {
 
     private final Class<?> typeClass;
     private final DBRType epicsValueType;
@@ -86,19 +89,22 @@ public abstract class JCATypeAdapter implements DataSourceTypeAdapter<JCAConnect
     @Override
     @SuppressWarnings("unchecked")
     public boolean updateCache(ValueCache cache, JCAConnectionPayload connPayload, JCAMessagePayload message) {
-        Channel channel = connPayload.getChannel();
+        if (!hasValue(connPayload, message))
+            return false;
         
+        Object value = createValue(message.getEvent().getDBR(), message.getMetadata(), connPayload);
+        cache.writeValue(value);
+        return true;
+    }
+
+    @Override
+    public boolean hasValue(JCAConnectionPayload connPayload, JCAMessagePayload message) {
         // If metadata is required and not present, no update
         if (epicsMetaType != null && message.getMetadata() == null)
             return false;
         
         // If value is not present, no update
-        if (message.getEvent() == null)
-            return false;
-        
-        Object value = createValue(message.getEvent().getDBR(), message.getMetadata(), connPayload);
-        cache.writeValue(value);
-        return true;
+        return message.getEvent() != null;
     }
 
     /**
@@ -22,18 +22,26 @@ import org.epics.vtype.ValueUtil;
  */
 class VByteArrayFromDbr extends VNumberMetadata<DBR_TIME_Byte, DBR_CTRL_Double> implements VByteArray {
 
+    private final ListByte data;
+    private final ListInt sizes;
+
     public VByteArrayFromDbr(DBR_TIME_Byte dbrValue, DBR_CTRL_Double metadata, JCAConnectionPayload connPayload) {
         super(dbrValue, metadata, connPayload);
+        // The views are created once, as the DBR is never modified
+        byte[] array = dbrValue.getByteValue();
+        int size = DataUtils.elementCount(dbrValue, array.length);
+        data = new ArrayByte(array, 0, size, true);
+        sizes = new ArrayInt(size);
     }
 
     @Override
     public ListInt getSizes() {
-        return new ArrayInt(dbrValue.getByteValue().length);
+        return sizes;
     }
 
     @Override
     public ListByte getData() {
-        return new ArrayByte(dbrValue.getByteValue());
+        return data;
     }
     
     @Override
@@ -22,18 +22,26 @@ import org.epics.vtype.ValueUtil;
  */
 class VDoubleArrayFromDbr extends VNumberMetadata<DBR_TIME_Double, DBR_CTRL_Double> implements VDoubleArray {
 
+    private final ListDouble data;
+    private final ListInt sizes;
+
     public VDoubleArrayFromDbr(DBR_TIME_Double dbrValue, DBR_CTRL_Double metadata, JCAConnectionPayload connPayload) {
         super(dbrValue, metadata, connPayload);
+        // The views are created once, as the DBR is never modified
+        double[] array = dbrValue.getDoubleValue();
+        int size = DataUtils.elementCount(dbrValue, array.length);
+        data = new ArrayDouble(array, 0, size, true);
+        sizes = new ArrayInt(size);
     }
 
     @Override
     public ListDouble getData() {
-        return new ArrayDouble(dbrValue.getDoubleValue());
+        return data;
     }
 
     @Override
     public ListInt getSizes() {
-        return new ArrayInt(dbrValue.getDoubleValue().length);
+        return sizes;
     }
     
     @Override
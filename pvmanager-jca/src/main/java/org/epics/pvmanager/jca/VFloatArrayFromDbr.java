@@ -22,18 +22,26 @@ import org.epics.vtype.ValueUtil;
  */
 class VFloatArrayFromDbr extends VNumberMetadata<DBR_TIME_Float, DBR_CTRL_Double> implements VFloatArray {
 
+    private final ListFloat data;
+    private final ListInt sizes;
+
     public VFloatArrayFromDbr(DBR_TIME_Float dbrValue, DBR_CTRL_Double metadata, JCAConnectionPayload connPayload) {
         super(dbrValue, metadata, connPayload);
+        // The views are created once, as the DBR is never modified
+        float[] array = dbrValue.getFloatValue();
+        int size = DataUtils.elementCount(dbrValue, array.length);
+        data = new ArrayFloat(array, 0, size, true);
+        sizes = new ArrayInt(size);
     }
 
     @Override
     public ListInt getSizes() {
-        return new ArrayInt(dbrValue.getFloatValue().length);
+        return sizes;
     }
 
     @Override
     public ListFloat getData() {
-        return new ArrayFloat(dbrValue.getFloatValue());
+        return data;
     }
     
     @Override
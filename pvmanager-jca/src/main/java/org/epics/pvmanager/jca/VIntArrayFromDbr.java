@@ -20,18 +20,26 @@ import org.epics.vtype.ValueUtil;
  */
 class VIntArrayFromDbr extends VNumberMetadata<DBR_TIME_Int, DBR_CTRL_Double> implements VIntArray {
 
+    private final ListInt data;
+    private final ListInt sizes;
+
     public VIntArrayFromDbr(DBR_TIME_Int dbrValue, DBR_CTRL_Double metadata, JCAConnectionPayload connPayload) {
         super(dbrValue, metadata, connPayload);
+        // The views are created once, as the DBR is never modified
+        int[] array = dbrValue.getIntValue();
+        int size = DataUtils.elementCount(dbrValue, array.length);
+        data = new ArrayInt(array, 0, size, true);
+        sizes = new ArrayInt(size);
     }
 
     @Override
     public ListInt getSizes() {
-        return new ArrayInt(dbrValue.getIntValue().length);
+        return sizes;
     }
 
     @Override
     public ListInt getData() {
-        return new ArrayInt(dbrValue.getIntValue());
+        return data;
     }
     
     @Override
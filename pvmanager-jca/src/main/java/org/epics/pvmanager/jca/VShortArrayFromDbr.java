@@ -22,18 +22,26 @@ import org.epics.vtype.ValueUtil;
  */
 class VShortArrayFromDbr extends VNumberMetadata<DBR_TIME_Short, DBR_CTRL_Double> implements VShortArray {
 
+    private final ListShort data;
+    private final ListInt sizes;
+
     public VShortArrayFromDbr(DBR_TIME_Short dbrValue, DBR_CTRL_Double metadata, JCAConnectionPayload connPayload) {
         super(dbrValue, metadata, connPayload);
+        // The views are created once, as the DBR is never modified
+        short[] array = dbrValue.getShortValue();
+        int size = DataUtils.elementCount(dbrValue, array.length);
+        data = new ArrayShort(array, 0, size, true);
+        sizes = new ArrayInt(size);
     }
 
     @Override
     public ListInt getSizes() {
-        return new ArrayInt(dbrValue.getShortValue().length);
+        return sizes;
     }
 
     @Override
     public ListShort getData() {
-        return new ArrayShort(dbrValue.getShortValue());
+        return data;
     }
     
     @Override
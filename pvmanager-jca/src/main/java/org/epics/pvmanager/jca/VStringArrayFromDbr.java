@@ -19,11 +19,15 @@ import org.epics.util.array.ListInt;
  */
 class VStringArrayFromDbr extends VMetadata<DBR_TIME_String> implements VStringArray {
     
-    private List<String> data;
+    private final List<String> data;
+    private final ListInt sizes;
 
     public VStringArrayFromDbr(DBR_TIME_String dbrValue, JCAConnectionPayload connPayload) {
         super(dbrValue, connPayload);
-        data = Collections.unmodifiableList(Arrays.asList(dbrValue.getStringValue()));
+        String[] array = dbrValue.getStringValue();
+        int size = DataUtils.elementCount(dbrValue, array.length);
+        data = Collections.unmodifiableList(Arrays.asList(array).subList(0, size));
+        sizes = new ArrayInt(size);
     }
     
     @Override
@@ -33,7 +37,7 @@ class VStringArrayFromDbr extends VMetadata<DBR_TIME_String> implements VStringA
 
     @Override
     public ListInt getSizes() {
-        return new ArrayInt(dbrValue.getStringValue().length);
+        return sizes;
     }
     
     @Override
@@ -4,12 +4,34 @@
  */
 package org.epics.pvmanager.jca;
 
+import gov.aps.jca.CAStatus;
+import gov.aps.jca.Channel;
+import gov.aps.jca.Context;
+import gov.aps.jca.Monitor;
+import gov.aps.jca.dbr.DBRType;
+import gov.aps.jca.dbr.DBR_Double;
+import gov.aps.jca.dbr.DBR_Enum;
+import gov.aps.jca.dbr.DBR_Int;
+import gov.aps.jca.dbr.DBR_TIME_Double;
+import gov.aps.jca.dbr.DBR_TIME_Enum;
+import gov.aps.jca.dbr.DBR_TIME_Int;
+import gov.aps.jca.dbr.Severity;
+import gov.aps.jca.dbr.Status;
+import gov.aps.jca.event.ConnectionEvent;
+import gov.aps.jca.event.ConnectionListener;
+import gov.aps.jca.event.MonitorEvent;
+import gov.aps.jca.event.MonitorListener;
+import java.util.Collections;
+import java.util.regex.Pattern;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
 import org.junit.Before;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import static org.mockito.Mockito.*;
+import static org.mockito.Matchers.any;
 
 /**
  *
@@ -26,6 +48,9 @@ public class JCAChannelHandlerTest {
     }
     
     @Mock JCADataSource dataSource;
+    @Mock Context context;
+    @Mock Channel jcaChannel;
+    @Mock Monitor valueMonitor;
 
     @Test
     public void new1() {
@@ -107,6 +132,274 @@ public class JCAChannelHandlerTest {
         assertThat(channel.isLongString(), equalTo(true));
     }
     
+    @Test
+    public void options1() {
+        JCAChannelHandler channel = new JCAChannelHandler("test", dataSource);
+        assertThat(channel.getDeadband(), equalTo(0.0));
+        assertThat(channel.getMinIntervalNanos(), equalTo(0L));
+        assertThat(channel.getMonitorMask(), equalTo(0));
+    }
+    
+    @Test
+    public void options2() {
+        JCAChannelHandler channel = new JCAChannelHandler("test {\"deadband\":0.5, \"minInterval\":0.25, \"dbeMask\":\"VALUE|ALARM\"}", dataSource);
+        assertThat(channel.getDeadband(), equalTo(0.5));
+        assertThat(channel.getMinIntervalNanos(), equalTo(250000000L));
+        assertThat(channel.getMonitorMask(), equalTo(Monitor.VALUE | Monitor.ALARM));
+        assertThat(channel.isPutCallback(), equalTo(false));
+    }
+    
+    @Test
+    public void options3() {
+        JCAChannelHandler channel = new JCAChannelHandler("test.NAME$ {\"putCallback\":true,\"dbeMask\":\"LOG\"}", dataSource);
+        assertThat(channel.isPutCallback(), equalTo(true));
+        assertThat(channel.isLongString(), equalTo(true));
+        assertThat(channel.getMonitorMask(), equalTo(Monitor.LOG));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void options4() {
+        JCAChannelHandler channel = new JCAChannelHandler("test {\"deadband\":-1}", dataSource);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void options5() {
+        JCAChannelHandler channel = new JCAChannelHandler("test {\"dbeMask\":\"VALUE|SOMETHING\"}", dataSource);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void options6() {
+        JCAChannelHandler channel = new JCAChannelHandler("test {\"unknown\":true}", dataSource);
+    }
+    
+    @Test
+    public void options7() {
+        JCAChannelHandler channel = new JCAChannelHandler("test {\"putCallback\":true,\"longString\":true}", dataSource);
+        assertThat(channel.getJcaChannelName(), equalTo("test"));
+        assertThat(channel.isPutCallback(), equalTo(true));
+        assertThat(channel.isLongString(), equalTo(true));
+    }
+    
+    /**
+     * Connects the handler to the mock channel, a connected scalar double.
+     * 
+     * @param handler the handler for the channel "test"
+     * @return the listener given to the context
+     */
+    private ConnectionListener connect(JCAChannelHandler handler) throws Exception {
+        when(dataSource.getContext()).thenReturn(context);
+        when(dataSource.getPriorityPolicy()).thenReturn(new JCAPriorityPolicy(Collections.<Pattern>emptyList(),
+                Collections.<Short>emptyList(), Collections.<Integer>emptyList(), Collections.<Short>emptyList(),
+                JCAPriorityPolicy.DEFAULT_PRIORITY));
+        when(dataSource.getMonitorMask()).thenReturn(Monitor.VALUE | Monitor.ALARM);
+        when(context.createChannel(anyString(), any(ConnectionListener.class), anyShort())).thenReturn(jcaChannel);
+        when(jcaChannel.getConnectionState()).thenReturn(Channel.ConnectionState.CONNECTED);
+        when(jcaChannel.getWriteAccess()).thenReturn(true);
+        when(jcaChannel.getFieldType()).thenReturn(DBR_Double.TYPE);
+        when(jcaChannel.getElementCount()).thenReturn(1);
+        when(jcaChannel.addMonitor(any(DBRType.class), anyInt(), anyInt(), any(MonitorListener.class))).thenReturn(valueMonitor);
+        when(valueMonitor.getChannel()).thenReturn(jcaChannel);
+        
+        handler.connect();
+        ArgumentCaptor<ConnectionListener> listener = ArgumentCaptor.forClass(ConnectionListener.class);
+        verify(context).createChannel(eq("test"), listener.capture(), anyShort());
+        return listener.getValue();
+    }
+    
+    private void disconnectEvent(ConnectionListener listener) {
+        when(jcaChannel.getConnectionState()).thenReturn(Channel.ConnectionState.DISCONNECTED);
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, false));
+        when(jcaChannel.getConnectionState()).thenReturn(Channel.ConnectionState.CONNECTED);
+    }
+    
+    @Test
+    public void reconnect1() throws Exception {
+        // Same type and count: the monitor restored by CA is kept
+        JCAChannelHandler handler = new JCAChannelHandler("test", dataSource);
+        ConnectionListener listener = connect(handler);
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, true));
+        verify(jcaChannel).addMonitor(eq(DBR_TIME_Double.TYPE), eq(1), eq(Monitor.VALUE | Monitor.ALARM), any(MonitorListener.class));
+        
+        disconnectEvent(listener);
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, true));
+        verify(jcaChannel, times(1)).addMonitor(any(DBRType.class), anyInt(), anyInt(), any(MonitorListener.class));
+        verify(valueMonitor, never()).clear();
+    }
+    
+    @Test
+    public void reconnect2() throws Exception {
+        // Type changed: the monitor is recreated with the new type
+        JCAChannelHandler handler = new JCAChannelHandler("test", dataSource);
+        ConnectionListener listener = connect(handler);
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, true));
+        
+        disconnectEvent(listener);
+        when(jcaChannel.getFieldType()).thenReturn(DBR_Int.TYPE);
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, true));
+        verify(valueMonitor).clear();
+        verify(jcaChannel).addMonitor(eq(DBR_TIME_Int.TYPE), eq(1), anyInt(), any(MonitorListener.class));
+        verify(jcaChannel, times(2)).addMonitor(any(DBRType.class), anyInt(), anyInt(), any(MonitorListener.class));
+    }
+    
+    @Test
+    public void reconnect3() throws Exception {
+        // Count changed: the monitor is recreated with the new count
+        JCAChannelHandler handler = new JCAChannelHandler("test", dataSource);
+        ConnectionListener listener = connect(handler);
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, true));
+        
+        disconnectEvent(listener);
+        when(jcaChannel.getElementCount()).thenReturn(5);
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, true));
+        verify(valueMonitor).clear();
+        verify(jcaChannel).addMonitor(eq(DBR_TIME_Double.TYPE), eq(5), anyInt(), any(MonitorListener.class));
+    }
+    
+    /**
+     * Gives access to the event of the last message dispatched.
+     */
+    private static class TestJCAChannelHandler extends JCAChannelHandler {
+
+        TestJCAChannelHandler(String channelName, JCADataSource jcaDataSource) {
+            super(channelName, jcaDataSource);
+        }
+        
+        MonitorEvent getLastEvent() {
+            JCAMessagePayload payload = getLastMessagePayload();
+            if (payload == null) {
+                return null;
+            }
+            return payload.getEvent();
+        }
+    }
+    
+    private MonitorListener valueListener() throws Exception {
+        ArgumentCaptor<MonitorListener> listener = ArgumentCaptor.forClass(MonitorListener.class);
+        verify(jcaChannel).addMonitor(any(DBRType.class), anyInt(), anyInt(), listener.capture());
+        return listener.getValue();
+    }
+    
+    private MonitorEvent doubleEvent(double value, Severity severity) {
+        DBR_TIME_Double dbr = new DBR_TIME_Double(new double[] {value});
+        dbr.setSeverity(severity);
+        if (Severity.NO_ALARM.equals(severity)) {
+            dbr.setStatus(Status.NO_ALARM);
+        } else {
+            dbr.setStatus(Status.HIHI_ALARM);
+        }
+        return new MonitorEvent(jcaChannel, dbr, CAStatus.NORMAL);
+    }
+    
+    private MonitorEvent enumEvent(int index) {
+        DBR_TIME_Enum dbr = new DBR_TIME_Enum(new short[] {(short) index});
+        dbr.setSeverity(Severity.NO_ALARM);
+        dbr.setStatus(Status.NO_ALARM);
+        return new MonitorEvent(jcaChannel, dbr, CAStatus.NORMAL);
+    }
+    
+    @Test
+    public void deadband1() throws Exception {
+        // Changes within the deadband are dropped, unless the alarm changes
+        TestJCAChannelHandler handler = new TestJCAChannelHandler("test {\"deadband\":0.5}", dataSource);
+        ConnectionListener listener = connect(handler);
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, true));
+        MonitorListener monitorListener = valueListener();
+        
+        MonitorEvent event = doubleEvent(1.0, Severity.NO_ALARM);
+        monitorListener.monitorChanged(event);
+        assertThat(handler.getLastEvent(), sameInstance(event));
+        monitorListener.monitorChanged(doubleEvent(1.3, Severity.NO_ALARM));
+        assertThat(handler.getLastEvent(), sameInstance(event));
+        event = doubleEvent(1.6, Severity.NO_ALARM);
+        monitorListener.monitorChanged(event);
+        assertThat(handler.getLastEvent(), sameInstance(event));
+        event = doubleEvent(1.7, Severity.MAJOR_ALARM);
+        monitorListener.monitorChanged(event);
+        assertThat(handler.getLastEvent(), sameInstance(event));
+        monitorListener.monitorChanged(doubleEvent(1.8, Severity.MAJOR_ALARM));
+        assertThat(handler.getLastEvent(), sameInstance(event));
+    }
+    
+    @Test
+    public void deadband2() throws Exception {
+        // Enums are not filtered by the deadband
+        TestJCAChannelHandler handler = new TestJCAChannelHandler("test {\"deadband\":2}", dataSource);
+        ConnectionListener listener = connect(handler);
+        when(jcaChannel.getFieldType()).thenReturn(DBR_Enum.TYPE);
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, true));
+        MonitorListener monitorListener = valueListener();
+        
+        MonitorEvent event = enumEvent(0);
+        monitorListener.monitorChanged(event);
+        assertThat(handler.getLastEvent(), sameInstance(event));
+        event = enumEvent(1);
+        monitorListener.monitorChanged(event);
+        assertThat(handler.getLastEvent(), sameInstance(event));
+    }
+    
+    @Test
+    public void deadband3() throws Exception {
+        // After a disconnection, the first value is processed
+        TestJCAChannelHandler handler = new TestJCAChannelHandler("test {\"deadband\":0.5}", dataSource);
+        ConnectionListener listener = connect(handler);
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, true));
+        MonitorListener monitorListener = valueListener();
+        monitorListener.monitorChanged(doubleEvent(1.0, Severity.NO_ALARM));
+        
+        disconnectEvent(listener);
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, true));
+        MonitorEvent event = doubleEvent(1.0, Severity.NO_ALARM);
+        monitorListener.monitorChanged(event);
+        assertThat(handler.getLastEvent(), sameInstance(event));
+    }
+    
+    @Test
+    public void minInterval1() throws Exception {
+        // The events within the interval are dropped, except the last,
+        // which is processed at the end of the interval
+        TestJCAChannelHandler handler = new TestJCAChannelHandler("test {\"minInterval\":0.1}", dataSource);
+        ConnectionListener listener = connect(handler);
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, true));
+        MonitorListener monitorListener = valueListener();
+        
+        long start = System.nanoTime();
+        MonitorEvent first = doubleEvent(1.0, Severity.NO_ALARM);
+        monitorListener.monitorChanged(first);
+        assertThat(handler.getLastEvent(), sameInstance(first));
+        monitorListener.monitorChanged(doubleEvent(2.0, Severity.NO_ALARM));
+        MonitorEvent last = doubleEvent(3.0, Severity.NO_ALARM);
+        monitorListener.monitorChanged(last);
+        assertThat(handler.getLastEvent(), sameInstance(first));
+        
+        long deadline = System.currentTimeMillis() + 1000;
+        while (handler.getLastEvent() != last && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(handler.getLastEvent(), sameInstance(last));
+        assertThat(System.nanoTime() - start, greaterThanOrEqualTo(100000000L));
+    }
+    
+    @Test
+    public void minInterval2() throws Exception {
+        // The event kept is dropped on disconnection, and the
+        // first value after the reconnection is processed
+        TestJCAChannelHandler handler = new TestJCAChannelHandler("test {\"minInterval\":0.1}", dataSource);
+        ConnectionListener listener = connect(handler);
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, true));
+        MonitorListener monitorListener = valueListener();
+        monitorListener.monitorChanged(doubleEvent(1.0, Severity.NO_ALARM));
+        monitorListener.monitorChanged(doubleEvent(2.0, Severity.NO_ALARM));
+        
+        disconnectEvent(listener);
+        Thread.sleep(200);
+        assertThat(handler.getLastEvent(), nullValue());
+        
+        listener.connectionChanged(new ConnectionEvent(jcaChannel, true));
+        MonitorEvent event = doubleEvent(3.0, Severity.NO_ALARM);
+        monitorListener.monitorChanged(event);
+        assertThat(handler.getLastEvent(), sameInstance(event));
+    }
+    
     @Test
     public void toBytes1() {
         String test = "testing";
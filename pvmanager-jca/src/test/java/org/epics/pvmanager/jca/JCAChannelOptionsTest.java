@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.jca;
+
+import gov.aps.jca.Monitor;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class JCAChannelOptionsTest {
+
+    @Test
+    public void parse1() {
+        JCAChannelOptions options = JCAChannelOptions.parse("{}");
+        assertThat(options.isPutCallback(), equalTo(false));
+        assertThat(options.isLongString(true), equalTo(true));
+        assertThat(options.isLongString(false), equalTo(false));
+        assertThat(options.getDeadband(), equalTo(0.0));
+        assertThat(options.getMinIntervalNanos(), equalTo(0L));
+        assertThat(options.getMonitorMask(), equalTo(0));
+        assertThat(options.getPriority(), nullValue());
+        assertThat(options.getElementCount(), equalTo(0));
+    }
+
+    @Test
+    public void parse2() {
+        JCAChannelOptions options = JCAChannelOptions.parse("{\"putCallback\":true,\"longString\":true}");
+        assertThat(options.isPutCallback(), equalTo(true));
+        assertThat(options.isLongString(false), equalTo(true));
+    }
+
+    @Test
+    public void parse3() {
+        JCAChannelOptions options = JCAChannelOptions.parse(" { \"deadband\" : 1.5e-1 , \"minInterval\":0.5,"
+                + "\"dbeMask\":\"VALUE | ALARM\", \"priority\":10, \"elementCount\":1000, \"longString\":null } ");
+        assertThat(options.getDeadband(), equalTo(0.15));
+        assertThat(options.getMinIntervalNanos(), equalTo(500000000L));
+        assertThat(options.getMonitorMask(), equalTo(Monitor.VALUE | Monitor.ALARM));
+        assertThat(options.getPriority(), equalTo((short) 10));
+        assertThat(options.getElementCount(), equalTo(1000));
+        assertThat(options.isLongString(true), equalTo(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse4() {
+        JCAChannelOptions.parse("{\"putCallback\":fase}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse5() {
+        JCAChannelOptions.parse("{\"putCallback\":true,\"putCallback\":false}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse6() {
+        JCAChannelOptions.parse("{\"putCallback\":1}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse7() {
+        JCAChannelOptions.parse("{\"priority\":100}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse8() {
+        JCAChannelOptions.parse("{\"elementCount\":2.5}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse9() {
+        JCAChannelOptions.parse("{\"putCallback\":true");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse10() {
+        JCAChannelOptions.parse("{\"putCallback\":true} extra");
+    }
+
+    @Test
+    public void parse11() {
+        JCAChannelOptions options = JCAChannelOptions.parse("{\"dbeMask\":\"\\u0056ALUE\"}");
+        assertThat(options.getMonitorMask(), equalTo(Monitor.VALUE));
+    }
+
+    @Test
+    public void of1() {
+        // Same options are shared
+        JCAChannelOptions options = JCAChannelOptions.of("{\"putCallback\":true}");
+        assertThat(JCAChannelOptions.of("{\"putCallback\":true}"), sameInstance(options));
+        assertThat(JCAChannelOptions.of("{\"putCallback\":false}"), not(sameInstance(options)));
+    }
+}
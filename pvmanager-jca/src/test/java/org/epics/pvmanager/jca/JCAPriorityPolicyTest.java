@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.jca;
+
+import gov.aps.jca.Channel;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class JCAPriorityPolicyTest {
+
+    private static JCAPriorityPolicy policyOf(JCADataSourceBuilder builder) {
+        return new JCAPriorityPolicy(builder.priorityNamePatterns, builder.priorityNamePriorities,
+                builder.prioritySizeThresholds, builder.prioritySizePriorities, builder.defaultPriority);
+    }
+
+    @Test
+    public void priorityFor1() {
+        // Default: large arrays have the minimum priority
+        JCAPriorityPolicy policy = policyOf(new JCADataSourceBuilder());
+        assertThat(policy.priorityFor("test", -1), equalTo((short) (Channel.PRIORITY_MIN + 1)));
+        assertThat(policy.priorityFor("test", 1), equalTo((short) (Channel.PRIORITY_MIN + 1)));
+        assertThat(policy.priorityFor("test", 100000), equalTo(Channel.PRIORITY_MIN));
+    }
+
+    @Test
+    public void priorityFor2() {
+        // The largest threshold applies
+        JCAPriorityPolicy policy = policyOf(new JCADataSourceBuilder().defaultPriority(20)
+                .largeArrayPriority(1000, 10).largeArrayPriority(100000, 1));
+        assertThat(policy.priorityFor("test", -1), equalTo((short) 20));
+        assertThat(policy.priorityFor("test", 999), equalTo((short) 20));
+        assertThat(policy.priorityFor("test", 1000), equalTo((short) 10));
+        assertThat(policy.priorityFor("test", 200000), equalTo((short) 1));
+    }
+
+    @Test
+    public void priorityFor3() {
+        // The name patterns take precedence, in order
+        JCAPriorityPolicy policy = policyOf(new JCADataSourceBuilder()
+                .channelPriority(".*:IMAGE", 0).channelPriority("BL1:.*", 50));
+        assertThat(policy.priorityFor("BL1:IMAGE", -1), equalTo((short) 0));
+        assertThat(policy.priorityFor("BL1:TEMP", -1), equalTo((short) 50));
+        assertThat(policy.priorityFor("BL1:TEMP", 200000), equalTo((short) 50));
+        assertThat(policy.priorityFor("BL2:TEMP", 200000), equalTo(Channel.PRIORITY_MIN));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void defaultPriority1() {
+        new JCADataSourceBuilder().defaultPriority(Channel.PRIORITY_MAX + 1);
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.jca;
+
+import gov.aps.jca.CAStatus;
+import gov.aps.jca.Channel.ConnectionState;
+import gov.aps.jca.dbr.DBR;
+import gov.aps.jca.dbr.DBR_CTRL_Double;
+import gov.aps.jca.dbr.DBR_Double;
+import gov.aps.jca.dbr.DBR_TIME_Double;
+import gov.aps.jca.dbr.Severity;
+import gov.aps.jca.dbr.Status;
+import gov.aps.jca.event.MonitorEvent;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.epics.pvmanager.ChannelHandler;
+import org.epics.pvmanager.ChannelWriteCallback;
+import org.epics.pvmanager.DataSource;
+import org.epics.pvmanager.DataSourceTypeAdapter;
+import org.epics.pvmanager.MultiplexedChannelHandler;
+import org.epics.pvmanager.PVManager;
+import org.epics.pvmanager.PVReader;
+import org.epics.pvmanager.ValueCache;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.VDouble;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+import static org.epics.pvmanager.jca.JCAVTypeAdapterSetTest.*;
+import static org.epics.pvmanager.util.Executors.*;
+import static org.epics.util.time.TimeDuration.*;
+
+/**
+ * Tests the values created by the JCA type adapters through a reader.
+ *
+ * @author carcassi
+ */
+public class JCATypeAdapterTest {
+    
+    public JCATypeAdapterTest() {
+    }
+
+    /**
+     * Creates a VDouble, counting the values created.
+     */
+    private static class CountingTypeAdapter extends JCATypeAdapter {
+        
+        private final AtomicInteger created = new AtomicInteger();
+
+        CountingTypeAdapter() {
+            super(VDouble.class, DBR_TIME_Double.TYPE, DBR_CTRL_Double.TYPE, false);
+        }
+
+        @Override
+        public Object createValue(DBR value, DBR metadata, JCAConnectionPayload connPayload) {
+            created.incrementAndGet();
+            return JCAVTypeAdapterSet.DBRDoubleToVDouble.createValue(value, metadata, connPayload);
+        }
+    }
+
+    /**
+     * A channel that receives the connection and the events from the test.
+     */
+    private static class TestChannelHandler extends MultiplexedChannelHandler<JCAConnectionPayload, JCAMessagePayload> {
+        
+        private final CountingTypeAdapter typeAdapter = new CountingTypeAdapter();
+
+        TestChannelHandler(String channelName) {
+            super(channelName);
+        }
+
+        @Override
+        protected void connect() {
+        }
+
+        @Override
+        protected void disconnect() {
+        }
+
+        @Override
+        protected void write(Object newValue, ChannelWriteCallback callback) {
+        }
+
+        @Override
+        protected boolean isConnected(JCAConnectionPayload payload) {
+            return payload != null && payload.isChannelConnected();
+        }
+
+        @Override
+        protected DataSourceTypeAdapter<JCAConnectionPayload, JCAMessagePayload> findTypeAdapter(ValueCache<?> cache, JCAConnectionPayload connection) {
+            return typeAdapter;
+        }
+        
+        void connected(JCAConnectionPayload connPayload) {
+            processConnection(connPayload);
+        }
+        
+        void event(JCAMessagePayload message) {
+            processMessage(message);
+        }
+    }
+
+    @Test
+    public void deferredConversion1() throws Exception {
+        // The events received while the reader is paused are never converted,
+        // and only the latest is converted when the reader scans again
+        final TestChannelHandler handler = new TestChannelHandler("test");
+        DataSource dataSource = new DataSource(false) {
+
+            @Override
+            protected ChannelHandler createChannel(String channelName) {
+                return handler;
+            }
+        };
+        PVReader<Object> pvReader = PVManager.read(channel("test")).from(dataSource)
+                .notifyOn(localThread()).maxRate(ofHertz(50));
+        try {
+            pvReader.setPaused(true);
+            long deadline = System.currentTimeMillis() + 1000;
+            while (handler.getReadUsageCounter() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            JCAConnectionPayload connPayload = mockJCAConnectionPayload(DBR_Double.TYPE, 1, ConnectionState.CONNECTED);
+            handler.connected(connPayload);
+            DBR_CTRL_Double meta = createNumericMetadata();
+            for (int i = 1; i <= 100; i++) {
+                DBR_TIME_Double value = createDBRTimeDouble(new double[]{i}, Severity.NO_ALARM, Status.NO_ALARM, Timestamp.of(1234567, i));
+                handler.event(new JCAMessagePayload(meta, new MonitorEvent(connPayload.getChannel(), value, CAStatus.NORMAL)));
+            }
+            // An event without metadata has no value
+            DBR_TIME_Double value = createDBRTimeDouble(new double[]{101}, Severity.NO_ALARM, Status.NO_ALARM, Timestamp.of(1234567, 101));
+            handler.event(new JCAMessagePayload(null, new MonitorEvent(connPayload.getChannel(), value, CAStatus.NORMAL)));
+            Thread.sleep(100);
+            assertThat(handler.typeAdapter.created.get(), equalTo(0));
+
+            pvReader.setPaused(false);
+            deadline = System.currentTimeMillis() + 1000;
+            while (pvReader.getValue() == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(pvReader.getValue(), instanceOf(VDouble.class));
+            assertThat(((VDouble) pvReader.getValue()).getValue(), equalTo(100.0));
+            assertThat(handler.typeAdapter.created.get(), equalTo(1));
+        } finally {
+            pvReader.close();
+            dataSource.close();
+        }
+    }
+}
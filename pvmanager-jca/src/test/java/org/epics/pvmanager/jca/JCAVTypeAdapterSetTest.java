@@ -891,6 +891,50 @@ public class JCAVTypeAdapterSetTest {
         assertThat(converted.toString(), equalTo(VTypeToString.toString(converted)));
     }
 
+    @Test
+    public void DBRDoubleToVDoubleArray6() {
+        // The views on the data are created once for each value
+        ValueCache<Object> cache = new ValueCacheImpl<Object>(Object.class);
+        JCATypeAdapter adapter = JCAVTypeAdapterSet.DBRDoubleToVDoubleArray;
+        
+        JCAConnectionPayload connPayload = mockJCAConnectionPayload(DBR_Double.TYPE, 3, ConnectionState.CONNECTED);
+        Timestamp timestamp = Timestamp.of(1234567,1234);
+        DBR_TIME_Double value = createDBRTimeDouble(new double[]{3.25, 3.75, 4.25}, Severity.MINOR_ALARM, Status.HIGH_ALARM, timestamp);
+        DBR_CTRL_Double meta = createNumericMetadata();
+        MonitorEvent event = new MonitorEvent(connPayload.getChannel(), value, CAStatus.NORMAL);
+        
+        adapter.updateCache(cache, connPayload, new JCAMessagePayload(meta, event));
+        
+        VDoubleArray converted = (VDoubleArray) cache.readValue();
+        assertThat(converted.getData(), sameInstance(converted.getData()));
+        assertThat(converted.getSizes(), sameInstance(converted.getSizes()));
+        assertThat(converted.getSizes().size(), equalTo(1));
+        assertThat(converted.getSizes().getInt(0), equalTo(3));
+        assertThat(CollectionNumbers.doubleArrayCopyOf(converted.getData()), equalTo(new double[]{3.25, 3.75, 4.25}));
+    }
+
+    @Test
+    public void DBRDoubleToVDoubleArray7() {
+        // Only the elements up to the count of the DBR are part of the value
+        ValueCache<Object> cache = new ValueCacheImpl<Object>(Object.class);
+        JCATypeAdapter adapter = JCAVTypeAdapterSet.DBRDoubleToVDoubleArray;
+        
+        JCAConnectionPayload connPayload = mockJCAConnectionPayload(DBR_Double.TYPE, 5, ConnectionState.CONNECTED);
+        Timestamp timestamp = Timestamp.of(1234567,1234);
+        DBR_TIME_Double value = spy(createDBRTimeDouble(new double[]{3.25, 3.75, 4.25, 0, 0}, Severity.MINOR_ALARM, Status.HIGH_ALARM, timestamp));
+        doReturn(3).when(value).getCount();
+        DBR_CTRL_Double meta = createNumericMetadata();
+        MonitorEvent event = new MonitorEvent(connPayload.getChannel(), value, CAStatus.NORMAL);
+        
+        adapter.updateCache(cache, connPayload, new JCAMessagePayload(meta, event));
+        
+        VDoubleArray converted = (VDoubleArray) cache.readValue();
+        assertThat(converted.getData().size(), equalTo(3));
+        assertThat(CollectionNumbers.doubleArrayCopyOf(converted.getData()), equalTo(new double[]{3.25, 3.75, 4.25}));
+        assertThat(converted.getSizes().size(), equalTo(1));
+        assertThat(converted.getSizes().getInt(0), equalTo(3));
+    }
+
     @Test
     public void DBRByteToVByteArray1() {
         ValueCache<Object> cache = new ValueCacheImpl<Object>(Object.class);
@@ -979,6 +1023,28 @@ public class JCAVTypeAdapterSetTest {
         assertThat(converted.toString(), equalTo(VTypeToString.toString(converted)));
     }
 
+    @Test
+    public void DBRByteToVByteArray6() {
+        // Only the elements up to the count of the DBR are part of the value
+        ValueCache<Object> cache = new ValueCacheImpl<Object>(Object.class);
+        JCATypeAdapter adapter = JCAVTypeAdapterSet.DBRByteToVByteArray;
+        
+        JCAConnectionPayload connPayload = mockJCAConnectionPayload(DBR_Byte.TYPE, 5, ConnectionState.CONNECTED);
+        Timestamp timestamp = Timestamp.of(1234567,1234);
+        DBR_TIME_Byte value = spy(createDBRTimeByte(new byte[]{3, 4, 5, 0, 0}, Severity.MINOR_ALARM, Status.HIGH_ALARM, timestamp));
+        doReturn(2).when(value).getCount();
+        DBR_CTRL_Double meta = createNumericMetadata();
+        MonitorEvent event = new MonitorEvent(connPayload.getChannel(), value, CAStatus.NORMAL);
+        
+        adapter.updateCache(cache, connPayload, new JCAMessagePayload(meta, event));
+        
+        VByteArray converted = (VByteArray) cache.readValue();
+        assertThat(converted.getData().size(), equalTo(2));
+        assertThat(CollectionNumbers.doubleArrayCopyOf(converted.getData()), equalTo(new double[]{3, 4}));
+        assertThat(converted.getSizes().size(), equalTo(1));
+        assertThat(converted.getSizes().getInt(0), equalTo(2));
+    }
+
     @Test
     public void DBRShortToVShortArray1() {
         ValueCache<Object> cache = new ValueCacheImpl<Object>(Object.class);
@@ -5,6 +5,7 @@
 package org.epics.pvmanager.pva;
 
 import java.lang.reflect.Array;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
@@ -524,7 +525,17 @@ public class PVAChannelHandler extends
 	@Override
 	public void addReader(ChannelHandlerReadSubscription subscription) {
 		super.addReader(subscription);
-		
+		createMonitor();
+	}
+
+	@Override
+	public void addReaders(Collection<ChannelHandlerReadSubscription> subscriptions) {
+		super.addReaders(subscriptions);
+		// one monitor for the whole batch
+		createMonitor();
+	}
+
+	private void createMonitor() {
 		if (!monitorCreated.getAndSet(true))
 		{
 			// TODO remove this....
@@ -7,6 +7,10 @@ package org.epics.pvmanager.test;
 import org.epics.pvmanager.ChannelWriteCallback;
 import org.epics.pvmanager.MultiplexedChannelHandler;
 import org.epics.pvmanager.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import static org.epics.pvmanager.util.Executors.namedPool;
 
 /**
  * Implementation for channels of a {@link TestDataSource}.
@@ -14,9 +18,20 @@ import org.epics.pvmanager.*;
  * @author carcassi
  */
 class DelayedWriteChannel extends MultiplexedChannelHandler<Object, Object> {
+    
+    // The writes complete on a separate thread, as they would for
+    // a network channel, so that the data source worker is not blocked
+    private static final ScheduledExecutorService writeCompletion = Executors.newSingleThreadScheduledExecutor(namedPool("Test DelayedWrite "));
+    
+    private final long delayMs;
 
     DelayedWriteChannel(String channelName) {
+        this(channelName, 1000);
+    }
+
+    DelayedWriteChannel(String channelName, long delayMs) {
         super(channelName);
+        this.delayMs = delayMs;
     }
 
     @Override
@@ -30,14 +45,19 @@ class DelayedWriteChannel extends MultiplexedChannelHandler<Object, Object> {
     }
 
     @Override
-    public void write(Object newValue, ChannelWriteCallback callback) {
-        try {
-            Thread.sleep(1000);
-            processMessage(newValue);
-            callback.channelWritten(null);
-        } catch (Exception ex) {
-            callback.channelWritten(ex);
-        }
+    public void write(final Object newValue, final ChannelWriteCallback callback) {
+        writeCompletion.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    processMessage(newValue);
+                    callback.channelWritten(null);
+                } catch (Exception ex) {
+                    callback.channelWritten(ex);
+                }
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
     }
     
 }
@@ -33,6 +33,11 @@ public final class TestDataSource extends DataSource {
         if ("delayedWrite".equals(channelName)) {
             return new DelayedWriteChannel(channelName);
         }
+        // delayedWrite:<ms>:<id> - a write that takes the given milliseconds
+        if (channelName.startsWith("delayedWrite:")) {
+            String[] tokens = channelName.split(":");
+            return new DelayedWriteChannel(channelName, Long.parseLong(tokens[1]));
+        }
         if ("delayedConnection".equals(channelName)) {
             return new DelayedConnectionChannel(channelName);
         }
@@ -4,7 +4,9 @@
  */
 package org.epics.pvmanager;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import org.epics.pvmanager.CacheCollector;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
@@ -64,4 +66,96 @@ public class CacheCollectorTest {
         assertThat(collector.readValue(), equalTo(Arrays.asList(6,7,8,9,10)));
         assertThat(collector.readValue(), equalTo(Arrays.asList(6,7,8,9,10)));
     }
+
+    @Test
+    public void setMaxSizeOverCapacity() {
+        CacheCollector<Integer> collector = new CacheCollector<>(2);
+        collector.writeValue(1);
+        collector.writeValue(2);
+        collector.writeValue(3);
+        collector.setMaxSize(5);
+        assertThat(collector.readValue(), equalTo(Arrays.asList(2,3)));
+        collector.writeValue(4);
+        assertThat(collector.readValue(), equalTo(Arrays.asList(2,3,4)));
+        collector.writeValue(5);
+        collector.writeValue(6);
+        collector.writeValue(7);
+        collector.writeValue(8);
+        assertThat(collector.readValue(), equalTo(Arrays.asList(4,5,6,7,8)));
+        assertThat(collector.readValue(), equalTo(Arrays.asList(4,5,6,7,8)));
+        assertThat(collector.getMaxSize(), equalTo(5));
+    }
+
+    @Test
+    public void concurrentWriters() throws Exception {
+        final int nValues = 10000;
+        final CacheCollector<int[]> collector = new CacheCollector<>(4 * nValues);
+        Thread[] writers = new Thread[4];
+        for (int i = 0; i < writers.length; i++) {
+            final int writer = i;
+            writers[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int n = 0; n < nValues; n++) {
+                        collector.writeValue(new int[] {writer, n});
+                    }
+                }
+            };
+            writers[i].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        
+        // All values are there, in the order each writer wrote them,
+        // and they are still there at the next read
+        for (int read = 0; read < 2; read++) {
+            int[] next = new int[writers.length];
+            for (int[] value : collector.readValue()) {
+                assertThat(value[1], equalTo(next[value[0]]));
+                next[value[0]]++;
+            }
+            for (int count : next) {
+                assertThat(count, equalTo(nValues));
+            }
+        }
+    }
+
+    @Test
+    public void readWhileWriting() throws Exception {
+        // Reading while a writer is active never consumes the values:
+        // each read returns a window of the values written so far
+        final int nValues = 100000;
+        final CacheCollector<Integer> collector = new CacheCollector<>(10);
+        Thread writer = new Thread() {
+
+            @Override
+            public void run() {
+                for (int n = 0; n < nValues; n++) {
+                    collector.writeValue(n);
+                }
+            }
+        };
+        writer.start();
+        int lastRead = -1;
+        while (writer.isAlive()) {
+            List<Integer> values = collector.readValue();
+            for (int i = 1; i < values.size(); i++) {
+                assertThat(values.get(i), equalTo(values.get(i - 1) + 1));
+            }
+            if (!values.isEmpty()) {
+                int newest = values.get(values.size() - 1);
+                assertThat(newest, greaterThanOrEqualTo(lastRead));
+                lastRead = newest;
+            }
+        }
+        writer.join();
+        List<Integer> expected = new ArrayList<>();
+        for (int n = nValues - 10; n < nValues; n++) {
+            expected.add(n);
+        }
+        assertThat(collector.readValue(), equalTo(expected));
+        assertThat(collector.readValue(), equalTo(expected));
+    }
 }
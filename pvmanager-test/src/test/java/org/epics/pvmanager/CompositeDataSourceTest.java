@@ -231,4 +231,24 @@ public class CompositeDataSourceTest {
         assertEquals(mock2Connect, mock2.getWriteRecipe());
     }
 
+    @Test
+    public void evictionPolicy1() {
+        // The eviction policy applies also to the data sources added later
+        CompositeDataSource composite = new CompositeDataSource();
+        composite.putDataSource("mock1", mock1);
+        composite.setChannelEvictionPolicy(ChannelEvictionPolicy.immediate());
+        composite.putDataSource("mock2", mock2);
+        assertThat(mock1.getChannelEvictionPolicy(), sameInstance(ChannelEvictionPolicy.immediate()));
+        assertThat(mock2.getChannelEvictionPolicy(), sameInstance(ChannelEvictionPolicy.immediate()));
+    }
+
+    @Test
+    public void evictionPolicy2() {
+        // If the composite has no policy, the one of the data source is kept
+        CompositeDataSource composite = new CompositeDataSource();
+        mock1.setChannelEvictionPolicy(ChannelEvictionPolicy.immediate());
+        composite.putDataSource("mock1", mock1);
+        assertThat(mock1.getChannelEvictionPolicy(), sameInstance(ChannelEvictionPolicy.immediate()));
+    }
+
 }
\ No newline at end of file
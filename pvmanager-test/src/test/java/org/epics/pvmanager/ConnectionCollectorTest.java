@@ -4,7 +4,9 @@
  */
 package org.epics.pvmanager;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import org.epics.pvmanager.ConnectionCollector;
 import org.epics.pvmanager.WriteFunction;
 import static org.hamcrest.Matchers.*;
@@ -76,4 +78,44 @@ public class ConnectionCollectorTest {
         collector.removeChannel("first");
         assertThat(collector.readValue(), equalTo(true));
     }
+
+    @Test
+    public void concurrentConnectionChanges() throws Exception {
+        final ConnectionCollector collector = new ConnectionCollector();
+        final List<WriteFunction<Boolean>> writeFunctions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            writeFunctions.add(collector.addChannel("channel" + i));
+        }
+        assertThat(collector.readValue(), equalTo(false));
+        
+        // Each thread flips its channels a few times, and leaves them connected
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int offset = i;
+            threads[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int n = 0; n < 10; n++) {
+                        for (int index = offset; index < writeFunctions.size(); index += 4) {
+                            writeFunctions.get(index).writeValue(n % 2 == 0);
+                        }
+                    }
+                    for (int index = offset; index < writeFunctions.size(); index += 4) {
+                        writeFunctions.get(index).writeValue(true);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(collector.readValue(), equalTo(true));
+        
+        writeFunctions.get(500).writeValue(false);
+        assertThat(collector.readValue(), equalTo(false));
+        collector.removeChannel("channel500");
+        assertThat(collector.readValue(), equalTo(true));
+    }
 }
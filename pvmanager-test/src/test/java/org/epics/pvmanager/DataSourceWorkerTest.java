@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+
+/**
+ * Tests that the operations of the same channel are executed in order
+ * on the same worker, and that the ones of different channels proceed
+ * in parallel.
+ *
+ * @author carcassi
+ */
+public class DataSourceWorkerTest {
+
+    public DataSourceWorkerTest() {
+    }
+
+    /**
+     * Records the operations and the threads on which they were executed.
+     */
+    private static class RecordingChannelHandler extends ChannelHandler {
+
+        private final List<String> operations = new ArrayList<>();
+        private final List<Thread> threads = new ArrayList<>();
+        private final CountDownLatch addReaderLatch;
+        private int readers;
+        private int writers;
+
+        RecordingChannelHandler(String channelName, CountDownLatch addReaderLatch) {
+            super(channelName);
+            this.addReaderLatch = addReaderLatch;
+        }
+
+        private synchronized void record(String operation) {
+            operations.add(operation);
+            threads.add(Thread.currentThread());
+            notifyAll();
+        }
+
+        synchronized List<String> waitForOperations(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (operations.size() < count && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+            return new ArrayList<>(operations);
+        }
+
+        synchronized List<String> getOperations() {
+            return new ArrayList<>(operations);
+        }
+
+        synchronized List<Thread> getThreads() {
+            return new ArrayList<>(threads);
+        }
+
+        @Override
+        public synchronized int getUsageCounter() {
+            return readers + writers;
+        }
+
+        @Override
+        public synchronized int getReadUsageCounter() {
+            return readers;
+        }
+
+        @Override
+        public synchronized int getWriteUsageCounter() {
+            return writers;
+        }
+
+        @Override
+        protected void addReader(ChannelHandlerReadSubscription subscription) {
+            try {
+                // Simulates a slow connection
+                addReaderLatch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                readers++;
+            }
+            record("addReader");
+        }
+
+        @Override
+        protected void removeReader(ChannelHandlerReadSubscription subscription) {
+            synchronized (this) {
+                readers--;
+            }
+            record("removeReader");
+        }
+
+        @Override
+        protected void addWriter(ChannelHandlerWriteSubscription subscription) {
+            synchronized (this) {
+                writers++;
+            }
+            record("addWriter");
+        }
+
+        @Override
+        protected void removeWrite(ChannelHandlerWriteSubscription subscription) {
+            synchronized (this) {
+                writers--;
+            }
+            record("removeWrite");
+        }
+
+        @Override
+        protected void write(Object newValue, ChannelWriteCallback callback) {
+            record("write " + newValue);
+            callback.channelWritten(null);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+    }
+
+    /**
+     * Creates a recording handler for each channel.
+     */
+    private static class RecordingDataSource extends DataSource {
+
+        private final CountDownLatch slowChannelLatch = new CountDownLatch(1);
+
+        RecordingDataSource(int workerThreads) {
+            super(true, workerThreads);
+        }
+
+        @Override
+        protected ChannelHandler createChannel(String channelName) {
+            CountDownLatch latch = new CountDownLatch(0);
+            if (channelName.startsWith("slow")) {
+                latch = slowChannelLatch;
+            }
+            return new RecordingChannelHandler(channelName, latch);
+        }
+
+        RecordingChannelHandler handler(String channelName) {
+            return (RecordingChannelHandler) getChannels().get(channelName);
+        }
+    }
+
+    @Test
+    public void sameChannel1() throws Exception {
+        // All the operations of a channel are executed in the order they
+        // were requested, on the same thread, even if the connection is slow
+        RecordingDataSource dataSource = new RecordingDataSource(4);
+        ReadExpressionTester readTester = new ReadExpressionTester(latestValueOf(channel("slow")));
+        WriteExpressionTester writeTester = new WriteExpressionTester(channel("slow"));
+        final CountDownLatch written = new CountDownLatch(1);
+
+        dataSource.connectRead(readTester.getReadRecipe());
+        dataSource.connectWrite(writeTester.getWriteRecipe());
+        writeTester.setValue(3.14);
+        dataSource.write(writeTester.getWriteRecipe(), new Runnable() {
+
+            @Override
+            public void run() {
+                written.countDown();
+            }
+        }, new ExceptionHandler());
+        dataSource.disconnectWrite(writeTester.getWriteRecipe());
+        dataSource.disconnectRead(readTester.getReadRecipe());
+        RecordingChannelHandler handler = dataSource.handler("slow");
+        Thread.sleep(100);
+        assertThat(handler.getOperations(), empty());
+
+        dataSource.slowChannelLatch.countDown();
+        assertThat(handler.waitForOperations(5), equalTo(Arrays.asList("addReader", "addWriter", "write 3.14", "removeWrite", "removeReader")));
+        assertThat(written.await(1, TimeUnit.SECONDS), equalTo(true));
+        assertThat(new HashSet<>(handler.getThreads()).size(), equalTo(1));
+        assertThat(handler.getUsageCounter(), equalTo(0));
+        dataSource.close();
+    }
+
+    @Test
+    public void differentChannels1() throws Exception {
+        // A slow channel does not hold the channels on the other workers
+        // ("slow" and "b" are assigned to different workers)
+        RecordingDataSource dataSource = new RecordingDataSource(2);
+        ReadExpressionTester slowTester = new ReadExpressionTester(latestValueOf(channel("slow")));
+        ReadExpressionTester tester = new ReadExpressionTester(latestValueOf(channel("b")));
+
+        dataSource.connectRead(slowTester.getReadRecipe());
+        dataSource.connectRead(tester.getReadRecipe());
+        assertThat(dataSource.handler("b").waitForOperations(1), equalTo(Arrays.asList("addReader")));
+        assertThat(dataSource.handler("slow").getOperations(), empty());
+
+        dataSource.slowChannelLatch.countDown();
+        assertThat(dataSource.handler("slow").waitForOperations(1), equalTo(Arrays.asList("addReader")));
+        assertThat(dataSource.handler("slow").getThreads().get(0),
+                not(sameInstance(dataSource.handler("b").getThreads().get(0))));
+        dataSource.close();
+    }
+
+    @Test
+    public void differentChannels2() throws Exception {
+        // The channels of one recipe are connected by all the workers
+        RecordingDataSource dataSource = new RecordingDataSource(2);
+        ReadExpressionTester tester = new ReadExpressionTester(mapOf(latestValueOf(channels("a", "b", "c", "d"))));
+
+        dataSource.connectRead(tester.getReadRecipe());
+        HashSet<Thread> threads = new HashSet<>();
+        for (String channelName : Arrays.asList("a", "b", "c", "d")) {
+            assertThat(dataSource.handler(channelName).waitForOperations(1), equalTo(Arrays.asList("addReader")));
+            threads.addAll(dataSource.handler(channelName).getThreads());
+        }
+        assertThat(threads.size(), equalTo(2));
+        dataSource.close();
+    }
+}
@@ -4,6 +4,7 @@
  */
 package org.epics.pvmanager;
 
+import java.util.Collections;
 import org.junit.*;
 import static org.junit.Assert.*;
 import org.mockito.Mock;
@@ -62,7 +63,7 @@ public class DatasourceTest {
         dataSource.connectRead(dataRecipe);
         
         verify(dataSource).channel("first");
-        verify(channel1).addReader(exp.recipeFor("first").getReadSubscription());
+        verify(channel1).addReaders(Collections.singleton(exp.recipeFor("first").getReadSubscription()));
     }
 
     @Test
@@ -80,8 +81,8 @@ public class DatasourceTest {
         
         verify(dataSource).channel("first");
         verify(dataSource).channel("second");
-        verify(channel1).addReader(exp.recipeFor("first").getReadSubscription());
-        verify(channel2).addReader(exp.recipeFor("second").getReadSubscription());
+        verify(channel1).addReaders(Collections.singleton(exp.recipeFor("first").getReadSubscription()));
+        verify(channel2).addReaders(Collections.singleton(exp.recipeFor("second").getReadSubscription()));
     }
 
     @Test
@@ -101,8 +102,8 @@ public class DatasourceTest {
         
         verify(dataSource, times(2)).channel("first");
         verify(dataSource).createChannel("first");
-        verify(channel1).addReader(exp1.recipeFor("first").getReadSubscription());
-        verify(channel1).addReader(exp2.recipeFor("first").getReadSubscription());
+        verify(channel1).addReaders(Collections.singleton(exp1.recipeFor("first").getReadSubscription()));
+        verify(channel1).addReaders(Collections.singleton(exp2.recipeFor("first").getReadSubscription()));
     }
 
     @Test
@@ -119,7 +120,7 @@ public class DatasourceTest {
         
         verify(dataSource).channel("changeit");
         verify(dataSource).createChannel("changeit");
-        verify(channel1).addReader(exp.recipeFor("changeit").getReadSubscription());
+        verify(channel1).addReaders(Collections.singleton(exp.recipeFor("changeit").getReadSubscription()));
         assertThat(dataSource.getChannels().get("first"), not(equalTo(null)));
         assertThat(dataSource.getChannels().get("changeit"), equalTo(null));
     }
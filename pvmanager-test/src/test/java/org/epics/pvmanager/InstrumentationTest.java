@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.epics.pvmanager.test.TestDataSource;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+import static org.epics.util.time.TimeDuration.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class InstrumentationTest {
+
+    public InstrumentationTest() {
+    }
+
+    private static class RecordingInstrumentation extends Instrumentation implements ReaderInstrumentation, ChannelInstrumentation {
+
+        private final List<String> readers = new CopyOnWriteArrayList<>();
+        private final List<String> channels = new CopyOnWriteArrayList<>();
+        private final AtomicInteger scans = new AtomicInteger();
+        private final AtomicInteger notifications = new AtomicInteger();
+        private final AtomicInteger valuesDropped = new AtomicInteger();
+        private final AtomicInteger valuesReceived = new AtomicInteger();
+        private final AtomicInteger readersClosed = new AtomicInteger();
+
+        @Override
+        public ReaderInstrumentation readerCreated(String readerName, DataSource dataSource) {
+            readers.add(readerName);
+            return this;
+        }
+
+        @Override
+        public ChannelInstrumentation channelCreated(String channelName, DataSource dataSource) {
+            channels.add(channelName);
+            return this;
+        }
+
+        @Override
+        public void scanCompleted(long readNanos) {
+            scans.incrementAndGet();
+        }
+
+        @Override
+        public void scanSkipped() {
+        }
+
+        @Override
+        public void notificationStarted(long queueNanos) {
+            notifications.incrementAndGet();
+        }
+
+        @Override
+        public void valuesDropped(int count) {
+            valuesDropped.addAndGet(count);
+        }
+
+        @Override
+        public void readerClosed() {
+            readersClosed.incrementAndGet();
+        }
+
+        @Override
+        public void valueReceived() {
+            valuesReceived.incrementAndGet();
+        }
+
+        @Override
+        public void channelClosed() {
+        }
+    }
+
+    private PVReader<Object> pvReader;
+    private DataSource dataSource;
+
+    @After
+    public void tearDown() {
+        PVManager.setInstrumentation(null);
+        if (pvReader != null) {
+            pvReader.close();
+        }
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void readerAndChannel() throws Exception {
+        RecordingInstrumentation instrumentation = new RecordingInstrumentation();
+        PVManager.setInstrumentation(instrumentation);
+        dataSource = new TestDataSource();
+        pvReader = PVManager.read(channel("delayedConnection")).from(dataSource).maxRate(ofMillis(50));
+        for (int i = 0; i < 60 && pvReader.getValue() == null; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(pvReader.getValue(), equalTo((Object) "Initial value"));
+        assertThat(instrumentation.readers, contains("delayedConnection"));
+        assertThat(instrumentation.channels, contains("delayedConnection"));
+        assertThat(instrumentation.scans.get(), greaterThan(0));
+        assertThat(instrumentation.notifications.get(), greaterThan(0));
+        assertThat(instrumentation.valuesReceived.get(), equalTo(1));
+
+        pvReader.close();
+        pvReader = null;
+        Thread.sleep(200);
+        assertThat(instrumentation.readersClosed.get(), equalTo(1));
+    }
+
+    @Test
+    public void valuesDropped() {
+        RecordingInstrumentation instrumentation = new RecordingInstrumentation();
+        QueueCollector<Integer> collector = new QueueCollector<>(2);
+        for (int i = 0; i < 5; i++) {
+            collector.writeValue(i);
+        }
+        Instrumentation.startRead(instrumentation);
+        try {
+            assertThat(collector.readValue(), contains(3, 4));
+            collector.writeValue(5);
+            assertThat(collector.readValue(), contains(5));
+        } finally {
+            Instrumentation.endRead();
+        }
+        assertThat(instrumentation.valuesDropped.get(), equalTo(3));
+    }
+}
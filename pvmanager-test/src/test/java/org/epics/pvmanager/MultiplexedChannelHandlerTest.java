@@ -0,0 +1,406 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+import static org.epics.pvmanager.util.Executors.*;
+import static org.epics.util.time.TimeDuration.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class MultiplexedChannelHandlerTest {
+
+    public MultiplexedChannelHandlerTest() {
+    }
+
+    private static class TestHandler extends MultiplexedChannelHandler<Object, Integer> {
+
+        TestHandler(String channelName) {
+            super(channelName);
+        }
+
+        @Override
+        protected void connect() {
+        }
+
+        @Override
+        protected void disconnect() {
+        }
+
+        @Override
+        protected void write(Object newValue, ChannelWriteCallback callback) {
+        }
+
+        @Override
+        protected boolean isConnected(Object payload) {
+            return payload != null;
+        }
+    }
+
+    private static final WriteFunction<Boolean> NO_CONNECTION = new WriteFunction<Boolean>() {
+
+        @Override
+        public void writeValue(Boolean newValue) {
+        }
+    };
+
+    private static final WriteFunction<Exception> NO_EXCEPTION = new WriteFunction<Exception>() {
+
+        @Override
+        public void writeValue(Exception newValue) {
+        }
+    };
+
+    @Test
+    public void processConnection1() throws Exception {
+        // The last message is processed again on reconnect
+        TestHandler handler = new TestHandler("test");
+        final ValueCacheImpl<Integer> cache = new ValueCacheImpl<>(Integer.class);
+        final AtomicInteger notifications = new AtomicInteger();
+        handler.addReader(new ChannelHandlerReadSubscription(cache, NO_EXCEPTION, NO_CONNECTION, new Runnable() {
+
+            @Override
+            public void run() {
+                notifications.incrementAndGet();
+            }
+        }));
+        handler.processConnection(new Object());
+        handler.processMessage(1);
+        assertThat(cache.readValue(), equalTo(1));
+        assertThat(notifications.get(), equalTo(1));
+
+        ValueCacheImpl<Integer> newCache = new ValueCacheImpl<>(Integer.class);
+        handler.addReader(new ChannelHandlerReadSubscription(newCache, NO_EXCEPTION, NO_CONNECTION));
+        assertThat(newCache.readValue(), equalTo(1));
+        cache.writeValue(null);
+        newCache.writeValue(null);
+        handler.processConnection(new Object());
+        assertThat(cache.readValue(), equalTo(1));
+        assertThat(newCache.readValue(), equalTo(1));
+        assertThat(notifications.get(), equalTo(2));
+    }
+
+    @Test
+    public void processConnection2() throws Exception {
+        // A replay on reconnect never processes a message older than
+        // one already dispatched, in the caches or as last message
+        final TestHandler handler = new TestHandler("test");
+        final ValueCacheImpl<Integer> cache = new ValueCacheImpl<>(Integer.class);
+        final AtomicInteger maxValue = new AtomicInteger();
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        handler.addReader(new ChannelHandlerReadSubscription(cache, NO_EXCEPTION, NO_CONNECTION, new Runnable() {
+
+            @Override
+            public void run() {
+                // Called one message at a time
+                int value = cache.readValue();
+                if (value < maxValue.get()) {
+                    outOfOrder.incrementAndGet();
+                }
+                maxValue.set(value);
+            }
+        }));
+        handler.processConnection(new Object());
+
+        final int nMessages = 100000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch messagesDone = new CountDownLatch(1);
+        Thread messages = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                for (int i = 1; i <= nMessages; i++) {
+                    handler.processMessage(i);
+                }
+                messagesDone.countDown();
+            }
+        });
+        Thread connections = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                while (messagesDone.getCount() != 0) {
+                    handler.processConnection(new Object());
+                }
+            }
+        });
+        messages.start();
+        connections.start();
+        start.countDown();
+        messages.join(10000);
+        connections.join(10000);
+
+        assertThat(outOfOrder.get(), equalTo(0));
+        assertThat(cache.readValue(), equalTo(nMessages));
+        assertThat(handler.getLastMessagePayload(), equalTo(nMessages));
+    }
+
+    /**
+     * Counts the values received out of order.
+     */
+    private static class OrderChecker implements Runnable {
+
+        private final ValueCacheImpl<Integer> cache = new ValueCacheImpl<>(Integer.class);
+        private final AtomicInteger outOfOrder;
+        private int maxValue;
+
+        OrderChecker(AtomicInteger outOfOrder) {
+            this.outOfOrder = outOfOrder;
+        }
+
+        @Override
+        public void run() {
+            // Called one message at a time
+            int value = cache.readValue();
+            if (value < maxValue) {
+                outOfOrder.incrementAndGet();
+            }
+            maxValue = value;
+        }
+
+        ChannelHandlerReadSubscription subscription() {
+            return new ChannelHandlerReadSubscription(cache, NO_EXCEPTION, NO_CONNECTION, this);
+        }
+    }
+
+    @Test
+    public void addReader1() throws Exception {
+        // The readers added while messages are dispatched receive
+        // the last message and the following ones in order
+        final TestHandler handler = new TestHandler("test");
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        OrderChecker first = new OrderChecker(outOfOrder);
+        handler.addReader(first.subscription());
+        handler.processConnection(new Object());
+
+        final int nMessages = 100000;
+        final CountDownLatch messagesDone = new CountDownLatch(1);
+        Thread messages = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 1; i <= nMessages; i++) {
+                    handler.processMessage(i);
+                }
+                messagesDone.countDown();
+            }
+        });
+        messages.start();
+        List<OrderChecker> checkers = new ArrayList<>();
+        // Limited, since each message is dispatched to all the readers
+        while (messagesDone.getCount() != 0 && checkers.size() < 1000) {
+            OrderChecker checker = new OrderChecker(outOfOrder);
+            handler.addReader(checker.subscription());
+            checkers.add(checker);
+        }
+        messages.join(10000);
+
+        assertThat(outOfOrder.get(), equalTo(0));
+        assertThat(first.cache.readValue(), equalTo(nMessages));
+        for (OrderChecker checker : checkers) {
+            assertThat(checker.cache.readValue(), equalTo(nMessages));
+        }
+    }
+
+    @Test
+    public void failingReader1() throws Exception {
+        // A reader that fails does not stop the dispatch of the following
+        // messages, and readers can still be added
+        TestHandler handler = new TestHandler("test");
+        handler.addReader(new ChannelHandlerReadSubscription(new ValueCacheImpl<>(Integer.class), NO_EXCEPTION, NO_CONNECTION, new Runnable() {
+
+            @Override
+            public void run() {
+                throw new RuntimeException("Reader failed");
+            }
+        }));
+        handler.processConnection(new Object());
+        handler.processMessage(1);
+        handler.processMessage(2);
+        assertThat(handler.getLastMessagePayload(), equalTo(2));
+
+        ValueCacheImpl<Integer> cache = new ValueCacheImpl<>(Integer.class);
+        handler.addReader(new ChannelHandlerReadSubscription(cache, NO_EXCEPTION, NO_CONNECTION));
+        assertThat(cache.readValue(), equalTo(2));
+        handler.processMessage(3);
+        assertThat(cache.readValue(), equalTo(3));
+    }
+
+    @Test
+    public void resetMessage1() throws Exception {
+        // Once the message is reset, the payload is not kept allocated
+        TestHandler handler = new TestHandler("test");
+        handler.processConnection(new Object());
+        Integer payload = new Integer(123456);
+        WeakReference<Integer> reference = new WeakReference<>(payload);
+        handler.processMessage(payload);
+        payload = null;
+        handler.resetMessage();
+
+        long deadline = System.currentTimeMillis() + 1000;
+        while (reference.get() != null && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(reference.get(), nullValue());
+    }
+
+    /**
+     * Converts the messages into strings, counting the conversions.
+     * Negative messages have no value.
+     */
+    private static class CountingTypeAdapter implements DeferrableTypeAdapter<Object, Integer> {
+
+        private final AtomicInteger conversions = new AtomicInteger();
+
+        @Override
+        public int match(ValueCache<?> cache, Object connection) {
+            return 1;
+        }
+
+        @Override
+        public Object getSubscriptionParameter(ValueCache<?> cache, Object connection) {
+            return null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean updateCache(ValueCache<?> cache, Object connection, Integer message) {
+            if (!hasValue(connection, message)) {
+                return false;
+            }
+            conversions.incrementAndGet();
+            ((ValueCache<Object>) cache).writeValue("Value " + message);
+            return true;
+        }
+
+        @Override
+        public boolean hasValue(Object connection, Integer message) {
+            return message >= 0;
+        }
+    }
+
+    private static class CountingTestHandler extends TestHandler {
+
+        private final CountingTypeAdapter typeAdapter = new CountingTypeAdapter();
+
+        CountingTestHandler(String channelName) {
+            super(channelName);
+        }
+
+        @Override
+        protected DataSourceTypeAdapter<Object, Integer> findTypeAdapter(ValueCache<?> cache, Object connection) {
+            return typeAdapter;
+        }
+    }
+
+    @Test
+    public void deferredConversion1() throws Exception {
+        // For a reader of the latest value, the messages are converted
+        // only when read, and the messages without a value are skipped
+        CountingTestHandler handler = new CountingTestHandler("test");
+        ReadExpressionTester tester = new ReadExpressionTester(latestValueOf(channel("test")));
+        final AtomicInteger updates = new AtomicInteger();
+        handler.addReader(new ChannelHandlerReadSubscription(tester.recipeFor("test").getReadSubscription().getValueCache(),
+                NO_EXCEPTION, NO_CONNECTION, new Runnable() {
+
+            @Override
+            public void run() {
+                updates.incrementAndGet();
+            }
+        }));
+        handler.processConnection(new Object());
+        for (int i = 1; i <= 10; i++) {
+            handler.processMessage(i);
+        }
+        assertThat(updates.get(), equalTo(10));
+        assertThat(handler.typeAdapter.conversions.get(), equalTo(0));
+        assertThat(tester.getValue(), equalTo((Object) "Value 10"));
+        assertThat(tester.getValue(), equalTo((Object) "Value 10"));
+        assertThat(handler.typeAdapter.conversions.get(), equalTo(1));
+
+        handler.processMessage(-1);
+        assertThat(updates.get(), equalTo(10));
+        assertThat(tester.getValue(), equalTo((Object) "Value 10"));
+        handler.processMessage(11);
+        assertThat(updates.get(), equalTo(11));
+        assertThat(tester.getValue(), equalTo((Object) "Value 11"));
+        assertThat(handler.typeAdapter.conversions.get(), equalTo(2));
+    }
+
+    @Test
+    public void deferredConversion2() throws Exception {
+        // A reader that needs all the values converts each message
+        CountingTestHandler handler = new CountingTestHandler("test");
+        ReadExpressionTester tester = new ReadExpressionTester(newValuesOf(channel("test")));
+        handler.addReader(tester.recipeFor("test").getReadSubscription());
+        handler.processConnection(new Object());
+        for (int i = 1; i <= 3; i++) {
+            handler.processMessage(i);
+        }
+        assertThat(handler.typeAdapter.conversions.get(), equalTo(3));
+        assertThat(tester.getValue(), equalTo((Object) Arrays.asList("Value 1", "Value 2", "Value 3")));
+    }
+
+    @Test
+    public void deferredConversion3() throws Exception {
+        // Through PVManager, the reader receives the latest value
+        final CountingTestHandler handler = new CountingTestHandler("test");
+        DataSource dataSource = new DataSource(false) {
+
+            @Override
+            protected ChannelHandler createChannel(String channelName) {
+                return handler;
+            }
+        };
+        PVReader<Object> pvReader = PVManager.read(channel("test")).from(dataSource)
+                .notifyOn(localThread()).maxRate(ofHertz(50));
+        try {
+            pvReader.setPaused(true);
+            long deadline = System.currentTimeMillis() + 1000;
+            while (handler.getReadUsageCounter() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            handler.processConnection(new Object());
+            for (int i = 1; i <= 100; i++) {
+                handler.processMessage(i);
+            }
+            Thread.sleep(100);
+            assertThat(handler.typeAdapter.conversions.get(), equalTo(0));
+
+            pvReader.setPaused(false);
+            deadline = System.currentTimeMillis() + 1000;
+            while (!"Value 100".equals(pvReader.getValue()) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(pvReader.getValue(), equalTo((Object) "Value 100"));
+            assertThat(handler.typeAdapter.conversions.get(), equalTo(1));
+        } finally {
+            pvReader.close();
+            dataSource.close();
+        }
+    }
+}
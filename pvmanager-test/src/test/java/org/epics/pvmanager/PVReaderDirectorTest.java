@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.epics.pvmanager.util.LatestWinsExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests the scan of the director when notifying through a {@link LatestWinsExecutor}.
+ *
+ * @author carcassi
+ */
+public class PVReaderDirectorTest {
+
+    public PVReaderDirectorTest() {
+    }
+
+    @BeforeClass
+    public static void install() {
+        BasicTypeSupport.install();
+    }
+
+    private ExecutorService notificationThread;
+    private final List<PVReaderImpl<?>> pvReaders = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        notificationThread = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        // Otherwise they would be counted as leaked
+        for (PVReaderImpl<?> pvReader : pvReaders) {
+            pvReader.close();
+        }
+        pvReaders.clear();
+        notificationThread.shutdownNow();
+        notificationThread.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Blocks the first notification until released, and keeps
+     * the values notified.
+     */
+    private static class BlockingListener<T> implements PVReaderListener<T> {
+
+        private final CountDownLatch firstEntered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<T> values = new ArrayList<>();
+        private volatile CountDownLatch notified = new CountDownLatch(1);
+
+        @Override
+        public void pvChanged(PVReaderEvent<T> event) {
+            synchronized (this) {
+                values.add(event.getPvReader().getValue());
+            }
+            firstEntered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            notified.countDown();
+        }
+
+        synchronized List<T> getValues() {
+            return new ArrayList<>(values);
+        }
+    }
+
+    private <T> PVReaderDirector<T> createDirector(ReadFunction<T> function, BlockingListener<T> listener) {
+        PVReaderImpl<T> pv = new PVReaderImpl<>("test", false);
+        pv.addPVReaderListener(listener);
+        PVReaderDirector<T> director = new PVReaderDirector<>(pv, function, null,
+                new LatestWinsExecutor(notificationThread), null, null);
+        pv.setDirector(director);
+        pvReaders.add(pv);
+        return director;
+    }
+
+    @Test
+    public void latestWins1() throws Exception {
+        // Immutable values: the scan proceeds while a notification is
+        // in flight, and only the latest value is notified
+        final AtomicInteger reads = new AtomicInteger();
+        BlockingListener<Integer> listener = new BlockingListener<>();
+        PVReaderDirector<Integer> director = createDirector(new ReadFunction<Integer>() {
+
+            @Override
+            public Integer readValue() {
+                return reads.incrementAndGet();
+            }
+        }, listener);
+
+        director.notifyPv();
+        assertThat(listener.firstEntered.await(1, TimeUnit.SECONDS), equalTo(true));
+        director.notifyPv();
+        director.notifyPv();
+        director.notifyPv();
+        assertThat(reads.get(), equalTo(4));
+
+        listener.notified = new CountDownLatch(2);
+        listener.release.countDown();
+        assertThat(listener.notified.await(1, TimeUnit.SECONDS), equalTo(true));
+        assertThat(listener.getValues(), equalTo(Arrays.asList(1, 4)));
+    }
+
+    @Test
+    public void latestWins2() throws Exception {
+        // Mutable values: the function reuses the same list, as the collectors
+        // do, so the scan is skipped while the notification is in flight
+        final AtomicInteger reads = new AtomicInteger();
+        final List<Integer> buffer = new ArrayList<>();
+        BlockingListener<List> listener = new BlockingListener<>();
+        PVReaderDirector<List> director = createDirector(new ReadFunction<List>() {
+
+            @Override
+            public List readValue() {
+                buffer.clear();
+                buffer.add(reads.incrementAndGet());
+                return buffer;
+            }
+        }, listener);
+
+        director.notifyPv();
+        assertThat(listener.firstEntered.await(1, TimeUnit.SECONDS), equalTo(true));
+        director.notifyPv();
+        director.notifyPv();
+        assertThat(reads.get(), equalTo(1));
+
+        listener.release.countDown();
+        assertThat(listener.notified.await(1, TimeUnit.SECONDS), equalTo(true));
+        // The notification is done after the listener returns
+        notificationThread.submit(new Runnable() {
+
+            @Override
+            public void run() {
+            }
+        }).get(1, TimeUnit.SECONDS);
+
+        listener.notified = new CountDownLatch(1);
+        director.notifyPv();
+        assertThat(reads.get(), equalTo(2));
+        assertThat(listener.notified.await(1, TimeUnit.SECONDS), equalTo(true));
+        assertThat(listener.getValues(), equalTo(Arrays.<List>asList(Arrays.asList(1), Arrays.asList(2))));
+    }
+}
@@ -62,4 +62,56 @@ public class QueueCollectorTest {
         assertThat(collector.readValue(), equalTo(Arrays.asList(2,3,4,5,6)));
         assertThat(collector.readValue().size(), equalTo(0));
     }
+
+    @Test
+    public void setMaxSizeOverCapacity() {
+        QueueCollector<Integer> collector = new QueueCollector<>(2);
+        collector.writeValue(1);
+        collector.writeValue(2);
+        collector.writeValue(3);
+        collector.setMaxSize(5);
+        collector.writeValue(4);
+        assertThat(collector.readValue(), equalTo(Arrays.asList(2,3,4)));
+        collector.writeValue(5);
+        collector.writeValue(6);
+        collector.writeValue(7);
+        collector.writeValue(8);
+        collector.writeValue(9);
+        collector.writeValue(10);
+        assertThat(collector.readValue(), equalTo(Arrays.asList(6,7,8,9,10)));
+        assertThat(collector.readValue().size(), equalTo(0));
+    }
+
+    @Test
+    public void concurrentWriters() throws Exception {
+        final int nValues = 10000;
+        final QueueCollector<int[]> collector = new QueueCollector<>(4 * nValues);
+        Thread[] writers = new Thread[4];
+        for (int i = 0; i < writers.length; i++) {
+            final int writer = i;
+            writers[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int n = 0; n < nValues; n++) {
+                        collector.writeValue(new int[] {writer, n});
+                    }
+                }
+            };
+            writers[i].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        
+        // All values are there, in the order each writer wrote them
+        int[] next = new int[writers.length];
+        for (int[] value : collector.readValue()) {
+            assertThat(value[1], equalTo(next[value[0]]));
+            next[value[0]]++;
+        }
+        for (int count : next) {
+            assertThat(count, equalTo(nValues));
+        }
+    }
 }
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.epics.pvmanager.expression.SourceRateExpression;
+import org.epics.pvmanager.test.MockDataSource;
+import org.junit.After;
+import org.junit.Test;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+import static org.epics.pvmanager.util.Executors.*;
+import static org.epics.util.time.TimeDuration.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the readers created in bulk.
+ *
+ * @author carcassi
+ */
+public class ReadAllTest {
+
+    public ReadAllTest() {
+    }
+
+    private List<PVReader<Object>> pvReaders = new ArrayList<>();
+
+    @After
+    public void closePVs() {
+        for (PVReader<Object> pvReader : pvReaders) {
+            pvReader.close();
+        }
+        pvReaders.clear();
+    }
+
+    private static List<SourceRateExpression<Object>> channels(String... names) {
+        List<SourceRateExpression<Object>> expressions = new ArrayList<>();
+        for (String name : names) {
+            expressions.add(channel(name));
+        }
+        return expressions;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(ChannelReadRecipe recipe, Object value) {
+        ((ValueCache<Object>) recipe.getReadSubscription().getValueCache()).writeValue(value);
+    }
+
+    @Test
+    public void readAll1() {
+        // All the channels are connected with a single recipe
+        MockDataSource dataSource = new MockDataSource();
+        pvReaders = PVManager.readAll(channels("a", "b", "a")).from(dataSource)
+                .notifyOn(localThread()).maxRate(ofHertz(50));
+
+        assertThat(pvReaders, hasSize(3));
+        assertThat(pvReaders.get(0).getName(), equalTo("a"));
+        assertThat(pvReaders.get(1).getName(), equalTo("b"));
+        assertThat(pvReaders.get(2).getName(), equalTo("a"));
+        assertThat(dataSource.getReadRecipe().getChannelReadRecipes(), hasSize(3));
+        assertThat(dataSource.getConnectedReadRecipes(), hasSize(3));
+    }
+
+    @Test
+    public void readAll2() throws Exception {
+        // Each reader is notified of its own value
+        MockDataSource dataSource = new MockDataSource();
+        pvReaders = PVManager.readAll(channels("a", "b")).from(dataSource)
+                .notifyOn(localThread()).maxRate(ofHertz(50));
+
+        List<ChannelReadRecipe> recipes = new ArrayList<>(dataSource.getReadRecipe().getChannelReadRecipes());
+        for (ChannelReadRecipe recipe : recipes) {
+            recipe.getReadSubscription().getConnectionWriteFunction().writeValue(true);
+            writeValue(recipe, "Value of " + recipe.getChannelName());
+        }
+        Thread.sleep(100);
+
+        assertThat(pvReaders.get(0).getValue(), equalTo((Object) "Value of a"));
+        assertThat(pvReaders.get(1).getValue(), equalTo((Object) "Value of b"));
+        assertThat(pvReaders.get(0).isConnected(), equalTo(true));
+    }
+
+    @Test
+    public void readAll3() throws Exception {
+        // Closed readers are disconnected, the others keep reading
+        MockDataSource dataSource = new MockDataSource();
+        pvReaders = PVManager.readAll(channels("a", "b")).from(dataSource)
+                .notifyOn(localThread()).maxRate(ofHertz(50));
+
+        pvReaders.get(0).close();
+        Thread.sleep(100);
+        assertThat(dataSource.getConnectedReadRecipes(), hasSize(1));
+        assertThat(dataSource.getConnectedReadRecipes().get(0).getChannelName(), equalTo("b"));
+
+        pvReaders.get(1).close();
+        Thread.sleep(100);
+        assertThat(dataSource.getConnectedReadRecipes(), hasSize(0));
+    }
+
+    @Test
+    public void readAll4() {
+        // Empty list
+        MockDataSource dataSource = new MockDataSource();
+        List<SourceRateExpression<Object>> expressions = Arrays.asList();
+        pvReaders = PVManager.readAll(expressions).from(dataSource)
+                .notifyOn(localThread()).maxRate(ofHertz(50));
+        assertThat(pvReaders, hasSize(0));
+        assertThat(dataSource.getReadRecipe(), nullValue());
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import org.epics.pvmanager.test.MockDataSource;
+import org.junit.Test;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+import static org.epics.pvmanager.util.Executors.*;
+import static org.epics.util.time.TimeDuration.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the readers garbage collected without being closed.
+ *
+ * @author carcassi
+ */
+public class ReaderCleanerTest {
+
+    public ReaderCleanerTest() {
+    }
+
+    private static void openReader(MockDataSource dataSource) {
+        // The reader is not kept: it can be garbage collected right away
+        PVManager.read(channel("leaked")).from(dataSource)
+                .notifyOn(localThread()).maxRate(ofSeconds(10));
+    }
+
+    private static boolean waitForDisconnection(MockDataSource dataSource) throws Exception {
+        for (int i = 0; i < 50 && !dataSource.getConnectedReadRecipes().isEmpty(); i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return dataSource.getConnectedReadRecipes().isEmpty();
+    }
+
+    @Test
+    public void garbageCollected1() throws Exception {
+        // The leaked reader is disconnected before its next scan, and counted
+        MockDataSource dataSource = new MockDataSource();
+        long leakedCount = PVManager.getLeakedReaderCount();
+        openReader(dataSource);
+        assertThat(dataSource.getConnectedReadRecipes(), hasSize(1));
+
+        assertThat(waitForDisconnection(dataSource), equalTo(true));
+        assertThat(PVManager.getLeakedReaderCount(), equalTo(leakedCount + 1));
+    }
+
+    @Test
+    public void garbageCollected2() throws Exception {
+        // The leaked reader is reported also when recording the creation
+        boolean record = PVManager.isRecordReaderCreationStack();
+        try {
+            PVManager.setRecordReaderCreationStack(true);
+            MockDataSource dataSource = new MockDataSource();
+            long leakedCount = PVManager.getLeakedReaderCount();
+            openReader(dataSource);
+
+            assertThat(waitForDisconnection(dataSource), equalTo(true));
+            assertThat(PVManager.getLeakedReaderCount(), equalTo(leakedCount + 1));
+        } finally {
+            PVManager.setRecordReaderCreationStack(record);
+        }
+    }
+
+    @Test
+    public void closed1() throws Exception {
+        // A reader closed properly is not a leak
+        MockDataSource dataSource = new MockDataSource();
+        long leakedCount = PVManager.getLeakedReaderCount();
+        PVReader<Object> pvReader = PVManager.read(channel("closed")).from(dataSource)
+                .notifyOn(localThread()).maxRate(ofHertz(50));
+        pvReader.close();
+        pvReader = null;
+
+        assertThat(waitForDisconnection(dataSource), equalTo(true));
+        System.gc();
+        Thread.sleep(100);
+        assertThat(PVManager.getLeakedReaderCount(), equalTo(leakedCount));
+    }
+}
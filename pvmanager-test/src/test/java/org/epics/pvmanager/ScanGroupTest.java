@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.epics.pvmanager.test.MockDataSource;
+import org.junit.After;
+import org.junit.Test;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+import static org.epics.pvmanager.util.Executors.*;
+import static org.epics.util.time.TimeDuration.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the readers scanned in groups.
+ *
+ * @author carcassi
+ */
+public class ScanGroupTest {
+
+    public ScanGroupTest() {
+    }
+
+    private List<PVReader<Object>> pvReaders = new ArrayList<>();
+
+    @After
+    public void closePVs() {
+        for (PVReader<Object> pvReader : pvReaders) {
+            pvReader.close();
+        }
+        pvReaders.clear();
+    }
+
+    @Test
+    public void sharedGroup1() {
+        // Same parameters share the group
+        Executor executor = localThread();
+        ScanGroup group = ScanGroup.sharedGroup(PVManager.getReadScannerExecutorService(), ofHertz(20), executor, 4);
+        assertThat(ScanGroup.sharedGroup(PVManager.getReadScannerExecutorService(), ofHertz(20), executor, 4), sameInstance(group));
+        assertThat(ScanGroup.sharedGroup(PVManager.getReadScannerExecutorService(), ofHertz(10), executor, 4), not(sameInstance(group)));
+        assertThat(ScanGroup.sharedGroup(PVManager.getReadScannerExecutorService(), ofHertz(20), executor, 1), not(sameInstance(group)));
+        assertThat(ScanGroup.sharedGroup(PVManager.getReadScannerExecutorService(), ofHertz(20), swingEDT(), 4), not(sameInstance(group)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void sharedScan1() throws Exception {
+        // Readers in the shared group are notified and removed when closed,
+        // and the empty group is no longer shared
+        MockDataSource dataSource = new MockDataSource();
+        ScanGroup group = ScanGroup.sharedGroup(PVManager.getReadScannerExecutorService(), ofHertz(50), localThread(), 3);
+        for (int i = 0; i < 5; i++) {
+            pvReaders.add(PVManager.read(channel("channel" + i)).from(dataSource)
+                    .notifyOn(localThread()).sharedScan(3).maxRate(ofHertz(50)));
+        }
+        assertThat(group.size(), equalTo(5));
+
+        for (ChannelReadRecipe recipe : dataSource.getConnectedReadRecipes()) {
+            ((ValueCache<Object>) recipe.getReadSubscription().getValueCache()).writeValue("Value of " + recipe.getChannelName());
+        }
+        Thread.sleep(100);
+        for (int i = 0; i < 5; i++) {
+            assertThat(pvReaders.get(i).getValue(), equalTo((Object) ("Value of channel" + i)));
+        }
+
+        for (PVReader<Object> pvReader : pvReaders) {
+            pvReader.close();
+        }
+        Thread.sleep(100);
+        assertThat(group.size(), equalTo(0));
+        assertThat(dataSource.getConnectedReadRecipes(), hasSize(0));
+        assertThat(ScanGroup.sharedGroup(PVManager.getReadScannerExecutorService(), ofHertz(50), localThread(), 3), not(sameInstance(group)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void sharedScan2() {
+        // Event driven readers are not scanned
+        pvReaders.add(PVManager.read(channel("test")).from(new MockDataSource())
+                .notifyOn(localThread()).eventDriven().sharedScan().maxRate(ofHertz(50)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sharedScan3() {
+        PVManager.read(channel("test")).sharedScan(0);
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class ValueCacheImplTest {
+
+    public ValueCacheImplTest() {
+    }
+
+    /**
+     * Converts the message into a string, recording each conversion.
+     */
+    private static class RecordingConversion implements ValueCacheImpl.Conversion {
+
+        private final List<Object> converted = new ArrayList<>();
+
+        @Override
+        public void convert(ValueCacheImpl<?> cache, Object message) {
+            converted.add(message);
+            cache.writeValue("Value " + message);
+        }
+    }
+
+    @Test
+    public void writeDeferred1() {
+        // The message is converted only when read
+        ValueCacheImpl<String> cache = new ValueCacheImpl<>(String.class);
+        RecordingConversion conversion = new RecordingConversion();
+        cache.writeDeferred(conversion, 1);
+        assertThat(conversion.converted, hasSize(0));
+        assertThat(cache.readValue(), equalTo("Value 1"));
+        assertThat(cache.readValue(), equalTo("Value 1"));
+        assertThat(conversion.converted, equalTo(Arrays.<Object>asList(1)));
+    }
+
+    @Test
+    public void writeDeferred2() {
+        // Replaced messages are never converted
+        ValueCacheImpl<String> cache = new ValueCacheImpl<>(String.class);
+        RecordingConversion conversion = new RecordingConversion();
+        cache.writeDeferred(conversion, 1);
+        cache.writeDeferred(conversion, 2);
+        cache.writeDeferred(conversion, 3);
+        assertThat(cache.readValue(), equalTo("Value 3"));
+        assertThat(conversion.converted, equalTo(Arrays.<Object>asList(3)));
+    }
+
+    @Test
+    public void writeDeferred3() {
+        // A value written directly replaces the pending message
+        ValueCacheImpl<String> cache = new ValueCacheImpl<>(String.class);
+        RecordingConversion conversion = new RecordingConversion();
+        cache.writeDeferred(conversion, 1);
+        cache.writeValue("Direct");
+        assertThat(cache.readValue(), equalTo("Direct"));
+        assertThat(conversion.converted, hasSize(0));
+    }
+}
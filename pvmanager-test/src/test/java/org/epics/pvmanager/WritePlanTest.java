@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class WritePlanTest {
+
+    public WritePlanTest() {
+    }
+
+    private static ChannelWriteRecipe recipe(String channelName, String... precedingChannels) {
+        WriteCache<Object> cache = new WriteCache<>(channelName);
+        cache.setPrecedingChannels(Arrays.asList(precedingChannels));
+        return new ChannelWriteRecipe(channelName, new ChannelHandlerWriteSubscription(cache, new ValueCacheImpl<Exception>(Exception.class), new ValueCacheImpl<Boolean>(Boolean.class)));
+    }
+
+    private static List<String> names(WritePlan plan, int[] indexes) {
+        List<String> names = new ArrayList<>();
+        for (int index : indexes) {
+            names.add(plan.getChannelWriteRecipe(index).getChannelName());
+        }
+        return names;
+    }
+
+    private static int indexOf(WritePlan plan, String channelName) {
+        for (int i = 0; i < plan.size(); i++) {
+            if (plan.getChannelWriteRecipe(i).getChannelName().equals(channelName)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Channel " + channelName + " not found");
+    }
+
+    @Test
+    public void noDependencies() {
+        WritePlan plan = new WritePlan(Arrays.asList(recipe("channel1"), recipe("channel2"), recipe("channel3")));
+        assertThat(plan.size(), equalTo(3));
+        assertThat(plan.isCircular(), equalTo(false));
+        assertThat(names(plan, plan.getFirst()), containsInAnyOrder("channel1", "channel2", "channel3"));
+        for (int i = 0; i < plan.size(); i++) {
+            assertThat(plan.getPrecedingCount(i), equalTo(0));
+            assertThat(plan.getSucceeding(i).length, equalTo(0));
+        }
+    }
+
+    @Test
+    public void someDependencies1() {
+        WritePlan plan = new WritePlan(Arrays.asList(recipe("channel1"), recipe("channel2", "channel1"), recipe("channel3", "channel1")));
+        assertThat(plan.isCircular(), equalTo(false));
+        assertThat(names(plan, plan.getFirst()), contains("channel1"));
+        assertThat(names(plan, plan.getSucceeding(indexOf(plan, "channel1"))), containsInAnyOrder("channel2", "channel3"));
+        assertThat(plan.getPrecedingCount(indexOf(plan, "channel2")), equalTo(1));
+        assertThat(plan.getPrecedingCount(indexOf(plan, "channel3")), equalTo(1));
+    }
+
+    @Test
+    public void someDependencies2() {
+        WritePlan plan = new WritePlan(Arrays.asList(recipe("channel1"), recipe("channel2", "channel1"), recipe("channel3", "channel2")));
+        assertThat(plan.isCircular(), equalTo(false));
+        assertThat(names(plan, plan.getFirst()), contains("channel1"));
+        assertThat(names(plan, plan.getSucceeding(indexOf(plan, "channel1"))), contains("channel2"));
+        assertThat(names(plan, plan.getSucceeding(indexOf(plan, "channel2"))), contains("channel3"));
+        assertThat(plan.getSucceeding(indexOf(plan, "channel3")).length, equalTo(0));
+    }
+
+    @Test
+    public void someDependencies3() {
+        WritePlan plan = new WritePlan(Arrays.asList(recipe("channel1"), recipe("channel2", "channel1"),
+                recipe("channel3", "channel1"), recipe("channel4", "channel2", "channel3")));
+        assertThat(plan.isCircular(), equalTo(false));
+        assertThat(names(plan, plan.getFirst()), contains("channel1"));
+        assertThat(names(plan, plan.getSucceeding(indexOf(plan, "channel2"))), contains("channel4"));
+        assertThat(names(plan, plan.getSucceeding(indexOf(plan, "channel3"))), contains("channel4"));
+        assertThat(plan.getPrecedingCount(indexOf(plan, "channel4")), equalTo(2));
+    }
+
+    @Test
+    public void precedingChannelNotInRecipe() {
+        WritePlan plan = new WritePlan(Arrays.asList(recipe("channel1"), recipe("channel2", "channel1", "other")));
+        assertThat(plan.isCircular(), equalTo(false));
+        assertThat(plan.getPrecedingCount(indexOf(plan, "channel2")), equalTo(1));
+    }
+
+    @Test
+    public void circularDependencies() {
+        WritePlan plan = new WritePlan(Arrays.asList(recipe("channel1"), recipe("channel2", "channel1", "channel3"), recipe("channel3", "channel2")));
+        assertThat(plan.isCircular(), equalTo(true));
+    }
+}
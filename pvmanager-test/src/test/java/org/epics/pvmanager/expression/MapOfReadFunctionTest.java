@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.expression;
+
+import java.util.Map;
+import org.epics.pvmanager.BasicTypeSupport;
+import org.epics.pvmanager.LatestValueCollector;
+import org.epics.pvmanager.NotificationSupport;
+import org.epics.pvmanager.QueueCollector;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class MapOfReadFunctionTest {
+
+    public MapOfReadFunctionTest() {
+    }
+
+    @BeforeClass
+    public static void installTypeSupport() {
+        BasicTypeSupport.install();
+    }
+
+    private MapOfReadFunction<String> function;
+    private LatestValueCollector<String> input1;
+    private LatestValueCollector<String> input2;
+
+    @Before
+    public void setUp() {
+        function = new MapOfReadFunction<>(new QueueCollector<MapUpdate<String>>(1000));
+        input1 = new LatestValueCollector<>();
+        input2 = new LatestValueCollector<>();
+        function.getMapUpdateCollector().writeValue(MapUpdate.addReadFunction("input1", input1));
+        function.getMapUpdateCollector().writeValue(MapUpdate.addReadFunction("input2", input2));
+    }
+
+    @Test
+    public void readValue1() {
+        assertThat(function.readValue().size(), equalTo(0));
+        input1.writeValue("A");
+        Map<String, String> value = function.readValue();
+        assertThat(value.size(), equalTo(1));
+        assertThat(value.get("input1"), equalTo("A"));
+        assertThat(function.readValue(), sameInstance(value));
+        input2.writeValue("B");
+        Map<String, String> newValue = function.readValue();
+        assertThat(newValue.size(), equalTo(2));
+        assertThat(newValue.get("input2"), equalTo("B"));
+        assertThat(value.size(), equalTo(1));
+    }
+
+    @Test
+    public void readValue2() {
+        input1.writeValue("A");
+        input2.writeValue("B");
+        function.readValue();
+        function.getMapUpdateCollector().writeValue(MapUpdate.<String>removeFunction("input1"));
+        Map<String, String> value = function.readValue();
+        assertThat(value.size(), equalTo(1));
+        assertThat(value.get("input2"), equalTo("B"));
+        function.getMapUpdateCollector().writeValue(MapUpdate.<String>clear());
+        assertThat(function.readValue().size(), equalTo(0));
+    }
+
+    @Test
+    public void delta() {
+        input1.writeValue("A");
+        Map<String, String> oldValue = function.readValue();
+        input1.writeValue("A1");
+        input2.writeValue("B");
+        Map<String, String> newValue = function.readValue();
+        MapDelta delta = MapDelta.between(oldValue, newValue);
+        assertThat(delta.getAddedKeys(), contains("input2"));
+        assertThat(delta.getRemovedKeys(), hasSize(0));
+        assertThat(delta.getUpdatedKeys(), contains("input1"));
+
+        function.getMapUpdateCollector().writeValue(MapUpdate.<String>removeFunction("input2"));
+        delta = MapDelta.between(newValue, function.readValue());
+        assertThat(delta.getAddedKeys(), hasSize(0));
+        assertThat(delta.getRemovedKeys(), contains("input2"));
+        assertThat(delta.getUpdatedKeys(), hasSize(0));
+        assertThat(MapDelta.between(null, newValue).getAddedKeys(), containsInAnyOrder("input1", "input2"));
+    }
+
+    @Test
+    public void notification() {
+        input1.writeValue("A");
+        Map<String, String> oldValue = function.readValue();
+        input1.writeValue(new String("A"));
+        Map<String, String> newValue = function.readValue();
+        assertThat(newValue, not(sameInstance(oldValue)));
+        assertThat(NotificationSupport.notification(oldValue, newValue).isNotificationNeeded(), equalTo(false));
+        input2.writeValue("B");
+        newValue = function.readValue();
+        assertThat(NotificationSupport.notification(oldValue, newValue).isNotificationNeeded(), equalTo(true));
+        assertThat(NotificationSupport.notification(oldValue, newValue).getNewValue(), sameInstance(newValue));
+    }
+}
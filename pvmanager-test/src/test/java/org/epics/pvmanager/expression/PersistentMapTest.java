@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.expression;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class PersistentMapTest {
+
+    public PersistentMapTest() {
+    }
+
+    /**
+     * A key with a given hash, to test collisions.
+     */
+    private static class Key {
+
+        private final String name;
+        private final int hash;
+
+        Key(String name, int hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key) obj).name.equals(name);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @Test
+    public void plusAndMinus() {
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+        PersistentMap<String, Integer> map1 = map.plus("a", 1);
+        PersistentMap<String, Integer> map2 = map1.plus("b", 2);
+        PersistentMap<String, Integer> map3 = map2.minus("a");
+        assertThat(map.size(), equalTo(0));
+        assertThat(map1.size(), equalTo(1));
+        assertThat(map1.get("a"), equalTo(1));
+        assertThat(map2.size(), equalTo(2));
+        assertThat(map2.get("b"), equalTo(2));
+        assertThat(map3.size(), equalTo(1));
+        assertThat(map3.containsKey("a"), equalTo(false));
+        assertThat(map3.get("b"), equalTo(2));
+    }
+
+    @Test
+    public void sameValue() {
+        Integer value = 1;
+        PersistentMap<String, Integer> map = PersistentMap.<String, Integer>empty().plus("a", value);
+        assertThat(map.plus("a", value), sameInstance(map));
+        assertThat(map.minus("b"), sameInstance(map));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable() {
+        PersistentMap<String, Integer> map = PersistentMap.<String, Integer>empty().plus("a", 1);
+        map.put("b", 2);
+    }
+
+    @Test
+    public void randomChanges() {
+        Random random = new Random(1);
+        for (int round = 0; round < 4; round++) {
+            PersistentMap<Object, Integer> map = PersistentMap.empty();
+            Map<Object, Integer> reference = new HashMap<>();
+            for (int i = 0; i < 2000; i++) {
+                String name = "key" + random.nextInt(300);
+                // Half of the rounds use only few hashes, to force collisions
+                Object key = round % 2 == 0 ? name : new Key(name, name.hashCode() & 0x8000000F);
+                if (random.nextInt(3) == 0) {
+                    map = map.minus(key);
+                    reference.remove(key);
+                } else {
+                    Integer value = random.nextInt(5);
+                    map = map.plus(key, value);
+                    reference.put(key, value);
+                }
+                assertThat(map.size(), equalTo(reference.size()));
+            }
+            assertThat(map, equalTo(reference));
+            assertThat(reference, equalTo((Map<Object, Integer>) map));
+            assertThat(new HashMap<>(map), equalTo(reference));
+        }
+    }
+
+    @Test
+    public void diff() {
+        PersistentMap<String, Integer> oldMap = PersistentMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            oldMap = oldMap.plus("key" + i, 1000 + i);
+        }
+        PersistentMap<String, Integer> newMap = oldMap.plus("key3", -3).plus("key5", 1005)
+                .minus("key7").plus("new1", 1);
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        List<String> updated = new ArrayList<>();
+        PersistentMap.diff(oldMap, newMap, added, removed, updated);
+        assertThat(added, contains("new1"));
+        assertThat(removed, contains("key7"));
+        // key5 has a different instance, but an equal value
+        assertThat(updated, contains("key3"));
+    }
+
+    @Test
+    public void diffWithCollisions() {
+        PersistentMap<Key, Integer> oldMap = PersistentMap.empty();
+        for (int i = 0; i < 100; i++) {
+            oldMap = oldMap.plus(new Key("key" + i, i % 3), i);
+        }
+        PersistentMap<Key, Integer> newMap = oldMap.plus(new Key("key3", 0), -3)
+                .minus(new Key("key7", 1)).plus(new Key("new1", 5), 1);
+        List<Key> added = new ArrayList<>();
+        List<Key> removed = new ArrayList<>();
+        List<Key> updated = new ArrayList<>();
+        PersistentMap.diff(oldMap, newMap, added, removed, updated);
+        assertThat(added, contains(new Key("new1", 5)));
+        assertThat(removed, contains(new Key("key7", 1)));
+        assertThat(updated, contains(new Key("key3", 0)));
+    }
+}
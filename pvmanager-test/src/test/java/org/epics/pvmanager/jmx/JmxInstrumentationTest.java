@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.jmx;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import org.epics.pvmanager.ChannelInstrumentation;
+import org.epics.pvmanager.ReaderInstrumentation;
+import org.epics.pvmanager.test.TestDataSource;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author carcassi
+ */
+public class JmxInstrumentationTest {
+
+    public JmxInstrumentationTest() {
+    }
+
+    private MBeanServer server;
+    private JmxInstrumentation instrumentation;
+    private TestDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        server = MBeanServerFactory.newMBeanServer();
+        instrumentation = new JmxInstrumentation(server);
+        dataSource = new TestDataSource();
+    }
+
+    @Test
+    public void readers() throws Exception {
+        ReaderInstrumentation fast = instrumentation.readerCreated("fast", dataSource);
+        ReaderInstrumentation slow = instrumentation.readerCreated("slow", dataSource);
+        ObjectName objectName = instrumentation.getObjectName(dataSource);
+        assertThat(server.isRegistered(objectName), equalTo(true));
+        assertThat(server.getAttribute(objectName, "ReaderCount"), equalTo((Object) 2));
+
+        fast.scanCompleted(1000);
+        fast.notificationStarted(500);
+        slow.scanCompleted(1000000);
+        slow.scanSkipped();
+        slow.valuesDropped(3);
+        assertThat(server.getAttribute(objectName, "ScanCount"), equalTo((Object) 2L));
+        assertThat(server.getAttribute(objectName, "SkippedScanCount"), equalTo((Object) 1L));
+        assertThat(server.getAttribute(objectName, "NotificationCount"), equalTo((Object) 1L));
+        assertThat(server.getAttribute(objectName, "ValuesDropped"), equalTo((Object) 3L));
+        assertThat(((String[]) server.getAttribute(objectName, "ReadTimeHistogram")).length, equalTo(2));
+        String[] top = (String[]) server.invoke(objectName, "topReadersByReadTime", new Object[] {1}, new String[] {"int"});
+        assertThat(top.length, equalTo(1));
+        assertThat(top[0], startsWith("slow:"));
+
+        // The totals are kept after the reader is closed
+        slow.readerClosed();
+        assertThat(server.getAttribute(objectName, "ReaderCount"), equalTo((Object) 1));
+        assertThat(server.getAttribute(objectName, "ScanCount"), equalTo((Object) 2L));
+        assertThat(server.getAttribute(objectName, "ValuesDropped"), equalTo((Object) 3L));
+    }
+
+    @Test
+    public void channels() throws Exception {
+        ChannelInstrumentation channel1 = instrumentation.channelCreated("channel1", dataSource);
+        ChannelInstrumentation channel2 = instrumentation.channelCreated("channel2", dataSource);
+        channel1.valueReceived();
+        channel2.valueReceived();
+        channel2.valueReceived();
+        ObjectName objectName = instrumentation.getObjectName(dataSource);
+        assertThat(server.getAttribute(objectName, "ChannelCount"), equalTo((Object) 2));
+        assertThat(server.getAttribute(objectName, "ValuesReceived"), equalTo((Object) 3L));
+        String[] top = (String[]) server.invoke(objectName, "topChannelsByValuesReceived", new Object[] {1}, new String[] {"int"});
+        assertThat(top, equalTo(new String[] {"channel2: values=2"}));
+
+        instrumentation.close();
+        assertThat(server.isRegistered(objectName), equalTo(false));
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2010-14 pvmanager developers. See COPYRIGHT.TXT
+ * All rights reserved. Use is subject to license terms. See LICENSE.TXT
+ */
+package org.epics.pvmanager.test;
+
+import org.epics.pvmanager.ChannelEvictionPolicy;
+import org.epics.pvmanager.DataSource;
+import static org.epics.pvmanager.ExpressionLanguage.*;
+import org.epics.pvmanager.PVManager;
+import org.epics.pvmanager.PVReader;
+import static org.epics.util.time.TimeDuration.*;
+import static org.hamcrest.Matchers.*;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author carcassi
+ */
+public class ChannelEvictionTest {
+
+    public ChannelEvictionTest() {
+    }
+
+    private DataSource dataSource;
+    private PVReader<Object> pvReader1;
+    private PVReader<Object> pvReader2;
+
+    @Before
+    public void setupDataSource() {
+        dataSource = new TestDataSource();
+    }
+
+    @After
+    public void closeDataSource() {
+        if (pvReader1 != null) {
+            pvReader1.close();
+            pvReader1 = null;
+        }
+        if (pvReader2 != null) {
+            pvReader2.close();
+            pvReader2 = null;
+        }
+        dataSource.close();
+        dataSource = null;
+    }
+
+    private static void waitForLiveChannels(DataSource source, int count) throws Exception {
+        for (int i = 0; i < 50 && source.getLiveChannelCount() != count; i++) {
+            Thread.sleep(100);
+        }
+        assertThat(source.getLiveChannelCount(), equalTo(count));
+    }
+
+    private static void waitForIdleChannels(DataSource source, int count) throws Exception {
+        for (int i = 0; i < 50 && source.getIdleChannelCount() != count; i++) {
+            Thread.sleep(100);
+        }
+        assertThat(source.getIdleChannelCount(), equalTo(count));
+    }
+
+    private static void waitForConnection(PVReader<?> pvReader) throws Exception {
+        for (int i = 0; i < 50 && !pvReader.isConnected(); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(pvReader.isConnected(), equalTo(true));
+    }
+
+    @Test
+    public void neverEvict() throws Exception {
+        assertThat(dataSource.getChannelEvictionPolicy(), sameInstance(ChannelEvictionPolicy.never()));
+        pvReader1 = PVManager.read(channel("normal")).from(dataSource).maxRate(ofMillis(10));
+        waitForConnection(pvReader1);
+        pvReader1.close();
+        pvReader1 = null;
+        PVWriterFullTest.waitForChannelToClose(dataSource, "normal");
+
+        assertThat(dataSource.getLiveChannelCount(), equalTo(1));
+        assertThat(dataSource.getIdleChannelCount(), equalTo(0));
+        assertThat(dataSource.getEvictedChannelCount(), equalTo(0L));
+    }
+
+    @Test
+    public void evictImmediately() throws Exception {
+        dataSource.setChannelEvictionPolicy(ChannelEvictionPolicy.immediate());
+        pvReader1 = PVManager.read(channel("normal")).from(dataSource).maxRate(ofMillis(10));
+        waitForConnection(pvReader1);
+        assertThat(dataSource.getLiveChannelCount(), equalTo(1));
+        pvReader1.close();
+        pvReader1 = null;
+        waitForLiveChannels(dataSource, 0);
+        assertThat(dataSource.getEvictedChannelCount(), equalTo(1L));
+
+        // A new reader creates a new channel
+        pvReader1 = PVManager.read(channel("normal")).from(dataSource).maxRate(ofMillis(10));
+        waitForConnection(pvReader1);
+        assertThat(dataSource.getLiveChannelCount(), equalTo(1));
+    }
+
+    @Test
+    public void evictAfterIdle() throws Exception {
+        // The channel is evicted after the grace period, even if
+        // nothing else happens on the data source
+        dataSource.setChannelEvictionPolicy(ChannelEvictionPolicy.afterIdle(ofMillis(1000)));
+        pvReader1 = PVManager.read(channel("normal")).from(dataSource).maxRate(ofMillis(10));
+        waitForConnection(pvReader1);
+        pvReader1.close();
+        pvReader1 = null;
+        waitForIdleChannels(dataSource, 1);
+        assertThat(dataSource.getLiveChannelCount(), equalTo(1));
+
+        waitForLiveChannels(dataSource, 0);
+        assertThat(dataSource.getIdleChannelCount(), equalTo(0));
+        assertThat(dataSource.getEvictedChannelCount(), equalTo(1L));
+    }
+
+    @Test
+    public void evictOverMaxIdle() throws Exception {
+        dataSource.setChannelEvictionPolicy(ChannelEvictionPolicy.maxIdleChannels(1));
+        pvReader1 = PVManager.read(channel("normal")).from(dataSource).maxRate(ofMillis(10));
+        pvReader2 = PVManager.read(channel("delayedWrite")).from(dataSource).maxRate(ofMillis(10));
+        waitForConnection(pvReader1);
+        waitForConnection(pvReader2);
+        assertThat(dataSource.getLiveChannelCount(), equalTo(2));
+
+        // The channel idle for the longest is evicted first
+        pvReader1.close();
+        pvReader1 = null;
+        waitForIdleChannels(dataSource, 1);
+        pvReader2.close();
+        pvReader2 = null;
+        waitForLiveChannels(dataSource, 1);
+        assertThat(dataSource.getChannels().get("normal"), nullValue());
+        assertThat(dataSource.getChannels().get("delayedWrite"), not(nullValue()));
+        assertThat(dataSource.getIdleChannelCount(), equalTo(1));
+        assertThat(dataSource.getEvictedChannelCount(), equalTo(1L));
+    }
+}
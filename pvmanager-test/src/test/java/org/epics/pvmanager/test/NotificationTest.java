@@ -4,8 +4,14 @@
  */
 package org.epics.pvmanager.test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.epics.pvmanager.PVManager;
 import org.epics.pvmanager.PVReader;
+import org.epics.pvmanager.PVReaderEvent;
+import org.epics.pvmanager.PVWriter;
+import static org.epics.pvmanager.ExpressionLanguage.channel;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
@@ -56,4 +62,66 @@ public class NotificationTest {
             fail("listener received wrong notifications");
         reader.close();
     }
+
+    @Test
+    public void eventDrivenNotifications() throws Exception{
+        TestDataSource dataSource = new TestDataSource();
+        final long periodNanos = ofMillis(50).toNanosLong();
+        final List<Long> notificationTimes = Collections.synchronizedList(new ArrayList<Long>());
+        CountDownPVReaderListener listener = new CountDownPVReaderListener(1, PVReaderEvent.VALUE_MASK) {
+
+            @Override
+            public void pvChanged(PVReaderEvent<Object> event) {
+                if (event.isValueChanged()) {
+                    notificationTimes.add(System.nanoTime());
+                }
+                super.pvChanged(event);
+            }
+        };
+        // The channel writes back to the readers the values it receives
+        PVReader<Object> reader = PVManager.read(channel("delayedConnection"))
+                .readListener(listener)
+                .from(dataSource).eventDriven().maxRate(ofMillis(50));
+        PVWriter<Object> writer = PVManager.write(channel("delayedConnection"))
+                .from(dataSource).sync();
+        
+        // Connection and initial value
+        listener.await(ofMillis(2000));
+        assertThat(listener.getCount(), equalTo(0));
+        assertThat(reader.isConnected(), equalTo(true));
+        assertThat(reader.getValue(), equalTo((Object) "Initial value"));
+        
+        // No updates, no notifications
+        listener.resetCount(1);
+        listener.await(ofMillis(200));
+        assertThat(listener.getCount(), equalTo(1));
+        
+        // Updates much faster than the max rate
+        notificationTimes.clear();
+        for (int i = 0; i < 100; i++) {
+            writer.write(i);
+            Thread.sleep(2);
+        }
+        
+        // Last value must be delivered
+        Thread.sleep(200);
+        assertThat(reader.getValue(), equalTo((Object) 99));
+        
+        // The scans are at least the max rate apart: allow a few ms
+        // for the delay in the dispatch of the notifications
+        List<Long> times;
+        synchronized(notificationTimes) {
+            times = new ArrayList<>(notificationTimes);
+        }
+        assertThat(times.size(), greaterThan(1));
+        for (int i = 1; i < times.size(); i++) {
+            assertThat(times.get(i) - times.get(i - 1), greaterThan(periodNanos - ofMillis(5).toNanosLong()));
+        }
+        
+        // Closing must disconnect even if no scan is pending
+        writer.close();
+        reader.close();
+        PVWriterFullTest.waitForChannelToClose(dataSource, "delayedConnection");
+        dataSource.close();
+    }
 }
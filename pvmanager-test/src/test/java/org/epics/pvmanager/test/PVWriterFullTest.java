@@ -5,6 +5,7 @@
 package org.epics.pvmanager.test;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.epics.pvmanager.DataSource;
 import static org.epics.pvmanager.ExpressionLanguage.*;
 import org.epics.pvmanager.PV;
@@ -12,6 +13,8 @@ import org.epics.pvmanager.PVManager;
 import org.epics.pvmanager.PVReader;
 import org.epics.pvmanager.PVWriter;
 import org.epics.pvmanager.PVWriterEvent;
+import org.epics.pvmanager.PVWriterListener;
+import org.epics.pvmanager.TimeoutException;
 import org.epics.pvmanager.test.CountDownPVWriterListener;
 import org.epics.pvmanager.test.CountDownPVWriterListener;
 import org.epics.pvmanager.test.TestDataSource;
@@ -135,6 +138,79 @@ public class PVWriterFullTest {
         assertThat(listener.getNotificationCount(), equalTo(2));
     }
     
+    @Test
+    public void writerCoalescedWrites() throws Exception {
+        // The delayedWrite channel never reports write connected:
+        // the only notifications are the write ones
+        CountDownPVWriterListener<Object> listener = new CountDownPVWriterListener<>(5);
+        pvWriter = PVManager.write(channel("delayedWrite"))
+                .writeListener(listener)
+                .notifyOn(executor)
+                .from(dataSource)
+                .coalesceWrites()
+                .async();
+        
+        // Each write takes 1 second: the first value is written, the next three
+        // are replaced while it's in progress, and the last one is written next
+        pvWriter.write("1");
+        pvWriter.write("2");
+        pvWriter.write("3");
+        pvWriter.write("4");
+        pvWriter.write("5");
+        listener.await(TimeDuration.ofMillis(3000));
+        assertThat(listener.getCount(), equalTo(0));
+        assertThat(listener.getEvent().getNotificationMask(), equalTo(PVWriterEvent.WRITE_SUCCEEDED_MASK));
+        assertThat(pvWriter.lastWriteException(), equalTo(null));
+        
+        pvReader = PVManager.read(channel("delayedWrite")).from(dataSource).maxRate(ofMillis(10));
+        Thread.sleep(100);
+        assertThat(pvReader.getValue(), equalTo((Object) "5"));
+    }
+    
+    @Test
+    public void writerCoalescedWritesTimeout() throws Exception {
+        final AtomicInteger successes = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        pvWriter = PVManager.write(channel("delayedWrite"))
+                .writeListener(new PVWriterListener<Object>() {
+
+                    @Override
+                    public void pvChanged(PVWriterEvent<Object> event) {
+                        if (event.isWriteSucceeded()) {
+                            successes.incrementAndGet();
+                        }
+                        if (event.isWriteFailed()) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                })
+                .notifyOn(executor)
+                .from(dataSource)
+                .timeout(ofMillis(500))
+                .coalesceWrites()
+                .async();
+        
+        // Each write takes 1 second: the first write times out after
+        // half a second, and the last one is written without waiting
+        // for the callback. The two writes it replaced fail when it
+        // times out, and both writes succeed later.
+        pvWriter.write("1");
+        pvWriter.write("2");
+        pvWriter.write("3");
+        pvWriter.write("4");
+        Thread.sleep(1250);
+        assertThat(successes.get(), equalTo(1));
+        assertThat(failures.get(), equalTo(2));
+        assertThat(pvWriter.lastWriteException(), instanceOf(TimeoutException.class));
+        
+        Thread.sleep(500);
+        assertThat(successes.get(), equalTo(2));
+        assertThat(failures.get(), equalTo(2));
+        pvReader = PVManager.read(channel("delayedWrite")).from(dataSource).maxRate(ofMillis(10));
+        Thread.sleep(100);
+        assertThat(pvReader.getValue(), equalTo((Object) "4"));
+    }
+    
     @Test
     public void writerWriteFailed() throws Exception {
         CountDownPVWriterListener<Object> listener = new CountDownPVWriterListener<>(1);